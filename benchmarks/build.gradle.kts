@@ -41,6 +41,12 @@ dependencies {
     compile(kotlinStdlib())
     compile(project(":compiler:frontend"))
     compile(project(":compiler:cli"))
+    compile(project(":kotlin-build-common"))
+    compile(project(":daemon-common"))
+    compile(project(":daemon-common-new"))
+    compile(project(":kotlin-reflect"))
+    compile(project(":kotlin-scripting-jvm-host"))
+    compile(project(":kotlin-scripting-compiler"))
     compile(intellijCoreDep()) { includeJars("intellij-core") }
     compile(jpsStandalone()) { includeJars("jps-model") }
     Platform[192].orHigher {
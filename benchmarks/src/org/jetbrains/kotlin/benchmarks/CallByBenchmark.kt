@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+import kotlin.reflect.KFunction
+import kotlin.reflect.KParameter
+import kotlin.reflect.full.primaryConstructor
+
+data class CallByTarget(val id: Long, val name: String, val enabled: Boolean = true, val weight: Double = 1.0, val tag: String? = null)
+
+/**
+ * Creates instances of a data class through `KFunction.callBy`, the way deserialization libraries do,
+ * with all arguments passed explicitly and with optional parameters omitted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class CallByBenchmark {
+
+    @Param("10000")
+    private var iterations: Int = 0
+
+    private lateinit var constructor: KFunction<CallByTarget>
+    private lateinit var allArguments: Map<KParameter, Any?>
+    private lateinit var requiredArguments: Map<KParameter, Any?>
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        constructor = CallByTarget::class.primaryConstructor!!
+        val parameters = constructor.parameters.associateBy { it.name }
+        requiredArguments = mapOf(parameters["id"]!! to 42L, parameters["name"]!! to "name")
+        allArguments = requiredArguments + mapOf(
+            parameters["enabled"]!! to false, parameters["weight"]!! to 2.0, parameters["tag"]!! to "tag"
+        )
+    }
+
+    @Benchmark
+    fun callByWithAllArguments(bh: Blackhole) {
+        for (i in 0 until iterations) {
+            bh.consume(constructor.callBy(allArguments))
+        }
+    }
+
+    @Benchmark
+    fun callByWithDefaults(bh: Blackhole) {
+        for (i in 0 until iterations) {
+            bh.consume(constructor.callBy(requiredArguments))
+        }
+    }
+}
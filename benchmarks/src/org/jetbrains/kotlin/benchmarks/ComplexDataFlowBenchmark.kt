@@ -17,12 +17,21 @@ open class ComplexDataFlowBenchmark : AbstractSimpleFileBenchmark(){
     @Param("1", "100", "1000", "3000", "5000", "7000", "10000")
     private var size: Int = 0
 
+    @Param("if", "when")
+    private var branches: String = ""
+
     @Benchmark
     fun benchmark(bh: Blackhole) {
         analyzeGreenFile(bh)
     }
 
-    override fun buildText() =
+    override fun buildText() = when (branches) {
+        "if" -> buildIfText()
+        "when" -> buildWhenText()
+        else -> error("Unknown branches: $branches")
+    }
+
+    private fun buildIfText() =
             """
             |
             |fun bar(x: Any?) {
@@ -38,5 +47,24 @@ open class ComplexDataFlowBenchmark : AbstractSimpleFileBenchmark(){
             |}
             """.trimMargin()
 
+    // Smartcasts which hold in some, but not all branches of each `when`
+    private fun buildWhenText() =
+            """
+            |
+            |fun bar(x: Any?, z: Any?) {
+            |   var y = x
+            |${(1..size).joinToString("\n") {
+                """
+                |when {
+                |   x is String && z is Int -> y = x.length + z
+                |   x is Int -> y = x
+                |   z is String -> y = z
+                |   else -> y = 1
+                |}
+                """.trimMargin()
+            }}
+            |}
+            """.trimMargin()
+
 }
 
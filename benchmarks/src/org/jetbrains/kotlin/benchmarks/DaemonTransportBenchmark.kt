@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import io.ktor.network.sockets.Socket
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.runBlocking
+import org.jetbrains.kotlin.daemon.common.LoopbackNetworkInterface
+import org.jetbrains.kotlin.daemon.common.experimental.findCallbackServerSocket
+import org.jetbrains.kotlin.daemon.common.experimental.socketInfrastructure.*
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.rmi.Remote
+import java.rmi.RemoteException
+import java.rmi.server.UnicastRemoteObject
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the transports of the compile daemon on callbacks made by an incremental compilation:
+ * every iteration makes [callbacks] calls to the client, a quarter of which wait for a reply
+ * (like incremental cache queries) and the rest don't (like lookup and inline function registrations).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class DaemonTransportBenchmark {
+
+    @Param("rmi", "sockets")
+    private var transport: String = ""
+
+    @Param("1000", "10000")
+    private var callbacks: Int = 0
+
+    private lateinit var callbackService: CallbackService
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        callbackService = when (transport) {
+            "rmi" -> RmiCallbackService()
+            "sockets" -> SocketCallbackService()
+            else -> error("Unknown transport: $transport")
+        }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        callbackService.close()
+    }
+
+    @Benchmark
+    fun incrementalCallbacks(bh: Blackhole) {
+        for (i in 0 until callbacks) {
+            if (i % 4 == 0) {
+                bh.consume(callbackService.query("Class$i"))
+            } else {
+                callbackService.register("Class$i")
+            }
+        }
+        bh.consume(callbackService.query("last"))
+    }
+
+    private interface CallbackService : AutoCloseable {
+        fun query(name: String): String
+        fun register(name: String)
+    }
+
+    interface RemoteCallbacks : Remote {
+        @Throws(RemoteException::class)
+        fun query(name: String): String
+
+        @Throws(RemoteException::class)
+        fun register(name: String)
+    }
+
+    private class RemoteCallbacksImpl : RemoteCallbacks {
+        private val registered: MutableSet<String> = Collections.synchronizedSet(HashSet<String>())
+
+        override fun query(name: String): String = "$name:${registered.size}"
+
+        override fun register(name: String) {
+            registered.add(name)
+        }
+    }
+
+    private class RmiCallbackService : CallbackService {
+        private val server = RemoteCallbacksImpl()
+
+        private val client = UnicastRemoteObject.exportObject(
+            server, 0,
+            LoopbackNetworkInterface.clientLoopbackSocketFactory,
+            LoopbackNetworkInterface.serverLoopbackSocketFactory
+        ) as RemoteCallbacks
+
+        override fun query(name: String) = client.query(name)
+
+        override fun register(name: String) = client.register(name)
+
+        override fun close() {
+            UnicastRemoteObject.unexportObject(server, true)
+        }
+    }
+
+    class CallbacksServer(override val serverSocketWithPort: ServerSocketWrapper) : Server<CallbacksServer> {
+        override val clients = hashMapOf<Socket, Server.ClientInfo>()
+
+        val registered: MutableSet<String> = Collections.synchronizedSet(HashSet<String>())
+
+        class QueryMessage(val name: String) : Server.Message<CallbacksServer>() {
+            override suspend fun processImpl(server: CallbacksServer, sendReply: (Any?) -> Unit) =
+                sendReply("$name:${server.registered.size}")
+        }
+
+        class RegisterMessage(val name: String) : Server.Message<CallbacksServer>() {
+            override suspend fun processImpl(server: CallbacksServer, sendReply: (Any?) -> Unit) {
+                server.registered.add(name)
+            }
+        }
+    }
+
+    private class SocketCallbackService : CallbackService {
+        private val server = CallbacksServer(findCallbackServerSocket())
+        private val serverJob: Deferred<Unit> = server.runServer()
+        private val client = DefaultClient<CallbacksServer>(server.serverPort).also { runBlocking { it.connectToServer() } }
+
+        override fun query(name: String): String = runBlocking {
+            client.readMessage<String>(client.sendMessage(CallbacksServer.QueryMessage(name)))
+        }
+
+        override fun register(name: String) {
+            client.sendNoReplyMessage(CallbacksServer.RegisterMessage(name))
+        }
+
+        override fun close() {
+            client.close()
+            server.shutdownServer()
+            serverJob.cancel()
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class InferenceGenericDslCallsBenchmark : AbstractInferenceBenchmark() {
+
+    @Param("1", "10", "100", "1000", "5000")
+    private var size: Int = 0
+
+    @Benchmark
+    fun benchmark(bh: Blackhole) {
+        analyzeGreenFile(bh)
+    }
+
+    override fun buildText() =
+            """
+            |interface Node<out T>
+            |interface Container<out T> : Node<T>
+            |open class Tag<T>(val value: T) : Container<T>
+            |class Div<T>(value: T) : Tag<T>(value)
+            |class Span<T>(value: T) : Tag<T>(value)
+            |
+            |fun <T, N : Node<T>> N.child(value: T): Div<T> = Div(value)
+            |fun <T> Container<T>.span(value: T, init: Span<T>.() -> Unit = {}): Span<T> = Span(value).apply(init)
+            |fun <T> Node<T>.text(value: T): Node<T> = this
+            |fun <T> Tag<T>.text(value: T, other: T): Tag<T> = this
+            |
+            |fun bar(root: Div<String>) {
+            |${(1..size).map { "    root.child(\"a\").span(\"b\") { text(\"c\"); text(\"d\", \"e\") }" }.joinToString("\n")}
+            |}
+            """.trimMargin()
+}
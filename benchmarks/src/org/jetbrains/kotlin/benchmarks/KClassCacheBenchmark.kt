@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.AbstractMap
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Obtains KClass instances of many Java classes from several threads at once, the way frameworks inspect classes at startup.
+ * Every `Class.kotlin` call goes through the KClass cache of kotlin-reflect.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class KClassCacheBenchmark {
+
+    @Param("1", "2", "4", "8")
+    private var threads: Int = 0
+
+    @Param("1000")
+    private var iterations: Int = 0
+
+    private lateinit var executor: ExecutorService
+    private lateinit var classes: List<Class<*>>
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        executor = Executors.newFixedThreadPool(threads)
+        classes = listOf(
+            Collections::class.java, ConcurrentHashMap::class.java, Character::class.java, AbstractMap::class.java, String::class.java
+        ).flatMap { listOf(it) + it.declaredClasses }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        executor.shutdown()
+    }
+
+    @Benchmark
+    fun getOrCreateKotlinClass(bh: Blackhole) {
+        val tasks = (0 until threads).map { thread ->
+            Callable {
+                var hashCodes = 0
+                // Every thread starts from its own class to compete for the same cache entries
+                for (i in 0 until iterations) {
+                    hashCodes += classes[(i + thread) % classes.size].kotlin.hashCode()
+                }
+                hashCodes
+            }
+        }
+
+        for (result in executor.invokeAll(tasks)) {
+            bh.consume(result.get())
+        }
+    }
+}
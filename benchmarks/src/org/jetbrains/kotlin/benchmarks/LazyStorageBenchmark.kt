@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.kotlin.incremental.storage.*
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares [LazyStorage] backends on the lookups map workload: every compiled file appends its id to the lookup symbols it references,
+ * then the map is flushed and closed at the end of the build, and the next build reads the lookups of changed symbols.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class LazyStorageBenchmark {
+
+    @Param("persistent-hash-map", "append-only-log")
+    private var backend: String = ""
+
+    @Param("1000", "10000", "100000")
+    private var size: Int = 0
+
+    private lateinit var cachesDir: File
+    private lateinit var keys: List<LookupSymbolKey>
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        keys = (0 until size).map { LookupSymbolKey("name${it % 1000}", "org.example.scope${it / 1000}") }
+    }
+
+    @Setup(Level.Invocation)
+    fun createCachesDir() {
+        cachesDir = FileUtil.createTempDirectory("lazyStorageBenchmark", null, true)
+    }
+
+    @TearDown(Level.Invocation)
+    fun deleteCachesDir() {
+        cachesDir.deleteRecursively()
+    }
+
+    @Benchmark
+    fun appendLookupsAndClose() {
+        val storage = createStorage()
+        appendLookups(storage)
+        storage.flush(memoryCachesOnly = false)
+        storage.close()
+    }
+
+    @Benchmark
+    fun reopenAndReadLookups(bh: Blackhole) {
+        createStorage().apply {
+            appendLookups(this)
+            close()
+        }
+
+        val storage = createStorage()
+        for (key in keys) {
+            bh.consume(storage[key])
+        }
+        storage.close()
+    }
+
+    private fun appendLookups(storage: LazyStorage<LookupSymbolKey, Collection<Int>>) {
+        for ((i, key) in keys.withIndex()) {
+            for (fileId in 0 until FILES_PER_SYMBOL) {
+                storage.append(key, listOf((i + fileId) % size))
+            }
+        }
+    }
+
+    private fun createStorage(): LazyStorage<LookupSymbolKey, Collection<Int>> {
+        val storageFile = File(cachesDir, "lookups.${BasicMapsOwner.CACHE_EXTENSION}")
+        return when (backend) {
+            "persistent-hash-map" -> CachingLazyStorage(storageFile, LookupSymbolKeyDescriptor, IntCollectionExternalizer)
+            "append-only-log" -> AppendOnlyLogLazyStorage(storageFile, LookupSymbolKeyDescriptor, IntCollectionExternalizer)
+            else -> error("Unknown backend: $backend")
+        }
+    }
+
+    companion object {
+        private const val FILES_PER_SYMBOL = 5
+    }
+}
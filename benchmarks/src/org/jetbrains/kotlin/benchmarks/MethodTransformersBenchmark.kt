@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.codegen.optimization.ConstantConditionEliminationMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.DeadCodeEliminationMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.RedundantCheckCastEliminationMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.RedundantGotoMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs bytecode optimization passes over the methods of real classes from the Kotlin standard library.
+ * Methods are copied before every run since transformers modify them; "none" measures the copying alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class MethodTransformersBenchmark {
+
+    @Param("none", "DeadCodeElimination", "RedundantCheckCastElimination", "ConstantConditionElimination", "RedundantGoto")
+    private var transformer: String = ""
+
+    @Param("kotlin/collections/CollectionsKt___CollectionsKt", "kotlin/text/StringsKt__StringsKt")
+    private var className: String = ""
+
+    private lateinit var classNode: ClassNode
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        val bytes = javaClass.classLoader.getResourceAsStream("$className.class")?.use { it.readBytes() }
+            ?: error("Class is not found: $className")
+        classNode = ClassNode().also { ClassReader(bytes).accept(it, ClassReader.SKIP_FRAMES) }
+    }
+
+    @Benchmark
+    fun transformMethods(bh: Blackhole) {
+        val methodTransformer = createTransformer()
+        for (method in classNode.methods) {
+            val copy = method.copy()
+            methodTransformer?.transform(classNode.name, copy)
+            bh.consume(copy)
+        }
+    }
+
+    private fun createTransformer(): MethodTransformer? = when (transformer) {
+        "none" -> null
+        "DeadCodeElimination" -> DeadCodeEliminationMethodTransformer()
+        "RedundantCheckCastElimination" -> RedundantCheckCastEliminationMethodTransformer()
+        "ConstantConditionElimination" -> ConstantConditionEliminationMethodTransformer()
+        "RedundantGoto" -> RedundantGotoMethodTransformer()
+        else -> error("Unknown transformer: $transformer")
+    }
+
+    private fun MethodNode.copy(): MethodNode =
+        MethodNode(Opcodes.API_VERSION, access, name, desc, signature, exceptions.toTypedArray()).also { accept(it) }
+}
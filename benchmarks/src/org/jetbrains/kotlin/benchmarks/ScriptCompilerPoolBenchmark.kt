@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.script.experimental.api.ScriptCompilationConfiguration
+import kotlin.script.experimental.api.valueOrThrow
+import kotlin.script.experimental.host.toScriptSource
+import kotlin.script.experimental.jvm.defaultJvmScriptingHostConfiguration
+import kotlin.script.experimental.jvm.updateClasspath
+import kotlin.script.experimental.jvm.util.KotlinJars
+import kotlin.script.experimental.jvmhost.JvmScriptCompiler
+import kotlin.script.experimental.jvmhost.ScriptJvmCompilerPool
+
+/**
+ * Compiles a batch of small independent scripts from several threads, either with a new compiler environment for each script
+ * or with warm compiler sessions from [ScriptJvmCompilerPool].
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class ScriptCompilerPoolBenchmark {
+
+    @Param("1", "4")
+    private var threads: Int = 0
+
+    @Param("false", "true")
+    private var pooled: Boolean = false
+
+    @Param("20")
+    private var scripts: Int = 0
+
+    private lateinit var executor: ExecutorService
+    private lateinit var pool: ScriptJvmCompilerPool
+    private lateinit var compiler: JvmScriptCompiler
+    private lateinit var compilationConfiguration: ScriptCompilationConfiguration
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        executor = Executors.newFixedThreadPool(threads)
+        pool = ScriptJvmCompilerPool(defaultJvmScriptingHostConfiguration)
+        compiler = JvmScriptCompiler(defaultJvmScriptingHostConfiguration, if (pooled) pool else null)
+        compilationConfiguration = ScriptCompilationConfiguration {
+            updateClasspath(KotlinJars.kotlinScriptStandardJars)
+        }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        executor.shutdown()
+        pool.close()
+    }
+
+    @Benchmark
+    fun compileScripts(bh: Blackhole) {
+        val tasks = (0 until threads).map { thread ->
+            Callable {
+                for (i in thread until scripts step threads) {
+                    val script = "val rule$i = listOf($i, ${i + 1}).sum()\nrule$i * 2".toScriptSource("rule.kts")
+                    bh.consume(runBlocking { compiler(script, compilationConfiguration) }.valueOrThrow())
+                }
+            }
+        }
+
+        for (result in executor.invokeAll(tasks)) {
+            result.get()
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.NotNullLazyValue
+import org.jetbrains.kotlin.storage.StorageManager
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Resolves a synthetic class hierarchy from several threads at once, the way lazy descriptors are resolved by parallel analysis:
+ * classes are obtained from a memoized function, and their supertypes and members are lazy values depending on other classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class StorageManagerBenchmark {
+
+    @Param("lock-based", "per-computation-locks")
+    private var storageManager: String = ""
+
+    @Param("1", "2", "4", "8")
+    private var threads: Int = 0
+
+    @Param("1000", "10000")
+    private var size: Int = 0
+
+    private lateinit var executor: ExecutorService
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        executor = Executors.newFixedThreadPool(threads)
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        executor.shutdown()
+    }
+
+    @Benchmark
+    fun resolveClassHierarchy(bh: Blackhole) {
+        val classes = ClassHierarchy(createStorageManager())
+
+        val tasks = (0 until threads).map { thread ->
+            Callable {
+                var members = 0
+                // Every thread starts from its own part of the hierarchy to compete for the shared classes
+                for (i in 0 until size) {
+                    members += classes.getClass((i + thread * size / threads) % size).allMembers().size
+                }
+                members
+            }
+        }
+
+        for (result in executor.invokeAll(tasks)) {
+            bh.consume(result.get())
+        }
+    }
+
+    private fun createStorageManager(): StorageManager = when (storageManager) {
+        "lock-based" -> LockBasedStorageManager("StorageManagerBenchmark")
+        "per-computation-locks" -> LockBasedStorageManager.createWithPerComputationLocks("StorageManagerBenchmark")
+        else -> error("Unknown storage manager: $storageManager")
+    }
+
+    private class ClassHierarchy(storageManager: StorageManager) {
+        val getClass = storageManager.createMemoizedFunction { id: Int -> LazyClass(id, this, storageManager) }
+    }
+
+    private class LazyClass(val id: Int, hierarchy: ClassHierarchy, storageManager: StorageManager) {
+        val supertypes: NotNullLazyValue<List<LazyClass>> = storageManager.createLazyValue {
+            listOf(id / 2, id / 3).filter { it < id }.distinct().map { hierarchy.getClass(it) }
+        }
+
+        val allMembers: NotNullLazyValue<Set<String>> = storageManager.createLazyValue {
+            val result = hashSetOf("member$id", "member${id % 100}")
+            for (supertype in supertypes()) {
+                result.addAll(supertype.allMembers())
+            }
+            result
+        }
+    }
+}
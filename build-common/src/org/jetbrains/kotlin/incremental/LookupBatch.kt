@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import gnu.trove.TIntHashSet
+import gnu.trove.TLongObjectHashMap
+import gnu.trove.TObjectIntHashMap
+import org.jetbrains.kotlin.incremental.storage.LookupSymbolKey
+
+/**
+ * Lookups to be written to [LookupStorage] at once.
+ *
+ * Lookup symbols are stored as [LookupSymbolKey]s packed into longs and sorted, so they are written in a stable order.
+ * [fileIds] of the i-th key are indices in [paths].
+ */
+internal class LookupBatch(val paths: List<String>, val keys: LongArray, val fileIds: Array<IntArray>)
+
+/**
+ * Collects lookups without allocating an object per record: symbols are reduced to [LookupSymbolKey] hashes
+ * (that's all [LookupStorage] persists) and paths are interned into int ids.
+ */
+internal class LookupBatchBuilder {
+    private val lookups = TLongObjectHashMap<TIntHashSet>()
+    private val pathIds = TObjectIntHashMap<String>()
+    private val paths = ArrayList<String>()
+
+    fun add(name: String, scope: String, path: String) {
+        val key = packLookupSymbolKey(name.hashCode(), scope.hashCode())
+        var fileIds = lookups[key]
+        if (fileIds == null) {
+            fileIds = TIntHashSet()
+            lookups.put(key, fileIds)
+        }
+        fileIds.add(addPath(path))
+    }
+
+    fun addPath(path: String): Int {
+        val id = pathIds[path]
+        if (id != 0 || pathIds.containsKey(path)) return id
+
+        val newId = paths.size
+        paths.add(path)
+        pathIds.put(path, newId)
+        return newId
+    }
+
+    fun build(): LookupBatch {
+        val keys = lookups.keys()
+        keys.sort()
+        return LookupBatch(ArrayList(paths), keys, Array(keys.size) { lookups[keys[it]]!!.toArray() })
+    }
+}
+
+internal fun packLookupSymbolKey(nameHash: Int, scopeHash: Int): Long =
+    (nameHash.toLong() shl 32) or (scopeHash.toLong() and 0xFFFFFFFFL)
+
+internal fun unpackLookupSymbolKey(key: Long): LookupSymbolKey =
+    LookupSymbolKey((key ushr 32).toInt(), key.toInt())
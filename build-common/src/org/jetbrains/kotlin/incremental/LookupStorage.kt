@@ -17,14 +17,12 @@
 package org.jetbrains.kotlin.incremental
 
 import com.intellij.util.containers.MultiMap
-import com.intellij.util.containers.StringInterner
 import org.jetbrains.annotations.TestOnly
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.incremental.storage.*
 import org.jetbrains.kotlin.utils.Printer
-import org.jetbrains.kotlin.utils.keysToMap
 import java.io.File
 import java.io.IOException
 import java.util.*
@@ -74,16 +72,40 @@ open class LookupStorage(
         }
     }
 
-    @Synchronized
     fun addAll(lookups: MultiMap<LookupSymbol, String>, allPaths: Set<String>) {
-        val pathToId = allPaths.sorted().keysToMap { addFileIfNeeded(File(it)) }
-
-        for (lookupSymbol in lookups.keySet().sorted()) {
-            val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
-            val paths = lookups[lookupSymbol]!!
-            val fileIds = paths.mapTo(TreeSet()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+        val builder = LookupBatchBuilder()
+        allPaths.forEach { builder.addPath(it) }
+        for ((lookupSymbol, paths) in lookups.entrySet()) {
+            paths.forEach { builder.add(lookupSymbol.name, lookupSymbol.scope, it) }
+        }
+        addAll(builder.build())
+    }
+
+    fun addAll(lookupTracker: LookupTrackerImpl) {
+        // the batch is prepared outside of the storage monitor
+        addAll(lookupTracker.buildLookupBatch())
+    }
+
+    @Synchronized
+    private fun addAll(batch: LookupBatch) {
+        val fileIdByPathId = IntArray(batch.paths.size)
+        for (pathId in batch.paths.indices.sortedBy { batch.paths[it] }) {
+            fileIdByPathId[pathId] = addFileIfNeeded(File(batch.paths[pathId]))
+        }
+
+        for ((i, packedKey) in batch.keys.withIndex()) {
+            val key = unpackLookupSymbolKey(packedKey)
+            val pathIds = batch.fileIds[i]
+            val existingFileIds = lookupMap[key]
+            val fileIds = IntArray(pathIds.size + (existingFileIds?.size ?: 0))
+
+            for ((j, pathId) in pathIds.withIndex()) {
+                fileIds[j] = fileIdByPathId[pathId]
+            }
+            existingFileIds?.forEachIndexed { j, fileId -> fileIds[pathIds.size + j] = fileId }
+
+            fileIds.sort()
+            lookupMap[key] = fileIds.distinct()
         }
     }
 
@@ -211,21 +233,17 @@ open class LookupStorage(
 }
 
 class LookupTrackerImpl(private val delegate: LookupTracker) : LookupTracker {
-    val lookups = MultiMap.createSet<LookupSymbol, String>()
-    val pathInterner = StringInterner()
-    private val interner = StringInterner()
+    private val lookups = LookupBatchBuilder()
 
     override val requiresPosition: Boolean
         get() = delegate.requiresPosition
 
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
-        val internedScopeFqName = interner.intern(scopeFqName)
-        val internedName = interner.intern(name)
-        val internedFilePath = pathInterner.intern(filePath)
-
-        lookups.putValue(LookupSymbol(internedName, internedScopeFqName), internedFilePath)
-        delegate.record(internedFilePath, position, internedScopeFqName, scopeKind, internedName)
+        lookups.add(name, scopeFqName, filePath)
+        delegate.record(filePath, position, scopeFqName, scopeKind, name)
     }
+
+    internal fun buildLookupBatch(): LookupBatch = lookups.build()
 }
 
 data class LookupSymbol(val name: String, val scope: String) : Comparable<LookupSymbol> {
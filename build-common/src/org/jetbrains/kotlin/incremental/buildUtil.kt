@@ -127,7 +127,7 @@ fun LookupStorage.update(
 
     removeLookupsFrom(filesToCompile.asSequence() + removedFiles.asSequence())
 
-    addAll(lookupTracker.lookups, lookupTracker.pathInterner.values)
+    addAll(lookupTracker)
 }
 
 data class DirtyData(
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import com.intellij.util.io.PersistentHashMap
+import gnu.trove.THashMap
+import gnu.trove.TObjectHashingStrategy
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * Persistent map which keeps its data in an append-only log instead of a [PersistentHashMap], see [AppendOnlyLogLazyStorage].
+ *
+ * Every modification is encoded as a log record and buffered in memory. Buffered records are written to the log with a single
+ * write once the buffer exceeds [WRITE_BATCH_SIZE] bytes or on [flush], so flushing and closing never rewrite on-disk hash tables.
+ * The log is scanned once on open to build an in-memory open-addressing index from keys to the log segments holding their values.
+ * Values are read with positional reads, so the file is never memory-mapped and can be deleted by [clean] on any platform.
+ *
+ * Overwritten, removed and appended values leave garbage in the log; it's compacted on [flush] and [close]
+ * once the garbage outweighs the live data.
+ *
+ * Like [CachingLazyStorage], the log is created only on write.
+ */
+class AppendOnlyLog<K, V>(
+    private val storageFile: File,
+    private val keyDescriptor: KeyDescriptor<K>,
+    private val valueExternalizer: DataExternalizer<V>
+) {
+    private var log: FileChannel? = null
+
+    // Maps a key to the [offset, length] pairs of the log segments which form its value
+    private var index: THashMap<K, LongArray> = createIndex()
+
+    // Number of bytes written to the log; offsets beyond it point into the pending records buffer
+    private var logSize = 0L
+    private val pendingRecords = RecordBuffer()
+    private val pendingRecordsOutput = DataOutputStream(pendingRecords)
+    private val valueBuffer = RecordBuffer()
+    private val valueBufferOutput = DataOutputStream(valueBuffer)
+
+    private var recordsCount = 0
+    private var valueBytes = 0L
+    private var liveValueBytes = 0L
+
+    @Synchronized
+    private fun getLogIfExists(): FileChannel? {
+        if (log != null) return log
+
+        if (storageFile.exists()) {
+            log = openLog()
+        }
+
+        return log
+    }
+
+    @Synchronized
+    private fun getLogOrCreateNew(): FileChannel {
+        if (log == null) {
+            log = openLog()
+        }
+
+        return log!!
+    }
+
+    val keys: Collection<K>
+        @Synchronized
+        get() {
+            getLogIfExists() ?: return listOf()
+            return index.keys.toList()
+        }
+
+    @Synchronized
+    operator fun contains(key: K): Boolean {
+        getLogIfExists() ?: return false
+        return index.containsKey(key)
+    }
+
+    @Synchronized
+    operator fun get(key: K): V? {
+        val log = getLogIfExists() ?: return null
+        val segments = index[key] ?: return null
+        val bytes = readSegments(log, segments)
+        return valueExternalizer.read(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+
+    @Synchronized
+    operator fun set(key: K, value: V) {
+        getLogOrCreateNew()
+
+        val segment = writeRecord(PUT, key) { valueExternalizer.save(it, value) }
+        index.put(key, segment)?.let { liveValueBytes -= it.totalLength() }
+        liveValueBytes += segment[1]
+        flushPendingRecordsIfNeeded()
+    }
+
+    @Synchronized
+    fun remove(key: K) {
+        getLogIfExists() ?: return
+        val segments = index.remove(key) ?: return
+
+        liveValueBytes -= segments.totalLength()
+        pendingRecordsOutput.writeByte(REMOVE.toInt())
+        keyDescriptor.save(pendingRecordsOutput, key)
+        recordsCount++
+        flushPendingRecordsIfNeeded()
+    }
+
+    /**
+     * Appends data written by [appender] to the value of [key], like [PersistentHashMap.appendData].
+     */
+    @Synchronized
+    fun appendData(key: K, appender: (DataOutput) -> Unit) {
+        getLogOrCreateNew()
+
+        val segment = writeRecord(APPEND, key, appender)
+        val existing = index[key]
+        index[key] = if (existing != null) existing + segment else segment
+        liveValueBytes += segment[1]
+        flushPendingRecordsIfNeeded()
+    }
+
+    @Synchronized
+    fun clean() {
+        try {
+            log?.close()
+        } catch (ignored: Throwable) {
+        }
+
+        PersistentHashMap.deleteFilesStartingWith(storageFile)
+        log = null
+        reset()
+    }
+
+    @Synchronized
+    fun flush(memoryCachesOnly: Boolean) {
+        val existingLog = log ?: return
+
+        writePendingRecords(existingLog)
+
+        if (!memoryCachesOnly) {
+            compactIfNeeded().force(false)
+        }
+    }
+
+    @Synchronized
+    fun close() {
+        val existingLog = log ?: return
+
+        try {
+            writePendingRecords(existingLog)
+            compactIfNeeded().close()
+        } finally {
+            log?.close()
+            log = null
+            reset()
+        }
+    }
+
+    private fun writeRecord(operation: Byte, key: K, writeValue: (DataOutput) -> Unit): LongArray {
+        valueBuffer.reset()
+        writeValue(valueBufferOutput)
+
+        pendingRecordsOutput.writeByte(operation.toInt())
+        keyDescriptor.save(pendingRecordsOutput, key)
+        pendingRecordsOutput.writeInt(valueBuffer.size())
+        val offset = logSize + pendingRecords.size()
+        valueBuffer.writeTo(pendingRecordsOutput)
+
+        recordsCount++
+        valueBytes += valueBuffer.size()
+        return longArrayOf(offset, valueBuffer.size().toLong())
+    }
+
+    private fun flushPendingRecordsIfNeeded() {
+        if (pendingRecords.size() >= WRITE_BATCH_SIZE) {
+            writePendingRecords(log!!)
+        }
+    }
+
+    private fun writePendingRecords(log: FileChannel) {
+        if (pendingRecords.size() == 0) return
+
+        log.writeFully(ByteBuffer.wrap(pendingRecords.bytes, 0, pendingRecords.size()), logSize)
+        logSize += pendingRecords.size()
+        pendingRecords.reset()
+    }
+
+    private fun readSegments(log: FileChannel, segments: LongArray): ByteArray {
+        val result = ByteArray(segments.totalLength().toInt())
+        var position = 0
+
+        for (i in segments.indices step 2) {
+            val offset = segments[i]
+            val length = segments[i + 1].toInt()
+
+            if (offset >= logSize) {
+                System.arraycopy(pendingRecords.bytes, (offset - logSize).toInt(), result, position, length)
+            } else {
+                log.readFully(ByteBuffer.wrap(result, position, length), offset)
+            }
+
+            position += length
+        }
+
+        return result
+    }
+
+    private fun compactIfNeeded(): FileChannel {
+        val log = log!!
+        val garbageBytes = valueBytes - liveValueBytes
+        val redundantRecords = recordsCount - index.size
+
+        if (logSize < COMPACTION_THRESHOLD || (garbageBytes <= liveValueBytes && redundantRecords <= index.size)) return log
+
+        val compactedFile = File(storageFile.path + COMPACTED_FILE_SUFFIX)
+        val compactedIndex = createIndex()
+        val compactedSize = try {
+            writeCompactedLog(log, compactedFile, compactedIndex)
+        } catch (e: Throwable) {
+            compactedFile.delete()
+            throw e
+        }
+
+        // If the log can't be reopened below, it's read again from the file on the next access
+        this.log = null
+        log.close()
+        try {
+            Files.move(compactedFile.toPath(), storageFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: Throwable) {
+            compactedFile.delete()
+            // The log wasn't replaced, so it still matches the index and can be used further
+            try {
+                this.log = FileChannel.open(storageFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+            } catch (reopenError: Throwable) {
+                e.addSuppressed(reopenError)
+            }
+            throw e
+        }
+
+        index = compactedIndex
+        logSize = compactedSize
+        recordsCount = compactedIndex.size
+        valueBytes = liveValueBytes
+
+        return FileChannel.open(storageFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE).also { this.log = it }
+    }
+
+    // Writes live values of [log] to [compactedFile], fills [compactedIndex] with their segments and returns the size of the new log
+    private fun writeCompactedLog(log: FileChannel, compactedFile: File, compactedIndex: THashMap<K, LongArray>): Long {
+        val compactedRecords = RecordBuffer()
+        val compactedRecordsOutput = DataOutputStream(compactedRecords)
+        var compactedSize = 0L
+
+        FileChannel.open(compactedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).use { compacted ->
+            compactedRecordsOutput.writeInt(MAGIC)
+            compactedRecordsOutput.writeInt(VERSION)
+
+            for ((key, segments) in index) {
+                val bytes = readSegments(log, segments)
+
+                compactedRecordsOutput.writeByte(PUT.toInt())
+                keyDescriptor.save(compactedRecordsOutput, key)
+                compactedRecordsOutput.writeInt(bytes.size)
+                compactedIndex[key] = longArrayOf(compactedSize + compactedRecords.size(), bytes.size.toLong())
+                compactedRecordsOutput.write(bytes)
+
+                if (compactedRecords.size() >= WRITE_BATCH_SIZE) {
+                    compacted.writeFully(ByteBuffer.wrap(compactedRecords.bytes, 0, compactedRecords.size()), compactedSize)
+                    compactedSize += compactedRecords.size()
+                    compactedRecords.reset()
+                }
+            }
+
+            compacted.writeFully(ByteBuffer.wrap(compactedRecords.bytes, 0, compactedRecords.size()), compactedSize)
+            compactedSize += compactedRecords.size()
+            compacted.force(false)
+        }
+
+        return compactedSize
+    }
+
+    private fun openLog(): FileChannel {
+        reset()
+
+        val log = FileChannel.open(storageFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        try {
+            if (log.size() == 0L) {
+                val header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION)
+                header.flip()
+                log.writeFully(header, 0)
+                logSize = HEADER_SIZE.toLong()
+            } else {
+                readLog(log)
+            }
+        } catch (e: Throwable) {
+            log.close()
+            throw e
+        }
+
+        return log
+    }
+
+    private fun readLog(log: FileChannel) {
+        val fileSize = log.size()
+        val counter = CountingInputStream(BufferedInputStream(FileInputStream(storageFile), READ_BUFFER_SIZE))
+        DataInputStream(counter).use { input ->
+            if (fileSize < HEADER_SIZE || input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw IOException("$storageFile is not an append-only log of a supported version, caches should be rebuilt")
+            }
+
+            var recordStart = counter.position
+            try {
+                while (true) {
+                    val operation = input.read()
+                    if (operation == -1) break
+
+                    val key = keyDescriptor.read(input)
+                    when (operation.toByte()) {
+                        REMOVE -> index.remove(key)?.let { liveValueBytes -= it.totalLength() }
+                        PUT, APPEND -> {
+                            val length = input.readInt()
+                            val segment = longArrayOf(counter.position, length.toLong())
+                            // skip() doesn't stop at the end of a file
+                            if (counter.position + length > fileSize) throw EOFException()
+                            input.skipBytes(length)
+
+                            val existing = index[key]
+                            if (operation.toByte() == APPEND && existing != null) {
+                                index[key] = existing + segment
+                            } else {
+                                existing?.let { liveValueBytes -= it.totalLength() }
+                                index[key] = segment
+                            }
+                            valueBytes += length
+                            liveValueBytes += length
+                        }
+                        else -> throw IOException("Unexpected record type $operation at $recordStart in $storageFile")
+                    }
+
+                    recordsCount++
+                    recordStart = counter.position
+                }
+            } catch (e: EOFException) {
+                // The last record was not written completely (e.g. the process was killed), drop it
+                log.truncate(recordStart)
+            }
+
+            logSize = recordStart
+        }
+    }
+
+    private fun reset() {
+        index = createIndex()
+        logSize = 0L
+        pendingRecords.reset()
+        recordsCount = 0
+        valueBytes = 0L
+        liveValueBytes = 0L
+    }
+
+    private fun createIndex(): THashMap<K, LongArray> =
+        THashMap(object : TObjectHashingStrategy<K> {
+            override fun computeHashCode(key: K): Int = keyDescriptor.getHashCode(key)
+
+            override fun equals(key1: K, key2: K): Boolean = keyDescriptor.isEqual(key1, key2)
+        })
+
+    private class RecordBuffer : ByteArrayOutputStream() {
+        val bytes: ByteArray
+            get() = buf
+    }
+
+    private class CountingInputStream(input: InputStream) : FilterInputStream(input) {
+        var position = 0L
+            private set
+
+        override fun read(): Int =
+            super.read().also { if (it != -1) position++ }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int =
+            super.read(b, off, len).also { if (it > 0) position += it }
+
+        override fun skip(n: Long): Long =
+            super.skip(n).also { position += it }
+    }
+
+    companion object {
+        private const val MAGIC = 0x4B4C4F47 // "KLOG"
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 8
+
+        private const val PUT: Byte = 0
+        private const val APPEND: Byte = 1
+        private const val REMOVE: Byte = 2
+
+        private const val WRITE_BATCH_SIZE = 1 shl 20
+        private const val READ_BUFFER_SIZE = 1 shl 16
+        private const val COMPACTION_THRESHOLD = 1L shl 20
+
+        private const val COMPACTED_FILE_SUFFIX = ".compacted"
+    }
+}
+
+private fun LongArray.totalLength(): Long {
+    var result = 0L
+    for (i in 1 until size step 2) {
+        result += this[i]
+    }
+    return result
+}
+
+private fun FileChannel.writeFully(buffer: ByteBuffer, position: Long) {
+    var current = position
+    while (buffer.hasRemaining()) {
+        current += write(buffer, current)
+    }
+}
+
+private fun FileChannel.readFully(buffer: ByteBuffer, position: Long) {
+    var current = position
+    while (buffer.hasRemaining()) {
+        val read = read(buffer, current)
+        if (read < 0) throw EOFException("Unexpected end of $this at $current")
+        current += read
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import java.io.File
+
+/**
+ * [LazyStorage] which keeps its data in an [AppendOnlyLog] instead of a [com.intellij.util.io.PersistentHashMap].
+ */
+class AppendOnlyLogLazyStorage<K, V>(
+    storageFile: File,
+    keyDescriptor: KeyDescriptor<K>,
+    private val valueExternalizer: DataExternalizer<V>
+) : LazyStorage<K, V> {
+    private val log = AppendOnlyLog(storageFile, keyDescriptor, valueExternalizer)
+
+    override val keys: Collection<K>
+        get() = log.keys
+
+    override operator fun contains(key: K): Boolean =
+        key in log
+
+    override operator fun get(key: K): V? =
+        log[key]
+
+    override operator fun set(key: K, value: V) {
+        log[key] = value
+    }
+
+    override fun remove(key: K) {
+        log.remove(key)
+    }
+
+    override fun append(key: K, value: V) {
+        log.appendData(key) { valueExternalizer.save(it, value) }
+    }
+
+    override fun clean() {
+        log.clean()
+    }
+
+    override fun flush(memoryCachesOnly: Boolean) {
+        log.flush(memoryCachesOnly)
+    }
+
+    override fun close() {
+        log.close()
+    }
+}
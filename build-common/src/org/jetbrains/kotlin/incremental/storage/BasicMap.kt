@@ -32,10 +32,10 @@ abstract class BasicMap<K : Comparable<K>, V>(
     private val nonCachingStorage = System.getProperty("kotlin.jps.non.caching.storage")?.toBoolean() ?: false
 
     init {
-        storage = if (nonCachingStorage) {
-            NonCachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
-        } else {
-            CachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+        storage = when {
+            isAppendOnlyLogStorageEnabled(storageFile) -> AppendOnlyLogLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+            nonCachingStorage -> NonCachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+            else -> CachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
         }
     }
 
@@ -76,6 +76,20 @@ abstract class BasicMap<K : Comparable<K>, V>(
     protected abstract fun dumpValue(value: V): String
 }
 
+/**
+ * Maps are switched to [AppendOnlyLogLazyStorage] with the `kotlin.incremental.append.only.log.storage` system property:
+ * either `true` for all maps or a comma-separated list of storage names (e.g. `lookups,proto`).
+ */
+private fun isAppendOnlyLogStorageEnabled(storageFile: File): Boolean {
+    val property = System.getProperty(APPEND_ONLY_LOG_STORAGE_PROPERTY) ?: return false
+    if (property.toBoolean()) return true
+
+    val storageName = storageFile.nameWithoutExtension
+    return property.split(',').any { it.trim() == storageName }
+}
+
+private const val APPEND_ONLY_LOG_STORAGE_PROPERTY = "kotlin.incremental.append.only.log.storage"
+
 abstract class BasicStringMap<V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<String>,
@@ -29,7 +29,7 @@ internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<I
 
     operator fun get(key: LookupSymbolKey): Collection<Int>? = storage[key]
 
-    operator fun set(key: LookupSymbolKey, fileIds: Set<Int>) {
+    operator fun set(key: LookupSymbolKey, fileIds: Collection<Int>) {
         storage[key] = fileIds
     }
 
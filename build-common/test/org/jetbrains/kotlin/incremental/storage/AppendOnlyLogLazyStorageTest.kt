@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+
+class AppendOnlyLogLazyStorageTest : TestWithWorkingDir() {
+    private val storageFile: File
+        get() = workingDir.resolve("test.tab")
+
+    private fun createStorage() =
+        AppendOnlyLogLazyStorage(storageFile, EnumeratorStringDescriptor.INSTANCE, IntCollectionExternalizer)
+
+    @Test
+    fun testStorageIsCreatedOnWrite() {
+        val storage = createStorage()
+        assertFalse("a" in storage)
+        assertNull(storage["a"])
+        assertFalse(storageFile.exists())
+
+        storage["a"] = setOf(1)
+        assertTrue(storageFile.exists())
+        storage.close()
+    }
+
+    @Test
+    fun testSetAppendRemove() {
+        val storage = createStorage()
+        storage["a"] = setOf(1, 2)
+        storage.append("a", listOf(3))
+        storage.append("b", listOf(4))
+        storage["c"] = setOf(5)
+        storage.remove("c")
+
+        assertEquals(setOf(1, 2, 3), storage["a"])
+        assertEquals(setOf(4), storage["b"])
+        assertNull(storage["c"])
+        assertEquals(setOf("a", "b"), storage.keys.toSet())
+        storage.close()
+    }
+
+    @Test
+    fun testReopen() {
+        createStorage().apply {
+            this["a"] = setOf(1)
+            append("a", listOf(2))
+            this["b"] = setOf(3)
+            this["b"] = setOf(4)
+            this["c"] = setOf(5)
+            remove("c")
+            close()
+        }
+
+        val storage = createStorage()
+        assertEquals(setOf(1, 2), storage["a"])
+        assertEquals(setOf(4), storage["b"])
+        assertFalse("c" in storage)
+        storage.close()
+    }
+
+    @Test
+    fun testCompaction() {
+        val storage = createStorage()
+        repeat(20) { iteration ->
+            for (i in 0 until 10000) {
+                storage["key$i"] = setOf(iteration, i)
+            }
+            storage.flush(memoryCachesOnly = false)
+        }
+        storage.close()
+
+        // Each iteration appends about 200Kb of records
+        val logSize = storageFile.length()
+        assertTrue("Log wasn't compacted: $logSize bytes", logSize < 2 * 1024 * 1024)
+
+        val reopened = createStorage()
+        for (i in 0 until 10000) {
+            assertEquals(setOf(19, i), reopened["key$i"])
+        }
+        reopened.close()
+    }
+
+    @Test
+    fun testFailedCompaction() {
+        // A non-empty directory in place of the compacted log can't be overwritten or deleted, so every compaction fails
+        val compactedFile = File(storageFile.path + ".compacted")
+        compactedFile.resolve("file").apply { parentFile.mkdirs() }.writeText("")
+
+        val storage = createStorage()
+        var failedCompactions = 0
+        repeat(20) { iteration ->
+            for (i in 0 until 10000) {
+                storage["key$i"] = setOf(iteration, i)
+            }
+            try {
+                storage.flush(memoryCachesOnly = false)
+            } catch (e: IOException) {
+                failedCompactions++
+            }
+        }
+        assertTrue("Compaction wasn't attempted", failedCompactions > 0)
+
+        // The log is still usable after failed compactions
+        assertEquals(setOf(19, 5), storage["key5"])
+        storage["key5"] = setOf(42)
+        assertEquals(setOf(42), storage["key5"])
+
+        compactedFile.deleteRecursively()
+        storage.close()
+
+        val reopened = createStorage()
+        assertEquals(setOf(42), reopened["key5"])
+        assertEquals(setOf(19, 9999), reopened["key9999"])
+        reopened.close()
+    }
+
+    @Test
+    fun testClean() {
+        val storage = createStorage()
+        storage["a"] = setOf(1)
+        storage.flush(memoryCachesOnly = false)
+        storage.clean()
+
+        assertFalse(storageFile.exists())
+        assertNull(storage["a"])
+        storage.close()
+    }
+
+    @Test
+    fun testTruncatedRecordIsDropped() {
+        createStorage().apply {
+            this["a"] = setOf(1)
+            this["b"] = setOf(2)
+            close()
+        }
+        storageFile.writeBytes(storageFile.readBytes().copyOf(storageFile.length().toInt() - 2))
+
+        val storage = createStorage()
+        assertEquals(setOf(1), storage["a"])
+        assertNull(storage["b"])
+        storage["b"] = setOf(3)
+        storage.close()
+
+        val reopened = createStorage()
+        assertEquals(setOf(3), reopened["b"])
+        reopened.close()
+    }
+}
@@ -65,6 +65,35 @@ abstract class TransformationMethodVisitor(
 
         super.visitEnd()
 
+        if (!deferTransformations) {
+            transformAndEmit()
+            return
+        }
+
+        try {
+            if (shouldBeTransformed(methodNode)) {
+                performTransformationsBeforeDeferring(methodNode)
+            }
+        } catch (t: Throwable) {
+            throw CompilationException("Couldn't transform method node:\n" + methodNode.nodeText, t, null)
+        }
+    }
+
+    /**
+     * If true, [visitEnd] only performs [performTransformationsBeforeDeferring], and it's up to the owner of this visitor
+     * to call [transformAndEmit] later, possibly on another thread.
+     */
+    protected open val deferTransformations: Boolean
+        get() = false
+
+    /**
+     * Transformations which are performed in the codegen thread at [visitEnd] even if the rest is deferred, see [deferTransformations].
+     * Transformations which use the type mapper or the binding context must be performed here, since those aren't thread-safe.
+     */
+    protected open fun performTransformationsBeforeDeferring(methodNode: MethodNode) {
+    }
+
+    fun transformAndEmit() {
         try {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
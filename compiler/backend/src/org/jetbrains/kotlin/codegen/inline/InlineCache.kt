@@ -19,14 +19,96 @@ package org.jetbrains.kotlin.codegen.inline
 import com.intellij.util.containers.SLRUMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.org.objectweb.asm.commons.Method
+import java.security.MessageDigest
+import java.util.Arrays
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
 class InlineCache {
-    val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
+    val classFiles: SLRUMap<ClassId, ClassFileContents> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
 }
 
+class ClassFileContents(val bytes: ByteArray) {
+    // Computed once per class file read by a compilation, rather than for every method looked up in the shared cache
+    val key: SharedInlineCache.ClassFileKey by lazy(LazyThreadSafetyMode.PUBLICATION) { SharedInlineCache.keyOf(bytes) }
+}
+
+/**
+ * Inline function bodies read from class files, shared by all compilations in this JVM (e.g. in the daemon),
+ * so the same inline functions of libraries are not parsed again for every module.
+ *
+ * Entries are keyed by a digest of the class file contents (see [keyOf]), so a class file which is rewritten in place,
+ * even with the same size and timestamp, never gets the bodies of its previous version. The least recently used entries
+ * are evicted when the total estimated size of entries exceeds [maxSizeInBytes]. Cached method nodes must not be modified.
+ */
+class SharedInlineCache(private val maxSizeInBytes: Long) {
+    class ClassFileKey internal constructor(private val digest: ByteArray) {
+        override fun equals(other: Any?): Boolean = other is ClassFileKey && Arrays.equals(digest, other.digest)
+
+        override fun hashCode(): Int = Arrays.hashCode(digest)
+    }
+
+    private data class MethodKey(val classFile: ClassFileKey, val name: String, val descriptor: String)
+
+    private class Entry(val node: SMAPAndMethodNode, val size: Long)
+
+    private val entries = LinkedHashMap<MethodKey, Entry>(16, 0.75f, true)
+    private var totalSize = 0L
+
+    fun getMethodNode(classFile: ClassFileKey, name: String, descriptor: String, compute: () -> SMAPAndMethodNode?): SMAPAndMethodNode? {
+        val key = MethodKey(classFile, name, descriptor)
+        synchronized(entries) {
+            val cached = entries[key]
+            if (cached != null) return cached.node
+        }
+
+        // Computed without the lock: concurrent compilations may compute the same entry, but don't wait for each other
+        val node = compute() ?: return null
+        val entry = Entry(node, estimateSize(node))
+        if (entry.size > maxSizeInBytes) return node
+
+        synchronized(entries) {
+            entries.put(key, entry)?.let { totalSize -= it.size }
+            totalSize += entry.size
+
+            val iterator = entries.values.iterator()
+            while (totalSize > maxSizeInBytes && iterator.hasNext()) {
+                totalSize -= iterator.next().size
+                iterator.remove()
+            }
+        }
+
+        return node
+    }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+            totalSize = 0L
+        }
+    }
+
+    companion object {
+        private const val MAX_SIZE_PROPERTY = "kotlin.jvm.inline.cache.size.mb"
+        private const val DEFAULT_MAX_SIZE_MB = 64L
+
+        private const val DIGEST_ALGORITHM = "SHA-256"
+
+        // A rough estimate of the memory taken by a parsed instruction, its operands and labels
+        private const val INSTRUCTION_SIZE_ESTIMATE = 64L
+
+        @JvmField
+        val INSTANCE = SharedInlineCache((System.getProperty(MAX_SIZE_PROPERTY)?.toLongOrNull() ?: DEFAULT_MAX_SIZE_MB) * 1024 * 1024)
+
+        fun keyOf(classBytes: ByteArray) = ClassFileKey(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(classBytes))
+
+        private fun estimateSize(node: SMAPAndMethodNode): Long =
+            (node.node.instructions.size() + node.node.localVariables.orEmpty().size + node.node.tryCatchBlocks.orEmpty().size + 1) *
+                    INSTRUCTION_SIZE_ESTIMATE
+    }
+}
+
 inline fun <K, V> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
     val value = get(key)
     return if (value == null) {
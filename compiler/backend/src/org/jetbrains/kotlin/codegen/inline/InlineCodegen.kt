@@ -598,9 +598,10 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
             return (directMember as? ImportedFromObjectCallableDescriptor<*>)?.callableFromObject ?: directMember
         }
 
-        private fun cloneMethodNode(methodNode: MethodNode): MethodNode {
+        // Cached nodes are shared by concurrent compilations, and copying resets their labels
+        private fun cloneMethodNode(methodNode: MethodNode): MethodNode = synchronized(methodNode) {
             methodNode.instructions.resetLabels()
-            return MethodNode(
+            MethodNode(
                 Opcodes.API_VERSION, methodNode.access, methodNode.name, methodNode.desc, methodNode.signature,
                 ArrayUtil.toStringArray(methodNode.exceptions)
             ).also(methodNode::accept)
@@ -628,21 +629,22 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
 
             val containerId = containingClasses.implClassId
 
-            val bytes = state.inlineCache.classBytes.getOrPut(containerId) {
-                findVirtualFile(state, containerId)?.contentsToByteArray()
-                    ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
+            val classFile = state.inlineCache.classFiles.getOrPut(containerId) {
+                ClassFileContents(
+                    findVirtualFile(state, containerId)?.contentsToByteArray()
+                        ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
+                )
             }
 
-            val methodNode =
-                getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
-
-            // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
-            // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
-            if (isLegacySuspendInlineFunction(callableDescriptor)) {
-                insertLegacySuspendInlineMarks(methodNode.node)
+            return SharedInlineCache.INSTANCE.getMethodNode(classFile.key, asmMethod.name, asmMethod.descriptor) {
+                getMethodNode(classFile.bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId))?.also { methodNode ->
+                    // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
+                    // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
+                    if (isLegacySuspendInlineFunction(callableDescriptor)) {
+                        insertLegacySuspendInlineMarks(methodNode.node)
+                    }
+                }
             }
-
-            return methodNode
         }
 
         private fun isBuiltInArrayIntrinsic(callableDescriptor: CallableMemberDescriptor): Boolean {
@@ -24,13 +24,31 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
 
-    public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+    // If not null, methods are optimized and written to the delegate on this executor once the class is done, see finishClass()
+    @Nullable
+    private final ExecutorService executor;
+    private final List<OptimizationMethodVisitor> deferredMethods = new ArrayList<>();
+    @Nullable
+    private Future<?> classFinished;
+
+    public OptimizationClassBuilder(
+            @NotNull ClassBuilder delegate,
+            @NotNull GenerationState generationState,
+            @Nullable ExecutorService executor
+    ) {
         this.delegate = delegate;
         this.generationState = generationState;
+        this.executor = executor;
     }
 
     @NotNull
@@ -49,9 +67,62 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
             @Nullable String signature,
             @Nullable String[] exceptions
     ) {
-        return new OptimizationMethodVisitor(
+        OptimizationMethodVisitor visitor = new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, executor != null
         );
+        if (executor != null) {
+            deferredMethods.add(visitor);
+        }
+        return visitor;
+    }
+
+    @Override
+    public void done() {
+        if (executor == null) {
+            super.done();
+            return;
+        }
+
+        // Nothing is written to the underlying class writer by the codegen after this point, so methods of this class can be finished
+        // on another thread while the next classes are generated. Methods of one class are still finished one by one, in order.
+        // Transformations which use the type mapper have already been performed in this thread, see OptimizationMethodVisitor
+        classFinished = executor.submit(this::finishClass);
+    }
+
+    private void finishClass() {
+        for (OptimizationMethodVisitor method : deferredMethods) {
+            method.transformAndEmit();
+        }
+        deferredMethods.clear();
+        super.done();
+    }
+
+    /**
+     * Waits until all methods of this class are written to the delegate. Must be called before the class bytes are requested.
+     */
+    public void waitForClassFinished() {
+        if (classFinished == null) {
+            // The class wasn't done (or its methods aren't deferred), write what is there right away
+            for (OptimizationMethodVisitor method : deferredMethods) {
+                method.transformAndEmit();
+            }
+            deferredMethods.clear();
+            return;
+        }
+
+        try {
+            classFinished.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while optimizing methods of " + getThisName(), e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
     }
 }
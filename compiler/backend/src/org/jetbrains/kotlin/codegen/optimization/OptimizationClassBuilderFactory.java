@@ -17,22 +17,64 @@
 package org.jetbrains.kotlin.codegen.optimization;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.ClassBuilder;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
     private final GenerationState generationState;
 
+    // Performs the ASM-only method optimizations and computes frames in parallel with the codegen, see -Xbackend-threads
+    @Nullable
+    private final ExecutorService executor;
+
     public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
         super(delegate);
         this.generationState = generationState;
+        this.executor = generationState.getBackendThreads() > 1 ? createExecutor(generationState.getBackendThreads()) : null;
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState, executor);
+    }
+
+    @Override
+    public String asText(ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).waitForClassFinished();
+        return super.asText(builder);
+    }
+
+    @Override
+    public byte[] asBytes(ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).waitForClassFinished();
+        return super.asBytes(builder);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        super.close();
+    }
+
+    @NotNull
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Kotlin backend thread " + threadNumber.incrementAndGet());
+            // Don't prevent the compiler from exiting if the generation state isn't destroyed
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
@@ -34,7 +34,8 @@ class OptimizationMethodVisitor(
     name: String,
     desc: String,
     signature: String?,
-    exceptions: Array<String>?
+    exceptions: Array<String>?,
+    override val deferTransformations: Boolean = false
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
     private val constructorCallNormalizationTransformer =
         UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
@@ -44,12 +45,17 @@ class OptimizationMethodVisitor(
         MethodVerifier("AFTER mandatory stack transformations")
     )
 
-    val optimizationTransformer = CompositeMethodTransformer(
+    // These transformations map inline class types (see GenerationState.mapInlineClass), so with deferred transformations
+    // they are performed in the codegen thread, together with everything before them
+    val typeMappingOptimizationTransformer = CompositeMethodTransformer(
         CapturedVarsOptimizationMethodTransformer(),
         RedundantNullCheckMethodTransformer(generationState),
         RedundantCheckCastEliminationMethodTransformer(),
         ConstantConditionEliminationMethodTransformer(),
-        RedundantBoxingMethodTransformer(generationState),
+        RedundantBoxingMethodTransformer(generationState)
+    )
+
+    val optimizationTransformer = CompositeMethodTransformer(
         StackPeepholeOptimizationsTransformer(),
         PopBackwardPropagationTransformer(),
         DeadCodeEliminationMethodTransformer(),
@@ -58,11 +64,18 @@ class OptimizationMethodVisitor(
         MethodVerifier("AFTER optimizations")
     )
 
+    private var shouldBeOptimized = false
+
+    override fun performTransformationsBeforeDeferring(methodNode: MethodNode) {
+        performTypeMappingTransformations(methodNode)
+    }
+
     override fun performTransformations(methodNode: MethodNode) {
-        normalizationMethodTransformer.transform("fake", methodNode)
-        constructorCallNormalizationTransformer.transform("fake", methodNode)
+        if (!deferTransformations) {
+            performTypeMappingTransformations(methodNode)
+        }
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
+        if (shouldBeOptimized) {
             optimizationTransformer.transform("fake", methodNode)
         }
 
@@ -71,6 +84,16 @@ class OptimizationMethodVisitor(
         methodNode.prepareForEmitting()
     }
 
+    private fun performTypeMappingTransformations(methodNode: MethodNode) {
+        normalizationMethodTransformer.transform("fake", methodNode)
+        constructorCallNormalizationTransformer.transform("fake", methodNode)
+
+        shouldBeOptimized = canBeOptimized(methodNode) && !generationState.disableOptimization
+        if (shouldBeOptimized) {
+            typeMappingOptimizationTransformer.transform("fake", methodNode)
+        }
+    }
+
     companion object {
         private val MEMORY_LIMIT_BY_METHOD_MB = 50
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.*
+
+/**
+ * Returns an array with `true` for every instruction reachable from the method entry.
+ *
+ * Control flow edges are the same as in [MethodAnalyzer] (an instruction inside a try block may jump to its handler),
+ * so the result is the same as checking which frames are computed by a frame analysis, but no frames are created:
+ * memory used is linear in the size of the method regardless of its locals and stack size.
+ */
+fun MethodNode.findReachableInstructions(): BooleanArray {
+    val insns = instructions.toArray()
+    val size = insns.size
+    val reachable = BooleanArray(size)
+    if (size == 0) return reachable
+
+    // Exception handlers of every instruction, stored as a compressed sparse row:
+    // handlers of the i-th instruction are handlers[handlersStart[i] until handlersStart[i + 1]]
+    val handlersStart = IntArray(size + 1)
+    val ranges = tryCatchBlocks.map { tcb -> instructions.indexOf(tcb.start) until instructions.indexOf(tcb.end) }
+    for (range in ranges) {
+        for (i in range) {
+            handlersStart[i + 1]++
+        }
+    }
+    for (i in 0 until size) {
+        handlersStart[i + 1] += handlersStart[i]
+    }
+    val handlers = IntArray(handlersStart[size])
+    val handlersEnd = handlersStart.copyOf(size)
+    for ((tcb, range) in tryCatchBlocks.zip(ranges)) {
+        val handler = instructions.indexOf(tcb.handler)
+        for (i in range) {
+            handlers[handlersEnd[i]++] = handler
+        }
+    }
+
+    val queue = IntArray(size)
+    var top = 0
+
+    fun visit(index: Int) {
+        if (index < size && !reachable[index]) {
+            reachable[index] = true
+            queue[top++] = index
+        }
+    }
+
+    fun visit(label: LabelNode) = visit(instructions.indexOf(label))
+
+    visit(0)
+    while (top > 0) {
+        val index = queue[--top]
+        val insn = insns[index]
+        val opcode = insn.opcode
+
+        when {
+            insn is JumpInsnNode -> {
+                if (opcode != Opcodes.GOTO) {
+                    visit(index + 1)
+                }
+                visit(insn.label)
+            }
+            insn is TableSwitchInsnNode -> {
+                visit(insn.dflt)
+                for (label in insn.labels) {
+                    visit(label)
+                }
+            }
+            insn is LookupSwitchInsnNode -> {
+                visit(insn.dflt)
+                for (label in insn.labels) {
+                    visit(label)
+                }
+            }
+            opcode != Opcodes.ATHROW && (opcode < Opcodes.IRETURN || opcode > Opcodes.RETURN) ->
+                visit(index + 1)
+        }
+
+        for (i in handlersStart[index] until handlersStart[index + 1]) {
+            visit(handlers[i])
+        }
+    }
+
+    return reachable
+}
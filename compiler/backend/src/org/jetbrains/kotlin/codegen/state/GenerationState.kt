@@ -263,6 +263,8 @@ class GenerationState private constructor(
 
     val disableOptimization = configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION, false)
 
+    val backendThreads = configuration.get(JVMConfigurationKeys.BACKEND_THREADS, 1)
+
     val metadataVersion = configuration.get(CommonConfigurationKeys.METADATA_VERSION) ?: JvmMetadataVersion.INSTANCE
 
     val globalSerializationBindings = JvmSerializationBindings()
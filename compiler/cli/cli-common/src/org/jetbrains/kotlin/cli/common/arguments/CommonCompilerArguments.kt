@@ -314,6 +314,12 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     )
     var useFir: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xuse-fir-light-tree",
+        description = "Build Front-end IR from light tree instead of PSI, parsing source files in parallel. Has effect only with -Xuse-fir"
+    )
+    var useFirLightTree: Boolean by FreezableVar(false)
+
     @Argument(
         value = "-Xuse-mixed-named-arguments",
         description = "Enable Support named arguments in their own position even if the result appears as mixed"
@@ -125,6 +125,19 @@ class K2JSCompilerArguments : CommonCompilerArguments() {
     @Argument(value = "-Xir-dce", description = "Perform experimental dead code elimination")
     var irDce: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xir-cache-dir",
+        valueDescription = "<path>",
+        description = "Reuse JS generated by IR backend from the specified directory if sources, libraries and options are unchanged"
+    )
+    var irCacheDir: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xir-lazy-function-bodies",
+        description = "Deserialize bodies of non-inline functions of libraries only if they are used (IR backend)"
+    )
+    var irLazyFunctionBodies: Boolean by FreezableVar(false)
+
     @Argument(value = "-Xir-only", description = "Disables pre-IR backend")
     var irOnly: Boolean by FreezableVar(false)
 
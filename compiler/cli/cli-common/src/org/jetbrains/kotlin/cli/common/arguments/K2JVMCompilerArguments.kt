@@ -118,6 +118,20 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     @Argument(value = "-Xno-optimize", description = "Disable optimizations")
     var noOptimize: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xno-jar-compression",
+        description = "Store class files in the resulting .jar without compression. Makes writing the .jar faster at the cost of its size"
+    )
+    var noJarCompression: Boolean by FreezableVar(false)
+
+    @Argument(
+        value = "-Xbackend-threads",
+        valueDescription = "<N>",
+        description = "Number of threads used to lower IR files (with -Xuse-ir), optimize generated methods\n" +
+                "and compute their stack map frames, default is 1 (everything is done in the compiler thread)"
+    )
+    var backendThreads: String? by NullableStringFreezableVar(null)
+
     @Argument(
         value = "-Xnormalize-constructor-calls",
         valueDescription = "{disable|enable}",
@@ -165,6 +179,13 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var useOldClassFilesReading: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xuse-fast-jar-file-system",
+        description = "Read classpath jars with an implementation which indexes only their central directories.\n" +
+                "Jar indices are reused between compilations in the daemon while the jars are not modified"
+    )
+    var useFastJarFileSystem: Boolean by FreezableVar(false)
+
     @Argument(
         value = "-Xdump-declarations-to",
         valueDescription = "<path>",
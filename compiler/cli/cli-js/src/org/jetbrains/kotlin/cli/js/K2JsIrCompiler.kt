@@ -259,6 +259,10 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
 
         configuration.put(JSConfigurationKeys.FRIEND_PATHS_DISABLED, arguments.friendModulesDisabled)
 
+        arguments.irCacheDir?.let { configuration.put(JSConfigurationKeys.IR_CACHE_DIRECTORY, it) }
+
+        configuration.put(JSConfigurationKeys.LAZY_IR_FUNCTION_BODIES, arguments.irLazyFunctionBodies)
+
         val friendModules = arguments.friendModules
         if (!arguments.friendModulesDisabled && friendModules != null) {
             val friendPaths = friendModules
@@ -23,6 +23,7 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.FastJarVirtualFile;
 import org.jetbrains.kotlin.diagnostics.DiagnosticUtils;
 import org.jetbrains.kotlin.diagnostics.PsiDiagnosticUtils;
 
@@ -52,7 +53,8 @@ public class MessageUtil {
     @NotNull
     public static String virtualFileToPath(@NotNull VirtualFile virtualFile) {
         // Convert path to platform-dependent format when virtualFile is local file.
-        if (virtualFile instanceof CoreLocalVirtualFile || virtualFile instanceof CoreJarVirtualFile) {
+        if (virtualFile instanceof CoreLocalVirtualFile || virtualFile instanceof CoreJarVirtualFile ||
+            virtualFile instanceof FastJarVirtualFile) {
             return toSystemDependentName(virtualFile.getPath());
         }
         return virtualFile.getPath();
@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.cli.common
 
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.messages.MessageUtil
@@ -26,18 +27,35 @@ import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.utils.KotlinPaths
 import java.io.File
 
-fun checkKotlinPackageUsage(environment: KotlinCoreEnvironment, files: Collection<KtFile>): Boolean {
+fun checkKotlinPackageUsage(environment: KotlinCoreEnvironment, files: Collection<KtFile>): Boolean =
+    checkKotlinPackageUsage(environment, files, { it.packageFqName }) { MessageUtil.psiElementToMessageLocation(it.packageDirective!!) }
+
+/**
+ * Same as above for files whose PSI is not built (e.g. when they are compiled from light trees): packages of [files]
+ * are taken from [packageFqName], and the error is reported at the whole file.
+ */
+fun checkKotlinPackageUsage(environment: KotlinCoreEnvironment, files: Collection<KtFile>, packageFqName: (KtFile) -> FqName): Boolean =
+    checkKotlinPackageUsage(environment, files, packageFqName) { file ->
+        CompilerMessageLocation.create(file.virtualFile?.let(MessageUtil::virtualFileToPath) ?: file.name)
+    }
+
+private inline fun checkKotlinPackageUsage(
+    environment: KotlinCoreEnvironment,
+    files: Collection<KtFile>,
+    packageFqName: (KtFile) -> FqName,
+    location: (KtFile) -> CompilerMessageLocation?
+): Boolean {
     if (environment.configuration.getBoolean(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE)) {
         return true
     }
     val messageCollector = environment.configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
     val kotlinPackage = FqName("kotlin")
     for (file in files) {
-        if (file.packageFqName.isSubpackageOf(kotlinPackage)) {
+        if (packageFqName(file).isSubpackageOf(kotlinPackage)) {
             messageCollector.report(
                 CompilerMessageSeverity.ERROR,
                 "Only the Kotlin standard library is allowed to use the 'kotlin' package",
-                MessageUtil.psiElementToMessageLocation(file.packageDirective!!)
+                location(file)
             )
             return false
         }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.FastJarFileSystem
+import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryClassSignatureParser
+import org.jetbrains.kotlin.load.java.structure.impl.classFiles.ClassifierResolutionContext
+import org.jetbrains.kotlin.name.ClassId
+import java.io.File
+import java.lang.ref.SoftReference
+import java.lang.ref.WeakReference
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Binary Java classes read from the classpath by [KotlinCliJavaFileManagerImpl], including classes which were not found.
+ *
+ * The cache is safe to use from several threads. At most [maxSize] classes are kept, least recently used ones are evicted first.
+ *
+ * Classes refer to each other through the [resolutionContext] of the cache, which asks the file manager that owns the cache.
+ * A cache has at most one owner at a time, see [tryAcquire], so classes are always resolved by the compilation which uses them.
+ * When the owner is done, the cache may be acquired by the next compilation with the same classpath: see [forClasspath].
+ * Other compilations with the same classpath which run at the same time read classes into caches of their own.
+ */
+class BinaryJavaClassCache(private val maxSize: Int = DEFAULT_MAX_SIZE) {
+    private val cache = object : LinkedHashMap<ClassId, Any>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<ClassId, Any>): Boolean = size > maxSize
+    }
+
+    // Weak, so that a compilation which didn't release the cache is not kept alive by it
+    @Volatile
+    private var owner: WeakReference<KotlinCliJavaFileManagerImpl>? = null
+
+    // A retired cache stays with its owner and is never shared again, see onClasspathUpdated
+    @Volatile
+    private var retired = false
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val hitCount: Long get() = hits.get()
+    val missCount: Long get() = misses.get()
+
+    val signatureParser = BinaryClassSignatureParser()
+
+    val resolutionContext: ClassifierResolutionContext get() = ClassifierResolutionContext { owner?.get()?.findClassInAllScope(it) }
+
+    /**
+     * Makes [fileManager] the owner of the cache, unless the cache is already owned by another live file manager.
+     */
+    @Synchronized
+    fun tryAcquire(fileManager: KotlinCliJavaFileManagerImpl): Boolean {
+        val current = owner?.get()
+        if (current === fileManager) return true
+        if (current != null || retired) return false
+        owner = WeakReference(fileManager)
+        return true
+    }
+
+    @Synchronized
+    fun release(fileManager: KotlinCliJavaFileManagerImpl) {
+        if (owner?.get() === fileManager && !retired) {
+            owner = null
+        }
+    }
+
+    /**
+     * Called when the classpath of the owner is extended (REPL, kapt). Classes which are already read are still resolved by the owner,
+     * but may now refer to classes of the new roots, so the cache is not shared with other compilations anymore.
+     * Classes which were not found are forgotten, as they may appear in the new roots.
+     */
+    @Synchronized
+    fun onClasspathUpdated(fileManager: KotlinCliJavaFileManagerImpl) {
+        check(owner?.get() === fileManager) { "Classpath of a file manager which doesn't own the cache is updated" }
+        retired = true
+        synchronized(cache) {
+            cache.values.removeIf { it === NOT_FOUND }
+        }
+    }
+
+    fun getOrPut(classId: ClassId, compute: () -> JavaClass?): JavaClass? {
+        val cached = synchronized(cache) { cache[classId] }
+        if (cached != null) {
+            hits.incrementAndGet()
+            return cached as? JavaClass
+        }
+
+        misses.incrementAndGet()
+        // Computed outside of the lock: reading a class may look up its outer class
+        val result = compute()
+        return synchronized(cache) {
+            // Another thread may have read the same class in the meantime, prefer its result so that classes stay unique
+            cache.getOrPut(classId) { result ?: NOT_FOUND } as? JavaClass
+        }
+    }
+
+    override fun toString(): String =
+        "BinaryJavaClassCache(size=${synchronized(cache) { cache.size }}, hits=$hitCount, misses=$missCount)"
+
+    private class ClasspathKey(val paths: List<String>, val stamps: List<Long>) {
+        override fun equals(other: Any?): Boolean = other is ClasspathKey && paths == other.paths && stamps == other.stamps
+
+        override fun hashCode(): Int = 31 * paths.hashCode() + stamps.hashCode()
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 65536
+
+        private const val MAX_SHARED_CLASSPATHS = 16
+
+        private val NOT_FOUND = Any()
+
+        private val sharedCaches = object : LinkedHashMap<ClasspathKey, SoftReference<BinaryJavaClassCache>>(16, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<ClasspathKey, SoftReference<BinaryJavaClassCache>>) =
+                size > MAX_SHARED_CLASSPATHS
+        }
+
+        /**
+         * Returns a cache shared by all compilations with the same [roots], or a new cache if the classes found in the roots
+         * may differ between compilations: for source roots and class directories, which have no cheap modification stamp.
+         * Classes read through a [FastJarFileSystem] are not shared either, as the file system is disposed with its compilation.
+         * Jars are compared by their size and modification time, modules of a JDK 9+ runtime image (jrt roots) by the ones
+         * of the image. The returned cache still needs to be acquired, see [tryAcquire].
+         */
+        fun forClasspath(roots: List<JavaRoot>, hasSingleJavaFileRoots: Boolean): BinaryJavaClassCache {
+            val key = if (hasSingleJavaFileRoots) null else createClasspathKey(roots)
+            if (key == null) return BinaryJavaClassCache()
+
+            synchronized(sharedCaches) {
+                sharedCaches[key]?.get()?.takeUnless { it.retired }?.let { return it }
+                return BinaryJavaClassCache().also { sharedCaches[key] = SoftReference(it) }
+            }
+        }
+
+        private fun createClasspathKey(roots: List<JavaRoot>): ClasspathKey? {
+            val paths = ArrayList<String>(roots.size)
+            val stamps = ArrayList<Long>(roots.size * 2)
+            for (root in roots) {
+                if (root.type != JavaRoot.RootType.BINARY || root.prefixFqName != null) return null
+                // Files of the fast jar file system can't be read after the compilation which opened them is over
+                if (root.file.fileSystem is FastJarFileSystem) return null
+
+                val path = root.file.path
+                val archive = when (root.file.fileSystem.protocol) {
+                    StandardFileSystems.JAR_PROTOCOL -> File(path.substringBefore(URLUtil.JAR_SEPARATOR))
+                    // The path is the JDK home followed by the module path in the image
+                    StandardFileSystems.JRT_PROTOCOL -> File(path.substringBefore(URLUtil.JAR_SEPARATOR), "lib/modules")
+                    else -> return null
+                }
+                paths.add(path)
+                stamps.add(archive.length())
+                stamps.add(archive.lastModified())
+            }
+            return ClasspathKey(paths, stamps)
+        }
+    }
+}
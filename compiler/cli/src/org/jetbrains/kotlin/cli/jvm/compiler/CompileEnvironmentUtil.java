@@ -21,13 +21,11 @@ import com.intellij.openapi.util.io.FileUtilRt;
 import kotlin.io.FilesKt;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.kotlin.backend.common.output.OutputFile;
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection;
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
 import org.jetbrains.kotlin.cli.common.modules.ModuleChunk;
 import org.jetbrains.kotlin.cli.common.modules.ModuleXmlParser;
 import org.jetbrains.kotlin.name.FqName;
-import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
 import org.jetbrains.kotlin.utils.PathUtil;
 
 import java.io.*;
@@ -49,60 +47,64 @@ public class CompileEnvironmentUtil {
         return ModuleChunk.EMPTY;
     }
 
-    // TODO: includeRuntime should be not a flag but a path to runtime
-    private static void doWriteToJar(
-            OutputFileCollection outputFiles, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime
-    ) {
+    @NotNull
+    public static Manifest createManifest(@Nullable FqName mainClass) {
+        Manifest manifest = new Manifest();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        mainAttributes.putValue("Manifest-Version", "1.0");
+        mainAttributes.putValue("Created-By", "JetBrains Kotlin");
+        if (mainClass != null) {
+            mainAttributes.putValue("Main-Class", mainClass.asString());
+        }
+        return manifest;
+    }
+
+    @NotNull
+    public static StreamingJarWriter createJarWriter(@NotNull File jarPath, @Nullable FqName mainClass, boolean compress) {
         try {
-            Manifest manifest = new Manifest();
-            Attributes mainAttributes = manifest.getMainAttributes();
-            mainAttributes.putValue("Manifest-Version", "1.0");
-            mainAttributes.putValue("Created-By", "JetBrains Kotlin");
-            if (mainClass != null) {
-                mainAttributes.putValue("Main-Class", mainClass.asString());
-            }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (OutputFile outputFile : outputFiles.asList()) {
-                stream.putNextEntry(new JarEntry(outputFile.getRelativePath()));
-                stream.write(outputFile.asByteArray());
-            }
-            if (includeRuntime) {
-                writeRuntimeToJar(stream);
-            }
-            stream.finish();
+            return new StreamingJarWriter(
+                    jarPath, createManifest(mainClass), compress, Runtime.getRuntime().availableProcessors(),
+                    StreamingJarWriter.DEFAULT_MAX_PENDING_BYTES
+            );
         }
         catch (IOException e) {
-            throw new CompileEnvironmentException("Failed to generate jar file", e);
+            throw new CompileEnvironmentException("Invalid jar path " + jarPath, e);
         }
     }
 
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, OutputFileCollection outputFiles) {
-        FileOutputStream outputStream = null;
-        try {
-            outputStream = new FileOutputStream(jarPath);
-            doWriteToJar(outputFiles, outputStream, mainClass, jarRuntime);
-            outputStream.close();
-        }
-        catch (FileNotFoundException e) {
-            throw new CompileEnvironmentException("Invalid jar path " + jarPath, e);
+        writeToJar(jarPath, jarRuntime, mainClass, outputFiles, true);
+    }
+
+    // TODO: includeRuntime should be not a flag but a path to runtime
+    public static void writeToJar(
+            File jarPath, boolean jarRuntime, FqName mainClass, OutputFileCollection outputFiles, boolean compress
+    ) {
+        try (StreamingJarWriter writer = createJarWriter(jarPath, mainClass, compress)) {
+            writer.write(outputFiles.asList());
+            finishJar(writer, jarRuntime);
         }
         catch (IOException e) {
-            throw ExceptionUtilsKt.rethrow(e);
+            throw new CompileEnvironmentException("Failed to generate jar file", e);
         }
-        finally {
-            ExceptionUtilsKt.closeQuietly(outputStream);
+    }
+
+    public static void finishJar(@NotNull StreamingJarWriter writer, boolean includeRuntime) throws IOException {
+        if (includeRuntime) {
+            writeRuntimeToJar(writer);
         }
+        writer.finish();
     }
 
-    private static void writeRuntimeToJar(JarOutputStream stream) throws IOException {
+    private static void writeRuntimeToJar(StreamingJarWriter writer) throws IOException {
         File stdlibPath = PathUtil.getKotlinPathsForCompiler().getStdlibPath();
         if (!stdlibPath.exists()) {
             throw new CompileEnvironmentException("Couldn't find kotlin-stdlib at " + stdlibPath);
         }
-        copyJarImpl(stream, stdlibPath);
+        copyJarImpl(writer, stdlibPath);
     }
 
-    private static void copyJarImpl(JarOutputStream stream, File jarPath) throws IOException {
+    private static void copyJarImpl(StreamingJarWriter writer, File jarPath) throws IOException {
         try (JarInputStream jis = new JarInputStream(new FileInputStream(jarPath))) {
             while (true) {
                 JarEntry e = jis.getNextJarEntry();
@@ -110,8 +112,7 @@ public class CompileEnvironmentUtil {
                     break;
                 }
                 if (FileUtilRt.extensionEquals(e.getName(), "class")) {
-                    stream.putNextEntry(e);
-                    FileUtil.copy(jis, stream);
+                    writer.write(e.getName(), FileUtil.loadBytes(jis));
                 }
             }
         }
@@ -23,7 +23,6 @@ import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.*
 import com.intellij.psi.impl.file.PsiPackageImpl
 import com.intellij.psi.search.GlobalSearchScope
-import gnu.trove.THashMap
 import gnu.trove.THashSet
 import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
 import org.jetbrains.kotlin.cli.jvm.index.JvmDependenciesIndex
@@ -31,9 +30,7 @@ import org.jetbrains.kotlin.cli.jvm.index.SingleJavaFileRootsIndex
 import org.jetbrains.kotlin.load.java.JavaClassFinder
 import org.jetbrains.kotlin.load.java.structure.JavaClass
 import org.jetbrains.kotlin.load.java.structure.impl.JavaClassImpl
-import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryClassSignatureParser
 import org.jetbrains.kotlin.load.java.structure.impl.classFiles.BinaryJavaClass
-import org.jetbrains.kotlin.load.java.structure.impl.classFiles.ClassifierResolutionContext
 import org.jetbrains.kotlin.load.java.structure.impl.classFiles.isNotTopLevelClass
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
@@ -41,6 +38,7 @@ import org.jetbrains.kotlin.resolve.jvm.KotlinCliJavaFileManager
 import org.jetbrains.kotlin.util.PerformanceCounter
 import org.jetbrains.kotlin.utils.addIfNotNull
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 // TODO: do not inherit from CoreJavaFileManager to avoid accidental usage of its methods which do not use caches/indices
 // Currently, the only relevant usage of this class as CoreJavaFileManager is at CoreJavaDirectoryService.getPackage,
@@ -50,20 +48,43 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
     private lateinit var index: JvmDependenciesIndex
     private lateinit var singleJavaFileRootsIndex: SingleJavaFileRootsIndex
     private lateinit var packagePartProviders: List<JvmPackagePartProvider>
-    private val topLevelClassesCache: MutableMap<FqName, VirtualFile?> = THashMap()
+    // Values are VirtualFiles or NOT_FOUND
+    private val topLevelClassesCache = ConcurrentHashMap<FqName, Any>()
     private val allScope = GlobalSearchScope.allScope(myPsiManager.project)
     private var usePsiClassFilesReading = false
 
+    private lateinit var binaryCache: BinaryJavaClassCache
+
     fun initialize(
         index: JvmDependenciesIndex,
         packagePartProviders: List<JvmPackagePartProvider>,
         singleJavaFileRootsIndex: SingleJavaFileRootsIndex,
-        usePsiClassFilesReading: Boolean
+        usePsiClassFilesReading: Boolean,
+        binaryCache: BinaryJavaClassCache = BinaryJavaClassCache()
     ) {
         this.index = index
         this.packagePartProviders = packagePartProviders
         this.singleJavaFileRootsIndex = singleJavaFileRootsIndex
         this.usePsiClassFilesReading = usePsiClassFilesReading
+        releaseBinaryCache()
+        // A shared cache is used by one compilation at a time, others with the same classpath read classes by themselves
+        this.binaryCache = binaryCache.takeIf { it.tryAcquire(this) } ?: BinaryJavaClassCache().also { it.tryAcquire(this) }
+    }
+
+    fun onClasspathUpdated() {
+        // Classes which were not found may appear in the new roots
+        topLevelClassesCache.values.removeIf { it === NOT_FOUND }
+
+        binaryCache.onClasspathUpdated(this)
+    }
+
+    /**
+     * Lets the next compilation with the same classpath use the shared binary class cache. Called when the environment is disposed.
+     */
+    fun releaseBinaryCache() {
+        if (this::binaryCache.isInitialized) {
+            binaryCache.release(this)
+        }
     }
 
     private fun findPsiClass(classId: ClassId, searchScope: GlobalSearchScope): PsiClass? = perfCounter.time {
@@ -71,19 +92,21 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
     }
 
     private fun findVirtualFileForTopLevelClass(classId: ClassId, searchScope: GlobalSearchScope): VirtualFile? {
-        val relativeClassName = classId.relativeClassName.asString()
-        return topLevelClassesCache.getOrPut(classId.packageFqName.child(classId.relativeClassName.pathSegments().first())) {
-            index.findClass(classId) { dir, type ->
+        val topLevelClassFqName = classId.packageFqName.child(classId.relativeClassName.pathSegments().first())
+        val cached = topLevelClassesCache[topLevelClassFqName] ?: run {
+            val relativeClassName = classId.relativeClassName.asString()
+            val virtualFile = index.findClass(classId) { dir, type ->
                 findVirtualFileGivenPackage(dir, relativeClassName, type)
             } ?: singleJavaFileRootsIndex.findJavaSourceClass(classId)
-        }?.takeIf { it in searchScope }
+            topLevelClassesCache.putIfAbsent(topLevelClassFqName, virtualFile ?: NOT_FOUND) ?: virtualFile ?: NOT_FOUND
+        }
+        return (cached as? VirtualFile)?.takeIf { it in searchScope }
     }
 
-    private val binaryCache: MutableMap<ClassId, JavaClass?> = THashMap()
-    private val signatureParsingComponent = BinaryClassSignatureParser()
-
     fun findClass(classId: ClassId, searchScope: GlobalSearchScope): JavaClass? = findClass(JavaClassFinder.Request(classId), searchScope)
 
+    internal fun findClassInAllScope(classId: ClassId): JavaClass? = findClass(classId, allScope)
+
     override fun findClass(request: JavaClassFinder.Request, searchScope: GlobalSearchScope): JavaClass? {
         val (classId, classFileContentFromRequest, outerClassFromRequest) = request
         val virtualFile = findVirtualFileForTopLevelClass(classId, searchScope) ?: return null
@@ -96,32 +119,39 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
                 // This is a true assumption by now since there are two search scopes in compiler: one for sources and another one for binary
                 // When it become wrong because we introduce the modules into CLI, it's worth to consider
                 // having different KotlinCliJavaFileManagerImpl's for different modules
-
-                classId.outerClassId?.let { outerClassId ->
-                    val outerClass = outerClassFromRequest ?: findClass(outerClassId, searchScope)
-
-                    return if (outerClass is BinaryJavaClass)
-                        outerClass.findInnerClass(classId.shortClassName, classFileContentFromRequest)
-                    else
-                        outerClass?.findInnerClass(classId.shortClassName)
-                }
-
-                // Here, we assume the class is top-level
-                val classContent = classFileContentFromRequest ?: virtualFile.contentsToByteArray()
-                if (virtualFile.nameWithoutExtension.contains("$") && isNotTopLevelClass(classContent)) return@getOrPut null
-
-                val resolver = ClassifierResolutionContext { findClass(it, allScope) }
-
-                BinaryJavaClass(
-                    virtualFile, classId.asSingleFqName(), resolver, signatureParsingComponent,
-                    outerClass = null, classContent = classContent
-                )
+                readBinaryClass(classId, virtualFile, searchScope, classFileContentFromRequest, outerClassFromRequest)
             }
         }
 
         return virtualFile.findPsiClassInVirtualFile(classId.relativeClassName.asString())?.let(::JavaClassImpl)
     }
 
+    private fun readBinaryClass(
+        classId: ClassId,
+        virtualFile: VirtualFile,
+        searchScope: GlobalSearchScope,
+        classFileContentFromRequest: ByteArray?,
+        outerClassFromRequest: JavaClass?
+    ): JavaClass? {
+        classId.outerClassId?.let { outerClassId ->
+            val outerClass = outerClassFromRequest ?: findClass(outerClassId, searchScope)
+
+            return if (outerClass is BinaryJavaClass)
+                outerClass.findInnerClass(classId.shortClassName, classFileContentFromRequest)
+            else
+                outerClass?.findInnerClass(classId.shortClassName)
+        }
+
+        // Here, we assume the class is top-level
+        val classContent = classFileContentFromRequest ?: virtualFile.contentsToByteArray()
+        if (virtualFile.nameWithoutExtension.contains("$") && isNotTopLevelClass(classContent)) return null
+
+        return BinaryJavaClass(
+            virtualFile, classId.asSingleFqName(), binaryCache.resolutionContext, binaryCache.signatureParser,
+            outerClass = null, classContent = classContent
+        )
+    }
+
     // this method is called from IDEA to resolve dependencies in Java code
     // which supposedly shouldn't have errors so the dependencies exist in general
     override fun findClass(qName: String, scope: GlobalSearchScope): PsiClass? {
@@ -159,17 +189,16 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
         val result = ArrayList<PsiClass>(1)
         forEachClassId(qName) { classId ->
             val relativeClassName = classId.relativeClassName.asString()
+            val virtualFiles = ArrayList<VirtualFile>(1)
             index.traverseDirectoriesInPackage(classId.packageFqName) { dir, rootType ->
-                val psiClass =
-                    findVirtualFileGivenPackage(dir, relativeClassName, rootType)
-                        ?.takeIf { it in scope }
-                        ?.findPsiClassInVirtualFile(relativeClassName)
-                if (psiClass != null) {
-                    result.add(psiClass)
-                }
+                virtualFiles.addIfNotNull(findVirtualFileGivenPackage(dir, relativeClassName, rootType)?.takeIf { it in scope })
                 // traverse all
                 true
             }
+            // PSI is built outside of the index lock
+            for (virtualFile in virtualFiles) {
+                result.addIfNotNull(virtualFile.findPsiClassInVirtualFile(relativeClassName))
+            }
 
             result.addIfNotNull(
                 singleJavaFileRootsIndex.findJavaSourceClass(classId)
@@ -257,6 +286,8 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
     companion object {
         private val LOG = Logger.getInstance(KotlinCliJavaFileManagerImpl::class.java)
 
+        private val NOT_FOUND = Any()
+
         private fun findClassInPsiFile(classNameWithInnerClassesDotSeparated: String, file: PsiClassOwner): PsiClass? {
             for (topLevelClass in file.classes) {
                 val candidate = findClassByTopLevelClass(classNameWithInnerClassesDotSeparated, topLevelClass)
@@ -71,6 +71,7 @@ import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.STRONG_W
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.toBooleanLenient
 import org.jetbrains.kotlin.cli.jvm.JvmRuntimeVersionsConsistencyChecker
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.FastJarFileSystem
 import org.jetbrains.kotlin.cli.jvm.config.*
 import org.jetbrains.kotlin.cli.jvm.index.*
 import org.jetbrains.kotlin.cli.jvm.javac.JavacWrapperRegistrar
@@ -163,6 +164,12 @@ class KotlinCoreEnvironment private constructor(
 
     val configuration: CompilerConfiguration = initialConfiguration.apply { setupJdkClasspathRoots(configFiles) }.copy()
 
+    // Closes the opened jars when the compilation is over
+    private val fastJarFileSystem: FastJarFileSystem? =
+        if (configuration.getBoolean(JVMConfigurationKeys.USE_FAST_JAR_FILE_SYSTEM))
+            FastJarFileSystem().also { Disposer.register(projectEnvironment.parentDisposable, it) }
+        else null
+
     init {
         PersistentFSConstants::class.java.getDeclaredField("ourMaxIntellisenseFileSize")
             .apply { isAccessible = true }
@@ -236,12 +243,18 @@ class KotlinCoreEnvironment private constructor(
             updateClasspathFromRootsIndex(this)
         }
 
-        (ServiceManager.getService(project, CoreJavaFileManager::class.java) as KotlinCliJavaFileManagerImpl).initialize(
+        val usePsiClassFilesReading = configuration.getBoolean(JVMConfigurationKeys.USE_PSI_CLASS_FILES_READING)
+        val javaFileManager = ServiceManager.getService(project, CoreJavaFileManager::class.java) as KotlinCliJavaFileManagerImpl
+        javaFileManager.initialize(
             rootsIndex,
             packagePartProviders,
             SingleJavaFileRootsIndex(singleJavaFileRoots),
-            configuration.getBoolean(JVMConfigurationKeys.USE_PSI_CLASS_FILES_READING)
+            usePsiClassFilesReading,
+            // With PSI class files reading, the file manager would resolve references in shared classes to PSI
+            if (usePsiClassFilesReading) BinaryJavaClassCache()
+            else BinaryJavaClassCache.forClasspath(roots, singleJavaFileRoots.isNotEmpty())
         )
+        Disposer.register(projectEnvironment.parentDisposable, Disposable { javaFileManager.releaseBinaryCache() })
 
         project.registerService(
             JavaModuleResolver::class.java,
@@ -357,6 +370,7 @@ class KotlinCoreEnvironment private constructor(
 
         return rootsIndex.addNewIndexForRoots(newRoots)?.let { newIndex ->
             updateClasspathFromRootsIndex(newIndex)
+            (ServiceManager.getService(project, CoreJavaFileManager::class.java) as KotlinCliJavaFileManagerImpl).onClasspathUpdated()
             newIndex.indexedRoots.mapNotNull { (file) ->
                 VfsUtilCore.virtualToIoFile(VfsUtilCore.getVirtualFileForJar(file) ?: file)
             }.toList()
@@ -386,8 +400,10 @@ class KotlinCoreEnvironment private constructor(
         }
     }
 
-    private fun findJarRoot(file: File): VirtualFile? =
-        applicationEnvironment.jarFileSystem.findFileByPath("$file${URLUtil.JAR_SEPARATOR}")
+    private fun findJarRoot(file: File): VirtualFile? {
+        val path = "$file${URLUtil.JAR_SEPARATOR}"
+        return fastJarFileSystem?.findFileByPath(path) ?: applicationEnvironment.jarFileSystem.findFileByPath(path)
+    }
 
     private fun getSourceRootsCheckingForDuplicates(): List<KotlinSourceRoot> {
         val uniqueSourceRoots = hashSetOf<String>()
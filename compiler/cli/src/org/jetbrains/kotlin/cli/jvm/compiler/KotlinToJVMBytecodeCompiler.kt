@@ -28,6 +28,7 @@ import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.analyzer.ModuleInfo
 import org.jetbrains.kotlin.asJava.FilteredJvmDiagnostics
 import org.jetbrains.kotlin.asJava.finder.JavaElementFinder
+import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
 import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
@@ -52,12 +53,15 @@ import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.backend.Fir2IrConverter
 import org.jetbrains.kotlin.fir.builder.RawFirBuilder
+import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.java.FirJavaModuleBasedSession
 import org.jetbrains.kotlin.fir.java.FirLibrarySession
 import org.jetbrains.kotlin.fir.java.FirProjectSessionProvider
+import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
 import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveTransformer
+import org.jetbrains.kotlin.fir.toFirSourceElement
 import org.jetbrains.kotlin.idea.MainFunctionDetector
 import org.jetbrains.kotlin.javac.JavacWrapper
 import org.jetbrains.kotlin.load.kotlin.ModuleVisibilityManager
@@ -74,9 +78,13 @@ import org.jetbrains.kotlin.resolve.jvm.KotlinJavaPsiFacade
 import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatformAnalyzerServices
 import org.jetbrains.kotlin.utils.newLinkedHashMapWithExpectedSize
 import org.jetbrains.kotlin.utils.tryConstructClassFromStringArgs
+import java.io.Closeable
 import java.io.File
 import java.lang.reflect.InvocationTargetException
 import java.net.URLClassLoader
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 object KotlinToJVMBytecodeCompiler {
     private fun writeOutput(
@@ -89,7 +97,8 @@ object KotlinToJVMBytecodeCompiler {
         val messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
         if (jarPath != null) {
             val includeRuntime = configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false)
-            CompileEnvironmentUtil.writeToJar(jarPath, includeRuntime, mainClassProvider?.mainClassFqName, outputFiles)
+            val compress = !configuration.getBoolean(JVMConfigurationKeys.NO_JAR_COMPRESSION)
+            CompileEnvironmentUtil.writeToJar(jarPath, includeRuntime, mainClassProvider?.mainClassFqName, outputFiles, compress)
             if (reportOutputFiles) {
                 val message = OutputMessageUtil.formatOutputMessage(outputFiles.asList().flatMap { it.sourceFiles }.distinct(), jarPath)
                 messageCollector.report(OUTPUT, message)
@@ -188,8 +197,10 @@ object KotlinToJVMBytecodeCompiler {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
             val ktFiles = module.getSourceFiles(environment, localFileSystem, chunk.size > 1, buildFile)
-            if (!checkKotlinPackageUsage(environment, ktFiles)) return false
             val moduleConfiguration = projectConfiguration.applyModuleProperties(module, buildFile)
+            val useLightTree = moduleConfiguration.getBoolean(CommonConfigurationKeys.USE_FIR_LIGHT_TREE)
+            // With the light tree, packages are checked on raw FIR below, so that PSI of the files isn't built
+            if (!useLightTree && !checkKotlinPackageUsage(environment, ktFiles)) return false
 
             outputs[module] = generate(environment, moduleConfiguration, result, ktFiles, module)
         }
@@ -291,8 +302,10 @@ object KotlinToJVMBytecodeCompiler {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
             val ktFiles = module.getSourceFiles(environment, localFileSystem, chunk.size > 1, buildFile)
-            if (!checkKotlinPackageUsage(environment, ktFiles)) return false
             val moduleConfiguration = projectConfiguration.applyModuleProperties(module, buildFile)
+            val useLightTree = moduleConfiguration.getBoolean(CommonConfigurationKeys.USE_FIR_LIGHT_TREE)
+            // With the light tree, packages are checked on raw FIR below, so that PSI of the files isn't built
+            if (!useLightTree && !checkKotlinPackageUsage(environment, ktFiles)) return false
 
             val scope = GlobalSearchScope.filesScope(project, ktFiles.map { it.virtualFile })
                 .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
@@ -326,12 +339,18 @@ object KotlinToJVMBytecodeCompiler {
 
             }
             val firProvider = (session.firProvider as FirProviderImpl)
-            val builder = RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false)
             val resolveTransformer = FirTotalResolveTransformer()
-            val firFiles = ktFiles.map {
-                val firFile = builder.buildFirFile(it)
-                firProvider.recordFile(firFile)
-                firFile
+            val rawFirFiles = if (useLightTree) {
+                val firFiles = buildFirFilesFromLightTree(session, firProvider, ktFiles)
+                val packageFqNames = ktFiles.zip(firFiles) { ktFile, firFile -> ktFile to firFile.packageFqName }.toMap()
+                if (!checkKotlinPackageUsage(environment, ktFiles) { packageFqNames.getValue(it) }) return false
+                firFiles
+            } else {
+                val builder = RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false)
+                ktFiles.map { builder.buildFirFile(it) }
+            }
+            val firFiles = rawFirFiles.onEach {
+                firProvider.recordFile(it)
             }.also {
                 try {
                     resolveTransformer.processFiles(it)
@@ -392,6 +411,35 @@ object KotlinToJVMBytecodeCompiler {
         return writeOutputs(environment, projectConfiguration, chunk, outputs)
     }
 
+    /**
+     * Builds raw FIR of [ktFiles] from light trees, without building their PSI. Files are parsed in parallel,
+     * and only offsets are kept in element sources, so light trees are dropped as soon as a file is converted.
+     * The source of every FIR file is still its [KtFile], which is used by the backend to create file entries.
+     */
+    private fun buildFirFilesFromLightTree(session: FirSession, firProvider: FirProviderImpl, ktFiles: List<KtFile>): List<FirFile> {
+        val builder = LightTree2Fir(session, firProvider.kotlinScopeProvider, stubMode = false)
+        val threads = minOf(Runtime.getRuntime().availableProcessors(), ktFiles.size)
+        if (threads <= 1) {
+            return ktFiles.map { builder.buildFirFile(it.viewProvider.contents, it.name, it.toFirSourceElement()) }
+        }
+
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val tasks = ktFiles.map {
+                Callable { builder.buildFirFile(it.viewProvider.contents, it.name, it.toFirSourceElement()) }
+            }
+            return executor.invokeAll(tasks).map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
     private fun getBuildFilePaths(buildFile: File?, sourceFilePaths: List<String>): List<String> =
         if (buildFile == null) sourceFilePaths
         else sourceFilePaths.map { path ->
@@ -424,6 +472,10 @@ object KotlinToJVMBytecodeCompiler {
 
         if (!checkKotlinPackageUsage(environment, environment.getSourceFiles())) return false
 
+        if (environment.configuration.get(JVMConfigurationKeys.OUTPUT_JAR) != null) {
+            return compileBunchOfSourcesToJar(environment)
+        }
+
         val generationState = analyzeAndGenerate(environment) ?: return false
 
         try {
@@ -434,6 +486,66 @@ object KotlinToJVMBytecodeCompiler {
         }
     }
 
+    // Class files are written to the jar (and compressed in the background) as soon as each part of the module is generated
+    private fun compileBunchOfSourcesToJar(environment: KotlinCoreEnvironment): Boolean {
+        JarOutputSink(environment).use { sink ->
+            val generationState = analyzeAndGenerate(environment, sink.onIndependentPartCompilationEnd) ?: return false
+            try {
+                sink.finish(generationState)
+                return true
+            } finally {
+                generationState.destroy()
+            }
+        }
+    }
+
+    private class JarOutputSink(private val environment: KotlinCoreEnvironment) : Closeable {
+        private val configuration = environment.configuration
+        private val jarPath = configuration.getNotNull(JVMConfigurationKeys.OUTPUT_JAR)
+        private val retainOutputInMemory = configuration.get(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY, false)
+        private val sourceFiles = linkedSetOf<File>()
+        private val writtenFiles = hashSetOf<String>()
+        private var writer: StreamingJarWriter? = null
+
+        val onIndependentPartCompilationEnd = GenerationStateEventCallback { state ->
+            write(state, state.factory.currentOutput)
+            if (!retainOutputInMemory) {
+                state.factory.releaseGeneratedOutput()
+            }
+        }
+
+        fun finish(state: GenerationState) {
+            val writer = write(state, state.factory.asList())
+            CompileEnvironmentUtil.finishJar(writer, configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false))
+
+            if (configuration.getBoolean(CommonConfigurationKeys.REPORT_OUTPUT_FILES)) {
+                val messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
+                messageCollector.report(OUTPUT, OutputMessageUtil.formatOutputMessage(sourceFiles, jarPath))
+            }
+        }
+
+        private fun write(state: GenerationState, outputFiles: List<OutputFile>): StreamingJarWriter {
+            // Main class only depends on the analysis result, so the manifest is known before any class file is generated
+            val writer = writer ?: CompileEnvironmentUtil.createJarWriter(
+                jarPath,
+                MainClassProvider(state, environment).mainClassFqName,
+                !configuration.getBoolean(JVMConfigurationKeys.NO_JAR_COMPRESSION)
+            ).also { writer = it }
+
+            // With RETAIN_OUTPUT_IN_MEMORY, the files of previous parts are still in the factory
+            val newFiles = outputFiles.filter { writtenFiles.add(it.relativePath) }
+            for (outputFile in newFiles) {
+                sourceFiles.addAll(outputFile.sourceFiles)
+            }
+            writer.write(newFiles)
+            return writer
+        }
+
+        override fun close() {
+            writer?.close()
+        }
+    }
+
     fun compileAndExecuteScript(environment: KotlinCoreEnvironment, scriptArgs: List<String>): ExitCode {
         val scriptClass = compileScript(environment) ?: return ExitCode.COMPILATION_ERROR
 
@@ -524,14 +636,22 @@ object KotlinToJVMBytecodeCompiler {
     }
 
     @Suppress("MemberVisibilityCanBePrivate") // Used in ExecuteKotlinScriptMojo
-    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? {
+    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? =
+        analyzeAndGenerate(environment, createOutputFilesFlushingCallbackIfPossible(environment.configuration))
+
+    private fun analyzeAndGenerate(
+        environment: KotlinCoreEnvironment,
+        onIndependentPartCompilationEnd: GenerationStateEventCallback
+    ): GenerationState? {
         val result = repeatAnalysisIfNeeded(analyze(environment, null), environment, null) ?: return null
 
         if (!result.shouldGenerateCode) return null
 
         result.throwIfError()
 
-        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null)
+        return generate(
+            environment, environment.configuration, result, environment.getSourceFiles(), null, onIndependentPartCompilationEnd
+        )
     }
 
     fun analyze(environment: KotlinCoreEnvironment, targetDescription: String?): AnalysisResult? {
@@ -605,7 +725,8 @@ object KotlinToJVMBytecodeCompiler {
         configuration: CompilerConfiguration,
         result: AnalysisResult,
         sourceFiles: List<KtFile>,
-        module: Module?
+        module: Module?,
+        onIndependentPartCompilationEnd: GenerationStateEventCallback = createOutputFilesFlushingCallbackIfPossible(configuration)
     ): GenerationState {
         val isIR = configuration.getBoolean(JVMConfigurationKeys.IR) ||
                 configuration.getBoolean(CommonConfigurationKeys.USE_FIR)
@@ -623,7 +744,7 @@ object KotlinToJVMBytecodeCompiler {
                 ) else DefaultCodegenFactory
             )
             .withModule(module)
-            .onIndependentPartCompilationEnd(createOutputFilesFlushingCallbackIfPossible(configuration))
+            .onIndependentPartCompilationEnd(onIndependentPartCompilationEnd)
             .isIrBackend(isIR)
             .build()
 
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import org.jetbrains.kotlin.backend.common.output.OutputFile
+import java.io.*
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.ArrayDeque
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.jar.JarFile
+import java.util.jar.Manifest
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.ZipException
+
+/**
+ * Writes a jar file while class files are still being generated.
+ *
+ * Entries are compressed on a pool of [threads] threads, but are written in the order they were added, and every entry
+ * has the same timestamp, so the jar depends only on its contents. With [compress] set to `false` entries are STORED.
+ * At most [maxPendingBytes] of uncompressed data is queued for compression: when it's exceeded, [write] waits for it.
+ * Only the name, size and offset of an entry are kept after it's written.
+ *
+ * The jar is written to a temporary file next to [jarFile] which replaces [jarFile] only in [finish], so a failed or
+ * cancelled compilation leaves the previous jar intact. [close] without [finish] deletes the temporary file.
+ * As with [java.util.jar.JarOutputStream], adding two entries with the same name is an error.
+ *
+ * Only the subset of the zip format needed for class files is supported: no comments, no extra fields (except for
+ * the jar marker of the first entry), no encryption. Zip64 is used only to store more than 65535 entries.
+ */
+class StreamingJarWriter @Throws(IOException::class) constructor(
+    private val jarFile: File,
+    manifest: Manifest,
+    private val compress: Boolean = true,
+    threads: Int = Runtime.getRuntime().availableProcessors(),
+    private val maxPendingBytes: Long = DEFAULT_MAX_PENDING_BYTES
+) : Closeable {
+    // Everything the central directory needs, kept until the jar is finished
+    private class EntryHeader(val name: ByteArray, val method: Int, val crc: Long, val size: Int, val compressedSize: Int) {
+        var offset: Long = 0
+    }
+
+    // A compressed entry waiting to be written, dropped right after that
+    private class Entry(val header: EntryHeader, val data: ByteArray)
+
+    private class CountingOutputStream(out: OutputStream) : FilterOutputStream(out) {
+        var count: Long = 0
+            private set
+
+        override fun write(b: Int) {
+            out.write(b)
+            count++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+            count += len
+        }
+    }
+
+    // Unlike Files.createTempFile, this respects umask, so the jar gets the same permissions as any other output file
+    private val tempFile: File = File.createTempFile(jarFile.name + "-", ".tmp", jarFile.absoluteFile.parentFile)
+    private val output = try {
+        CountingOutputStream(BufferedOutputStream(FileOutputStream(tempFile), 1 shl 16))
+    } catch (e: IOException) {
+        tempFile.delete()
+        throw e
+    }
+    private val executor: ExecutorService? = if (compress && threads > 1) Executors.newFixedThreadPool(threads) else null
+
+    private val pending = ArrayDeque<Future<Entry>>()
+    private val pendingSizes = ArrayDeque<Int>()
+    private var pendingBytes = 0L
+
+    private val entries = mutableListOf<EntryHeader>()
+    private val names = hashSetOf<String>()
+
+    private var finished = false
+    private var closed = false
+
+    init {
+        val manifestBytes = ByteArrayOutputStream().also { manifest.write(it) }.toByteArray()
+        write(JarFile.MANIFEST_NAME, manifestBytes)
+    }
+
+    /**
+     * Adds class files to the jar.
+     *
+     * @throws ZipException if an entry with the same name was already added
+     */
+    @Throws(IOException::class)
+    fun write(outputFiles: Collection<OutputFile>) {
+        for (outputFile in outputFiles) {
+            write(outputFile.relativePath, outputFile.asByteArray())
+        }
+    }
+
+    @Throws(IOException::class)
+    fun write(name: String, bytes: ByteArray) {
+        check(!finished) { "Jar is already finished" }
+        if (!names.add(name)) throw ZipException("duplicate entry: $name")
+
+        if (executor == null) {
+            writeEntry(createEntry(name, bytes))
+            return
+        }
+
+        pending.add(executor.submit<Entry> { createEntry(name, bytes) })
+        pendingSizes.add(bytes.size)
+        pendingBytes += bytes.size
+
+        writeCompletedEntries(waitWhile = { pendingBytes > maxPendingBytes })
+    }
+
+    /**
+     * Writes the central directory and replaces [jarFile] with the written jar.
+     */
+    @Throws(IOException::class)
+    fun finish() {
+        if (finished) return
+        check(!closed) { "Jar writer is already closed" }
+        writeCompletedEntries(waitWhile = { true })
+        finished = true
+
+        val centralDirectoryOffset = output.count
+        for (entry in entries) {
+            writeCentralDirectoryHeader(entry)
+        }
+        writeEndOfCentralDirectory(centralDirectoryOffset, output.count - centralDirectoryOffset)
+        output.close()
+        closed = true
+        executor?.shutdown()
+
+        try {
+            Files.move(tempFile.toPath(), jarFile.toPath(), StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: AtomicMoveNotSupportedException) {
+            Files.move(tempFile.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    override fun close() {
+        executor?.shutdownNow()
+        if (closed) return
+        closed = true
+        try {
+            output.close()
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    // Writes the entries which are already compressed, and while waitWhile() holds, waits for the next ones
+    private inline fun writeCompletedEntries(waitWhile: () -> Boolean) {
+        while (pending.isNotEmpty() && (pending.first.isDone || waitWhile())) {
+            val entry = try {
+                pending.removeFirst().get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+            pendingBytes -= pendingSizes.removeFirst()
+            writeEntry(entry)
+        }
+    }
+
+    private fun createEntry(name: String, bytes: ByteArray): Entry {
+        val crc = CRC32().apply { update(bytes) }.value
+        val nameBytes = name.toByteArray(Charsets.UTF_8)
+        if (!compress) {
+            return Entry(EntryHeader(nameBytes, STORED, crc, bytes.size, bytes.size), bytes)
+        }
+
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        try {
+            deflater.setInput(bytes)
+            deflater.finish()
+            var buffer = ByteArray(maxOf(bytes.size / 2, 64))
+            var size = 0
+            while (!deflater.finished()) {
+                if (size == buffer.size) {
+                    buffer = buffer.copyOf(buffer.size * 2)
+                }
+                size += deflater.deflate(buffer, size, buffer.size - size)
+            }
+            return Entry(EntryHeader(nameBytes, DEFLATED, crc, bytes.size, size), buffer)
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private fun writeEntry(entry: Entry) {
+        val header = entry.header
+        header.offset = output.count
+        val extra = if (entries.isEmpty()) JAR_MAGIC else EMPTY
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE)
+        writeShort(versionNeeded(header))
+        writeShort(FLAG_UTF8)
+        writeShort(header.method)
+        writeInt(DOS_TIME)
+        writeInt(header.crc)
+        writeInt(header.compressedSize.toLong())
+        writeInt(header.size.toLong())
+        writeShort(header.name.size)
+        writeShort(extra.size)
+        output.write(header.name)
+        output.write(extra)
+        output.write(entry.data, 0, header.compressedSize)
+        entries.add(header)
+    }
+
+    private fun writeCentralDirectoryHeader(entry: EntryHeader) {
+        if (entry.offset > MAX_32) {
+            throw IOException("Jar file is too large: more than 4 GB of entries")
+        }
+        val extra = if (entry === entries.first()) JAR_MAGIC else EMPTY
+        writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE)
+        writeShort(VERSION_MADE_BY)
+        writeShort(versionNeeded(entry))
+        writeShort(FLAG_UTF8)
+        writeShort(entry.method)
+        writeInt(DOS_TIME)
+        writeInt(entry.crc)
+        writeInt(entry.compressedSize.toLong())
+        writeInt(entry.size.toLong())
+        writeShort(entry.name.size)
+        writeShort(extra.size)
+        writeShort(0) // comment length
+        writeShort(0) // disk number
+        writeShort(0) // internal attributes
+        writeInt(0) // external attributes
+        writeInt(entry.offset)
+        output.write(entry.name)
+        output.write(extra)
+    }
+
+    private fun writeEndOfCentralDirectory(offset: Long, size: Long) {
+        if (offset > MAX_32 || size > MAX_32) {
+            throw IOException("Jar file is too large: more than 4 GB of entries")
+        }
+        val count = entries.size
+        if (count > MAX_16) {
+            val zip64EndOffset = output.count
+            writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+            writeLong(44) // size of the remaining record
+            writeShort(VERSION_ZIP64)
+            writeShort(VERSION_ZIP64)
+            writeInt(0) // number of this disk
+            writeInt(0) // disk with the central directory
+            writeLong(count.toLong())
+            writeLong(count.toLong())
+            writeLong(size)
+            writeLong(offset)
+
+            writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE)
+            writeInt(0) // disk with the zip64 end of central directory
+            writeLong(zip64EndOffset)
+            writeInt(1) // total number of disks
+        }
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+        writeShort(0) // number of this disk
+        writeShort(0) // disk with the central directory
+        writeShort(minOf(count, MAX_16))
+        writeShort(minOf(count, MAX_16))
+        writeInt(size)
+        writeInt(offset)
+        writeShort(0) // comment length
+    }
+
+    private fun versionNeeded(entry: EntryHeader): Int = if (entry.method == DEFLATED) VERSION_DEFLATED else VERSION_STORED
+
+    private fun writeShort(value: Int) {
+        output.write(value and 0xff)
+        output.write((value ushr 8) and 0xff)
+    }
+
+    private fun writeInt(value: Long) {
+        writeShort((value and 0xffff).toInt())
+        writeShort(((value ushr 16) and 0xffff).toInt())
+    }
+
+    private fun writeLong(value: Long) {
+        writeInt(value and MAX_32)
+        writeInt(value ushr 32)
+    }
+
+    companion object {
+        const val DEFAULT_MAX_PENDING_BYTES = 64L shl 20
+
+        private const val LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50L
+        private const val CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50L
+        private const val END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50L
+        private const val ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50L
+        private const val ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50L
+
+        private const val STORED = 0
+        private const val DEFLATED = 8
+
+        private const val VERSION_STORED = 10
+        private const val VERSION_DEFLATED = 20
+        private const val VERSION_ZIP64 = 45
+        private const val VERSION_MADE_BY = 20
+
+        private const val FLAG_UTF8 = 0x800
+
+        // 1980-01-01 00:00:00 in MS-DOS format, the earliest representable time
+        private const val DOS_TIME = (1L shl 21) or (1L shl 16)
+
+        private const val MAX_16 = 0xffff
+        private const val MAX_32 = 0xffffffffL
+
+        // Same as in JarOutputStream: the first entry marks the file as a jar for some operating systems
+        private val JAR_MAGIC = byteArrayOf(0xfe.toByte(), 0xca.toByte(), 0, 0)
+        private val EMPTY = ByteArray(0)
+    }
+}
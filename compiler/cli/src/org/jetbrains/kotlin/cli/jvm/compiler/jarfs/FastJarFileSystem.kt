@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.vfs.DeprecatedVirtualFileSystem
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import java.io.File
+import java.io.IOException
+
+/**
+ * A read-only replacement of the core jar file system for classpath jars.
+ *
+ * Only central directories of jars are read up front, see [FastJarIndex]. Contents of entries are read on demand
+ * through [FastJarHandle]s, which are closed when the file system is disposed, so jars are not kept open after a compilation.
+ * [findFileByPath] returns `null` for jars which can't be read this way (e.g. Zip64 archives),
+ * so that the caller can fall back to the core jar file system.
+ */
+class FastJarFileSystem : DeprecatedVirtualFileSystem(), Disposable {
+    // Roots of the opened jars, or null for jars which can't be opened
+    private val roots = HashMap<String, FastJarVirtualFile?>()
+
+    override fun getProtocol(): String = StandardFileSystems.JAR_PROTOCOL
+
+    override fun findFileByPath(path: String): VirtualFile? {
+        val separatorIndex = path.indexOf(URLUtil.JAR_SEPARATOR)
+        require(separatorIndex >= 0) { "Path in JarFileSystem must contain a separator: $path" }
+        val root = findRoot(path.substring(0, separatorIndex)) ?: return null
+
+        val pathInJar = path.substring(separatorIndex + URLUtil.JAR_SEPARATOR.length)
+        return pathInJar.split('/').fold(root as VirtualFile?) { file, name ->
+            if (name.isEmpty()) file else file?.findChild(name)
+        }
+    }
+
+    private fun findRoot(jarPath: String): FastJarVirtualFile? {
+        synchronized(roots) {
+            if (jarPath in roots) return roots[jarPath]
+
+            val root = try {
+                FastJarVirtualFile.createRoot(this, FastJarHandle(FastJarIndex.getOrCreate(File(jarPath))))
+            } catch (e: IOException) {
+                LOG.debug("Falling back to the core jar file system for $jarPath: ${e.message}")
+                null
+            }
+            roots[jarPath] = root
+            return root
+        }
+    }
+
+    override fun refresh(asynchronous: Boolean) {}
+
+    override fun refreshAndFindFileByPath(path: String): VirtualFile? = findFileByPath(path)
+
+    override fun dispose() {
+        synchronized(roots) {
+            for (root in roots.values) {
+                root?.handle?.close()
+            }
+            roots.clear()
+        }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(FastJarFileSystem::class.java)
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
+
+/**
+ * A jar opened by one [FastJarFileSystem].
+ *
+ * The jar is opened on the first read and stays open until [close] is called, when the file system is disposed.
+ * Reads are positional, so the same channel is used by all threads.
+ */
+class FastJarHandle(val index: FastJarIndex) {
+    private var channel: FileChannel? = null
+    private var closed = false
+
+    @Throws(IOException::class)
+    fun contentsToByteArray(entry: ZipEntryDescription): ByteArray = getChannel().readEntry(entry)
+
+    @Synchronized
+    private fun getChannel(): FileChannel {
+        if (closed) throw IOException("Jar file system is already disposed: ${index.file}")
+        // An interrupt of a thread which reads from the channel closes it, so it may need to be opened again
+        channel?.takeIf { it.isOpen }?.let { return it }
+        return RandomAccessFile(index.file, "r").channel.also { channel = it }
+    }
+
+    @Synchronized
+    fun close() {
+        closed = true
+        channel?.close()
+        channel = null
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.lang.ref.SoftReference
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Entries of a jar file grouped by directory (i.e. by package), read from the central directory of the jar.
+ *
+ * Indices don't depend on a file system or a project, so they are shared between compilations, e.g. in the daemon.
+ * A cached index is reused while the size and the modification time of its jar stay the same.
+ * An index is only a heap copy of the central directory and holds neither a file handle nor a mapping of the jar,
+ * so caching it doesn't lock the jar (as on Windows) or fail when the jar is rewritten: contents of entries are read
+ * by [FastJarHandle] of each compilation.
+ */
+class FastJarIndex private constructor(
+    val file: File,
+    private val length: Long,
+    private val lastModified: Long,
+    val root: Directory
+) {
+    class Directory {
+        private val mutableSubdirectories = HashMap<String, Directory>()
+        private val mutableFiles = HashMap<String, ZipEntryDescription>()
+
+        val subdirectories: Map<String, Directory> get() = mutableSubdirectories
+        val files: Map<String, ZipEntryDescription> get() = mutableFiles
+
+        internal fun getOrCreateSubdirectory(name: String): Directory = mutableSubdirectories.getOrPut(name, ::Directory)
+
+        internal fun addFile(name: String, entry: ZipEntryDescription) {
+            mutableFiles[name] = entry
+        }
+    }
+
+    val timeStamp: Long get() = lastModified
+
+    companion object {
+        private val cache = ConcurrentHashMap<String, SoftReference<FastJarIndex>>()
+
+        @Throws(IOException::class)
+        fun getOrCreate(file: File): FastJarIndex {
+            val path = file.absolutePath
+            val length = file.length()
+            val lastModified = file.lastModified()
+
+            val cached = cache[path]?.get()
+            if (cached != null && cached.length == length && cached.lastModified == lastModified) return cached
+
+            return create(file, length, lastModified).also { cache[path] = SoftReference(it) }
+        }
+
+        private fun create(file: File, length: Long, lastModified: Long): FastJarIndex {
+            if (length > Int.MAX_VALUE) throw IOException("Jar file is too large: $file")
+
+            val entries = RandomAccessFile(file, "r").use { it.channel.parseCentralDirectory() }
+
+            val root = Directory()
+            for (entry in entries) {
+                val segments = entry.relativePath.split('/')
+                var directory = root
+                // For directory entries the last segment is empty
+                for (i in 0 until segments.size - 1) {
+                    directory = directory.getOrCreateSubdirectory(segments[i])
+                }
+                if (!entry.isDirectory) {
+                    directory.addFile(segments.last(), entry)
+                }
+            }
+
+            return FastJarIndex(file, length, lastModified, root)
+        }
+    }
+}
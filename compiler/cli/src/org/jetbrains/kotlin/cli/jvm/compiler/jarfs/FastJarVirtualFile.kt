@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileSystem
+import com.intellij.util.io.URLUtil
+import java.io.InputStream
+import java.io.OutputStream
+
+/**
+ * A file or a directory in a jar opened by [FastJarFileSystem].
+ *
+ * Children of a directory are created on demand, so entries which are never looked up don't get a [VirtualFile].
+ */
+class FastJarVirtualFile private constructor(
+    private val jarFileSystem: FastJarFileSystem,
+    internal val handle: FastJarHandle,
+    private val entryName: String,
+    private val parentDirectory: FastJarVirtualFile?,
+    private val directory: FastJarIndex.Directory?,
+    private val entry: ZipEntryDescription?
+) : VirtualFile() {
+    private val createdChildren = HashMap<String, FastJarVirtualFile>()
+
+    @Volatile
+    private var allChildren: Array<VirtualFile>? = null
+
+    private val entryPath: String by lazy {
+        val parentDirectory = parentDirectory
+        when {
+            parentDirectory == null -> FileUtil.toSystemIndependentName(handle.index.file.path) + URLUtil.JAR_SEPARATOR
+            parentDirectory.parentDirectory == null -> parentDirectory.entryPath + entryName
+            else -> parentDirectory.entryPath + "/" + entryName
+        }
+    }
+
+    override fun getName(): String = entryName
+
+    override fun getFileSystem(): VirtualFileSystem = jarFileSystem
+
+    override fun getPath(): String = entryPath
+
+    override fun isWritable(): Boolean = false
+
+    override fun isDirectory(): Boolean = directory != null
+
+    override fun isValid(): Boolean = true
+
+    override fun getParent(): VirtualFile? = parentDirectory
+
+    override fun findChild(name: String): VirtualFile? {
+        val directory = directory ?: return null
+        synchronized(createdChildren) {
+            createdChildren[name]?.let { return it }
+
+            val child = directory.subdirectories[name]?.let { FastJarVirtualFile(jarFileSystem, handle, name, this, it, null) }
+                ?: directory.files[name]?.let { FastJarVirtualFile(jarFileSystem, handle, name, this, null, it) }
+                ?: return null
+            createdChildren[name] = child
+            return child
+        }
+    }
+
+    override fun getChildren(): Array<VirtualFile> {
+        allChildren?.let { return it }
+        val directory = directory ?: return VirtualFile.EMPTY_ARRAY
+        val names = directory.subdirectories.keys + directory.files.keys
+        return names.mapNotNull(this::findChild).toTypedArray().also { allChildren = it }
+    }
+
+    override fun getOutputStream(requestor: Any?, newModificationStamp: Long, newTimeStamp: Long): OutputStream =
+        throw UnsupportedOperationException("JarFileSystem is read-only")
+
+    override fun contentsToByteArray(): ByteArray = entry?.let(handle::contentsToByteArray) ?: ByteArray(0)
+
+    override fun getTimeStamp(): Long = handle.index.timeStamp
+
+    override fun getLength(): Long = entry?.uncompressedSize?.toLong() ?: 0
+
+    override fun refresh(asynchronous: Boolean, recursive: Boolean, postRunnable: Runnable?) {}
+
+    override fun getInputStream(): InputStream = VfsUtilCore.byteStreamSkippingBOM(contentsToByteArray(), this)
+
+    override fun getModificationStamp(): Long = 0
+
+    companion object {
+        fun createRoot(fileSystem: FastJarFileSystem, handle: FastJarHandle): FastJarVirtualFile =
+            FastJarVirtualFile(fileSystem, handle, "", null, handle.index.root, null)
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler.jarfs
+
+import java.io.EOFException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.util.zip.Inflater
+
+class ZipEntryDescription(
+    val relativePath: String,
+    val compressedSize: Int,
+    val uncompressedSize: Int,
+    val offsetInFile: Int,
+    val compressionKind: CompressionKind
+) {
+    enum class CompressionKind {
+        PLAIN, DEFLATE
+    }
+
+    val isDirectory: Boolean get() = relativePath.endsWith("/")
+}
+
+private const val END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50
+private const val CENTRAL_DIR_ENTRY_SIGNATURE = 0x02014b50
+private const val LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50
+
+private const val END_OF_CENTRAL_DIR_SIZE = 22
+private const val CENTRAL_DIR_ENTRY_SIZE = 46
+private const val LOCAL_FILE_HEADER_SIZE = 30
+
+/**
+ * Reads the central directory of the zip file opened as [this] channel. Only the end of the file and the central directory
+ * itself are read, into a heap buffer: the rest of the file is read by [readEntry] when the contents of an entry are needed.
+ *
+ * Only what's needed for reading class files is supported. Zip64 archives, encrypted or split archives and compression
+ * methods other than DEFLATE are rejected with [IOException], so that the caller can fall back to another implementation.
+ */
+fun FileChannel.parseCentralDirectory(): List<ZipEntryDescription> {
+    val fileSize = size()
+    // The end of central directory record is followed by a comment of at most 65535 bytes
+    val tailSize = minOf(fileSize, (END_OF_CENTRAL_DIR_SIZE + 0xffff).toLong()).toInt()
+    val tail = readFully(fileSize - tailSize, tailSize)
+
+    val endOfCentralDirectoryOffset = tail.findEndOfCentralDirectory()
+    val entriesNumber = tail.getUnsignedShort(endOfCentralDirectoryOffset + 10)
+    val centralDirectorySize = tail.getInt(endOfCentralDirectoryOffset + 12)
+    val centralDirectoryOffset = tail.getInt(endOfCentralDirectoryOffset + 16)
+    if (entriesNumber == 0xffff || centralDirectoryOffset == -1 || centralDirectorySize == -1) {
+        throw IOException("Zip64 archives are not supported")
+    }
+    if (centralDirectoryOffset < 0 || centralDirectorySize < 0 || centralDirectoryOffset.toLong() + centralDirectorySize > fileSize) {
+        throw IOException("Invalid central directory")
+    }
+
+    val centralDirectory = readFully(centralDirectoryOffset.toLong(), centralDirectorySize)
+    val result = ArrayList<ZipEntryDescription>(entriesNumber)
+    var currentOffset = 0
+    repeat(entriesNumber) {
+        if (currentOffset + CENTRAL_DIR_ENTRY_SIZE > centralDirectorySize ||
+            centralDirectory.getInt(currentOffset) != CENTRAL_DIR_ENTRY_SIGNATURE
+        ) {
+            throw IOException("Invalid central directory entry at ${centralDirectoryOffset + currentOffset}")
+        }
+
+        val flags = centralDirectory.getUnsignedShort(currentOffset + 8)
+        if (flags and 1 != 0) throw IOException("Encrypted entries are not supported")
+
+        val compressionKind = when (val method = centralDirectory.getUnsignedShort(currentOffset + 10)) {
+            0 -> ZipEntryDescription.CompressionKind.PLAIN
+            8 -> ZipEntryDescription.CompressionKind.DEFLATE
+            else -> throw IOException("Unsupported compression method: $method")
+        }
+
+        val compressedSize = centralDirectory.getInt(currentOffset + 20)
+        val uncompressedSize = centralDirectory.getInt(currentOffset + 24)
+        val fileNameLength = centralDirectory.getUnsignedShort(currentOffset + 28)
+        val extraLength = centralDirectory.getUnsignedShort(currentOffset + 30)
+        val commentLength = centralDirectory.getUnsignedShort(currentOffset + 32)
+        val localHeaderOffset = centralDirectory.getInt(currentOffset + 42)
+        if (compressedSize < 0 || uncompressedSize < 0 || localHeaderOffset < 0) {
+            throw IOException("Zip64 entries are not supported")
+        }
+        if (currentOffset + CENTRAL_DIR_ENTRY_SIZE + fileNameLength > centralDirectorySize) {
+            throw IOException("Invalid central directory entry at ${centralDirectoryOffset + currentOffset}")
+        }
+
+        val name = centralDirectory.getString(currentOffset + CENTRAL_DIR_ENTRY_SIZE, fileNameLength)
+        result.add(ZipEntryDescription(name, compressedSize, uncompressedSize, localHeaderOffset, compressionKind))
+
+        currentOffset += CENTRAL_DIR_ENTRY_SIZE + fileNameLength + extraLength + commentLength
+    }
+
+    return result
+}
+
+/**
+ * Reads and decompresses the contents of [zipEntryDescription] with positional reads, so the channel can be shared by threads.
+ */
+fun FileChannel.readEntry(zipEntryDescription: ZipEntryDescription): ByteArray {
+    val localHeaderOffset = zipEntryDescription.offsetInFile.toLong()
+    val localHeader = readFully(localHeaderOffset, LOCAL_FILE_HEADER_SIZE)
+    if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+        throw IOException("Invalid local file header of ${zipEntryDescription.relativePath}")
+    }
+    // Name and extra field lengths in the local header may differ from the ones in the central directory
+    val dataOffset = localHeaderOffset + LOCAL_FILE_HEADER_SIZE + localHeader.getUnsignedShort(26) + localHeader.getUnsignedShort(28)
+    val compressedBytes = readFully(dataOffset, zipEntryDescription.compressedSize).array()
+
+    return when (zipEntryDescription.compressionKind) {
+        ZipEntryDescription.CompressionKind.PLAIN -> {
+            if (compressedBytes.size != zipEntryDescription.uncompressedSize) {
+                throw IOException("Sizes of a stored entry ${zipEntryDescription.relativePath} differ")
+            }
+            compressedBytes
+        }
+        ZipEntryDescription.CompressionKind.DEFLATE -> {
+            val inflater = Inflater(true)
+            try {
+                inflater.setInput(compressedBytes)
+                val result = ByteArray(zipEntryDescription.uncompressedSize)
+                var size = 0
+                while (size < result.size) {
+                    val inflated = inflater.inflate(result, size, result.size - size)
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break
+                    size += inflated
+                }
+                if (size != result.size) {
+                    throw IOException("Unexpected end of compressed data in ${zipEntryDescription.relativePath}")
+                }
+                result
+            } finally {
+                inflater.end()
+            }
+        }
+    }
+}
+
+private fun FileChannel.readFully(position: Long, size: Int): ByteBuffer {
+    val buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+    while (buffer.hasRemaining()) {
+        if (read(buffer, position + buffer.position()) < 0) throw EOFException("Unexpected end of zip file")
+    }
+    return buffer
+}
+
+private fun ByteBuffer.findEndOfCentralDirectory(): Int {
+    for (offset in limit() - END_OF_CENTRAL_DIR_SIZE downTo 0) {
+        if (getInt(offset) == END_OF_CENTRAL_DIR_SIGNATURE) return offset
+    }
+    throw IOException("End of central directory record is not found")
+}
+
+private fun ByteBuffer.getUnsignedShort(offset: Int): Int = getShort(offset).toInt() and 0xffff
+
+private fun ByteBuffer.getString(offset: Int, length: Int): String {
+    var isAscii = true
+    for (i in offset until offset + length) {
+        if (get(i) < 0) {
+            isAscii = false
+            break
+        }
+    }
+    if (isAscii) {
+        // Most of the names are ASCII: build the string without a charset decoder
+        val chars = CharArray(length) { get(offset + it).toChar() }
+        return String(chars)
+    }
+
+    val bytes = ByteArray(length)
+    val buffer = duplicate()
+    buffer.position(offset)
+    buffer.get(bytes)
+    // Names without the UTF-8 flag are supposed to be in IBM437, but java.util.zip reads them as UTF-8 as well
+    return String(bytes, Charsets.UTF_8)
+}
@@ -33,15 +33,16 @@ class JvmDependenciesDynamicCompoundIndex : JvmDependenciesIndex {
         }
     }
 
+    // The read lock can't be upgraded to the write one, so the whole update is done under the write lock
     fun addNewIndexForRoots(roots: Iterable<JavaRoot>): JvmDependenciesIndex? =
-        lock.read {
-            val alreadyIndexed = indexedRoots.toHashSet()
+        lock.write {
+            val alreadyIndexed = indices.flatMap { it.indexedRoots.toList() }.toHashSet()
             val newRoots = roots.filter { root -> root !in alreadyIndexed }
             if (newRoots.isEmpty()) null
-            else JvmDependenciesIndexImpl(newRoots).also(this::addIndex)
+            else JvmDependenciesIndexImpl(newRoots).also(indices::add)
         }
 
-    override val indexedRoots: Sequence<JavaRoot> get() = indices.asSequence().flatMap { it.indexedRoots }
+    override val indexedRoots: Sequence<JavaRoot> get() = lock.read { indices.toList() }.asSequence().flatMap { it.indexedRoots }
 
     override fun <T : Any> findClass(
         classId: ClassId,
@@ -100,6 +100,8 @@ open class CompilerCallbackServicesFacadeServer(
 
     override fun lookupTracker_isDoNothing(): Boolean = lookupTracker_isDoNothing
 
+    override fun lookupTracker_supportsBatches(): Boolean = true
+
     override fun compilationCanceledStatus_checkCanceled(): Void? {
         try {
             compilationCanceledStatus!!.checkCanceled()
@@ -19,7 +19,7 @@ class CompilerServicesFacadeBaseClientSideImpl(val serverPort: Int) :
     // TODO: consider invoking connectToServer() in init block
 
     override suspend fun report(category: Int, severity: Int, message: String?, attachment: Serializable?) {
-        log.info("client $serverPort - fun report")
+        log.fine("client $serverPort - fun report")
         sendNoReplyMessage(
             CompilerServicesFacadeBaseServerSide.ReportMessage(
                 category, severity, message, attachment
@@ -97,13 +97,7 @@ class ByteReadChannelWrapper(readChannel: ByteReadChannel, private val log: Logg
                 }
             }
         } else { // optimize for long strings!
-            readPacket(-length)?.let { bytes ->
-                String(
-                    ByteArrayInputStream(
-                        bytes
-                    ).readBytes()
-                )
-            }
+            readPacket(-length)?.let { bytes -> String(bytes, Charsets.UTF_8) }
         }
 
     /** first reads <t>length</t> token (4 bytes), then reads <t>length</t> bytes and returns deserialized object */
@@ -123,13 +117,7 @@ class ByteWriteChannelWrapper(writeChannel: ByteWriteChannel, private val log: L
 
     private interface WriteActorQuery
 
-    private open class ByteData(val bytes: ByteArray) : WriteActorQuery {
-        open fun toByteArray(): ByteArray = bytes
-    }
-
-    private class ObjectWithLength(val lengthBytes: ByteArray, bytes: ByteArray) : ByteData(bytes) {
-        override fun toByteArray() = lengthBytes + bytes
-    }
+    private class ObjectWithLength(val lengthBytes: ByteArray, val bytes: ByteArray) : WriteActorQuery
 
     private class CloseMessage : WriteActorQuery
 
@@ -145,6 +133,8 @@ class ByteWriteChannelWrapper(writeChannel: ByteWriteChannel, private val log: L
         }
     }
 
+    // Messages sent in a row (e.g. pipelined requests and callbacks which don't need a reply) are flushed at once,
+    // when there are no more messages in the queue.
     private val writeActor = GlobalScope.actor<WriteActorQuery>(capacity = Channel.UNLIMITED) {
         consumeEach { message ->
             if (!writeChannel.isClosedForWrite) {
@@ -153,9 +143,10 @@ class ByteWriteChannelWrapper(writeChannel: ByteWriteChannel, private val log: L
                         log.fine("${log.name} closing chanel...")
                         writeChannel.close()
                     }
-                    is ByteData -> {
-                        tryWrite(message.toByteArray(), writeChannel)
-                        if (!writeChannel.isClosedForWrite) {
+                    is ObjectWithLength -> {
+                        tryWrite(message.lengthBytes, writeChannel)
+                        tryWrite(message.bytes, writeChannel)
+                        if (channel.isEmpty && !writeChannel.isClosedForWrite) {
                             try {
                                 writeChannel.flush()
                             } catch (e: Exception) {
@@ -189,7 +180,7 @@ class ByteWriteChannelWrapper(writeChannel: ByteWriteChannel, private val log: L
             }
         }
 
-    private suspend fun writeString(s: String) = writeBytesAndLength(-s.length, s.toByteArray())
+    private suspend fun writeString(s: String) = s.toByteArray(Charsets.UTF_8).let { bytes -> writeBytesAndLength(-bytes.size, bytes) }
 
     fun getLengthBytes(length: Int) =
         ByteBuffer
@@ -198,7 +189,8 @@ class ByteWriteChannelWrapper(writeChannel: ByteWriteChannel, private val log: L
             .array()
 
     suspend fun writeObject(obj: Any?) {
-        if (obj is String) writeString(obj)
+        // Empty strings can't be told from objects by the length, so they are serialized as objects
+        if (obj is String && obj.isNotEmpty()) writeString(obj)
         else writeObjectImpl(obj)
     }
 
@@ -91,6 +91,13 @@ interface CompilerCallbackServicesFacade : Remote {
     @Throws(RemoteException::class)
     fun lookupTracker_isDoNothing(): Boolean
 
+    /**
+     * Returns true if [lookupTracker_record] can receive a [LookupInfoBatch].
+     * The call fails on clients which don't know about batches, and the daemon sends them plain lists of [LookupInfo] instead.
+     */
+    @Throws(RemoteException::class)
+    fun lookupTracker_supportsBatches(): Boolean
+
     // ----------------------------------------------------
     // CompilationCanceledStatus
     @Throws(RemoteException::class, RmiFriendlyCompilationCanceledException::class)
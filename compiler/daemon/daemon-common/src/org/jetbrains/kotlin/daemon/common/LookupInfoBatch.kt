@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon.common
+
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.io.*
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.InflaterInputStream
+
+/**
+ * Lookups sent by the daemon to [CompilerCallbackServicesFacade.lookupTracker_record] at once.
+ *
+ * Instead of a [LookupInfo] object per lookup, the batch keeps a table of [strings] and [RECORD_SIZE] ints per lookup
+ * (ids of the file path, scope and name in the table, scope kind, line and column), and it is serialized deflated.
+ * [LookupInfo]s are created on the receiving side while the batch is iterated.
+ *
+ * Batches are only sent to clients which report [CompilerCallbackServicesFacade.lookupTracker_supportsBatches].
+ */
+class LookupInfoBatch(strings: Array<String>, records: IntArray) : AbstractCollection<LookupInfo>(), Serializable {
+    @Transient
+    private var strings: Array<String> = strings
+
+    @Transient
+    private var records: IntArray = records
+
+    override val size: Int
+        get() = records.size / RECORD_SIZE
+
+    override fun iterator(): Iterator<LookupInfo> = object : Iterator<LookupInfo> {
+        private var offset = 0
+
+        override fun hasNext(): Boolean = offset < records.size
+
+        override fun next(): LookupInfo {
+            if (!hasNext()) throw NoSuchElementException()
+
+            val line = records[offset + 4]
+            val column = records[offset + 5]
+            val lookup = LookupInfo(
+                strings[records[offset]],
+                if (line == Position.NO_POSITION.line && column == Position.NO_POSITION.column) Position.NO_POSITION else Position(line, column),
+                strings[records[offset + 1]],
+                SCOPE_KINDS[records[offset + 3]],
+                strings[records[offset + 2]]
+            )
+            offset += RECORD_SIZE
+            return lookup
+        }
+    }
+
+    @Throws(IOException::class)
+    private fun writeObject(output: ObjectOutputStream) {
+        val bytes = ByteArrayOutputStream()
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            DataOutputStream(DeflaterOutputStream(bytes, deflater).buffered()).use { data ->
+                data.writeInt(strings.size)
+                for (string in strings) {
+                    data.writeUTF(string)
+                }
+                data.writeInt(records.size)
+                for (value in records) {
+                    data.writeInt(value)
+                }
+            }
+        } finally {
+            deflater.end()
+        }
+
+        output.writeInt(bytes.size())
+        bytes.writeTo(output)
+    }
+
+    @Throws(IOException::class)
+    private fun readObject(input: ObjectInputStream) {
+        val bytes = ByteArray(input.readInt())
+        input.readFully(bytes)
+
+        DataInputStream(InflaterInputStream(ByteArrayInputStream(bytes)).buffered()).use { data ->
+            strings = Array(data.readInt()) { data.readUTF() }
+            records = IntArray(data.readInt()) { data.readInt() }
+        }
+    }
+
+    companion object {
+        const val RECORD_SIZE = 6
+
+        private val SCOPE_KINDS = ScopeKind.values()
+
+        // just a random number, but should never be changed to avoid deserialization problems
+        private const val serialVersionUID: Long = 3046279843021745609L
+    }
+}
@@ -16,17 +16,17 @@
 
 package org.jetbrains.kotlin.daemon
 
-import com.intellij.util.containers.StringInterner
-import gnu.trove.THashMap
-import gnu.trove.THashSet
-import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
-import org.jetbrains.kotlin.daemon.common.DummyProfiler
-import org.jetbrains.kotlin.daemon.common.Profiler
-import org.jetbrains.kotlin.daemon.common.withMeasure
+import gnu.trove.TIntArrayList
+import gnu.trove.TIntHashSet
+import gnu.trove.TLongObjectHashMap
+import gnu.trove.TObjectIntHashMap
+import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.incremental.components.LookupInfo
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.rmi.RemoteException
+import java.util.Arrays
 
 
 class RemoteLookupTrackerClient(
@@ -36,25 +36,74 @@ class RemoteLookupTrackerClient(
 ) : LookupTracker {
     private val isDoNothing = profiler.withMeasure(this) { facade.lookupTracker_isDoNothing() }
 
-    // Map: FileName -> (ScopeFqName -> Set<Name[String] | LookupInfo>)
-    private val lookups = THashMap<String, MutableMap<String, MutableSet<Any>>>()
-    private val interner = StringInterner()
+    // Older clients can't deserialize LookupInfoBatch, so they get the lookups as a list of LookupInfo
+    private val sendBatches: Boolean by lazy {
+        try {
+            profiler.withMeasure(this) { facade.lookupTracker_supportsBatches() }
+        } catch (e: RemoteException) {
+            false
+        }
+    }
+
+    // Strings of the current batch and their ids
+    private val strings = ArrayList<String>()
+    private val stringIds = TObjectIntHashMap<String>()
+
+    // Without positions: (file id, scope id) packed into long -> name ids
+    private val lookups = TLongObjectHashMap<TIntHashSet>()
+    // With positions: LookupInfoBatch.RECORD_SIZE ints per lookup, each lookup is recorded once
+    private val records = TIntArrayList()
+    private val recordSet = RecordSet()
+    private var lookupCount = 0
 
     override val requiresPosition: Boolean = profiler.withMeasure(this) { facade.lookupTracker_requiresPosition() }
 
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
         if (isDoNothing) return
 
-        val internedSymbolFqName = interner.intern(scopeFqName)
-        val internedName = interner.intern(name)
+        val fileId = stringId(filePath)
+        val scopeId = stringId(scopeFqName)
+        val nameId = stringId(name)
+
+        if (requiresPosition) {
+            val offset = records.size()
+            records.add(fileId)
+            records.add(scopeId)
+            records.add(nameId)
+            records.add(scopeKind.ordinal)
+            records.add(position.line)
+            records.add(position.column)
+            if (recordSet.add(offset)) {
+                lookupCount++
+            } else {
+                records.remove(offset, LookupInfoBatch.RECORD_SIZE)
+            }
+        } else {
+            val key = (fileId.toLong() shl 32) or (scopeId.toLong() and 0xFFFFFFFFL)
+            var nameIds = lookups[key]
+            if (nameIds == null) {
+                nameIds = TIntHashSet()
+                lookups.put(key, nameIds)
+            }
+            if (nameIds.add(nameId)) {
+                lookupCount++
+            }
+        }
+
+        // Sending lookups synchronously makes the compiler wait for the client if it can't keep up
+        if (lookupCount >= MAX_LOOKUPS_IN_BATCH) {
+            flush()
+        }
+    }
 
-        val objectToPut: Any =
-            if (requiresPosition)
-                LookupInfo(filePath, position, scopeFqName, scopeKind, name)
-            else
-                internedName
+    private fun stringId(string: String): Int {
+        val id = stringIds[string]
+        if (id != 0 || stringIds.containsKey(string)) return id
 
-        lookups.getOrPut(filePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)
+        val newId = strings.size
+        strings.add(string)
+        stringIds.put(string, newId)
+        return newId
     }
 
     init {
@@ -62,26 +111,108 @@ class RemoteLookupTrackerClient(
     }
 
     private fun flush() {
-        if (isDoNothing || lookups.isEmpty) return
+        if (isDoNothing || lookupCount == 0) return
 
-        profiler.withMeasure(this) {
-            facade.lookupTracker_record(
-                lookups.flatMap { (filePath, lookupsByFile) ->
-                    lookupsByFile.flatMap { (scopeFqName, lookupsByScopeFqName) ->
-                        lookupsByScopeFqName.map { lookupInfoOrString ->
-                            if (requiresPosition)
-                                lookupInfoOrString as LookupInfo
-                            else
-                                LookupInfo(
-                                    filePath, Position.NO_POSITION, scopeFqName, ScopeKind.CLASSIFIER,
-                                    lookupInfoOrString as String
-                                )
-                        }
-                    }
+        if (!requiresPosition) {
+            lookups.forEachEntry { key, nameIds ->
+                val fileId = (key ushr 32).toInt()
+                val scopeId = key.toInt()
+                nameIds.forEach { nameId ->
+                    records.add(fileId)
+                    records.add(scopeId)
+                    records.add(nameId)
+                    records.add(ScopeKind.CLASSIFIER.ordinal)
+                    records.add(Position.NO_POSITION.line)
+                    records.add(Position.NO_POSITION.column)
+                    true
                 }
-            )
+                true
+            }
+        }
+
+        val batch = LookupInfoBatch(strings.toTypedArray(), records.toNativeArray())
+        val lookupsToSend: Collection<LookupInfo> = if (sendBatches) batch else ArrayList(batch)
+
+        profiler.withMeasure(this) {
+            facade.lookupTracker_record(lookupsToSend)
         }
 
+        strings.clear()
+        stringIds.clear()
         lookups.clear()
+        records.clear()
+        recordSet.clear()
+        lookupCount = 0
+    }
+
+    /**
+     * Offsets of distinct lookups in [records], in an open addressing hash table: a slot holds the offset plus one, or 0 if it's free.
+     */
+    private inner class RecordSet {
+        private var slots = IntArray(INITIAL_RECORD_SET_CAPACITY)
+        private var count = 0
+
+        fun add(offset: Int): Boolean {
+            if ((count + 1) * 2 > slots.size) {
+                rehash(slots.size * 2)
+            }
+
+            val mask = slots.size - 1
+            var index = hash(offset) and mask
+            while (true) {
+                val slot = slots[index]
+                if (slot == 0) {
+                    slots[index] = offset + 1
+                    count++
+                    return true
+                }
+                if (recordsEqual(slot - 1, offset)) return false
+                index = (index + 1) and mask
+            }
+        }
+
+        fun clear() {
+            if (slots.size > INITIAL_RECORD_SET_CAPACITY) {
+                slots = IntArray(INITIAL_RECORD_SET_CAPACITY)
+            } else {
+                Arrays.fill(slots, 0)
+            }
+            count = 0
+        }
+
+        private fun rehash(capacity: Int) {
+            val oldSlots = slots
+            slots = IntArray(capacity)
+            val mask = capacity - 1
+            for (slot in oldSlots) {
+                if (slot == 0) continue
+                var index = hash(slot - 1) and mask
+                while (slots[index] != 0) {
+                    index = (index + 1) and mask
+                }
+                slots[index] = slot
+            }
+        }
+
+        private fun hash(offset: Int): Int {
+            var hash = 0
+            for (i in offset until offset + LookupInfoBatch.RECORD_SIZE) {
+                hash = hash * 31 + records[i]
+            }
+            return hash xor (hash ushr 16)
+        }
+
+        private fun recordsEqual(first: Int, second: Int): Boolean {
+            for (i in 0 until LookupInfoBatch.RECORD_SIZE) {
+                if (records[first + i] != records[second + i]) return false
+            }
+            return true
+        }
+    }
+
+    companion object {
+        private const val MAX_LOOKUPS_IN_BATCH = 64 * 1024
+
+        private const val INITIAL_RECORD_SET_CAPACITY = 1024
     }
 }
@@ -7,6 +7,7 @@ package org.jetbrains.kotlin.fir.backend
 
 import com.intellij.psi.PsiCompiledElement
 import org.jetbrains.kotlin.fir.FirElement
+import org.jetbrains.kotlin.fir.FirLightSourceElement
 import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.psi
 import org.jetbrains.kotlin.fir.references.FirReference
@@ -35,6 +36,8 @@ import org.jetbrains.kotlin.types.Variance
 internal fun <T : IrElement> FirElement.convertWithOffsets(
     f: (startOffset: Int, endOffset: Int) -> T
 ): T {
+    val source = source
+    if (source is FirLightSourceElement) return f(source.startOffset, source.endOffset)
     if (psi is PsiCompiledElement) return f(-1, -1)
     val startOffset = psi?.startOffsetSkippingComments ?: -1
     val endOffset = psi?.endOffset ?: -1
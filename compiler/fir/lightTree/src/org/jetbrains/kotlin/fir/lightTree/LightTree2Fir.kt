@@ -12,6 +12,7 @@ import com.intellij.openapi.vfs.CharsetToolkit
 import com.intellij.util.diff.FlyweightCapableTreeStructure
 import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.FirSessionBase
+import org.jetbrains.kotlin.fir.FirSourceElement
 import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.lightTree.converter.DeclarationsConverter
 import org.jetbrains.kotlin.fir.scopes.FirScopeProvider
@@ -30,17 +31,16 @@ class LightTree2Fir(
 
     companion object {
         private val parserDefinition = KotlinParserDefinition()
-        private val lexer = KotlinLexer()
 
         fun buildLightTreeBlockExpression(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
             //KotlinParser.parseBlockExpression(builder)
             KotlinLightParser.parseBlockExpression(builder)
             return builder.lightTree
         }
 
         fun buildLightTreeLambdaExpression(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
             //KotlinParser.parseLambdaExpression(builder)
             KotlinLightParser.parseLambdaExpression(builder)
             return builder.lightTree
@@ -56,17 +56,21 @@ class LightTree2Fir(
         return buildFirFile(code, file.name)
     }
 
-    fun buildLightTree(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-        val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+    fun buildLightTree(code: CharSequence): FlyweightCapableTreeStructure<LighterASTNode> {
+        val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
         //KotlinParser(project).parse(null, builder, ktDummyFile)
         KotlinLightParser.parse(builder)
         return builder.lightTree
     }
 
-    fun buildFirFile(code: String, fileName: String): FirFile {
+    /**
+     * Builds raw FIR of a file with the given [code]. Offsets of element sources are offsets in [code].
+     * May be called from several threads at once: each call uses its own lexer, parser and converter.
+     */
+    fun buildFirFile(code: CharSequence, fileName: String, fileSource: FirSourceElement? = null): FirFile {
         val lightTree = buildLightTree(code)
 
         return DeclarationsConverter(session, scopeProvider, stubMode, lightTree)
-            .convertFile(lightTree.root, fileName)
+            .convertFile(lightTree.root, fileName, fileSource)
     }
 }
\ No newline at end of file
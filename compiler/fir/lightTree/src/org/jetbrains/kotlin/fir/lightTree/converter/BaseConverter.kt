@@ -10,6 +10,7 @@ import com.intellij.openapi.util.Ref
 import com.intellij.psi.tree.IElementType
 import com.intellij.util.diff.FlyweightCapableTreeStructure
 import org.jetbrains.kotlin.KtNodeTypes
+import org.jetbrains.kotlin.fir.FirLightSourceElement
 import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.builder.BaseFirBuilder
 import org.jetbrains.kotlin.fir.builder.Context
@@ -20,13 +21,21 @@ import org.jetbrains.kotlin.lexer.KtTokens
 import org.jetbrains.kotlin.lexer.KtTokens.*
 import org.jetbrains.kotlin.name.Name
 
+/**
+ * [offsetInFile] is the offset of the [tree] text in the file: light trees of function bodies and lambdas are built
+ * from their own text, and offsets of their nodes are shifted by it in element sources.
+ */
 open class BaseConverter(
     session: FirSession,
     private val tree: FlyweightCapableTreeStructure<LighterASTNode>,
-    context: Context = Context()
+    context: Context = Context(),
+    protected val offsetInFile: Int = 0
 ) : BaseFirBuilder<LighterASTNode>(session, context) {
     protected val implicitType = FirImplicitTypeRefImpl(null)
 
+    override fun LighterASTNode.toFirSourceElement(): FirLightSourceElement =
+        FirLightSourceElement(startOffset + offsetInFile, endOffset + offsetInFile)
+
     override val LighterASTNode.elementType: IElementType
         get() = this.tokenType
 
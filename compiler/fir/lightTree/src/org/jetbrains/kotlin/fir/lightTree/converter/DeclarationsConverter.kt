@@ -47,15 +47,16 @@ class DeclarationsConverter(
     val scopeProvider: FirScopeProvider,
     private val stubMode: Boolean,
     tree: FlyweightCapableTreeStructure<LighterASTNode>,
-    context: Context = Context()
-) : BaseConverter(session, tree, context) {
-    private val expressionConverter = ExpressionsConverter(session, stubMode, tree, this, context)
+    context: Context = Context(),
+    offsetInFile: Int = 0
+) : BaseConverter(session, tree, context, offsetInFile) {
+    private val expressionConverter = ExpressionsConverter(session, stubMode, tree, this, context, offsetInFile)
 
     /**
      * [org.jetbrains.kotlin.parsing.KotlinParsing.parseFile]
      * [org.jetbrains.kotlin.parsing.KotlinParsing.parsePreamble]
      */
-    fun convertFile(file: LighterASTNode, fileName: String = ""): FirFile {
+    fun convertFile(file: LighterASTNode, fileName: String = "", fileSource: FirSourceElement? = null): FirFile {
         if (file.tokenType != KT_FILE) {
             //TODO throw error
             throw Exception()
@@ -79,7 +80,7 @@ class DeclarationsConverter(
         }
 
         val firFile = FirFileImpl(
-            null,
+            fileSource,
             session,
             fileName,
             context.packageFqName
@@ -106,7 +107,7 @@ class DeclarationsConverter(
                 else -> if (node.isExpression()) container += expressionConverter.getAsFirExpression<FirStatement>(node)
             }
         }
-        return FirBlockImpl(null).apply {
+        return FirBlockImpl(block.toFirSourceElement()).apply {
             firStatements.forEach { firStatement ->
                 if (firStatement !is FirBlock || firStatement.annotations.isNotEmpty()) {
                     statements += firStatement
@@ -117,6 +118,13 @@ class DeclarationsConverter(
         }
     }
 
+    /**
+     * @see org.jetbrains.kotlin.parsing.KotlinExpressionParsing.parseFunctionLiteral
+     */
+    fun convertLambdaExpression(lambdaExpression: LighterASTNode): FirExpression {
+        return expressionConverter.convertLambdaExpression(lambdaExpression)
+    }
+
     /*****    PREAMBLE    *****/
     /**
      * @see org.jetbrains.kotlin.parsing.KotlinParsing.parsePackageName
@@ -158,7 +166,7 @@ class DeclarationsConverter(
         }
 
         return FirImportImpl(
-            null,
+            importDirective.toFirSourceElement(),
             importedFqName,
             isAllUnder,
             aliasName?.let { Name.identifier(it) }
@@ -369,7 +377,7 @@ class DeclarationsConverter(
             }
             val firClass = if (status.modality == Modality.SEALED) {
                 FirSealedClassImpl(
-                    null,
+                    classNode.toFirSourceElement(),
                     session,
                     className,
                     status,
@@ -379,7 +387,7 @@ class DeclarationsConverter(
                 )
             } else {
                 FirClassImpl(
-                    null,
+                    classNode.toFirSourceElement(),
                     session,
                     className,
                     status,
@@ -489,7 +497,7 @@ class DeclarationsConverter(
         val delegatedType = delegatedSuperTypeRef ?: implicitAnyType
 
         return withChildClassName(ANONYMOUS_OBJECT_NAME) {
-            FirAnonymousObjectImpl(null, session, scopeProvider, FirAnonymousObjectSymbol()).apply {
+            FirAnonymousObjectImpl(objectLiteral.toFirSourceElement(), session, scopeProvider, FirAnonymousObjectSymbol()).apply {
                 annotations += modifiers.annotations
                 this.superTypeRefs += superTypeRefs
                 this.typeRef = superTypeRefs.first()
@@ -537,7 +545,7 @@ class DeclarationsConverter(
         val enumEntryName = identifier.nameAsSafeName()
         return withChildClassName(enumEntryName) {
             val firEnumEntry = FirEnumEntryImpl(
-                null,
+                enumEntry.toFirSourceElement(),
                 session,
                 enumEntryName,
                 scopeProvider,
@@ -661,7 +669,7 @@ class DeclarationsConverter(
         }
 
         return FirAnonymousInitializerImpl(
-            null,
+            anonymousInitializer.toFirSourceElement(),
             session,
             if (stubMode) FirEmptyExpressionBlock() else firBlock
         )
@@ -696,7 +704,7 @@ class DeclarationsConverter(
         }
 
         val firConstructor = FirConstructorImpl(
-            null,
+            secondaryConstructor.toFirSourceElement(),
             session,
             delegatedSelfTypeRef,
             null,
@@ -775,7 +783,7 @@ class DeclarationsConverter(
         }
         return withChildClassName(typeAliasName) {
             return@withChildClassName FirTypeAliasImpl(
-                null,
+                typeAlias.toFirSourceElement(),
                 session,
                 typeAliasName,
                 status,
@@ -829,7 +837,7 @@ class DeclarationsConverter(
         return if (isLocal) {
             val receiver = delegateExpression?.let { expressionConverter.getAsFirExpression<FirExpression>(it, "Incorrect delegate expression") }
             FirPropertyImpl(
-                null,
+                property.toFirSourceElement(),
                 session,
                 returnType,
                 null,
@@ -860,7 +868,7 @@ class DeclarationsConverter(
                 expressionConverter.getAsFirExpression<FirExpression>(it, "Should have delegate")
             }
             FirPropertyImpl(
-                null,
+                property.toFirSourceElement(),
                 session,
                 returnType,
                 receiverType,
@@ -925,7 +933,7 @@ class DeclarationsConverter(
 
         val name = identifier.nameAsSafeName()
         return FirPropertyImpl(
-            null,
+            entry.toFirSourceElement(),
             session,
             firType ?: implicitType,
             null,
@@ -971,7 +979,7 @@ class DeclarationsConverter(
         val status = FirDeclarationStatusImpl(modifiers.getVisibility(), Modality.FINAL)
 
         val firAccessor = FirPropertyAccessorImpl(
-            null,
+            getterOrSetter.toFirSourceElement(),
             session,
             returnType ?: if (isGetter) propertyTypeRef else implicitUnitType,
             FirPropertyAccessorSymbol(),
@@ -1007,7 +1015,7 @@ class DeclarationsConverter(
         }
 
         return FirValueParameterImpl(
-            null,
+            setterParameter.toFirSourceElement(),
             session,
             if (firValueParameter.returnTypeRef == implicitType) propertyTypeRef else firValueParameter.returnTypeRef,
             firValueParameter.name,
@@ -1060,7 +1068,7 @@ class DeclarationsConverter(
         val parentNode = functionDeclaration.getParent()
         val isLocal = !(parentNode?.tokenType == KT_FILE || parentNode?.tokenType == CLASS_BODY)
         val firFunction = if (identifier == null) {
-            FirAnonymousFunctionImpl(null, session, returnType!!, receiverType, FirAnonymousFunctionSymbol(), isLambda = false)
+            FirAnonymousFunctionImpl(functionDeclaration.toFirSourceElement(), session, returnType!!, receiverType, FirAnonymousFunctionSymbol(), isLambda = false)
         } else {
             val functionName = identifier.nameAsSafeName()
             val status = FirDeclarationStatusImpl(
@@ -1078,7 +1086,7 @@ class DeclarationsConverter(
                 isSuspend = modifiers.hasSuspend()
             }
             FirSimpleFunctionImpl(
-                null,
+                functionDeclaration.toFirSourceElement(),
                 session,
                 returnType!!,
                 receiverType,
@@ -1128,7 +1136,8 @@ class DeclarationsConverter(
         }
         return if (!stubMode) {
             val blockTree = LightTree2Fir.buildLightTreeBlockExpression(block.asText)
-            return DeclarationsConverter(session, scopeProvider, stubMode, blockTree, context).convertBlockExpression(blockTree.root)
+            return DeclarationsConverter(session, scopeProvider, stubMode, blockTree, context, offsetInFile + block.startOffset)
+                .convertBlockExpression(blockTree.root)
         } else {
             FirSingleExpressionBlock(
                 FirExpressionStub(null).toReturn()
@@ -1263,7 +1272,7 @@ class DeclarationsConverter(
         }
 
         val firTypeParameter = FirTypeParameterImpl(
-            null,
+            typeParameter.toFirSourceElement(),
             session,
             identifier.nameAsSafeName(),
             FirTypeParameterSymbol(),
@@ -1466,7 +1475,7 @@ class DeclarationsConverter(
 
         val name = identifier.nameAsSafeName()
         val firValueParameter = FirValueParameterImpl(
-            null,
+            valueParameter.toFirSourceElement(),
             session,
             firType ?: implicitType,
             name,
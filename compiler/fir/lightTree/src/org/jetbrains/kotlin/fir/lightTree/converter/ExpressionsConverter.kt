@@ -13,6 +13,7 @@ import org.jetbrains.kotlin.descriptors.Modality
 import org.jetbrains.kotlin.descriptors.Visibilities
 import org.jetbrains.kotlin.fir.FirElement
 import org.jetbrains.kotlin.fir.FirSession
+import org.jetbrains.kotlin.fir.FirSourceElement
 import org.jetbrains.kotlin.fir.FirWhenSubject
 import org.jetbrains.kotlin.fir.builder.*
 import org.jetbrains.kotlin.fir.declarations.FirVariable
@@ -54,8 +55,9 @@ class ExpressionsConverter(
     private val stubMode: Boolean,
     tree: FlyweightCapableTreeStructure<LighterASTNode>,
     private val declarationsConverter: DeclarationsConverter,
-    context: Context = Context()
-) : BaseConverter(session, tree, context) {
+    context: Context = Context(),
+    offsetInFile: Int = 0
+) : BaseConverter(session, tree, context, offsetInFile) {
 
     inline fun <reified R : FirElement> getAsFirExpression(expression: LighterASTNode?, errorReason: String = ""): R {
         return expression?.let { convertExpression(it, errorReason) } as? R ?: (FirErrorExpressionImpl(null, FirSimpleDiagnostic(errorReason, DiagnosticKind.Syntax)) as R)
@@ -67,8 +69,9 @@ class ExpressionsConverter(
             return when (expression.tokenType) {
                 LAMBDA_EXPRESSION -> {
                     val lambdaTree = LightTree2Fir.buildLightTreeLambdaExpression(expression.asText)
-                    ExpressionsConverter(session, stubMode, lambdaTree, declarationsConverter, context)
-                        .convertLambdaExpression(lambdaTree.root)
+                    DeclarationsConverter(
+                        session, declarationsConverter.scopeProvider, stubMode, lambdaTree, context, offsetInFile + expression.startOffset
+                    ).convertLambdaExpression(lambdaTree.root)
                 }
                 BINARY_EXPRESSION -> convertBinaryExpression(expression)
                 BINARY_WITH_TYPE -> convertBinaryWithTypeRHSExpression(expression) {
@@ -117,7 +120,7 @@ class ExpressionsConverter(
      * @see org.jetbrains.kotlin.parsing.KotlinExpressionParsing.parseFunctionLiteral
      * @see org.jetbrains.kotlin.fir.builder.RawFirBuilder.Visitor.visitLambdaExpression
      */
-    private fun convertLambdaExpression(lambdaExpression: LighterASTNode): FirExpression {
+    fun convertLambdaExpression(lambdaExpression: LighterASTNode): FirExpression {
         val valueParameterList = mutableListOf<ValueParameter>()
         var block: LighterASTNode? = null
         lambdaExpression.getChildNodesByType(FUNCTION_LITERAL).first().forEachChildren {
@@ -127,7 +130,7 @@ class ExpressionsConverter(
             }
         }
 
-        return FirAnonymousFunctionImpl(null, session, implicitType, implicitType, FirAnonymousFunctionSymbol(), isLambda = true).apply {
+        return FirAnonymousFunctionImpl(lambdaExpression.toFirSourceElement(), session, implicitType, implicitType, FirAnonymousFunctionSymbol(), isLambda = true).apply {
             context.firFunctions += this
             var destructuringBlock: FirExpression? = null
             for (valueParameter in valueParameterList) {
@@ -186,6 +189,7 @@ class ExpressionsConverter(
     private fun convertBinaryExpression(binaryExpression: LighterASTNode): FirStatement {
         var isLeftArgument = true
         lateinit var operationTokenName: String
+        lateinit var operationReference: LighterASTNode
         var leftArgNode: LighterASTNode? = null
         var rightArgAsFir: FirExpression = FirErrorExpressionImpl(null, FirSimpleDiagnostic("No right operand", DiagnosticKind.Syntax))
         binaryExpression.forEachChildren {
@@ -193,6 +197,7 @@ class ExpressionsConverter(
                 OPERATION_REFERENCE -> {
                     isLeftArgument = false
                     operationTokenName = it.asText
+                    operationReference = it
                 }
                 else -> if (it.isExpression()) {
                     if (isLeftArgument) {
@@ -205,25 +210,27 @@ class ExpressionsConverter(
         }
 
         val operationToken = operationTokenName.getOperationSymbol()
+        val source = binaryExpression.toFirSourceElement()
         when (operationToken) {
             ELVIS ->
                 return getAsFirExpression<FirExpression>(leftArgNode, "No left operand").generateNotNullOrOther(
-                    session, rightArgAsFir, "elvis", null
+                    session, rightArgAsFir, "elvis", source
                 )
             ANDAND, OROR ->
                 return getAsFirExpression<FirExpression>(leftArgNode, "No left operand").generateLazyLogicalOperation(
-                    rightArgAsFir, operationToken == ANDAND, null
+                    rightArgAsFir, operationToken == ANDAND, source
                 )
             in OperatorConventions.IN_OPERATIONS ->
                 return rightArgAsFir.generateContainsOperation(
-                    getAsFirExpression(leftArgNode, "No left operand"), operationToken == NOT_IN, null, null
+                    getAsFirExpression(leftArgNode, "No left operand"), operationToken == NOT_IN,
+                    null, null, source, operationReference.toFirSourceElement()
                 )
         }
         val conventionCallName = operationToken.toBinaryName()
         return if (conventionCallName != null || operationToken == IDENTIFIER) {
-            FirFunctionCallImpl(null).apply {
+            FirFunctionCallImpl(source).apply {
                 calleeReference = FirSimpleNamedReference(
-                    null, conventionCallName ?: operationTokenName.nameAsSafeName(), null
+                    operationReference.toFirSourceElement(), conventionCallName ?: operationTokenName.nameAsSafeName(), null
                 )
                 explicitReceiver = getAsFirExpression(leftArgNode, "No left operand")
                 arguments += rightArgAsFir
@@ -231,9 +238,9 @@ class ExpressionsConverter(
         } else {
             val firOperation = operationToken.toFirOperation()
             if (firOperation in FirOperation.ASSIGNMENTS) {
-                return leftArgNode.generateAssignment(null, rightArgAsFir, firOperation) { getAsFirExpression(this) }
+                return leftArgNode.generateAssignment(source, rightArgAsFir, firOperation) { getAsFirExpression(this) }
             } else {
-                FirOperatorCallImpl(null, firOperation).apply {
+                FirOperatorCallImpl(source, firOperation).apply {
                     arguments += getAsFirExpression<FirExpression>(leftArgNode, "No left operand")
                     arguments += rightArgAsFir
                 }
@@ -262,7 +269,7 @@ class ExpressionsConverter(
         }
 
         val operation = operationTokenName.toFirOperation()
-        return FirTypeOperatorCallImpl(null, operation, firType).apply {
+        return FirTypeOperatorCallImpl(binaryExpression.toFirSourceElement(), operation, firType).apply {
             arguments += leftArgAsFir
         }
     }
@@ -297,10 +304,14 @@ class ExpressionsConverter(
      */
     private fun convertUnaryExpression(unaryExpression: LighterASTNode): FirExpression {
         lateinit var operationTokenName: String
+        lateinit var operationReference: LighterASTNode
         var argument: LighterASTNode? = null
         unaryExpression.forEachChildren {
             when (it.tokenType) {
-                OPERATION_REFERENCE -> operationTokenName = it.asText
+                OPERATION_REFERENCE -> {
+                    operationTokenName = it.asText
+                    operationReference = it
+                }
                 else -> if (it.isExpression()) argument = it
             }
         }
@@ -309,7 +320,7 @@ class ExpressionsConverter(
         val conventionCallName = operationToken.toUnaryName()
         return when {
             operationToken == EXCLEXCL -> {
-                FirCheckNotNullCallImpl(null).apply {
+                FirCheckNotNullCallImpl(unaryExpression.toFirSourceElement()).apply {
                     arguments += getAsFirExpression<FirExpression>(argument, "No operand")
                 }
 
@@ -320,17 +331,18 @@ class ExpressionsConverter(
                         null,
                         argument,
                         callName = conventionCallName,
-                        prefix = unaryExpression.tokenType == PREFIX_EXPRESSION
+                        prefix = unaryExpression.tokenType == PREFIX_EXPRESSION,
+                        source = unaryExpression.toFirSourceElement()
                     ) { getAsFirExpression(this) }
                 }
-                FirFunctionCallImpl(null).apply {
-                    calleeReference = FirSimpleNamedReference(null, conventionCallName, null)
+                FirFunctionCallImpl(unaryExpression.toFirSourceElement()).apply {
+                    calleeReference = FirSimpleNamedReference(operationReference.toFirSourceElement(), conventionCallName, null)
                     explicitReceiver = getAsFirExpression(argument, "No operand")
                 }
             }
             else -> {
                 val firOperation = operationToken.toFirOperation()
-                FirOperatorCallImpl(null, firOperation).apply {
+                FirOperatorCallImpl(unaryExpression.toFirSourceElement(), firOperation).apply {
                     arguments += getAsFirExpression<FirExpression>(argument, "No operand")
                 }
             }
@@ -367,7 +379,7 @@ class ExpressionsConverter(
             if (it.isExpression()) firReceiverExpression = getAsFirExpression(it, "No receiver in class literal")
         }
 
-        return FirGetClassCallImpl(null).apply {
+        return FirGetClassCallImpl(classLiteralExpression.toFirSourceElement()).apply {
             arguments += firReceiverExpression
         }
     }
@@ -393,7 +405,7 @@ class ExpressionsConverter(
             }
         }
 
-        return FirCallableReferenceAccessImpl(null).apply {
+        return FirCallableReferenceAccessImpl(callableReferenceExpression.toFirSourceElement()).apply {
             calleeReference = firCallableReference.calleeReference as FirNamedReference
             explicitReceiver = firReceiverExpression
         }
@@ -436,6 +448,7 @@ class ExpressionsConverter(
      */
     private fun convertCallExpression(callSuffix: LighterASTNode): FirExpression {
         var name: String? = null
+        var nameNode: LighterASTNode? = null
         val firTypeArguments = mutableListOf<FirTypeProjection>()
         val valueArguments = mutableListOf<LighterASTNode>()
         var additionalArgument: FirExpression? = null
@@ -445,6 +458,7 @@ class ExpressionsConverter(
                 when (node.tokenType) {
                     REFERENCE_EXPRESSION -> {
                         name = node.asText
+                        nameNode = node
                     }
                     PARENTHESIZED -> node.getExpressionInParentheses()?.let { process(it) } ?: run {
                         additionalArgument = getAsFirExpression(node, "Incorrect invoke receiver")
@@ -466,15 +480,15 @@ class ExpressionsConverter(
         }
 
         val (calleeReference, explicitReceiver) = when {
-            name != null -> FirSimpleNamedReference(null, name.nameAsSafeName(), null) to null
+            name != null -> FirSimpleNamedReference(nameNode?.toFirSourceElement(), name.nameAsSafeName(), null) to null
             additionalArgument != null -> {
-                FirSimpleNamedReference(null, OperatorNameConventions.INVOKE, null) to additionalArgument!!
+                FirSimpleNamedReference(callSuffix.toFirSourceElement(), OperatorNameConventions.INVOKE, null) to additionalArgument!!
             }
             else -> FirErrorNamedReferenceImpl(null, FirSimpleDiagnostic("Call has no callee", DiagnosticKind.Syntax)) to null
         }
 
         return if (hasArguments) {
-            FirFunctionCallImpl(null).apply {
+            FirFunctionCallImpl(callSuffix.toFirSourceElement()).apply {
                 this.calleeReference = calleeReference
 
                 context.firFunctionCalls += this
@@ -482,7 +496,7 @@ class ExpressionsConverter(
                 context.firFunctionCalls.removeLast()
             }
         } else {
-            FirQualifiedAccessExpressionImpl(null).apply {
+            FirQualifiedAccessExpressionImpl(callSuffix.toFirSourceElement()).apply {
                 this.calleeReference = calleeReference
             }
         }.apply {
@@ -495,7 +509,9 @@ class ExpressionsConverter(
      * @see org.jetbrains.kotlin.parsing.KotlinExpressionParsing.parseStringTemplate
      */
     private fun convertStringTemplate(stringTemplate: LighterASTNode): FirExpression {
-        return stringTemplate.getChildrenAsArray().toInterpolatingCall(null) { convertShortOrLongStringTemplate(it) }
+        return stringTemplate.getChildrenAsArray().toInterpolatingCall(null, stringTemplate.toFirSourceElement()) {
+            convertShortOrLongStringTemplate(it)
+        }
     }
 
     private fun LighterASTNode?.convertShortOrLongStringTemplate(errorReason: String): FirExpression {
@@ -549,7 +565,7 @@ class ExpressionsConverter(
         subjectExpression = subjectVariable?.initializer ?: subjectExpression
         val hasSubject = subjectExpression != null
         val subject = FirWhenSubject()
-        return FirWhenExpressionImpl(null, subjectExpression, subjectVariable).apply {
+        return FirWhenExpressionImpl(whenExpression.toFirSourceElement(), subjectExpression, subjectVariable).apply {
             if (hasSubject) {
                 subject.bind(this)
             }
@@ -558,14 +574,14 @@ class ExpressionsConverter(
                 branches += if (!entry.isElse) {
                     if (hasSubject) {
                         val firCondition = entry.toFirWhenCondition(subject)
-                        FirWhenBranchImpl(null, firCondition, branch)
+                        FirWhenBranchImpl(entry.source, firCondition, branch)
                     } else {
                         val firCondition = entry.toFirWhenConditionWithoutSubject()
-                        FirWhenBranchImpl(null, firCondition, branch)
+                        FirWhenBranchImpl(entry.source, firCondition, branch)
                     }
                 } else {
                     FirWhenBranchImpl(
-                        null, FirElseIfTrueCondition(null), branch
+                        entry.source, FirElseIfTrueCondition(null), branch
                     )
                 }
             }
@@ -579,6 +595,7 @@ class ExpressionsConverter(
     private fun convertWhenEntry(whenEntry: LighterASTNode): WhenEntry {
         var isElse = false
         var firBlock: FirBlock = FirEmptyExpressionBlock()
+        val source = whenEntry.toFirSourceElement()
         val conditions = mutableListOf<FirExpression>()
         whenEntry.forEachChildren {
             when (it.tokenType) {
@@ -591,7 +608,7 @@ class ExpressionsConverter(
             }
         }
 
-        return WhenEntry(conditions, firBlock, isElse)
+        return WhenEntry(conditions, firBlock, source, isElse)
     }
 
     private fun convertWhenConditionExpression(whenCondition: LighterASTNode): FirExpression {
@@ -602,24 +619,34 @@ class ExpressionsConverter(
             }
         }
 
-        return FirOperatorCallImpl(null, FirOperation.EQ).apply {
+        return FirOperatorCallImpl(whenCondition.toFirSourceElement(), FirOperation.EQ).apply {
             arguments += firExpression
         }
     }
 
     private fun convertWhenConditionInRange(whenCondition: LighterASTNode): FirExpression {
         var isNegate = false
+        var operationReference: LighterASTNode? = null
+        var rangeExpression: LighterASTNode? = null
         var firExpression: FirExpression = FirErrorExpressionImpl(null, FirSimpleDiagnostic("No range in condition with range", DiagnosticKind.Syntax))
         whenCondition.forEachChildren {
             when (it.tokenType) {
+                OPERATION_REFERENCE -> {
+                    operationReference = it
+                    isNegate = it.getChildNodesByType(NOT_IN).isNotEmpty()
+                }
                 NOT_IN -> isNegate = true
-                else -> if (it.isExpression()) firExpression = getAsFirExpression(it)
+                else -> if (it.isExpression()) {
+                    rangeExpression = it
+                    firExpression = getAsFirExpression(it)
+                }
             }
         }
 
+        // Sources of the range and of the operation become sources of the `contains` call, see WhenEntry.toFirWhenCondition
         val name = if (isNegate) OperatorNameConventions.NOT else SpecialNames.NO_NAME_PROVIDED
-        return FirFunctionCallImpl(null).apply {
-            calleeReference = FirSimpleNamedReference(null, name, null)
+        return FirFunctionCallImpl(rangeExpression?.toFirSourceElement()).apply {
+            calleeReference = FirSimpleNamedReference(operationReference?.toFirSourceElement(), name, null)
             explicitReceiver = firExpression
         }
     }
@@ -635,7 +662,7 @@ class ExpressionsConverter(
             }
         }
 
-        return FirTypeOperatorCallImpl(null, firOperation, firType)
+        return FirTypeOperatorCallImpl(whenCondition.toFirSourceElement(), firOperation, firType)
     }
 
     /**
@@ -651,8 +678,9 @@ class ExpressionsConverter(
                 else -> if (it.isExpression()) firExpression = getAsFirExpression(it, "No array expression")
             }
         }
-        return FirFunctionCallImpl(null).apply {
-            calleeReference = FirSimpleNamedReference(null, OperatorNameConventions.GET, null)
+        val source = arrayAccess.toFirSourceElement()
+        return FirFunctionCallImpl(source).apply {
+            calleeReference = FirSimpleNamedReference(source, OperatorNameConventions.GET, null)
             explicitReceiver = firExpression
             arguments += indices
         }
@@ -667,7 +695,7 @@ class ExpressionsConverter(
             if (it.isExpression()) firExpressionList += getAsFirExpression<FirExpression>(it, "Incorrect collection literal argument")
         }
 
-        return FirArrayOfCallImpl(null).apply {
+        return FirArrayOfCallImpl(expression.toFirSourceElement()).apply {
             arguments += firExpressionList
         }
     }
@@ -689,9 +717,10 @@ class ExpressionsConverter(
      * @see org.jetbrains.kotlin.fir.builder.RawFirBuilder.Visitor.visitSimpleNameExpression
      */
     private fun convertSimpleNameExpression(referenceExpression: LighterASTNode): FirQualifiedAccessExpression {
-        return FirQualifiedAccessExpressionImpl(null).apply {
+        val source = referenceExpression.toFirSourceElement()
+        return FirQualifiedAccessExpressionImpl(source).apply {
             calleeReference =
-                FirSimpleNamedReference(null, referenceExpression.asText.nameAsSafeName(), null)
+                FirSimpleNamedReference(source, referenceExpression.asText.nameAsSafeName(), null)
         }
     }
 
@@ -709,7 +738,7 @@ class ExpressionsConverter(
             }
         }
 
-        return FirDoWhileLoopImpl(null, firCondition).configure { convertLoopBody(block) }
+        return FirDoWhileLoopImpl(doWhileLoop.toFirSourceElement(), firCondition).configure { convertLoopBody(block) }
     }
 
     /**
@@ -726,7 +755,7 @@ class ExpressionsConverter(
             }
         }
 
-        return FirWhileLoopImpl(null, firCondition).configure { convertLoopBody(block) }
+        return FirWhileLoopImpl(whileLoop.toFirSourceElement(), firCondition).configure { convertLoopBody(block) }
     }
 
     /**
@@ -736,32 +765,37 @@ class ExpressionsConverter(
     private fun convertFor(forLoop: LighterASTNode): FirElement {
         var parameter: ValueParameter? = null
         var rangeExpression: FirExpression = FirErrorExpressionImpl(null, FirSimpleDiagnostic("No range in for loop", DiagnosticKind.Syntax))
+        var rangeSource: FirSourceElement? = null
         var blockNode: LighterASTNode? = null
         forLoop.forEachChildren {
             when (it.tokenType) {
                 VALUE_PARAMETER -> parameter = declarationsConverter.convertValueParameter(it)
-                LOOP_RANGE -> rangeExpression = getAsFirExpression(it, "No range in for loop")
+                LOOP_RANGE -> {
+                    rangeExpression = getAsFirExpression(it, "No range in for loop")
+                    rangeSource = it.getExpressionInParentheses()?.toFirSourceElement()
+                }
                 BODY -> blockNode = it
             }
         }
 
-        return FirBlockImpl(null).apply {
+        val loopSource = forLoop.toFirSourceElement()
+        return FirBlockImpl(loopSource).apply {
             val rangeVal =
-                generateTemporaryVariable(this@ExpressionsConverter.session, null, Name.special("<range>"), rangeExpression)
+                generateTemporaryVariable(this@ExpressionsConverter.session, rangeSource, Name.special("<range>"), rangeExpression)
             statements += rangeVal
             val iteratorVal = generateTemporaryVariable(
-                this@ExpressionsConverter.session, null, Name.special("<iterator>"),
-                FirFunctionCallImpl(null).apply {
-                    calleeReference = FirSimpleNamedReference(null, Name.identifier("iterator"), null)
-                    explicitReceiver = generateResolvedAccessExpression(null, rangeVal)
+                this@ExpressionsConverter.session, rangeSource, Name.special("<iterator>"),
+                FirFunctionCallImpl(loopSource).apply {
+                    calleeReference = FirSimpleNamedReference(loopSource, Name.identifier("iterator"), null)
+                    explicitReceiver = generateResolvedAccessExpression(rangeSource, rangeVal)
                 }
             )
             statements += iteratorVal
             statements += FirWhileLoopImpl(
-                null,
-                FirFunctionCallImpl(null).apply {
-                    calleeReference = FirSimpleNamedReference(null, Name.identifier("hasNext"), null)
-                    explicitReceiver = generateResolvedAccessExpression(null, iteratorVal)
+                loopSource,
+                FirFunctionCallImpl(loopSource).apply {
+                    calleeReference = FirSimpleNamedReference(loopSource, Name.identifier("hasNext"), null)
+                    explicitReceiver = generateResolvedAccessExpression(loopSource, iteratorVal)
                 }
             ).configure {
                 // NB: just body.toFirBlock() isn't acceptable here because we need to add some statements
@@ -773,9 +807,9 @@ class ExpressionsConverter(
                     val firLoopParameter = generateTemporaryVariable(
                         this@ExpressionsConverter.session, null,
                         if (multiDeclaration != null) Name.special("<destruct>") else parameter!!.firValueParameter.name,
-                        FirFunctionCallImpl(null).apply {
-                            calleeReference = FirSimpleNamedReference(null, Name.identifier("next"), null)
-                            explicitReceiver = generateResolvedAccessExpression(null, iteratorVal)
+                        FirFunctionCallImpl(loopSource).apply {
+                            calleeReference = FirSimpleNamedReference(loopSource, Name.identifier("next"), null)
+                            explicitReceiver = generateResolvedAccessExpression(loopSource, iteratorVal)
                         }
                     )
                     if (multiDeclaration != null) {
@@ -826,19 +860,19 @@ class ExpressionsConverter(
      */
     private fun convertTryExpression(tryExpression: LighterASTNode): FirExpression {
         lateinit var tryBlock: FirBlock
-        val catchClauses = mutableListOf<Pair<ValueParameter?, FirBlock>>()
+        val catchClauses = mutableListOf<Triple<ValueParameter?, FirBlock, LighterASTNode>>()
         var finallyBlock: FirBlock? = null
         tryExpression.forEachChildren {
             when (it.tokenType) {
                 BLOCK -> tryBlock = declarationsConverter.convertBlock(it)
-                CATCH -> convertCatchClause(it)?.also { oneClause -> catchClauses += oneClause }
+                CATCH -> convertCatchClause(it)?.also { (parameter, block) -> catchClauses += Triple(parameter, block, it) }
                 FINALLY -> finallyBlock = convertFinally(it)
             }
         }
-        return FirTryExpressionImpl(null, tryBlock, finallyBlock).apply {
-            for ((parameter, block) in catchClauses) {
+        return FirTryExpressionImpl(tryExpression.toFirSourceElement(), tryBlock, finallyBlock).apply {
+            for ((parameter, block, clause) in catchClauses) {
                 if (parameter == null) continue
-                catches += FirCatchImpl(null, parameter.firValueParameter, block)
+                catches += FirCatchImpl(clause.toFirSourceElement(), parameter.firValueParameter, block)
             }
         }
     }
@@ -879,19 +913,23 @@ class ExpressionsConverter(
      */
     private fun convertIfExpression(ifExpression: LighterASTNode): FirExpression {
         var firCondition: FirExpression = FirErrorExpressionImpl(null, FirSimpleDiagnostic("If statement should have condition", DiagnosticKind.Syntax))
+        var conditionSource: FirSourceElement? = null
         var thenBlock: LighterASTNode? = null
         var elseBlock: LighterASTNode? = null
         ifExpression.forEachChildren {
             when (it.tokenType) {
-                CONDITION -> firCondition = getAsFirExpression(it, "If statement should have condition")
+                CONDITION -> {
+                    firCondition = getAsFirExpression(it, "If statement should have condition")
+                    conditionSource = it.getExpressionInParentheses()?.toFirSourceElement()
+                }
                 THEN -> thenBlock = it
                 ELSE -> elseBlock = it
             }
         }
 
-        return FirWhenExpressionImpl(null, null, null).apply {
+        return FirWhenExpressionImpl(ifExpression.toFirSourceElement(), null, null).apply {
             val trueBranch = convertLoopBody(thenBlock)
-            branches += FirWhenBranchImpl(null, firCondition, trueBranch)
+            branches += FirWhenBranchImpl(conditionSource, firCondition, trueBranch)
             val elseBranch = convertLoopBody(elseBlock)
             if (elseBranch !is FirEmptyExpressionBlock) {
                 branches += FirWhenBranchImpl(
@@ -915,7 +953,8 @@ class ExpressionsConverter(
             }
         }
 
-        return (if (isBreak) FirBreakExpressionImpl(null) else FirContinueExpressionImpl(null)).bindLabel(jump)
+        val source = jump.toFirSourceElement()
+        return (if (isBreak) FirBreakExpressionImpl(source) else FirContinueExpressionImpl(source)).bindLabel(jump)
     }
 
     /**
@@ -932,7 +971,7 @@ class ExpressionsConverter(
             }
         }
 
-        return firExpression.toReturn(labelName = labelName)
+        return firExpression.toReturn(returnExpression.toFirSourceElement(), labelName)
     }
 
     /**
@@ -945,7 +984,7 @@ class ExpressionsConverter(
             if (it.isExpression()) firExpression = getAsFirExpression(it, "Nothing to throw")
         }
 
-        return FirThrowExpressionImpl(null, firExpression)
+        return FirThrowExpressionImpl(throwExpression.toFirSourceElement(), firExpression)
     }
 
     /**
@@ -954,7 +993,8 @@ class ExpressionsConverter(
      */
     private fun convertThisExpression(thisExpression: LighterASTNode): FirQualifiedAccessExpression {
         val label: String? = thisExpression.getLabelName()
-        return FirThisReceiverExpressionImpl(null, FirExplicitThisReference(null, label))
+        val source = thisExpression.toFirSourceElement()
+        return FirThisReceiverExpressionImpl(source, FirExplicitThisReference(source, label))
     }
 
     /**
@@ -969,8 +1009,9 @@ class ExpressionsConverter(
             }
         }
 
-        return FirQualifiedAccessExpressionImpl(null).apply {
-            calleeReference = FirExplicitSuperReference(null, superTypeRef)
+        val source = superExpression.toFirSourceElement()
+        return FirQualifiedAccessExpressionImpl(source).apply {
+            calleeReference = FirExplicitSuperReference(source, superTypeRef)
         }
     }
 
@@ -983,7 +1024,9 @@ class ExpressionsConverter(
                 VALUE_ARGUMENT -> container += convertValueArgument(node)
                 LAMBDA_EXPRESSION,
                 LABELED_EXPRESSION,
-                ANNOTATED_EXPRESSION -> container += FirLambdaArgumentExpressionImpl(null, getAsFirExpression(node))
+                ANNOTATED_EXPRESSION -> container += FirLambdaArgumentExpressionImpl(
+                    valueArguments.toFirSourceElement(), getAsFirExpression(node)
+                )
             }
         }
     }
@@ -996,6 +1039,7 @@ class ExpressionsConverter(
         var identifier: String? = null
         var isSpread = false
         var firExpression: FirExpression = FirErrorExpressionImpl(null, FirSimpleDiagnostic("Argument is absent", DiagnosticKind.Syntax))
+        var expressionSource: FirSourceElement? = null
         valueArgument.forEachChildren {
             when (it.tokenType) {
                 VALUE_ARGUMENT_NAME -> identifier = it.asText
@@ -1004,15 +1048,16 @@ class ExpressionsConverter(
                 is KtConstantExpressionElementType -> firExpression = convertConstantExpression(it)
                 else -> if (it.isExpression()) firExpression = getAsFirExpression(it, "Argument is absent")
             }
+            if (it.isExpression()) expressionSource = it.toFirSourceElement()
         }
         return when {
             identifier != null -> FirNamedArgumentExpressionImpl(
-                null,
+                expressionSource,
                 firExpression,
                 isSpread,
                 identifier.nameAsSafeName()
             )
-            isSpread -> FirSpreadArgumentExpressionImpl(null, firExpression)
+            isSpread -> FirSpreadArgumentExpressionImpl(expressionSource, firExpression)
             else -> firExpression
         }
     }
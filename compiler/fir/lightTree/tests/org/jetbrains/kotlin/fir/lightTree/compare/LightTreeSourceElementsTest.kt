@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.lightTree.compare
+
+import com.intellij.testFramework.TestDataPath
+import org.jetbrains.kotlin.fir.FirElement
+import org.jetbrains.kotlin.fir.FirLightSourceElement
+import org.jetbrains.kotlin.fir.builder.AbstractRawFirBuilderTestCase
+import org.jetbrains.kotlin.fir.builder.StubFirScopeProvider
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
+import org.jetbrains.kotlin.fir.psi
+import org.jetbrains.kotlin.fir.render
+import org.jetbrains.kotlin.fir.visitors.FirVisitorVoid
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.JUnit3RunnerWithInners
+import org.junit.runner.RunWith
+
+@TestDataPath("\$PROJECT_ROOT")
+@RunWith(JUnit3RunnerWithInners::class)
+class LightTreeSourceElementsTest : AbstractRawFirBuilderTestCase() {
+    fun testSourcesInBodiesAndLambdas() {
+        doTest(
+            """
+            package test
+
+            class Foo(val x: Int) {
+                fun bar(list: List<Int>): String {
+                    var sum = 0
+                    for (i in list) {
+                        if (i in 1..10 && i != x) sum += i
+                    }
+                    list.forEach { if (it is Int) sum++ else return "error" }
+                    val result = when (sum) {
+                        in 0..5 -> "small"
+                        !in 6..100 -> "large"
+                        else -> "${'$'}sum items"
+                    }
+                    return try { result.substring(startIndex = 1) } catch (e: Exception) { this.toString() }
+                }
+            }
+            """.trimIndent(),
+            "sum++", "\"error\"", "substring", "this"
+        )
+    }
+
+    fun testSourcesInNestedLambdas() {
+        doTest(
+            """
+            fun foo(a: Any?) = run {
+                listOf(1, 2).map { x -> run { a ?: x * 2 } }
+            }
+            """.trimIndent(),
+            "x * 2", "a ?: x * 2"
+        )
+    }
+
+    /**
+     * Checks that raw FIR built from the light tree is the same as the one built from PSI, and that every light tree
+     * source has the offsets of the corresponding PSI element. Each of [expectedSources] must be the text of some light tree source.
+     */
+    private fun doTest(text: String, vararg expectedSources: String) {
+        val firFromPsi = (createPsiFile("test", text) as KtFile).toFirFile(stubMode = false)
+        val firFromLightTree = LightTree2Fir(scopeProvider = StubFirScopeProvider, stubMode = false).buildFirFile(text, "test.kt")
+        assertEquals(firFromPsi.render(), firFromLightTree.render())
+
+        val psiElements = firFromPsi.collectElements()
+        val lightTreeElements = firFromLightTree.collectElements()
+        assertEquals(psiElements.size, lightTreeElements.size)
+
+        val checkedSources = mutableSetOf<String>()
+        for ((psiElement, lightTreeElement) in psiElements.zip(lightTreeElements)) {
+            val lightSource = lightTreeElement.source as? FirLightSourceElement ?: continue
+            val psi = psiElement.psi ?: continue
+            assertEquals(
+                "Wrong source of ${lightTreeElement.render()}",
+                psi.textRange.startOffset to psi.textRange.endOffset,
+                lightSource.startOffset to lightSource.endOffset
+            )
+            checkedSources += text.substring(lightSource.startOffset, lightSource.endOffset)
+        }
+        for (source in expectedSources) {
+            assertTrue("No light tree source for '$source'", source in checkedSources)
+        }
+    }
+
+    private fun FirFile.collectElements(): List<FirElement> {
+        val result = mutableListOf<FirElement>()
+        accept(object : FirVisitorVoid() {
+            override fun visitElement(element: FirElement) {
+                result += element
+                element.acceptChildren(this)
+            }
+        })
+        return result
+    }
+}
@@ -41,6 +41,7 @@ const val FIR_LOGS_PATH = "tmp/fir-logs"
 private val DUMP_FIR = System.getProperty("fir.bench.dump", "true") == "true"
 internal val PASSES = System.getProperty("fir.bench.passes")?.toInt() ?: 3
 internal val SEPARATE_PASS_DUMP = System.getProperty("fir.bench.dump.separate_pass", "false") == "true"
+private val RESOLVE_THREADS = System.getProperty("fir.bench.resolve.threads")?.toInt() ?: 1
 
 class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
@@ -48,6 +49,8 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
     private lateinit var bench: FirResolveBench
     private var bestStatistics: FirResolveBench.TotalStatistics? = null
     private var bestPass: Int = 0
+    private var resolveThreads: Int = 1
+    private val bestTimePerStage = mutableMapOf<Int, MutableMap<String, Long>>()
 
     private fun runAnalysis(moduleData: ModuleData, environment: KotlinCoreEnvironment, useLightTree: Boolean = false) {
         val project = environment.project
@@ -58,7 +61,7 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
             .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
         val librariesScope = ProjectScope.getLibrariesScope(project)
         val session = createSession(environment, scope, librariesScope, moduleData.qualifiedName)
-        val totalTransformer = FirTotalResolveTransformer()
+        val totalTransformer = FirTotalResolveTransformer(resolveThreads)
 
         val firProvider = session.firProvider as FirProviderImpl
         val firFiles = if (useLightTree) {
@@ -71,7 +74,11 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
         //println("Raw FIR up, files: ${firFiles.size}")
 
-        bench.processFiles(firFiles, totalTransformer.transformers)
+        if (resolveThreads > 1) {
+            bench.processFiles(firFiles, totalTransformer)
+        } else {
+            bench.processFiles(firFiles, totalTransformer.transformers)
+        }
 
         val disambiguatedName = moduleData.disambiguatedName()
         dumpFir(disambiguatedName, moduleData, firFiles)
@@ -143,6 +150,10 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
         statistics.report(System.out, "Pass $pass")
 
         saveReport(pass, statistics)
+        val bestTimes = bestTimePerStage.getOrPut(resolveThreads) { mutableMapOf() }
+        for ((stage, measure) in statistics.timePerTransformer) {
+            bestTimes.merge(stage, measure.time) { a, b -> minOf(a, b) }
+        }
         if (statistics.totalTime < (bestStatistics?.totalTime ?: Long.MAX_VALUE)) {
             bestStatistics = statistics
             bestPass = pass
@@ -159,6 +170,27 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
         val bestStatistics = bestStatistics ?: return
         printStatistics(bestStatistics, "Best pass: $bestPass")
         printErrors(bestStatistics)
+        if (RESOLVE_THREADS > 1) {
+            printSpeedup(System.out)
+            PrintStream(FileOutputStream(reportDir().resolve("report-$reportDateStr.log"), true)).use(::printSpeedup)
+        }
+    }
+
+    private fun printSpeedup(stream: PrintStream) {
+        val sequentialTimes = bestTimePerStage[1] ?: return
+        val parallelTimes = bestTimePerStage[RESOLVE_THREADS] ?: return
+        stream.println("========== Speedup with $RESOLVE_THREADS resolve threads (best passes) ==========")
+        stream.println(String.format("%-50s %12s %12s %8s", "Stage", "1 thread", "$RESOLVE_THREADS threads", "Speedup"))
+        for ((stage, sequentialTime) in sequentialTimes) {
+            val parallelTime = parallelTimes[stage] ?: continue
+            stream.println(
+                String.format(
+                    "%-50s %9d ms %9d ms %7.2fx",
+                    stage, sequentialTime / 1_000_000, parallelTime / 1_000_000, sequentialTime.toDouble() / parallelTime
+                )
+            )
+        }
+        stream.println()
     }
 
     private fun saveReport(pass: Int, statistics: FirResolveBench.TotalStatistics) {
@@ -185,7 +217,9 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
     fun testTotalKotlin() {
         for (i in 0 until PASSES) {
-            println("Pass $i")
+            // With several resolve threads, every other pass is single-threaded to compute the speedup of each stage
+            resolveThreads = if (RESOLVE_THREADS > 1 && i % 2 == 0) 1 else RESOLVE_THREADS
+            println("Pass $i, resolve threads: $resolveThreads")
 
             bench = FirResolveBench(withProgress = false)
             runTestOnce(i)
@@ -5,6 +5,7 @@
 
 package org.jetbrains.kotlin.fir.builder
 
+import com.intellij.lang.LighterASTNode
 import com.intellij.psi.PsiElement
 import com.intellij.psi.tree.IElementType
 import org.jetbrains.kotlin.KtNodeTypes.*
@@ -199,9 +200,15 @@ abstract class BaseFirBuilder<T>(val session: FirSession, val context: Context =
 
     /**** Conversion utils ****/
     private fun <T> T.getSourceOrNull(): FirSourceElement? {
-        return if (this is PsiElement) FirPsiSourceElement(this) else null
+        return when (this) {
+            is PsiElement -> FirPsiSourceElement(this)
+            is LighterASTNode -> toFirSourceElement()
+            else -> null
+        }
     }
 
+    protected open fun LighterASTNode.toFirSourceElement(): FirSourceElement = FirLightSourceElement(startOffset, endOffset)
+
     fun generateConstantExpressionByLiteral(expression: T): FirExpression {
         val type = expression.elementType
         val text: String = expression.asText
@@ -262,6 +269,7 @@ abstract class BaseFirBuilder<T>(val session: FirSession, val context: Context =
 
     fun Array<out T?>.toInterpolatingCall(
         base: KtStringTemplateExpression?,
+        baseSource: FirSourceElement? = base?.toFirSourceElement(),
         convertTemplateEntry: T?.(String) -> FirExpression
     ): FirExpression {
         val sb = StringBuilder()
@@ -303,14 +311,14 @@ abstract class BaseFirBuilder<T>(val session: FirSession, val context: Context =
                 }
                 else -> {
                     callCreated = true
-                    FirStringConcatenationCallImpl(base?.toFirSourceElement()).apply {
+                    FirStringConcatenationCallImpl(baseSource).apply {
                         arguments += result!!
                         arguments += nextArgument
                     }
                 }
             }
         }
-        return if (hasExpressions) result!! else FirConstExpressionImpl(base?.toFirSourceElement(), FirConstKind.String, sb.toString())
+        return if (hasExpressions) result!! else FirConstExpressionImpl(baseSource, FirConstKind.String, sb.toString())
     }
 
     /**
@@ -342,12 +350,12 @@ abstract class BaseFirBuilder<T>(val session: FirSession, val context: Context =
         argument: T?,
         callName: Name,
         prefix: Boolean,
+        source: FirSourceElement? = baseExpression?.toFirSourceElement(),
         convert: T.() -> FirExpression
     ): FirExpression {
         if (argument == null) {
             return FirErrorExpressionImpl(argument, FirSimpleDiagnostic("Inc/dec without operand", DiagnosticKind.Syntax))
         }
-        val source = baseExpression?.toFirSourceElement()
         return FirBlockImpl(source).apply {
             val tempName = Name.special("<unary>")
             val temporaryVariable = generateTemporaryVariable(this@BaseFirBuilder.session, source, tempName, argument.convert())
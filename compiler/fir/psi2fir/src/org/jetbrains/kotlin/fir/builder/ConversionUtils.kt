@@ -229,10 +229,10 @@ fun FirExpression.generateContainsOperation(
     argument: FirExpression,
     inverted: Boolean,
     base: KtExpression?,
-    operationReference: KtOperationReferenceExpression?
+    operationReference: KtOperationReferenceExpression?,
+    baseSource: FirSourceElement? = base?.toFirSourceElement(),
+    operationReferenceSource: FirSourceElement? = operationReference?.toFirSourceElement()
 ): FirFunctionCall {
-    val baseSource = base?.toFirSourceElement()
-    val operationReferenceSource = operationReference?.toFirSourceElement()
     val containsCall = FirFunctionCallImpl(baseSource).apply {
         calleeReference = FirSimpleNamedReference(operationReferenceSource, OperatorNameConventions.CONTAINS, null)
         explicitReceiver = this@generateContainsOperation
@@ -19,6 +19,7 @@ import org.jetbrains.kotlin.resolve.calls.inference.model.NewConstraintSystemImp
 import org.jetbrains.kotlin.resolve.calls.tower.KotlinResolutionStatelessCallbacksImpl
 import org.jetbrains.kotlin.types.AbstractTypeApproximator
 import org.jetbrains.kotlin.types.checker.KotlinTypeRefiner
+import org.jetbrains.kotlin.types.checker.NewKotlinTypeChecker
 import org.jetbrains.kotlin.types.model.SimpleTypeMarker
 
 fun ConeTypeContext.hasNullableSuperType(type: ConeKotlinType): Boolean {
@@ -53,7 +54,8 @@ class InferenceComponents(
     }
     val trivialConstraintTypeInferenceOracle = TrivialConstraintTypeInferenceOracle.create(ctx)
     private val incorporator = ConstraintIncorporator(approximator, trivialConstraintTypeInferenceOracle)
-    private val injector = ConstraintInjector(incorporator, approximator, KotlinTypeRefiner.Default)
+    // The session cache of the base type checker context is used for subtyping in constraints
+    private val injector = ConstraintInjector(incorporator, approximator, KotlinTypeRefiner.Default, NewKotlinTypeChecker.Default)
     val resultTypeResolver = ResultTypeResolver(approximator, trivialConstraintTypeInferenceOracle)
 
     fun createConstraintSystem(): NewConstraintSystemImpl {
@@ -13,10 +13,12 @@ import kotlin.contracts.contract
 /*
  * isSynthetic = false for variables that represents actual variables in fir
  * isSynthetic = true for complex expressions (like when expression)
+ *
+ * index is dense: variables of a top-level declaration are numbered from 1, so sets of them can be stored as bitsets
  */
-sealed class DataFlowVariable(private val variableIndexForDebug: Int, val fir: FirElement) {
+sealed class DataFlowVariable(val index: Int, val fir: FirElement) {
     final override fun toString(): String {
-        return "d$variableIndexForDebug"
+        return "d$index"
     }
 }
 
@@ -61,7 +63,7 @@ val RealDataFlowVariable.variableUnderAlias: RealDataFlowVariable
 
 class DataFlowVariableStorage {
     private val fir2DfiMap: MutableMap<FirElement, DataFlowVariable> = mutableMapOf()
-    private var debugIndexCounter: Int = 1
+    private var indexCounter: Int = 1
 
     fun getOrCreateNewRealVariable(symbol: AbstractFirBasedSymbol<*>): RealDataFlowVariable {
         return getOrCreateNewRealVariableImpl(symbol, false)
@@ -74,12 +76,12 @@ class DataFlowVariableStorage {
     private fun getOrCreateNewRealVariableImpl(symbol: AbstractFirBasedSymbol<*>, isThisReference: Boolean): RealDataFlowVariable {
         val fir = symbol.fir
         get(fir)?.let { return it as RealDataFlowVariable }
-        return RealDataFlowVariable(debugIndexCounter++, fir, isThisReference).also { storeVariable(it, fir) }
+        return RealDataFlowVariable(indexCounter++, fir, isThisReference).also { storeVariable(it, fir) }
     }
 
     fun getOrCreateNewSyntheticVariable(fir: FirElement): SyntheticDataFlowVariable {
         get(fir)?.let { return it as SyntheticDataFlowVariable }
-        return SyntheticDataFlowVariable(debugIndexCounter++, fir).also { storeVariable(it, fir) }
+        return SyntheticDataFlowVariable(indexCounter++, fir).also { storeVariable(it, fir) }
     }
 
     fun createAliasVariable(symbol: AbstractFirBasedSymbol<*>, variable: RealDataFlowVariable) {
@@ -87,7 +89,7 @@ class DataFlowVariableStorage {
     }
 
     private fun createAliasVariable(fir: FirElement, variable: RealDataFlowVariable) {
-        AliasedDataFlowVariable(debugIndexCounter++, fir, variable).also { storeVariable(it, fir) }
+        AliasedDataFlowVariable(indexCounter++, fir, variable).also { storeVariable(it, fir) }
     }
 
     fun rebindAliasVariable(aliasVariable: RealDataFlowVariable, newVariable: RealDataFlowVariable) {
@@ -132,7 +134,7 @@ class DataFlowVariableStorage {
 
     fun reset() {
         fir2DfiMap.clear()
-        debugIndexCounter = 1
+        indexCounter = 1
     }
 
     private fun storeVariable(variable: DataFlowVariable, fir: FirElement) {
@@ -8,6 +8,7 @@ package org.jetbrains.kotlin.fir.resolve.dfa
 import com.google.common.collect.ArrayListMultimap
 import com.google.common.collect.Multimap
 import org.jetbrains.kotlin.fir.resolve.calls.ConeInferenceContext
+import java.util.BitSet
 
 class DelegatingFlow(
     val previousFlow: DelegatingFlow?,
@@ -17,12 +18,22 @@ class DelegatingFlow(
     val level: Int = previousFlow?.level?.plus(1) ?: 0
 
     override fun getApprovedInfo(variable: RealDataFlowVariable): FirDataFlowInfo? {
-        val info = MutableFirDataFlowInfo(mutableSetOf(), mutableSetOf())
+        // Most variables have approved info on a single level at most, it is returned as is without copying
+        var singleInfo: FirDataFlowInfo? = null
+        var mergedInfo: MutableFirDataFlowInfo? = null
         collect { flow ->
-            flow.approvedInfos[variable]?.let { info += it }
+            val info = flow.approvedInfos[variable]
+            if (info != null) {
+                val merged = mergedInfo
+                when {
+                    merged != null -> merged += info
+                    singleInfo == null -> singleInfo = info
+                    else -> mergedInfo = (singleInfo as MutableFirDataFlowInfo).copy().apply { this += info }
+                }
+            }
             true
         }
-        return info.takeIf { it.isNotEmpty }
+        return (mergedInfo ?: singleInfo)?.takeIf { it.isNotEmpty }
     }
 
     override fun getConditionalInfos(variable: DataFlowVariable): Collection<ConditionalFirDataFlowInfo> {
@@ -124,6 +135,10 @@ private class ImmutableMultimap<K, V>(private val original: Multimap<K, V>) : Mu
 }
 
 abstract class DelegatingLogicSystem(context: ConeInferenceContext) : LogicSystem(context) {
+    // Indices of variables, reused by every join
+    private val commonVariables = BitSet()
+    private val flowVariables = BitSet()
+
     override val Flow.approvedInfos: MutableApprovedInfos
         get() = (this as DelegatingFlow).approvedInfos
 
@@ -165,14 +180,38 @@ abstract class DelegatingLogicSystem(context: ConeInferenceContext) : LogicSyste
         val flows = flows as Collection<DelegatingFlow>
         val commonFlow = flows.reduce(this::lowestCommonFlow)
 
-        val approvedInfosFromAllFlows = mutableListOf<ApprovedInfos>()
-        flows.forEach {
-            approvedInfosFromAllFlows += it.collectInfos(commonFlow)
+        /*
+         * Only variables with approved info in every flow can have it after the join, so their indices are intersected first.
+         * Usually there are none (e.g. a smartcast in one branch of `if`), and then nothing is copied from the flows
+         */
+        commonVariables.clear()
+        var isFirstFlow = true
+        for (flow in flows) {
+            if (isFirstFlow) {
+                flow.collectVariables(commonFlow, commonVariables)
+                isFirstFlow = false
+            } else {
+                flowVariables.clear()
+                flow.collectVariables(commonFlow, flowVariables)
+                commonVariables.and(flowVariables)
+            }
+            if (commonVariables.isEmpty) break
+        }
+
+        if (!commonVariables.isEmpty) {
+            joinApprovedInfos(flows, commonFlow)
         }
 
+        updateAllReceivers(commonFlow)
+
+        return commonFlow
+    }
+
+    private fun joinApprovedInfos(flows: Collection<DelegatingFlow>, commonFlow: DelegatingFlow) {
+        val approvedInfosFromAllFlows = flows.map { it.collectInfos(commonFlow, commonVariables) }
+
         // approved info
-        val variablesFromApprovedInfos = approvedInfosFromAllFlows.map { it.keys }.intersectSets()
-        for (variable in variablesFromApprovedInfos) {
+        for (variable in approvedInfosFromAllFlows.first().keys) {
             val infos = approvedInfosFromAllFlows.mapNotNull { it[variable] }
             if (infos.size != flows.size) continue
             val intersectedInfo = or(infos)
@@ -184,10 +223,6 @@ abstract class DelegatingLogicSystem(context: ConeInferenceContext) : LogicSyste
                 existingInfo += intersectedInfo
             }
         }
-
-        updateAllReceivers(commonFlow)
-
-        return commonFlow
     }
 
     // ------------------------------- Util functions -------------------------------
@@ -211,14 +246,26 @@ abstract class DelegatingLogicSystem(context: ConeInferenceContext) : LogicSyste
         return left
     }
 
-    private fun DelegatingFlow.collectInfos(untilFlow: DelegatingFlow): ApprovedInfos {
+    private fun DelegatingFlow.collectVariables(untilFlow: DelegatingFlow, destination: BitSet) {
+        traverse(untilFlow) { flow ->
+            for (variable in flow.approvedInfos.keys) {
+                destination.set(variable.index)
+            }
+        }
+    }
+
+    private fun DelegatingFlow.collectInfos(untilFlow: DelegatingFlow, variables: BitSet): ApprovedInfos {
         val approvedInfos: MutableApprovedInfos = mutableMapOf()
 
         // val conditionalInfos: ConditionalInfos = ArrayListMultimap.create()
 
         var flow = this
         while (flow != untilFlow) {
-            flow.approvedInfos.forEach { (variable, info) -> approvedInfos.addInfo(variable, info) }
+            flow.approvedInfos.forEach { (variable, info) ->
+                if (variables[variable.index]) {
+                    approvedInfos.addInfo(variable, info)
+                }
+            }
             /*
              * we don't join conditional infos yet
             flow.conditionalInfos.asMap().forEach { (variable, infos) ->
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.resolve.impl
+
+/**
+ * A list which may be read by any number of threads while it is modified by one thread at a time.
+ *
+ * Readers get an immutable [snapshot]. Elements are appended to the spare capacity of the array before a snapshot
+ * with the new size is published, so appends are amortized O(1) and never visible through previous snapshots.
+ * Removal copies the remaining elements to a new array.
+ */
+internal class ConcurrentReadList<T : Any> {
+    private class Snapshot<T>(val array: Array<Any?>, override val size: Int) : AbstractList<T>(), RandomAccess {
+        @Suppress("UNCHECKED_CAST")
+        override fun get(index: Int): T {
+            if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index: $index, size: $size")
+            return array[index] as T
+        }
+    }
+
+    @Volatile
+    private var current = Snapshot<T>(EMPTY_ARRAY, 0)
+
+    val snapshot: List<T> get() = current
+
+    fun isEmpty(): Boolean = current.size == 0
+
+    fun add(element: T) {
+        val current = current
+        val array = if (current.size < current.array.size) current.array else current.array.copyOf(maxOf(4, current.size * 2))
+        array[current.size] = element
+        this.current = Snapshot(array, current.size + 1)
+    }
+
+    fun addAll(elements: Collection<T>) {
+        for (element in elements) {
+            add(element)
+        }
+    }
+
+    fun removeAll(predicate: (T) -> Boolean): Boolean {
+        val current = current
+        val remaining = current.filterNot(predicate)
+        if (remaining.size == current.size) return false
+        this.current = Snapshot(remaining.toTypedArray<Any?>(), remaining.size)
+        return true
+    }
+
+    private companion object {
+        private val EMPTY_ARRAY = arrayOfNulls<Any?>(0)
+    }
+}
@@ -5,47 +5,112 @@
 
 package org.jetbrains.kotlin.fir.resolve.impl
 
-import org.jetbrains.kotlin.fir.FirSession
+import org.jetbrains.kotlin.fir.resolve.FirProvider
 import org.jetbrains.kotlin.fir.resolve.FirSymbolProvider
-import org.jetbrains.kotlin.fir.resolve.ScopeSession
 import org.jetbrains.kotlin.fir.scopes.FirScope
+import org.jetbrains.kotlin.fir.symbols.CallableId
 import org.jetbrains.kotlin.fir.symbols.impl.FirCallableSymbol
 import org.jetbrains.kotlin.fir.symbols.impl.FirClassLikeSymbol
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.utils.addToStdlib.firstNotNullResult
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Providers of source files are safe to read concurrently, and their content can change (the IDE rebuilds changed files),
+ * so they are asked on every lookup. Other providers build FIR of library and Java classes lazily and are not thread-safe
+ * by themselves, so their answers are cached in concurrent maps of this session, and on a cache miss they are asked
+ * under the lock of this session. Providers of a session only call providers of its dependencies, so these locks are
+ * always taken in the same order. Source providers are expected to come before the others.
+ */
 class FirCompositeSymbolProvider(val providers: List<FirSymbolProvider>) : FirSymbolProvider() {
+    private val sourceProviders = providers.filterIsInstance<FirProvider>()
+    private val otherProviders = providers.filter { it !is FirProvider }
+
+    private val topLevelCallableCache = ConcurrentHashMap<CallableId, List<FirCallableSymbol<*>>>()
+    private val nestedClassifierScopeCache = ConcurrentHashMap<ClassId, Any>()
+    private val packageCache = ConcurrentHashMap<FqName, Any>()
+    private val classCache = ConcurrentHashMap<ClassId, Any>()
+    private val callableNamesInPackageCache = ConcurrentHashMap<FqName, Set<Name>>()
+    private val classNamesInPackageCache = ConcurrentHashMap<FqName, Set<Name>>()
+    private val callableNamesInClassCache = ConcurrentHashMap<ClassId, Set<Name>>()
+    private val nestedClassesNamesInClassCache = ConcurrentHashMap<ClassId, Set<Name>>()
+
     override fun getTopLevelCallableSymbols(packageFqName: FqName, name: Name): List<FirCallableSymbol<*>> {
-        return providers.flatMap { it.getTopLevelCallableSymbols(packageFqName, name) }
+        val fromOtherProviders = topLevelCallableCache.lookupCacheOrCalculate(CallableId(packageFqName, null, name)) {
+            otherProviders.flatMap { it.getTopLevelCallableSymbols(packageFqName, name) }
+        }
+        if (sourceProviders.isEmpty()) return fromOtherProviders
+        return sourceProviders.flatMap { it.getTopLevelCallableSymbols(packageFqName, name) } + fromOtherProviders
     }
 
     override fun getNestedClassifierScope(classId: ClassId): FirScope? {
-        return providers.firstNotNullResult { it.getNestedClassifierScope(classId) }
+        return sourceProviders.firstNotNullResult { it.getNestedClassifierScope(classId) }
+            ?: nestedClassifierScopeCache.lookupNullableCacheOrCalculate(classId) {
+                otherProviders.firstNotNullResult { it.getNestedClassifierScope(classId) }
+            }
     }
 
     override fun getPackage(fqName: FqName): FqName? {
-        return providers.firstNotNullResult { it.getPackage(fqName) }
+        return sourceProviders.firstNotNullResult { it.getPackage(fqName) }
+            ?: packageCache.lookupNullableCacheOrCalculate(fqName) {
+                otherProviders.firstNotNullResult { it.getPackage(fqName) }
+            }
     }
 
     override fun getClassLikeSymbolByFqName(classId: ClassId): FirClassLikeSymbol<*>? {
-        return providers.firstNotNullResult { it.getClassLikeSymbolByFqName(classId) }
+        return sourceProviders.firstNotNullResult { it.getClassLikeSymbolByFqName(classId) }
+            ?: classCache.lookupNullableCacheOrCalculate(classId) {
+                otherProviders.firstNotNullResult { it.getClassLikeSymbolByFqName(classId) }
+            }
     }
 
     override fun getAllCallableNamesInPackage(fqName: FqName): Set<Name> {
-        return providers.flatMapTo(mutableSetOf()) { it.getAllCallableNamesInPackage(fqName) }
+        return collectNames(callableNamesInPackageCache, fqName) { it.getAllCallableNamesInPackage(fqName) }
     }
 
     override fun getClassNamesInPackage(fqName: FqName): Set<Name> {
-        return providers.flatMapTo(mutableSetOf()) { it.getClassNamesInPackage(fqName) }
+        return collectNames(classNamesInPackageCache, fqName) { it.getClassNamesInPackage(fqName) }
     }
 
     override fun getAllCallableNamesInClass(classId: ClassId): Set<Name> {
-        return providers.flatMapTo(mutableSetOf()) { it.getAllCallableNamesInClass(classId) }
+        return collectNames(callableNamesInClassCache, classId) { it.getAllCallableNamesInClass(classId) }
     }
 
     override fun getNestedClassesNamesInClass(classId: ClassId): Set<Name> {
-        return providers.flatMapTo(mutableSetOf()) { it.getNestedClassesNamesInClass(classId) }
+        return collectNames(nestedClassesNamesInClassCache, classId) { it.getNestedClassesNamesInClass(classId) }
+    }
+
+    private inline fun <K> collectNames(
+        cache: ConcurrentHashMap<K, Set<Name>>,
+        key: K,
+        crossinline names: (FirSymbolProvider) -> Set<Name>
+    ): Set<Name> {
+        val fromOtherProviders = cache.lookupCacheOrCalculate(key) {
+            otherProviders.flatMapTo(mutableSetOf()) { names(it) }
+        }
+        if (sourceProviders.isEmpty()) return fromOtherProviders
+        return sourceProviders.flatMapTo(fromOtherProviders.toMutableSet()) { names(it) }
+    }
+
+    // Providers may look up other declarations while computing a value, including ones of this session,
+    // so the value can't be computed inside ConcurrentHashMap.computeIfAbsent
+    private inline fun <K, V : Any> ConcurrentHashMap<K, V>.lookupCacheOrCalculate(key: K, crossinline calculate: () -> V): V {
+        get(key)?.let { return it }
+        return synchronized(this@FirCompositeSymbolProvider) {
+            get(key) ?: calculate().also { put(key, it) }
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private inline fun <K, V : Any> ConcurrentHashMap<K, Any>.lookupNullableCacheOrCalculate(key: K, crossinline calculate: () -> V?): V? {
+        val value = lookupCacheOrCalculate(key) { calculate() ?: NULL_VALUE }
+        return if (value === NULL_VALUE) null else value as V
+    }
+
+    private companion object {
+        // ConcurrentHashMap can't hold nulls, so absence of a declaration is cached as this value
+        private val NULL_VALUE = Any()
     }
 }
@@ -40,6 +40,7 @@ import org.jetbrains.kotlin.types.Variance
 import org.jetbrains.kotlin.util.OperatorNameConventions
 import org.jetbrains.kotlin.utils.addToStdlib.firstNotNullResult
 import java.io.InputStream
+import java.util.concurrent.ConcurrentHashMap
 
 class FirLibrarySymbolProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinScopeProvider) : FirSymbolProvider() {
     private class BuiltInsPackageFragment(
@@ -112,19 +113,28 @@ class FirLibrarySymbolProviderImpl(val session: FirSession, val kotlinScopeProvi
             }
         }
 
-        fun getTopLevelCallableSymbols(name: Name): List<FirCallableSymbol<*>> {
-            return packageProto.`package`.functionList.filter { nameResolver.getName(it.name) == name }.map {
-                memberDeserializer.loadFunction(it).symbol
-            }
+        private val functionsByName: Map<Name, List<ProtoBuf.Function>> by lazy {
+            packageProto.`package`.functionList.groupBy { nameResolver.getName(it.name) }
         }
 
-        fun getAllCallableNames(): Set<Name> {
-            return packageProto.`package`.functionList.mapTo(mutableSetOf()) { nameResolver.getName(it.name) }
+        private val topLevelCallables = ConcurrentHashMap<Name, List<FirCallableSymbol<*>>>()
+
+        fun getTopLevelCallableSymbols(name: Name): List<FirCallableSymbol<*>> {
+            val functions = functionsByName[name] ?: return emptyList()
+            topLevelCallables[name]?.let { return it }
+            // Loaded outside of computeIfAbsent, as deserialization may look up other declarations of the package.
+            // Only the first list of symbols is published, so every caller gets the same symbols
+            val loaded = functions.map { memberDeserializer.loadFunction(it).symbol }
+            return topLevelCallables.putIfAbsent(name, loaded) ?: loaded
         }
 
-        fun getAllClassNames(): Set<Name> {
-            return classDataFinder.allClassIds.mapTo(mutableSetOf()) { it.shortClassName }
+        fun getAllCallableNames(): Set<Name> = functionsByName.keys
+
+        private val classNames: Set<Name> by lazy {
+            classDataFinder.allClassIds.mapTo(mutableSetOf()) { it.shortClassName }
         }
+
+        fun getAllClassNames(): Set<Name> = classNames
     }
 
     override fun getPackage(fqName: FqName): FqName? {
@@ -23,6 +23,7 @@ import org.jetbrains.kotlin.fir.visitors.FirDefaultVisitorVoid
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.Name
+import java.util.concurrent.ConcurrentHashMap
 
 class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinScopeProvider) : FirProvider() {
     override fun getFirCallableContainerFile(symbol: FirCallableSymbol<*>): FirFile? {
@@ -37,7 +38,7 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
     }
 
     override fun getTopLevelCallableSymbols(packageFqName: FqName, name: Name): List<FirCallableSymbol<*>> {
-        return (state.callableMap[CallableId(packageFqName, null, name)] ?: emptyList())
+        return state.callableMap[CallableId(packageFqName, null, name)]?.snapshot ?: emptyList()
     }
 
     override fun getNestedClassifierScope(classId: ClassId): FirScope? {
@@ -59,41 +60,35 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
     }
 
     fun recordFile(file: FirFile) {
-        recordFile(file, state)
+        state.add(collectDeclarations(file))
     }
 
-    private fun recordFile(file: FirFile, state: State) {
-        val packageName = file.packageFqName
-        state.fileMap.merge(packageName, listOf(file)) { a, b -> a + b }
+    /**
+     * Removes all declarations of [file] recorded before, e.g. when the file is going to be recorded again after a change.
+     */
+    fun removeFile(file: FirFile) {
+        state.remove(file)
+    }
+
+    private fun collectDeclarations(file: FirFile): FileDeclarations {
+        val classifiers = mutableListOf<FirClassLikeDeclaration<*>>()
+        val callables = mutableListOf<FirCallableSymbol<*>>()
 
         file.acceptChildren(object : FirDefaultVisitorVoid() {
             override fun visitElement(element: FirElement) {}
 
 
             override fun visitRegularClass(regularClass: FirRegularClass) {
-                val classId = regularClass.symbol.classId
-
-                state.classifierMap[classId] = regularClass
-                state.classifierContainerFileMap[classId] = file
-
-                if (!classId.isNestedClass && !classId.isLocal) {
-                    state.classesInPackage.getOrPut(classId.packageFqName, ::mutableSetOf).add(classId.shortClassName)
-                }
-
+                classifiers += regularClass
                 regularClass.acceptChildren(this)
             }
 
             override fun visitTypeAlias(typeAlias: FirTypeAlias) {
-                val classId = typeAlias.symbol.classId
-                state.classifierMap[classId] = typeAlias
-                state.classifierContainerFileMap[classId] = file
+                classifiers += typeAlias
             }
 
             override fun <F : FirCallableDeclaration<F>> visitCallableDeclaration(callableDeclaration: FirCallableDeclaration<F>) {
-                val symbol = callableDeclaration.symbol
-                val callableId = symbol.callableId
-                state.callableMap.merge(callableId, listOf(symbol)) { a, b -> a + b }
-                state.callableContainerMap[symbol] = file
+                callables += callableDeclaration.symbol
             }
 
             override fun visitConstructor(constructor: FirConstructor) {
@@ -108,36 +103,131 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
                 visitCallableDeclaration(property)
             }
         })
+
+        return FileDeclarations(file, classifiers.toTypedArray(), callables.toTypedArray())
     }
 
+    /**
+     * Declarations of a file visible through the provider. They are collected once when the file is recorded,
+     * so contributions of the file can be removed without visiting it again.
+     */
+    private class FileDeclarations(
+        val file: FirFile,
+        val classifiers: Array<FirClassLikeDeclaration<*>>,
+        val callables: Array<FirCallableSymbol<*>>
+    )
+
     private val state = State()
 
+    /**
+     * The maps may be read by several threads (e.g. by files resolved concurrently), while files are recorded
+     * and removed by one thread at a time. Lists of files and callables grow in place, so recording many files
+     * of the same package is linear in their number, and readers get immutable snapshots of them.
+     */
     private class State {
-        val fileMap = mutableMapOf<FqName, List<FirFile>>()
-        val classifierMap = mutableMapOf<ClassId, FirClassLikeDeclaration<*>>()
-        val classifierContainerFileMap = mutableMapOf<ClassId, FirFile>()
-        val classesInPackage = mutableMapOf<FqName, MutableSet<Name>>()
-        val callableMap = mutableMapOf<CallableId, List<FirCallableSymbol<*>>>()
-        val callableContainerMap = mutableMapOf<FirCallableSymbol<*>, FirFile>()
+        val files = LinkedHashMap<FirFile, FileDeclarations>()
+        // All recorded declarations of a class id with their files, the last one is visible through classifierMap
+        val classifierDeclarations = HashMap<ClassId, MutableList<Pair<FirClassLikeDeclaration<*>, FirFile>>>()
+        val fileMap = ConcurrentHashMap<FqName, ConcurrentReadList<FirFile>>()
+        val classifierMap = ConcurrentHashMap<ClassId, FirClassLikeDeclaration<*>>()
+        val classifierContainerFileMap = ConcurrentHashMap<ClassId, FirFile>()
+        val classesInPackage = ConcurrentHashMap<FqName, MutableSet<Name>>()
+        val callableMap = ConcurrentHashMap<CallableId, ConcurrentReadList<FirCallableSymbol<*>>>()
+        val callableContainerMap = ConcurrentHashMap<FirCallableSymbol<*>, FirFile>()
+
+        @Synchronized
+        fun add(declarations: FileDeclarations) {
+            val file = declarations.file
+            files[file] = declarations
+            fileMap.getOrPut(file.packageFqName) { ConcurrentReadList() }.add(file)
+
+            for (classifier in declarations.classifiers) {
+                val classId = classifier.symbol.classId
+                classifierDeclarations.getOrPut(classId) { mutableListOf() }.add(classifier to file)
+                classifierMap[classId] = classifier
+                classifierContainerFileMap[classId] = file
+
+                if (classifier is FirRegularClass && !classId.isNestedClass && !classId.isLocal) {
+                    classesInPackage.getOrPut(classId.packageFqName) { ConcurrentHashMap.newKeySet() }.add(classId.shortClassName)
+                }
+            }
+
+            for (symbol in declarations.callables) {
+                callableMap.getOrPut(symbol.callableId) { ConcurrentReadList() }.add(symbol)
+                callableContainerMap[symbol] = file
+            }
+        }
+
+        @Synchronized
+        fun remove(file: FirFile) {
+            val declarations = files.remove(file) ?: return
+            fileMap.removeFrom(file.packageFqName) { it === file }
+
+            for (classifier in declarations.classifiers) {
+                val classId = classifier.symbol.classId
+                val remaining = classifierDeclarations[classId] ?: continue
+                remaining.removeAll { it.first === classifier }
+
+                // The same class may be (erroneously) declared in another file, which stays visible then
+                val visible = remaining.lastOrNull()
+                if (visible == null) {
+                    classifierDeclarations.remove(classId)
+                    classifierMap.remove(classId)
+                    classifierContainerFileMap.remove(classId)
+                } else {
+                    classifierMap[classId] = visible.first
+                    classifierContainerFileMap[classId] = visible.second
+                }
+
+                if (classifier is FirRegularClass && !classId.isNestedClass && !classId.isLocal &&
+                    remaining.none { it.first is FirRegularClass }
+                ) {
+                    classesInPackage.removeFrom(classId.packageFqName, classId.shortClassName)
+                }
+            }
+
+            val removedCallables = declarations.callables.toSet()
+            for (callableId in removedCallables.mapTo(mutableSetOf()) { it.callableId }) {
+                callableMap.removeFrom(callableId) { it in removedCallables }
+            }
+            for (symbol in declarations.callables) {
+                callableContainerMap.remove(symbol, file)
+            }
+        }
 
+        private fun <K, V : Any> MutableMap<K, ConcurrentReadList<V>>.removeFrom(key: K, predicate: (V) -> Boolean) {
+            val list = this[key] ?: return
+            if (list.removeAll(predicate) && list.isEmpty()) {
+                remove(key)
+            }
+        }
+
+        private fun <K, V> MutableMap<K, MutableSet<V>>.removeFrom(key: K, value: V) {
+            val set = this[key] ?: return
+            if (set.remove(value) && set.isEmpty()) {
+                remove(key)
+            }
+        }
+
+        @Synchronized
         fun setFrom(other: State) {
+            files.clear()
+            classifierDeclarations.clear()
             fileMap.clear()
             classifierMap.clear()
             classifierContainerFileMap.clear()
+            classesInPackage.clear()
             callableMap.clear()
             callableContainerMap.clear()
 
-            fileMap.putAll(other.fileMap)
-            classifierMap.putAll(other.classifierMap)
-            classifierContainerFileMap.putAll(other.classifierContainerFileMap)
-            callableMap.putAll(other.callableMap)
-            callableContainerMap.putAll(other.callableContainerMap)
-            classesInPackage.putAll(other.classesInPackage)
+            for (declarations in other.files.values) {
+                add(declarations)
+            }
         }
     }
 
     override fun getFirFilesByPackage(fqName: FqName): List<FirFile> {
-        return state.fileMap[fqName].orEmpty()
+        return state.fileMap[fqName]?.snapshot.orEmpty()
     }
 
     override fun getFirClassifierByFqName(classId: ClassId): FirClassLikeDeclaration<*>? {
@@ -150,7 +240,7 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
     @TestOnly
     fun ensureConsistent(files: List<FirFile>) {
         val newState = State()
-        files.forEach { recordFile(it, newState) }
+        files.forEach { newState.add(collectDeclarations(it)) }
 
         val failures = mutableListOf<String>()
 
@@ -202,10 +292,10 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
 
         }
 
-        checkMMapDiff("fileMap", state.fileMap, newState.fileMap)
+        checkMMapDiff("fileMap", state.fileMap.mapValues { it.value.snapshot }, newState.fileMap.mapValues { it.value.snapshot })
         checkMapDiff("classifierMap", state.classifierMap, newState.classifierMap)
         checkMapDiff("classifierContainerFileMap", state.classifierContainerFileMap, newState.classifierContainerFileMap)
-        checkMMapDiff("callableMap", state.callableMap, newState.callableMap)
+        checkMMapDiff("callableMap", state.callableMap.mapValues { it.value.snapshot }, newState.callableMap.mapValues { it.value.snapshot })
         checkMapDiff("callableContainerMap", state.callableContainerMap, newState.callableContainerMap)
 
         if (!rebuildIndex) {
@@ -8,20 +8,94 @@ package org.jetbrains.kotlin.fir.resolve.transformers
 import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 // TODO: rework, see rr/FIR/semoro-dev FirStagesTransformerFactory
-class FirTotalResolveTransformer {
+/**
+ * Runs all resolve phases over a set of files. Each phase is finished for all files before the next one starts.
+ *
+ * With [parallelism] greater than one, files are transformed concurrently by that many threads in phases which
+ * modify only the file being transformed (see [CONCURRENT_PHASES]); every thread uses its own transformer instance.
+ * Other phases may resolve declarations of other files on demand, so they are still run by a single thread.
+ */
+class FirTotalResolveTransformer(private val parallelism: Int = 1) {
 
-    val transformers: List<FirTransformer<Nothing?>> =
+    private val phases: List<FirResolvePhase> =
         FirResolvePhase.values()
             .drop(1) // to remove RAW_FIR phase
-            .map { it.createTransformerByPhase() }
+
+    val transformers: List<FirTransformer<Nothing?>> = phases.map { it.createTransformerByPhase() }
 
     fun processFiles(files: List<FirFile>) {
-        for (transformer in transformers) {
-            for (firFile in files) {
-                firFile.transform<FirFile, Nothing?>(transformer, null)
+        processFiles(files) { transformer, firFile ->
+            firFile.transform<FirFile, Nothing?>(transformer, null)
+        }
+    }
+
+    fun processFiles(files: List<FirFile>, transformFile: (FirTransformer<Nothing?>, FirFile) -> Unit) {
+        if (parallelism <= 1 || files.size <= 1) {
+            for (transformer in transformers) {
+                for (firFile in files) {
+                    transformFile(transformer, firFile)
+                }
             }
+            return
         }
+
+        val executor = Executors.newFixedThreadPool(parallelism)
+        try {
+            for ((phase, transformer) in phases.zip(transformers)) {
+                if (phase in CONCURRENT_PHASES) {
+                    processPhaseConcurrently(phase, files, executor, transformFile)
+                } else {
+                    for (firFile in files) {
+                        transformFile(transformer, firFile)
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun processPhaseConcurrently(
+        phase: FirResolvePhase,
+        files: List<FirFile>,
+        executor: ExecutorService,
+        transformFile: (FirTransformer<Nothing?>, FirFile) -> Unit
+    ) {
+        val nextFile = AtomicInteger()
+        val workers = List(minOf(parallelism, files.size)) {
+            Callable {
+                val transformer = phase.createTransformerByPhase()
+                while (true) {
+                    val index = nextFile.getAndIncrement()
+                    if (index >= files.size) break
+                    transformFile(transformer, files[index])
+                }
+            }
+        }
+
+        for (result in executor.invokeAll(workers)) {
+            try {
+                result.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    companion object {
+        val CONCURRENT_PHASES = setOf(
+            FirResolvePhase.IMPORTS,
+            FirResolvePhase.SEALED_CLASS_INHERITORS,
+            FirResolvePhase.TYPES,
+            FirResolvePhase.STATUS,
+            FirResolvePhase.BODY_RESOLVE
+        )
     }
 }
@@ -12,11 +12,12 @@ import org.jetbrains.kotlin.fir.resolve.memberScopeProvider
 import org.jetbrains.kotlin.fir.scopes.FirScope
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
+import java.util.concurrent.ConcurrentHashMap
 
 class FirMemberScopeProvider : FirSessionComponent {
 
-    private val declaredMemberCache = mutableMapOf<FirClass<*>, FirScope>()
-    private val nestedClassifierCache = mutableMapOf<FirClass<*>, FirNestedClassifierScope>()
+    private val declaredMemberCache = ConcurrentHashMap<FirClass<*>, FirScope>()
+    private val nestedClassifierCache = ConcurrentHashMap<FirClass<*>, FirNestedClassifierScope>()
 
     fun declaredMemberScope(
         klass: FirClass<*>,
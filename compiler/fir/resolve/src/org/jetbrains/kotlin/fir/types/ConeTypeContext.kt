@@ -27,6 +27,7 @@ import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.FqNameUnsafe
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.types.AbstractTypeCheckerContext
+import org.jetbrains.kotlin.types.TypeConstructorSubtypingCache
 import org.jetbrains.kotlin.types.TypeSystemCommonBackendContext
 import org.jetbrains.kotlin.types.checker.convertVariance
 import org.jetbrains.kotlin.types.model.*
@@ -533,6 +534,9 @@ class ConeTypeCheckerContext(
         return a == b
     }
 
+    override val subtypingCache: TypeConstructorSubtypingCache?
+        get() = session.correspondingSupertypesCache.subtypingCache
+
     override fun prepareType(type: KotlinTypeMarker): KotlinTypeMarker {
         return super<ConeInferenceContext>.prepareType(type)
     }
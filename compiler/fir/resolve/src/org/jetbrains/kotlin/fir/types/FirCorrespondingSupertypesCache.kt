@@ -14,13 +14,21 @@ import org.jetbrains.kotlin.fir.resolve.constructType
 import org.jetbrains.kotlin.fir.resolve.toSymbol
 import org.jetbrains.kotlin.fir.symbols.impl.FirClassLikeSymbol
 import org.jetbrains.kotlin.types.AbstractTypeCheckerContext
+import org.jetbrains.kotlin.types.TypeConstructorSubtypingCache
 import org.jetbrains.kotlin.types.model.CaptureStatus
 import org.jetbrains.kotlin.types.model.SimpleTypeMarker
 import org.jetbrains.kotlin.types.model.TypeConstructorMarker
+import java.util.concurrent.ConcurrentHashMap
 
 class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSessionComponent {
-    private val context = ConeTypeCheckerContext(isErrorTypeEqualsToAnything = false, isStubTypeEqualsToAnything = true, session = session)
-    private val cache = HashMap<FirClassLikeSymbol<*>, Map<FirClassLikeSymbol<*>, List<ConeClassLikeType>>?>(1000, 0.5f)
+    private val context = createContext()
+    // ConcurrentHashMap can't hold nulls, so symbols whose supertypes can't be computed are mapped to NO_SUPERTYPES
+    private val cache = ConcurrentHashMap<FirClassLikeSymbol<*>, Map<FirClassLikeSymbol<*>, List<ConeClassLikeType>>>(1000, 0.5f)
+
+    val subtypingCache = TypeConstructorSubtypingCache()
+
+    private fun createContext() =
+        ConeTypeCheckerContext(isErrorTypeEqualsToAnything = false, isStubTypeEqualsToAnything = true, session = session)
 
     fun getCorrespondingSupertypes(
         type: ConeKotlinType,
@@ -31,11 +39,14 @@ class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSess
         val symbol = type.lookupTag.toSymbol(session) ?: return null
         if (symbol == supertypeConstructor) return listOf(captureType(type))
 
-        if (symbol !in cache) {
-            cache[symbol] = computeSupertypesMap(type, symbol)
+        val supertypesMap = cache[symbol] ?: run {
+            // Not computed under the map's lock: the computation goes to symbol providers, which may need supertypes of other classes
+            val computed = computeSupertypesMap(type, symbol) ?: NO_SUPERTYPES
+            cache.putIfAbsent(symbol, computed) ?: computed
         }
+        if (supertypesMap === NO_SUPERTYPES) return null
 
-        val resultTypes = cache[symbol]?.getOrDefault(supertypeConstructor, emptyList()) ?: return null
+        val resultTypes = supertypesMap.getOrDefault(supertypeConstructor, emptyList())
         if (type.typeArguments.isEmpty()) return resultTypes
 
         val capturedType = captureType(type)
@@ -53,6 +64,8 @@ class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSess
         subtypeSymbol: FirClassLikeSymbol<*>
     ): Map<FirClassLikeSymbol<*>, List<ConeClassLikeType>>? {
         val resultingMap = HashMap<FirClassLikeSymbol<*>, List<ConeClassLikeType>>()
+        // Supertypes traversal keeps its state in the context, so a shared one can't be used by several threads
+        val context = createContext()
 
         val subtypeClassSymbol: FirClassLikeSymbol<*> = with(context) {
             subtype.typeConstructor() as? FirClassLikeSymbol<*> ?: return null
@@ -69,7 +82,7 @@ class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSess
         if (context.anySupertype(
                 defaultType,
                 { it !is ConeClassLikeType || it.lookupTag.toSymbol(session) !is FirClassLikeSymbol<*> }
-            ) { supertype -> computeSupertypePolicyAndPutInMap(supertype, subtypeSymbol, resultingMap) }
+            ) { supertype -> computeSupertypePolicyAndPutInMap(context, supertype, subtypeSymbol, resultingMap) }
         ) {
             return null
         }
@@ -78,6 +91,7 @@ class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSess
     }
 
     private fun computeSupertypePolicyAndPutInMap(
+        context: ConeTypeCheckerContext,
         supertype: SimpleTypeMarker,
         subtypeSymbol: FirClassLikeSymbol<*>,
         resultingMap: MutableMap<FirClassLikeSymbol<*>, List<ConeClassLikeType>>
@@ -98,4 +112,8 @@ class FirCorrespondingSupertypesCache(private val session: FirSession) : FirSess
             }
         }
     }
+
+    private companion object {
+        private val NO_SUPERTYPES = emptyMap<FirClassLikeSymbol<*>, List<ConeClassLikeType>>()
+    }
 }
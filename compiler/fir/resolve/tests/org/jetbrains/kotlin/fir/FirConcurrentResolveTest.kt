@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir
+
+import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.fir.builder.RawFirBuilder
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.resolve.firProvider
+import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
+import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveTransformer
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.TestJdkKind
+
+class FirConcurrentResolveTest : AbstractFirResolveWithSessionTestCase() {
+    override fun createEnvironment(): KotlinCoreEnvironment {
+        return createEnvironmentWithJdk(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+    }
+
+    fun testSameFirAsInSerialResolve() {
+        val expected = resolveAndRender(parallelism = 1)
+
+        // Races don't show up on every run, so the concurrent resolve is repeated a few times
+        repeat(5) {
+            assertEquals(expected, resolveAndRender(parallelism = 4))
+        }
+    }
+
+    private fun resolveAndRender(parallelism: Int): String {
+        val session = createSession(environment, GlobalSearchScope.EMPTY_SCOPE)
+        val firProvider = session.firProvider as FirProviderImpl
+        val builder = RawFirBuilder(session, firProvider.kotlinScopeProvider, stubMode = false)
+
+        val firFiles = sources().map { (name, text) ->
+            builder.buildFirFile(KtPsiFactory(project).createFile(name, text)).also { firProvider.recordFile(it) }
+        }
+        FirTotalResolveTransformer(parallelism).processFiles(firFiles)
+
+        return render(firFiles)
+    }
+
+    private fun render(firFiles: List<FirFile>): String =
+        StringBuilder().apply { firFiles.forEach { it.accept(FirRenderer(this), null) } }.toString()
+
+    // Every file uses classes of the other ones, so their supertypes and members are resolved from several threads at once
+    private fun sources(): List<Pair<String, String>> = (0 until FILE_COUNT).map { i ->
+        val next = (i + 1) % FILE_COUNT
+        "f$i.kt" to """
+            package p
+
+            interface Box$i<out T> : Comparable<Box$i<*>> {
+                val value: T
+            }
+
+            open class Base$i<T>(override val value: T) : Box$i<T> {
+                override fun compareTo(other: Box$i<*>): Int = 0
+            }
+
+            class Impl$i(value: String) : Base$i<String>(value), Iterable<Base$next<Int>> {
+                override fun iterator(): Iterator<Base$next<Int>> = null!!
+            }
+
+            fun <T : Comparable<T>> maxOf$i(a: T, b: T): T = if (a > b) a else b
+
+            fun use$i(impl: Impl$i, other: Impl$next): String {
+                var sum = maxOf$next(Base$next(1).value, other.compareTo(other))
+                for (box in impl) {
+                    sum += box.value
+                }
+                return impl.value + sum + use$next(other, Impl${(next + 1) % FILE_COUNT}("x")).length
+            }
+        """.trimIndent()
+    }
+
+    companion object {
+        private const val FILE_COUNT = 16
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir
+
+import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.fir.builder.RawFirBuilder
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.resolve.firProvider
+import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.TestJdkKind
+
+class FirProviderImplTest : AbstractFirResolveWithSessionTestCase() {
+    private lateinit var provider: FirProviderImpl
+    private lateinit var builder: RawFirBuilder
+
+    override fun createEnvironment(): KotlinCoreEnvironment {
+        return createEnvironmentWithJdk(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+    }
+
+    override fun setUp() {
+        super.setUp()
+        val session = createSession(environment, GlobalSearchScope.EMPTY_SCOPE)
+        provider = session.firProvider as FirProviderImpl
+        builder = RawFirBuilder(session, provider.kotlinScopeProvider, stubMode = true)
+    }
+
+    fun testRemoveFile() {
+        val a = record("a.kt", "package p\nclass A { class Nested }\nfun foo() {}\nfun bar() {}")
+        val b = record("b.kt", "package p\nclass B\nfun foo(x: Int) {}")
+
+        provider.removeFile(a)
+
+        assertEquals(listOf(b), provider.getFirFilesByPackage(P))
+        assertNull(provider.getClassLikeSymbolByFqName(classId("A")))
+        assertNull(provider.getClassLikeSymbolByFqName(ClassId(P, FqName("A.Nested"), false)))
+        assertNull(provider.getFirClassifierContainerFileIfAny(classId("A")))
+        assertEquals(setOf(Name.identifier("B")), provider.getClassNamesInPackage(P))
+        assertEquals(listOf(b), provider.getTopLevelCallableSymbols(P, Name.identifier("foo")).map { provider.getFirCallableContainerFile(it) })
+        assertEquals(emptyList<Any>(), provider.getTopLevelCallableSymbols(P, Name.identifier("bar")))
+
+        provider.removeFile(b)
+
+        assertEquals(emptyList<FirFile>(), provider.getFirFilesByPackage(P))
+        assertEquals(emptySet<Name>(), provider.getClassNamesInPackage(P))
+        assertEquals(emptyList<Any>(), provider.getTopLevelCallableSymbols(P, Name.identifier("foo")))
+    }
+
+    fun testRemoveFileWithRedeclaredClass() {
+        val first = record("first.kt", "package p\nclass A")
+        val second = record("second.kt", "package p\nclass A")
+
+        provider.removeFile(second)
+
+        assertEquals(first, provider.getFirClassifierContainerFileIfAny(classId("A")))
+        assertNotNull(provider.getClassLikeSymbolByFqName(classId("A")))
+        assertEquals(setOf(Name.identifier("A")), provider.getClassNamesInPackage(P))
+
+        provider.removeFile(first)
+
+        assertNull(provider.getClassLikeSymbolByFqName(classId("A")))
+        assertEquals(emptySet<Name>(), provider.getClassNamesInPackage(P))
+    }
+
+    fun testRemoveNestedClassKeepsTopLevelClassWithSameName() {
+        record("a.kt", "package p\nclass Nested")
+        val b = record("b.kt", "package p\nclass B { class Nested }")
+
+        provider.removeFile(b)
+
+        assertEquals(setOf(Name.identifier("Nested")), provider.getClassNamesInPackage(P))
+    }
+
+    fun testRecordAfterRemove() {
+        val old = record("a.kt", "package p\nclass A\nfun foo() {}")
+        provider.removeFile(old)
+        val new = record("a.kt", "package p\nclass A\nfun foo() {}")
+
+        assertEquals(new, provider.getFirClassifierContainerFile(classId("A")))
+        assertEquals(1, provider.getTopLevelCallableSymbols(P, Name.identifier("foo")).size)
+        assertEquals(listOf(new), provider.getFirFilesByPackage(P))
+    }
+
+    private fun record(name: String, text: String): FirFile {
+        val file = builder.buildFirFile(KtPsiFactory(project).createFile(name, text))
+        provider.recordFile(file)
+        return file
+    }
+
+    private fun classId(name: String) = ClassId(P, Name.identifier(name))
+
+    companion object {
+        private val P = FqName("p")
+    }
+}
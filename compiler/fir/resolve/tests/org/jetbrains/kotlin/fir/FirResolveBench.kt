@@ -15,6 +15,7 @@ import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
 import org.jetbrains.kotlin.fir.references.FirErrorNamedReference
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
+import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveTransformer
 import org.jetbrains.kotlin.fir.types.*
 import org.jetbrains.kotlin.fir.visitors.FirDefaultVisitorVoid
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
@@ -146,13 +147,19 @@ class FirResolveBench(val withProgress: Boolean) {
 
     private fun runStage(transformer: FirTransformer<Nothing?>, firFileSequence: Sequence<FirFile>) {
         for (firFile in firFileSequence) {
-            var fail = false
-            val before = vmStateSnapshot()
-            val time = measureNanoTime {
-                try {
-                    transformer.transformFile(firFile, null)
-                } catch (e: Throwable) {
-                    val ktFile = firFile.psi
+            runStage(transformer, firFile, recordWallTime = true)
+        }
+    }
+
+    private fun runStage(transformer: FirTransformer<Nothing?>, firFile: FirFile, recordWallTime: Boolean) {
+        var fail = false
+        val before = vmStateSnapshot()
+        val time = measureNanoTime {
+            try {
+                transformer.transformFile(firFile, null)
+            } catch (e: Throwable) {
+                val ktFile = firFile.psi
+                synchronized(this) {
                     if (ktFile is KtFile) {
                         println("Fail in file: ${ktFile.virtualFilePath}")
                         fails += FailureInfo(transformer::class, e, ktFile.virtualFilePath)
@@ -160,18 +167,81 @@ class FirResolveBench(val withProgress: Boolean) {
                         println("Fail in file: ${firFile.packageFqName} / ${firFile.name}")
                         fails += FailureInfo(transformer::class, e, firFile.packageFqName.asString() + "/" + firFile.name)
                     }
-                    fail = true
-                    //println(ktFile.text)
-                    //throw e
+                }
+                fail = true
+                //println(ktFile.text)
+                //throw e
+            }
+        }
+        if (!fail) {
+            val after = vmStateSnapshot()
+            val diff = after - before
+            synchronized(this) {
+                if (recordWallTime) {
+                    recordTime(transformer::class, diff, time)
+                } else {
+                    recordThreadTime(transformer::class, diff)
+                }
+            }
+        }
+        //totalLength += StringBuilder().apply { FirRenderer(this).visitFile(firFile) }.length
+    }
+
+    private fun recordThreadTime(stageClass: KClass<*>, diff: VMCounters) {
+        timePerTransformer.computeIfAbsent(stageClass) { Measure() }.apply {
+            this.files += 1
+            this.user += diff.userTime
+            this.cpu += diff.cpuTime
+        }
+    }
+
+    private class StageBounds(val startTime: Long, val startState: VMCounters) {
+        var endTime: Long = startTime
+        var endState: VMCounters = startState
+    }
+
+    /**
+     * Resolves files with [totalTransformer], which may transform several files concurrently.
+     * Stage time is measured from the start of its first file to the end of its last one, as well as GC,
+     * while CPU and user time are still summed over files.
+     */
+    fun processFiles(
+        firFiles: List<FirFile>,
+        totalTransformer: FirTotalResolveTransformer
+    ) {
+        fileCount += firFiles.size
+        val stageBounds = LinkedHashMap<KClass<*>, StageBounds>()
+        try {
+            totalTransformer.processFiles(firFiles) { transformer, firFile ->
+                val stageClass = transformer::class
+                synchronized(stageBounds) {
+                    stageBounds.getOrPut(stageClass) { StageBounds(System.nanoTime(), vmStateSnapshot()) }
+                }
+                runStage(transformer, firFile, recordWallTime = false)
+                val endTime = System.nanoTime()
+                val endState = vmStateSnapshot()
+                synchronized(stageBounds) {
+                    stageBounds.getValue(stageClass).apply {
+                        this.endTime = maxOf(this.endTime, endTime)
+                        this.endState = endState
+                    }
                 }
             }
-            if (!fail) {
-                val after = vmStateSnapshot()
-                val diff = after - before
-                recordTime(transformer::class, diff, time)
+            checkFirProvidersConsistency(firFiles)
 
+            if (fails.any()) {
+                println("ERROR!")
+            }
+        } finally {
+            for ((stageClass, bounds) in stageBounds) {
+                val gcDiff = (bounds.endState - bounds.startState).gcInfo.values
+                timePerTransformer.computeIfAbsent(stageClass) { Measure() }.apply {
+                    this.time += bounds.endTime - bounds.startTime
+                    this.gcCollections += gcDiff.sumBy { it.collections.toInt() }
+                    this.gcTime += gcDiff.sumByLong { it.gcTime }
+                }
             }
-            //totalLength += StringBuilder().apply { FirRenderer(this).visitFile(firFile) }.length
+            collectTypeStatistics(firFiles)
         }
     }
 
@@ -194,102 +264,102 @@ class FirResolveBench(val withProgress: Boolean) {
                 println("ERROR!")
             }
         } finally {
+            collectTypeStatistics(firFiles)
+        }
+    }
 
+    private fun collectTypeStatistics(firFiles: List<FirFile>) {
+        val fileDocumentManager = FileDocumentManager.getInstance()
 
-            val fileDocumentManager = FileDocumentManager.getInstance()
-
-            firFiles.forEach {
-                it.accept(object : FirDefaultVisitorVoid() {
+        firFiles.forEach {
+            it.accept(object : FirDefaultVisitorVoid() {
 
-                    fun reportProblem(problem: String, psi: PsiElement) {
-                        val document = try {
-                            fileDocumentManager.getDocument(psi.containingFile.virtualFile)
-                        } catch (t: Throwable) {
-                            throw Exception("for file ${psi.containingFile}", t)
-                        }
-                        val line = (document?.getLineNumber(psi.startOffset) ?: 0)
-                        val char = psi.startOffset - (document?.getLineStartOffset(line) ?: 0)
-                        val report = "e: ${psi.containingFile?.virtualFile?.path}: (${line + 1}:$char): $problem"
-                        errorTypesReports.getOrPut(problem) { ErrorTypeReport(report) }.count++
+                fun reportProblem(problem: String, psi: PsiElement) {
+                    val document = try {
+                        fileDocumentManager.getDocument(psi.containingFile.virtualFile)
+                    } catch (t: Throwable) {
+                        throw Exception("for file ${psi.containingFile}", t)
                     }
+                    val line = (document?.getLineNumber(psi.startOffset) ?: 0)
+                    val char = psi.startOffset - (document?.getLineStartOffset(line) ?: 0)
+                    val report = "e: ${psi.containingFile?.virtualFile?.path}: (${line + 1}:$char): $problem"
+                    errorTypesReports.getOrPut(problem) { ErrorTypeReport(report) }.count++
+                }
 
-                    override fun visitElement(element: FirElement) {
-                        element.acceptChildren(this)
-                    }
+                override fun visitElement(element: FirElement) {
+                    element.acceptChildren(this)
+                }
 
-                    override fun visitFunctionCall(functionCall: FirFunctionCall) {
-                        val typeRef = functionCall.typeRef
-                        val callee = functionCall.calleeReference
-                        if (typeRef is FirResolvedTypeRef) {
-                            val type = typeRef.type
-                            if (type is ConeKotlinErrorType) {
-                                errorFunctionCallTypes++
-                                val psi = callee.psi
-                                if (callee is FirErrorNamedReference && psi != null) {
-                                    reportProblem(callee.diagnostic.reason, psi)
-                                }
+                override fun visitFunctionCall(functionCall: FirFunctionCall) {
+                    val typeRef = functionCall.typeRef
+                    val callee = functionCall.calleeReference
+                    if (typeRef is FirResolvedTypeRef) {
+                        val type = typeRef.type
+                        if (type is ConeKotlinErrorType) {
+                            errorFunctionCallTypes++
+                            val psi = callee.psi
+                            if (callee is FirErrorNamedReference && psi != null) {
+                                reportProblem(callee.diagnostic.reason, psi)
                             }
                         }
-
-                        visitElement(functionCall)
                     }
 
-                    override fun visitQualifiedAccessExpression(qualifiedAccessExpression: FirQualifiedAccessExpression) {
-                        val typeRef = qualifiedAccessExpression.typeRef
-                        val callee = qualifiedAccessExpression.calleeReference
-                        if (typeRef is FirResolvedTypeRef) {
-                            val type = typeRef.type
-                            if (type is ConeKotlinErrorType) {
-                                errorQualifiedAccessTypes++
-                                val psi = callee.psi
-                                if (callee is FirErrorNamedReference && psi != null) {
-                                    reportProblem(callee.diagnostic.reason, psi)
-                                }
+                    visitElement(functionCall)
+                }
+
+                override fun visitQualifiedAccessExpression(qualifiedAccessExpression: FirQualifiedAccessExpression) {
+                    val typeRef = qualifiedAccessExpression.typeRef
+                    val callee = qualifiedAccessExpression.calleeReference
+                    if (typeRef is FirResolvedTypeRef) {
+                        val type = typeRef.type
+                        if (type is ConeKotlinErrorType) {
+                            errorQualifiedAccessTypes++
+                            val psi = callee.psi
+                            if (callee is FirErrorNamedReference && psi != null) {
+                                reportProblem(callee.diagnostic.reason, psi)
                             }
                         }
-
-                        visitElement(qualifiedAccessExpression)
                     }
 
-                    override fun visitTypeRef(typeRef: FirTypeRef) {
-                        unresolvedTypes++
+                    visitElement(qualifiedAccessExpression)
+                }
 
-                        if (typeRef.psi != null) {
-                            if (typeRef is FirErrorTypeRef && typeRef.diagnostic is FirStubDiagnostic) {
-                                return
-                            }
-                            val psi = typeRef.psi!!
-                            val problem = "${typeRef::class.simpleName}: ${typeRef.render()}"
-                            reportProblem(problem, psi)
+                override fun visitTypeRef(typeRef: FirTypeRef) {
+                    unresolvedTypes++
+
+                    if (typeRef.psi != null) {
+                        if (typeRef is FirErrorTypeRef && typeRef.diagnostic is FirStubDiagnostic) {
+                            return
                         }
+                        val psi = typeRef.psi!!
+                        val problem = "${typeRef::class.simpleName}: ${typeRef.render()}"
+                        reportProblem(problem, psi)
                     }
+                }
 
-                    override fun visitImplicitTypeRef(implicitTypeRef: FirImplicitTypeRef) {
-                        visitTypeRef(implicitTypeRef)
-                    }
+                override fun visitImplicitTypeRef(implicitTypeRef: FirImplicitTypeRef) {
+                    visitTypeRef(implicitTypeRef)
+                }
 
-                    override fun visitResolvedTypeRef(resolvedTypeRef: FirResolvedTypeRef) {
-                        resolvedTypes++
-                        val type = resolvedTypeRef.type
-                        if (type is ConeKotlinErrorType || type is ConeClassErrorType) {
-                            if (resolvedTypeRef.psi == null) {
-                                implicitTypes++
-                            } else {
-                                errorTypes++
-                                if (resolvedTypeRef is FirErrorTypeRef && resolvedTypeRef.diagnostic is FirStubDiagnostic) {
-                                    return
-                                }
-                                val psi = resolvedTypeRef.psi!!
-                                val problem = "${resolvedTypeRef::class.simpleName} -> ${type::class.simpleName}: ${type.render()}"
-                                reportProblem(problem, psi)
+                override fun visitResolvedTypeRef(resolvedTypeRef: FirResolvedTypeRef) {
+                    resolvedTypes++
+                    val type = resolvedTypeRef.type
+                    if (type is ConeKotlinErrorType || type is ConeClassErrorType) {
+                        if (resolvedTypeRef.psi == null) {
+                            implicitTypes++
+                        } else {
+                            errorTypes++
+                            if (resolvedTypeRef is FirErrorTypeRef && resolvedTypeRef.diagnostic is FirStubDiagnostic) {
+                                return
                             }
+                            val psi = resolvedTypeRef.psi!!
+                            val problem = "${resolvedTypeRef::class.simpleName} -> ${type::class.simpleName}: ${type.render()}"
+                            reportProblem(problem, psi)
                         }
                     }
-                })
-            }
+                }
+            })
         }
-
-
     }
 
     fun throwFailure() {
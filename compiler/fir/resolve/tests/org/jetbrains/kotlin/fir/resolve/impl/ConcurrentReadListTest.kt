@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.resolve.impl
+
+import junit.framework.TestCase
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.concurrent.thread
+
+class ConcurrentReadListTest : TestCase() {
+    fun testSnapshotsAreNotChangedByAppends() {
+        val list = ConcurrentReadList<String>()
+        val empty = list.snapshot
+        list.add("a")
+        val one = list.snapshot
+        list.addAll(listOf("b", "c", "d", "e"))
+
+        assertEquals(emptyList<String>(), empty)
+        assertEquals(listOf("a"), one)
+        assertEquals(listOf("a", "b", "c", "d", "e"), list.snapshot)
+    }
+
+    fun testSnapshotsAreNotChangedByRemoval() {
+        val list = ConcurrentReadList<Int>()
+        list.addAll((1..6).toList())
+        val before = list.snapshot
+
+        assertTrue(list.removeAll { it % 2 == 0 })
+        assertFalse(list.removeAll { it > 100 })
+        list.add(7)
+
+        assertEquals((1..6).toList(), before)
+        assertEquals(listOf(1, 3, 5, 7), list.snapshot)
+    }
+
+    fun testRemoveAll() {
+        val list = ConcurrentReadList<String>()
+        list.addAll(listOf("a", "b"))
+
+        assertTrue(list.removeAll { true })
+        assertTrue(list.isEmpty())
+        assertEquals(emptyList<String>(), list.snapshot)
+    }
+
+    fun testOutOfBounds() {
+        val list = ConcurrentReadList<String>()
+        list.add("a")
+        // The backing array has spare capacity, but it must not be visible
+        try {
+            list.snapshot[1]
+            fail()
+        } catch (e: IndexOutOfBoundsException) {
+        }
+    }
+
+    fun testReadsDuringAppends() {
+        val list = ConcurrentReadList<Int>()
+        val count = 100_000
+        val started = CountDownLatch(1)
+        val failure = AtomicReference<Throwable>()
+
+        val reader = thread {
+            started.countDown()
+            try {
+                do {
+                    val snapshot = list.snapshot
+                    for ((index, element) in snapshot.withIndex()) {
+                        assertEquals(index, element)
+                    }
+                } while (snapshot.size < count)
+            } catch (e: Throwable) {
+                failure.set(e)
+            }
+        }
+
+        started.await()
+        for (i in 0 until count) {
+            list.add(i)
+        }
+        reader.join()
+
+        failure.get()?.let { throw it }
+        assertEquals(count, list.snapshot.size)
+    }
+}
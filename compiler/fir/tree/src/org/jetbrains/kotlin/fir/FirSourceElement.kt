@@ -11,6 +11,12 @@ abstract class FirSourceElement
 
 class FirPsiSourceElement(val psi: PsiElement) : FirSourceElement()
 
+/**
+ * Source of an element built from a light tree. Only offsets in the file text are kept,
+ * so the light tree itself may be discarded once raw FIR is built.
+ */
+class FirLightSourceElement(val startOffset: Int, val endOffset: Int) : FirSourceElement()
+
 val FirSourceElement?.psi: PsiElement? get() = (this as? FirPsiSourceElement)?.psi
 
 val FirElement.psi: PsiElement? get() = (source as? FirPsiSourceElement)?.psi
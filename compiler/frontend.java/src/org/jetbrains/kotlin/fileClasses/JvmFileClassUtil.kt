@@ -57,20 +57,39 @@ object JvmFileClassUtil {
     @JvmStatic
     fun getFileClassInfoNoResolve(file: KtFile): JvmFileClassInfo {
         val parsedAnnotations = parseJvmNameOnFileNoResolve(file)
-        val packageFqName = parsedAnnotations?.jvmPackageName ?: file.packageFqName
+        return getFileClassInfo(
+            file.name, file.packageFqName,
+            parsedAnnotations?.jvmName, parsedAnnotations?.jvmPackageName, parsedAnnotations?.isMultifileClass ?: false
+        )
+    }
+
+    /**
+     * Computes the file class info from already known values of the file annotations, for files without PSI.
+     * [jvmName] and [jvmPackageName] are arguments of `@JvmName` and `@JvmPackageName` if they are present.
+     */
+    @JvmStatic
+    fun getFileClassInfo(
+        fileName: String,
+        packageFqName: FqName,
+        jvmName: String?,
+        jvmPackageName: FqName?,
+        isMultifileClass: Boolean
+    ): JvmFileClassInfo {
+        val validJvmName = jvmName?.takeIf(Name::isValidIdentifier)
+        val filePackageFqName = jvmPackageName ?: packageFqName
         return when {
-            parsedAnnotations != null -> {
-                val simpleName = parsedAnnotations.jvmName ?: PackagePartClassUtils.getFilePartShortName(file.name)
-                val facadeClassFqName = packageFqName.child(Name.identifier(simpleName))
+            validJvmName != null || jvmPackageName != null -> {
+                val simpleName = validJvmName ?: PackagePartClassUtils.getFilePartShortName(fileName)
+                val facadeClassFqName = filePackageFqName.child(Name.identifier(simpleName))
                 when {
-                    parsedAnnotations.isMultifileClass -> JvmMultifileClassPartInfo(
-                            fileClassFqName = packageFqName.child(Name.identifier(manglePartName(simpleName, file.name))),
+                    isMultifileClass -> JvmMultifileClassPartInfo(
+                            fileClassFqName = filePackageFqName.child(Name.identifier(manglePartName(simpleName, fileName))),
                             facadeClassFqName = facadeClassFqName
                     )
                     else -> JvmSimpleFileClassInfo(facadeClassFqName, true)
                 }
             }
-            else -> JvmSimpleFileClassInfo(PackagePartClassUtils.getPackagePartFqName(packageFqName, file.name), false)
+            else -> JvmSimpleFileClassInfo(PackagePartClassUtils.getPackagePartFqName(filePackageFqName, fileName), false)
         }
     }
 
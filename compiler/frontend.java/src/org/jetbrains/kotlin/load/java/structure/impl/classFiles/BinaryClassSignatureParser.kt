@@ -17,7 +17,6 @@
 package org.jetbrains.kotlin.load.java.structure.impl.classFiles
 
 import com.intellij.util.containers.ContainerUtil
-import com.intellij.util.containers.StringInterner
 import org.jetbrains.kotlin.builtins.PrimitiveType
 import org.jetbrains.kotlin.load.java.structure.JavaClassifierType
 import org.jetbrains.kotlin.load.java.structure.JavaType
@@ -28,6 +27,7 @@ import org.jetbrains.kotlin.utils.compact
 import org.jetbrains.org.objectweb.asm.Type
 import java.text.CharacterIterator
 import java.text.StringCharacterIterator
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Take a look at com.intellij.psi.impl.compiled.SignatureParsing
@@ -37,7 +37,10 @@ import java.text.StringCharacterIterator
  */
 class BinaryClassSignatureParser {
 
-    private val canonicalNameInterner = StringInterner()
+    // Class files may be read in parallel, and the parser may be shared by several compilations with the same classpath
+    private val canonicalNameInterner = ConcurrentHashMap<String, String>()
+
+    private fun intern(name: String): String = canonicalNameInterner.putIfAbsent(name, name) ?: name
 
     fun parseTypeParametersDeclaration(signature: CharacterIterator, context: ClassifierResolutionContext): List<JavaTypeParameter> {
         if (signature.current() != '<') {
@@ -99,7 +102,7 @@ class BinaryClassSignatureParser {
             signature.next()
         }
 
-        val parameterName = canonicalNameInterner.intern(id.toString())
+        val parameterName = intern(id.toString())
 
         return PlainJavaClassifierType({ context.resolveTypeParameter(parameterName) }, emptyList())
     }
@@ -136,7 +139,7 @@ class BinaryClassSignatureParser {
         }
         signature.next()
 
-        val internalName = canonicalNameInterner.intern(canonicalName.toString().replace('.', '$'))
+        val internalName = intern(canonicalName.toString().replace('.', '$'))
         return PlainJavaClassifierType(
             { context.resolveByInternalName(internalName) },
             argumentGroups.reversed().flattenTo(arrayListOf()).compact()
@@ -45,6 +45,9 @@ object CommonConfigurationKeys {
     @JvmField
     val USE_FIR = CompilerConfigurationKey.create<Boolean>("front-end IR")
 
+    @JvmField
+    val USE_FIR_LIGHT_TREE = CompilerConfigurationKey.create<Boolean>("build front-end IR from light tree")
+
     @JvmField
     val KLIB_MPP = CompilerConfigurationKey.create<Boolean>("Klib based MPP")
 }
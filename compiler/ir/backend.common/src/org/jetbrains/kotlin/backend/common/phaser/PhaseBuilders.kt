@@ -12,6 +12,8 @@ import org.jetbrains.kotlin.backend.common.lower
 import org.jetbrains.kotlin.ir.IrElement
 import org.jetbrains.kotlin.ir.declarations.IrFile
 import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 // Phase composition.
 private class CompositePhase<Context : CommonBackendContext, Input, Output>(
@@ -167,13 +169,46 @@ fun <Context : CommonBackendContext> performByIrFile(
     stickyPostconditions = stickyPostconditions,
     actions = actions,
     nlevels = 1,
-    lower = object : SameTypeCompilerPhase<Context, IrModuleFragment> {
-        override fun invoke(
-            phaseConfig: PhaseConfig,
-            phaserState: PhaserState<IrModuleFragment>,
-            context: Context,
-            input: IrModuleFragment
-        ): IrModuleFragment {
+    lower = PerformByIrFilePhase(lower, threads = null)
+)
+
+// Same as `performByIrFile`, but files are lowered concurrently by `threads(context)` threads. The module phases around it act as barriers.
+// `lower` must only modify the file it's invoked on, and may only read the state shared between files (e.g. the backend context).
+// The context must keep `inVerbosePhase` per thread, since it's set by every phase invoked by `lower`.
+fun <Context : CommonBackendContext> performByIrFileConcurrently(
+    name: String = "PerformByIrFileConcurrently",
+    description: String = "Perform phases by IrFile concurrently",
+    prerequisite: Set<AnyNamedPhase> = emptySet(),
+    preconditions: Set<Checker<IrModuleFragment>> = emptySet(),
+    postconditions: Set<Checker<IrModuleFragment>> = emptySet(),
+    stickyPostconditions: Set<Checker<IrModuleFragment>> = emptySet(),
+    actions: Set<Action<IrModuleFragment, Context>> = setOf(defaultDumper),
+    threads: (Context) -> Int,
+    lower: CompilerPhase<Context, IrFile, IrFile>
+) = namedIrModulePhase(
+    name, description, prerequisite,
+    preconditions = preconditions,
+    postconditions = postconditions,
+    stickyPostconditions = stickyPostconditions,
+    actions = actions,
+    nlevels = 1,
+    lower = PerformByIrFilePhase(lower, threads)
+)
+
+private class PerformByIrFilePhase<Context : CommonBackendContext>(
+    private val lower: CompilerPhase<Context, IrFile, IrFile>,
+    private val threads: ((Context) -> Int)?
+) : SameTypeCompilerPhase<Context, IrModuleFragment> {
+    override fun invoke(
+        phaseConfig: PhaseConfig,
+        phaserState: PhaserState<IrModuleFragment>,
+        context: Context,
+        input: IrModuleFragment
+    ): IrModuleFragment {
+        val threadCount = threads?.invoke(context) ?: 1
+        if (threadCount > 1 && input.files.size > 1 && !phaseConfig.hasPerPhaseOutput) {
+            invokeConcurrently(threadCount, phaseConfig, phaserState, context, input)
+        } else {
             for (irFile in input.files) {
                 try {
                     lower.invoke(phaseConfig, phaserState.changeType(), context, irFile)
@@ -181,14 +216,62 @@ fun <Context : CommonBackendContext> performByIrFile(
                     CodegenUtil.reportBackendException(e, "IR lowering", irFile.fileEntry.name)
                 }
             }
+        }
 
-            // TODO: no guarantee that module identity is preserved by `lower`
-            return input
+        // TODO: no guarantee that module identity is preserved by `lower`
+        return input
+    }
+
+    private fun invokeConcurrently(
+        threadCount: Int,
+        phaseConfig: PhaseConfig,
+        phaserState: PhaserState<IrModuleFragment>,
+        context: Context,
+        input: IrModuleFragment
+    ) {
+        // Every file gets its own copy of the state, so that phases running on different threads don't modify it at the same time.
+        // This includes sticky postconditions, which are collected and checked by the phases of each file separately
+        val fileStates = input.files.map {
+            PhaserState<IrFile>(phaserState.alreadyDone.toMutableSet(), phaserState.depth, phaserState.phaseCount, mutableSetOf())
+        }
+
+        val executor = Executors.newFixedThreadPool(minOf(threadCount, input.files.size))
+        try {
+            val results = input.files.mapIndexed { index, irFile ->
+                executor.submit { lower.invoke(phaseConfig, fileStates[index], context, irFile) }
+            }
+            // Failures are reported in the order of files, as if they were lowered one by one
+            for ((index, result) in results.withIndex()) {
+                try {
+                    result.get()
+                } catch (e: ExecutionException) {
+                    CodegenUtil.reportBackendException(e.cause ?: e, "IR lowering", input.files[index].fileEntry.name)
+                }
+            }
+        } finally {
+            executor.shutdownNow()
         }
 
-        override fun getNamedSubphases(startDepth: Int) = lower.getNamedSubphases(startDepth)
+        // All files must have been lowered by the same phases, otherwise the prerequisites of the following phases are not satisfied
+        // for some of them. In the sequential mode this can't happen since all files share `alreadyDone`
+        val alreadyDone = fileStates.first().alreadyDone
+        for ((index, fileState) in fileStates.withIndex()) {
+            assert(fileState.alreadyDone == alreadyDone) {
+                "File ${input.files[index].fileEntry.name} was lowered by phases " +
+                        "${fileState.alreadyDone.map { it.name }}, but other files by ${alreadyDone.map { it.name }}"
+            }
+        }
+        phaserState.alreadyDone.addAll(alreadyDone)
     }
-)
+
+    override fun getNamedSubphases(startDepth: Int) = lower.getNamedSubphases(startDepth)
+
+    // Dumping, validation, profiling and verbose logging print per-phase output, which would be interleaved for different files
+    private val PhaseConfig.hasPerPhaseOutput: Boolean
+        get() = needProfiling || verbose.isNotEmpty() ||
+                toDumpStateBefore.isNotEmpty() || toDumpStateAfter.isNotEmpty() ||
+                toValidateStateBefore.isNotEmpty() || toValidateStateAfter.isNotEmpty()
+}
 
 fun <Context : CommonBackendContext> makeIrFilePhase(
     lowering: (Context) -> FileLoweringPass,
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.ir.backend.js
+
+import com.intellij.openapi.project.Project
+import org.jetbrains.kotlin.backend.common.extensions.IrGenerationExtension
+import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.KotlinCompilerVersion
+import org.jetbrains.kotlin.config.languageVersionSettings
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys
+import org.jetbrains.kotlin.library.KotlinAbiVersion
+import org.jetbrains.kotlin.library.KotlinLibrary
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.psi.KtFile
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Persistent cache of the code generated by [compile].
+ *
+ * Lowerings and naming in the JS IR backend are done for the whole program, so neither lowered IR nor generated JS
+ * of a single library can be reused on its own. The result is cached for the whole set of inputs instead: the sources,
+ * the hashes of all libraries, friend libraries, ABI and compiler versions, IR generation plugins, the enabled phases and the options
+ * affecting generated code. Each module has its own subdirectory of [baseDirectory], so modules compiled with the same cache directory
+ * don't evict each other's results.
+ *
+ * The cache only replaces IR loading, lowering and code generation: the sources are still analyzed by [compile] before the cache is
+ * checked, so the diagnostics are reported as usual.
+ *
+ * Library hashes are computed from the contents of klibs and kept in [LIBRARY_HASHES_FILE_NAME] along with the size
+ * and modification time of each klib, so unchanged libraries are not rehashed by subsequent compilations.
+ *
+ * Compilations of the same module may share the cache directory, e.g. in several Gradle daemons. Reads and writes of a module's
+ * subdirectory are done under a lock on [LOCK_FILE_NAME], and each file is replaced atomically, so readers which don't take the lock
+ * never see a partially written file either.
+ */
+class JsIrCompilationCache(baseDirectory: File, private val configuration: CompilerConfiguration) {
+    private val directory = File(baseDirectory, moduleDirectoryName(configuration[CommonConfigurationKeys.MODULE_NAME]))
+    private val libraryHashesFile = File(directory, LIBRARY_HASHES_FILE_NAME)
+    private val keyFile = File(directory, KEY_FILE_NAME)
+
+    private val libraryHashes: MutableMap<String, LibraryHash> by lazy { readLibraryHashes() }
+
+    fun computeKey(
+        project: Project,
+        files: List<KtFile>,
+        phaseConfig: PhaseConfig,
+        libraries: List<KotlinLibrary>,
+        friendLibraries: List<KotlinLibrary>,
+        mainArguments: List<String>?,
+        exportedDeclarations: Set<FqName>,
+        generateFullJs: Boolean,
+        generateDceJs: Boolean
+    ): String {
+        val digest = MessageDigest.getInstance(DIGEST_ALGORITHM)
+
+        fun update(value: Any?) {
+            digest.update(value.toString().toByteArray())
+            digest.update(0)
+        }
+
+        update(KotlinAbiVersion.CURRENT)
+        update(KotlinCompilerVersion.VERSION)
+        update(configuration.languageVersionSettings)
+        update(configuration[CommonConfigurationKeys.MODULE_NAME])
+        update(configuration[JSConfigurationKeys.MODULE_KIND])
+        update(configuration.getBoolean(JSConfigurationKeys.TYPED_ARRAYS_ENABLED))
+        update(configuration.getBoolean(JSConfigurationKeys.DEVELOPER_MODE))
+        update(configuration.getBoolean(JSConfigurationKeys.GENERATE_COMMENTS_WITH_FILE_PATH))
+        update(configuration.getBoolean(JSConfigurationKeys.GENERATE_REGION_COMMENTS))
+        update(configuration.getMap(JSConfigurationKeys.FILE_PATHS_PREFIX_MAP).toSortedMap())
+        update(configuration.getBoolean(JSConfigurationKeys.FRIEND_PATHS_DISABLED))
+        update(IrGenerationExtension.getInstances(project).map { it.javaClass.name })
+        update(phaseConfig.enabled.map { it.name }.sorted())
+        update(mainArguments)
+        update(exportedDeclarations.map { it.asString() }.sorted())
+        update(generateFullJs)
+        update(generateDceJs)
+
+        for (library in libraries) {
+            update(library.libraryName)
+            update(hashOf(library))
+        }
+
+        update(friendLibraries.map { File(it.libraryFile.absolutePath).path })
+
+        for (file in files.sortedBy { it.virtualFilePath }) {
+            update(file.virtualFilePath)
+            update(file.text)
+        }
+
+        withLock { saveLibraryHashes() }
+
+        return digest.digest().toHexString()
+    }
+
+    fun load(key: String): CompilerResult? = withLock {
+        if (!keyFile.exists() || keyFile.readText() != key) return@withLock null
+
+        CompilerResult(
+            File(directory, JS_CODE_FILE_NAME).readTextOrNull(),
+            File(directory, DCE_JS_CODE_FILE_NAME).readTextOrNull(),
+            File(directory, TS_DEFINITIONS_FILE_NAME).readTextOrNull()
+        )
+    }
+
+    fun save(key: String, result: CompilerResult) = withLock {
+        // The key is written last, so an interrupted write can't be taken for a valid result
+        keyFile.delete()
+        File(directory, JS_CODE_FILE_NAME).writeTextOrDelete(result.jsCode)
+        File(directory, DCE_JS_CODE_FILE_NAME).writeTextOrDelete(result.dceJsCode)
+        File(directory, TS_DEFINITIONS_FILE_NAME).writeTextOrDelete(result.tsDefinitions)
+        keyFile.writeTextAtomically(key)
+    }
+
+    // File locks are held by the whole process, so compilations in different threads are also synchronized on a lock per directory
+    private fun <T> withLock(block: () -> T): T {
+        directory.mkdirs()
+        synchronized(IN_PROCESS_LOCKS.getOrPut(directory.canonicalPath) { Any() }) {
+            RandomAccessFile(File(directory, LOCK_FILE_NAME), "rw").channel.use { channel ->
+                val lock = channel.lock()
+                try {
+                    return block()
+                } finally {
+                    lock.release()
+                }
+            }
+        }
+    }
+
+    private fun hashOf(library: KotlinLibrary): String {
+        val file = File(library.libraryFile.absolutePath)
+        val contents = if (file.isDirectory) file.walkTopDown().filter { it.isFile }.sortedBy { it.path }.toList() else listOf(file)
+        val size = contents.fold(0L) { size, content -> size + content.length() }
+        val lastModified = contents.map { it.lastModified() }.max() ?: 0L
+        val stamp = "${contents.size}:$size:$lastModified"
+
+        val cached = libraryHashes[file.path]
+        if (cached != null && cached.stamp == stamp) return cached.hash
+
+        val digest = MessageDigest.getInstance(DIGEST_ALGORITHM)
+        for (content in contents) {
+            digest.update(content.relativeTo(file).path.toByteArray())
+            content.inputStream().use { input ->
+                val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) break
+                    digest.update(buffer, 0, read)
+                }
+            }
+        }
+
+        val hash = digest.digest().toHexString()
+        libraryHashes[file.path] = LibraryHash(stamp, hash)
+        return hash
+    }
+
+    private fun readLibraryHashes(): MutableMap<String, LibraryHash> {
+        val result = LinkedHashMap<String, LibraryHash>()
+        if (!libraryHashesFile.exists()) return result
+
+        libraryHashesFile.forEachLine { line ->
+            val parts = line.split('\t')
+            if (parts.size == 3) {
+                result[parts[0]] = LibraryHash(parts[1], parts[2])
+            }
+        }
+        return result
+    }
+
+    private fun saveLibraryHashes() {
+        libraryHashesFile.writeTextAtomically(libraryHashes.entries.joinToString("") { (path, hash) -> "$path\t${hash.stamp}\t${hash.hash}\n" })
+    }
+
+    private class LibraryHash(val stamp: String, val hash: String)
+
+    companion object {
+        private const val DIGEST_ALGORITHM = "SHA-1"
+
+        private const val LIBRARY_HASHES_FILE_NAME = "libraries.tab"
+        private const val KEY_FILE_NAME = "key"
+        private const val JS_CODE_FILE_NAME = "output.js"
+        private const val DCE_JS_CODE_FILE_NAME = "output.dce.js"
+        private const val TS_DEFINITIONS_FILE_NAME = "output.d.ts"
+        private const val LOCK_FILE_NAME = "lock"
+
+        private val IN_PROCESS_LOCKS = ConcurrentHashMap<String, Any>()
+
+        private fun moduleDirectoryName(moduleName: String?): String =
+            moduleName?.replace(Regex("[^\\w.-]"), "_")?.takeIf { it.isNotEmpty() } ?: "main"
+
+        private fun ByteArray.toHexString() = joinToString("") { String.format("%02x", it) }
+
+        private fun File.readTextOrNull(): String? = if (exists()) readText() else null
+
+        private fun File.writeTextOrDelete(text: String?) {
+            if (text != null) writeTextAtomically(text) else delete()
+        }
+
+        private fun File.writeTextAtomically(text: String) {
+            val tempFile = File.createTempFile(name, ".tmp", parentFile)
+            try {
+                tempFile.writeText(text)
+                Files.move(tempFile.toPath(), toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tempFile.delete()
+            }
+        }
+    }
+}
@@ -24,11 +24,13 @@ import org.jetbrains.kotlin.ir.util.fqNameWhenAvailable
 import org.jetbrains.kotlin.ir.util.generateTypicalIrProviderList
 import org.jetbrains.kotlin.ir.util.isEffectivelyExternal
 import org.jetbrains.kotlin.ir.util.patchDeclarationParents
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys
 import org.jetbrains.kotlin.library.KotlinLibrary
 import org.jetbrains.kotlin.library.resolver.KotlinLibraryResolveResult
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.utils.DFS
+import java.io.File
 
 fun sortDependencies(dependencies: Collection<IrModuleFragment>): Collection<IrModuleFragment> {
     val mapping = dependencies.map { it.descriptor to it }.toMap()
@@ -57,8 +59,41 @@ fun compile(
     generateFullJs: Boolean = true,
     generateDceJs: Boolean = false
 ): CompilerResult {
-    val (moduleFragment, dependencyModules, irBuiltIns, symbolTable, deserializer) =
-        loadIr(project, files, configuration, allDependencies, friendDependencies)
+    // Diagnostics are reported by the analysis, so it's performed even if the generated code is then taken from the cache
+    val analysis = analyzeFilesForIr(project, files, configuration, allDependencies, friendDependencies)
+
+    val cache = configuration[JSConfigurationKeys.IR_CACHE_DIRECTORY]?.let { JsIrCompilationCache(File(it), configuration) }
+    val cacheKey = cache?.computeKey(
+        project, files, phaseConfig, allDependencies.getFullList(), friendDependencies,
+        mainArguments, exportedDeclarations, generateFullJs, generateDceJs
+    )
+    if (cache != null && cacheKey != null) {
+        cache.load(cacheKey)?.let { return it }
+    }
+
+    val result = compileAnalyzed(
+        project, files, analysis, configuration, phaseConfig, mainArguments, exportedDeclarations, generateFullJs, generateDceJs
+    )
+
+    if (cache != null && cacheKey != null) {
+        cache.save(cacheKey, result)
+    }
+
+    return result
+}
+
+private fun compileAnalyzed(
+    project: Project,
+    files: List<KtFile>,
+    analysis: JsIrAnalysisResult,
+    configuration: CompilerConfiguration,
+    phaseConfig: PhaseConfig,
+    mainArguments: List<String>?,
+    exportedDeclarations: Set<FqName>,
+    generateFullJs: Boolean,
+    generateDceJs: Boolean
+): CompilerResult {
+    val (moduleFragment, dependencyModules, irBuiltIns, symbolTable, deserializer) = loadIr(project, files, analysis)
 
     val moduleDescriptor = moduleFragment.descriptor
 
@@ -72,6 +107,11 @@ fun compile(
         ExternalDependenciesGenerator(symbolTable, irProviders).generateUnboundSymbolsAsDependencies()
     }
 
+    if (configuration.getBoolean(JSConfigurationKeys.LAZY_IR_FUNCTION_BODIES)) {
+        // All declarations used by the lowerings are referenced by now, so the rest of the postponed bodies are not needed
+        deserializer.deserializeReachableFunctionBodies(listOf(moduleFragment))
+    }
+
     val irFiles = dependencyModules.flatMap { it.files } + moduleFragment.files
 
     moduleFragment.files.clear()
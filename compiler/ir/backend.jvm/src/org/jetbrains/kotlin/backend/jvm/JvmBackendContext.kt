@@ -40,6 +40,7 @@ import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi2ir.PsiSourceManager
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import org.jetbrains.org.objectweb.asm.Type
+import java.util.concurrent.ConcurrentHashMap
 
 class JvmBackendContext(
     val state: GenerationState,
@@ -68,7 +69,8 @@ class JvmBackendContext(
 
     val irIntrinsics by lazy { IrIntrinsicMethods(irBuiltIns, ir.symbols) }
 
-    private val localClassType = mutableMapOf<IrAttributeContainer, Type>()
+    // Filled by InventNamesForLocalClasses, which may lower several files concurrently
+    private val localClassType = ConcurrentHashMap<IrAttributeContainer, Type>()
 
     internal fun getLocalClassType(container: IrAttributeContainer): Type? =
         localClassType[container.attributeOwnerId]
@@ -92,7 +94,14 @@ class JvmBackendContext(
     internal val multifileFacadeForPart = mutableMapOf<IrClass, JvmClassName>()
     internal val multifileFacadeMemberToPartMember = mutableMapOf<IrFunction, IrFunction>()
 
-    override var inVerbosePhase: Boolean = false
+    // Per thread, since the phases of performByIrFileConcurrently set it for different files at the same time
+    private val verbosePhaseFlag = object : ThreadLocal<Boolean>() {
+        override fun initialValue() = false
+    }
+
+    override var inVerbosePhase: Boolean
+        get() = verbosePhaseFlag.get()
+        set(value) = verbosePhaseFlag.set(value)
 
     override val configuration get() = state.configuration
 
@@ -235,12 +235,17 @@ private val tailrecPhase = makeIrFilePhase<JvmBackendContext>(
     description = "Handle tailrec calls"
 )
 
+// These phases only touch the file they lower, see performByIrFileConcurrently. Most of the other lowerings create or reference
+// external declarations via the shared symbol table and JvmBackendContext caches, which are not thread-safe.
 @Suppress("Reformat")
-private val jvmFilePhases =
+private val jvmConcurrentFilePhases =
         typeAliasAnnotationMethodsPhase then
         stripTypeAliasDeclarationsPhase then
         provisionalFunctionExpressionPhase then
-        inventNamesForLocalClassesPhase then
+        inventNamesForLocalClassesPhase
+
+@Suppress("Reformat")
+private val jvmFilePhases =
         kCallableNamePropertyPhase then
         annotationPhase then
         polymorphicSignaturePhase then
@@ -334,6 +339,10 @@ val jvmPhases = namedIrModulePhase(
     lower = validateIrBeforeLowering then
             expectDeclarationsRemovingPhase then
             fileClassPhase then
+            performByIrFileConcurrently<JvmBackendContext>(
+                threads = { context -> context.state.backendThreads },
+                lower = jvmConcurrentFilePhases
+            ) then
             performByIrFile(lower = jvmFilePhases) then
             generateMultifileFacadesPhase then
             resolveInlineCallsPhase then
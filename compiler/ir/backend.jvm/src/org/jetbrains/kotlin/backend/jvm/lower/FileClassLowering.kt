@@ -21,15 +21,21 @@ import org.jetbrains.kotlin.backend.common.ir.createImplicitParameterDeclaration
 import org.jetbrains.kotlin.backend.common.phaser.makeIrModulePhase
 import org.jetbrains.kotlin.backend.jvm.JvmBackendContext
 import org.jetbrains.kotlin.codegen.AsmUtil
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.descriptors.ClassKind
 import org.jetbrains.kotlin.descriptors.Modality
 import org.jetbrains.kotlin.descriptors.Visibilities
+import org.jetbrains.kotlin.fileClasses.JvmFileClassInfo
 import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.ir.declarations.*
 import org.jetbrains.kotlin.ir.declarations.impl.IrClassImpl
 import org.jetbrains.kotlin.ir.descriptors.WrappedClassDescriptor
+import org.jetbrains.kotlin.ir.expressions.IrConst
+import org.jetbrains.kotlin.ir.expressions.IrConstructorCall
 import org.jetbrains.kotlin.ir.symbols.impl.IrClassSymbolImpl
 import org.jetbrains.kotlin.ir.util.fqNameWhenAvailable
+import org.jetbrains.kotlin.ir.util.parentAsClass
+import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.psi2ir.PsiSourceManager
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import org.jetbrains.kotlin.resolve.source.KotlinSourceElement
@@ -73,7 +79,9 @@ private class FileClassLowering(val context: JvmBackendContext) : FileLoweringPa
         val fileEntry = irFile.fileEntry
         val ktFile = context.psiSourceManager.getKtFile(fileEntry as PsiSourceManager.PsiFileEntry)
             ?: throw AssertionError("Unexpected file entry: $fileEntry")
-        val fileClassInfo = JvmFileClassUtil.getFileClassInfoNoResolve(ktFile)
+        val fileClassInfo =
+            if (context.state.configuration.getBoolean(CommonConfigurationKeys.USE_FIR_LIGHT_TREE)) getFileClassInfo(irFile, ktFile.name)
+            else JvmFileClassUtil.getFileClassInfoNoResolve(ktFile)
         val descriptor = WrappedClassDescriptor(sourceElement = KotlinSourceElement(ktFile))
         return IrClassImpl(
             0, fileEntry.maxOffset,
@@ -124,4 +132,20 @@ private class FileClassLowering(val context: JvmBackendContext) : FileLoweringPa
             }
         }
     }
+
+    // Files compiled from light trees have no PSI, so the file class annotations are taken from IR instead of being parsed
+    private fun getFileClassInfo(irFile: IrFile, fileName: String): JvmFileClassInfo {
+        fun findAnnotation(fqName: FqName): IrConstructorCall? =
+            irFile.annotations.find { it.symbol.owner.parentAsClass.fqNameWhenAvailable == fqName }
+
+        fun stringArgumentOf(fqName: FqName): String? =
+            (findAnnotation(fqName)?.getValueArgument(0) as? IrConst<*>)?.value as? String
+
+        return JvmFileClassUtil.getFileClassInfo(
+            fileName, irFile.fqName,
+            stringArgumentOf(JvmFileClassUtil.JVM_NAME),
+            stringArgumentOf(JvmFileClassUtil.JVM_PACKAGE_NAME)?.let(::FqName),
+            findAnnotation(JvmFileClassUtil.JVM_MULTIFILE_CLASS) != null
+        )
+    }
 }
@@ -1028,7 +1028,27 @@ abstract class IrFileDeserializer(
             if (proto.hasExtensionReceiver())
                 extensionReceiverParameter = deserializeIrValueParameter(proto.extensionReceiver)
             if (proto.hasBody()) {
-                body = deserializeStatementBody(proto.body) as IrBody
+                deserializeFunctionBody(this, proto.body)
+            }
+        }
+    }
+
+    /**
+     * Deserializes the body of [function] while its header is being deserialized.
+     * Overridden by deserializers which postpone some bodies until they are requested, see [deserializePostponedFunctionBody].
+     */
+    protected open fun deserializeFunctionBody(function: IrFunction, bodyIndex: Int) {
+        function.body = deserializeStatementBody(bodyIndex) as IrBody
+    }
+
+    // The parent of a top level function is not set until its header is deserialized, so it's checked with the stack of parents.
+    protected fun isTopLevelFunction(function: IrFunction): Boolean =
+        parentsStack.size == 2 && parentsStack[0] is IrFile && parentsStack[1] === function
+
+    fun deserializePostponedFunctionBody(function: IrFunction, bodyIndex: Int) {
+        usingParent(function.parent as IrFile) {
+            usingParent(function) {
+                function.body = deserializeStatementBody(bodyIndex) as IrBody
             }
         }
     }
@@ -15,7 +15,7 @@ import org.jetbrains.kotlin.ir.declarations.impl.IrClassImpl
 import org.jetbrains.kotlin.ir.declarations.impl.IrFileImpl
 import org.jetbrains.kotlin.ir.declarations.impl.IrModuleFragmentImpl
 import org.jetbrains.kotlin.ir.descriptors.*
-import org.jetbrains.kotlin.ir.expressions.IrExpression
+import org.jetbrains.kotlin.ir.expressions.*
 import org.jetbrains.kotlin.ir.expressions.impl.IrBlockBodyImpl
 import org.jetbrains.kotlin.ir.expressions.impl.IrErrorExpressionImpl
 import org.jetbrains.kotlin.ir.expressions.impl.IrLoopBase
@@ -24,11 +24,15 @@ import org.jetbrains.kotlin.ir.symbols.impl.*
 import org.jetbrains.kotlin.ir.types.IrType
 import org.jetbrains.kotlin.ir.types.impl.IrErrorTypeImpl
 import org.jetbrains.kotlin.ir.util.*
+import org.jetbrains.kotlin.ir.visitors.IrElementVisitorVoid
+import org.jetbrains.kotlin.ir.visitors.acceptChildrenVoid
+import org.jetbrains.kotlin.ir.visitors.acceptVoid
 import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite.newInstance
 import org.jetbrains.kotlin.resolve.descriptorUtil.module
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedCallableMemberDescriptor
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedClassDescriptor
 import org.jetbrains.kotlin.types.Variance
+import java.nio.ByteBuffer
 import org.jetbrains.kotlin.backend.common.serialization.proto.DescriptorReference as ProtoDescriptorReference
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrDeclaration as ProtoDeclaration
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrFile as ProtoFile
@@ -40,13 +44,16 @@ import org.jetbrains.kotlin.backend.common.serialization.proto.IrExpression as P
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrConstructorCall as ProtoConstructorCall
 import org.jetbrains.kotlin.backend.common.serialization.proto.Actual as ProtoActual
 
+private const val DEFAULT_SCRATCH_ARRAY_SIZE = 64 * 1024
+
 abstract class KotlinIrLinker(
     val logger: LoggingContext,
     val builtIns: IrBuiltIns,
     val symbolTable: SymbolTable,
     private val exportedDependencies: List<ModuleDescriptor>,
     private val forwardModuleDescriptor: ModuleDescriptor?,
-    mangler: KotlinMangler
+    mangler: KotlinMangler,
+    private val postponeFunctionBodies: Boolean = false
 ) : DescriptorUniqIdAware, IrDeserializer {
 
     private val expectUniqIdToActualUniqId = mutableMapOf<UniqId, UniqId>()
@@ -113,6 +120,14 @@ abstract class KotlinIrLinker(
     protected val globalDeserializationState = DeserializationState.SimpleDeserializationState()
     private val modulesWithReachableTopLevels = mutableSetOf<IrModuleDeserializer>()
 
+    private class PostponedFunctionBody(val fileDeserializer: IrModuleDeserializer.IrDeserializerForFile, val bodyIndex: Int)
+
+    private val postponedFunctionBodies = LinkedHashMap<IrFunction, PostponedFunctionBody>()
+
+    // Top level declarations and bodies deserialized with `postponeFunctionBodies`, which may reference functions with postponed bodies.
+    // See deserializeReachableFunctionBodies.
+    private val elementsToScan = mutableListOf<IrElement>()
+
     //TODO: This is Native specific. Eliminate me.
     private val forwardDeclarations = mutableSetOf<IrSymbol>()
     val resolvedForwardDeclarations = mutableMapOf<UniqId, UniqId>()
@@ -156,12 +171,20 @@ abstract class KotlinIrLinker(
 
             private val deserializeBodies: Boolean = !onlyHeaders
 
+            private var deserializingTopLevelFunction = false
+
             private val fileLocalResolvedForwardDeclarations = mutableMapOf<UniqId, UniqId>()
 
             val fileLocalDeserializationState = DeserializationState.SimpleDeserializationState()
 
             fun deserializeDeclaration(key: UniqId): IrDeclaration {
-                return deserializeDeclaration(loadTopLevelDeclarationProto(key), file)
+                val proto = loadTopLevelDeclarationProto(key)
+                deserializingTopLevelFunction = proto.declaratorCase == ProtoDeclaration.DeclaratorCase.IR_FUNCTION
+                try {
+                    return deserializeDeclaration(proto, file)
+                } finally {
+                    deserializingTopLevelFunction = false
+                }
             }
 
             fun deserializeExpectActualMapping() {
@@ -205,7 +228,8 @@ abstract class KotlinIrLinker(
             }
 
             private fun loadStringProto(index: Int): String {
-                return String(readString(moduleDescriptor, fileIndex, index))
+                val buffer = readString(moduleDescriptor, fileIndex, index)
+                return String(buffer.toScratchArray(), 0, buffer.remaining())
             }
 
             private fun referenceDeserializedSymbol(
@@ -405,6 +429,19 @@ abstract class KotlinIrLinker(
                 }
             }
 
+            // Bodies of inline functions are needed by the inliner as soon as their callers are lowered. Only top level functions
+            // are postponed: they can't be called virtually, so all their callers are found by deserializeReachableFunctionBodies.
+            // Top level property accessors are excluded since they can't be removed from their files if unused.
+            override fun deserializeFunctionBody(function: IrFunction, bodyIndex: Int) {
+                if (postponeFunctionBodies && deserializeBodies && deserializingTopLevelFunction &&
+                    isTopLevelFunction(function) && !function.isInline
+                ) {
+                    postponedFunctionBodies[function] = PostponedFunctionBody(this, bodyIndex)
+                } else {
+                    super.deserializeFunctionBody(function, bodyIndex)
+                }
+            }
+
             fun deserializeFileImplicitDataIfFirstUse() {
                 annotations?.let {
                     file.annotations.addAll(deserializeAnnotations(it))
@@ -416,6 +453,9 @@ abstract class KotlinIrLinker(
                 fileLocalDeserializationState.processPendingDeclarations {
                     val declaration = deserializeDeclaration(it)
                     file.declarations.add(declaration)
+                    if (postponeFunctionBodies) {
+                        elementsToScan.add(declaration)
+                    }
                 }
             }
         }
@@ -471,7 +511,7 @@ abstract class KotlinIrLinker(
             val files = mutableListOf<IrFile>()
 
             for (i in 0 until fileCount) {
-                files.add(deserializeIrFile(ProtoFile.parseFrom(readFile(moduleDescriptor, i), newInstance()), i))
+                files.add(deserializeIrFile(ProtoFile.parseFrom(readFile(moduleDescriptor, i).codedInputStream, newInstance()), i))
             }
 
             return IrModuleFragmentImpl(moduleDescriptor, builtIns, files)
@@ -509,19 +549,31 @@ abstract class KotlinIrLinker(
         loadKnownBuiltinSymbols(mangler)
     }
 
-    private val ByteArray.codedInputStream: org.jetbrains.kotlin.protobuf.CodedInputStream
+    // Items read from mapped klib files are copied into this array to be parsed, instead of allocating an array per item.
+    // Parsed protos don't reference the input array, so it can be reused as soon as the parsing is finished.
+    private var scratchArray = ByteArray(DEFAULT_SCRATCH_ARRAY_SIZE)
+
+    private fun ByteBuffer.toScratchArray(): ByteArray {
+        if (scratchArray.size < remaining()) {
+            scratchArray = ByteArray(maxOf(remaining(), scratchArray.size * 2))
+        }
+        duplicate().get(scratchArray, 0, remaining())
+        return scratchArray
+    }
+
+    private val ByteBuffer.codedInputStream: org.jetbrains.kotlin.protobuf.CodedInputStream
         get() {
-            val codedInputStream = org.jetbrains.kotlin.protobuf.CodedInputStream.newInstance(this)
+            val codedInputStream = org.jetbrains.kotlin.protobuf.CodedInputStream.newInstance(toScratchArray(), 0, remaining())
             codedInputStream.setRecursionLimit(65535) // The default 64 is blatantly not enough for IR.
             return codedInputStream
         }
 
-    protected abstract fun reader(moduleDescriptor: ModuleDescriptor, fileIndex: Int, uniqId: UniqId): ByteArray
-    protected abstract fun readSymbol(moduleDescriptor: ModuleDescriptor, fileIndex: Int, symbolIndex: Int): ByteArray
-    protected abstract fun readType(moduleDescriptor: ModuleDescriptor, fileIndex: Int, typeIndex: Int): ByteArray
-    protected abstract fun readString(moduleDescriptor: ModuleDescriptor, fileIndex: Int, stringIndex: Int): ByteArray
-    protected abstract fun readBody(moduleDescriptor: ModuleDescriptor, fileIndex: Int, bodyIndex: Int): ByteArray
-    protected abstract fun readFile(moduleDescriptor: ModuleDescriptor, fileIndex: Int): ByteArray
+    protected abstract fun reader(moduleDescriptor: ModuleDescriptor, fileIndex: Int, uniqId: UniqId): ByteBuffer
+    protected abstract fun readSymbol(moduleDescriptor: ModuleDescriptor, fileIndex: Int, symbolIndex: Int): ByteBuffer
+    protected abstract fun readType(moduleDescriptor: ModuleDescriptor, fileIndex: Int, typeIndex: Int): ByteBuffer
+    protected abstract fun readString(moduleDescriptor: ModuleDescriptor, fileIndex: Int, stringIndex: Int): ByteBuffer
+    protected abstract fun readBody(moduleDescriptor: ModuleDescriptor, fileIndex: Int, bodyIndex: Int): ByteBuffer
+    protected abstract fun readFile(moduleDescriptor: ModuleDescriptor, fileIndex: Int): ByteBuffer
     protected abstract fun readFileCount(moduleDescriptor: ModuleDescriptor): Int
 
     protected abstract fun checkAccessibility(declarationDescriptor: DeclarationDescriptor): Boolean
@@ -588,7 +640,84 @@ abstract class KotlinIrLinker(
             "getDeclaration: symbol ${symbol} is unbound, descriptor = ${symbol.descriptor}, hash = ${symbol.descriptor.hashCode()}"
         }
 
-        return symbol.owner as IrDeclaration
+        val declaration = symbol.owner as IrDeclaration
+        // The declaration is requested from outside of the deserialized modules, so its body is going to be used
+        if (declaration is IrFunction) {
+            deserializeFunctionBody(declaration)
+        }
+        return declaration
+    }
+
+    /**
+     * Deserializes the body of [function], if it was postponed, along with the top level declarations it references,
+     * and returns the body of [function].
+     *
+     * New declarations may be added to the deserialized files, so this must not be called while they are being traversed.
+     */
+    fun deserializeFunctionBody(function: IrFunction): IrBody? {
+        val postponedBody = postponedFunctionBodies.remove(function) ?: return function.body
+        postponedBody.fileDeserializer.deserializePostponedFunctionBody(function, postponedBody.bodyIndex)
+        elementsToScan.add(function.body!!)
+
+        if (modulesWithReachableTopLevels.isNotEmpty()) {
+            deserializeAllReachableTopLevels()
+        }
+
+        return function.body
+    }
+
+    /**
+     * Deserializes the postponed bodies of the functions referenced from [roots], from the declarations requested with
+     * [getDeclaration] and, transitively, from the declarations and bodies deserialized meanwhile.
+     * The functions which are still not referenced can't be called by the code of [roots], and are removed from their files.
+     */
+    fun deserializeReachableFunctionBodies(roots: List<IrElement>) {
+        elementsToScan.addAll(roots)
+
+        val referencedFunctions = mutableSetOf<IrFunction>()
+        val collector = object : IrElementVisitorVoid {
+            override fun visitElement(element: IrElement) {
+                element.acceptChildrenVoid(this)
+            }
+
+            override fun visitDeclarationReference(expression: IrDeclarationReference) {
+                addIfPostponed(expression.symbol)
+                super.visitDeclarationReference(expression)
+            }
+
+            override fun visitMemberAccess(expression: IrMemberAccessExpression) {
+                addIfPostponed(expression.symbol)
+                super.visitMemberAccess(expression)
+            }
+
+            override fun visitPropertyReference(expression: IrPropertyReference) {
+                expression.getter?.let { addIfPostponed(it) }
+                expression.setter?.let { addIfPostponed(it) }
+                super.visitPropertyReference(expression)
+            }
+
+            private fun addIfPostponed(symbol: IrSymbol) {
+                val owner = if (symbol.isBound) symbol.owner else return
+                if (owner is IrFunction && owner in postponedFunctionBodies) {
+                    referencedFunctions.add(owner)
+                }
+            }
+        }
+
+        while (elementsToScan.isNotEmpty()) {
+            val element = elementsToScan.removeAt(elementsToScan.lastIndex)
+            element.acceptVoid(collector)
+
+            for (function in referencedFunctions) {
+                deserializeFunctionBody(function)
+            }
+            referencedFunctions.clear()
+        }
+
+        for (function in postponedFunctionBodies.keys) {
+            (function.parent as IrFile).declarations.remove(function)
+        }
+        postponedFunctionBodies.clear()
     }
 
     // TODO: This is Native specific. Eliminate me.
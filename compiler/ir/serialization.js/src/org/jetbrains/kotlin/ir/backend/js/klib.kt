@@ -178,16 +178,45 @@ fun loadIr(
     configuration: CompilerConfiguration,
     allDependencies: KotlinLibraryResolveResult,
     friendDependencies: List<KotlinLibrary>
-): IrModuleInfo {
+): IrModuleInfo =
+    loadIr(project, files, analyzeFilesForIr(project, files, configuration, allDependencies, friendDependencies))
+
+/**
+ * Result of the frontend analysis of a module, from which its IR can be loaded with [loadIr].
+ */
+class JsIrAnalysisResult internal constructor(
+    internal val depsDescriptors: ModulesStructure,
+    internal val analysisResult: JsAnalysisResult
+)
+
+/**
+ * Analyzes [files] and reports the diagnostics to the message collector of [configuration].
+ *
+ * @throws JsIrCompilationError if there are errors
+ */
+fun analyzeFilesForIr(
+    project: Project,
+    files: List<KtFile>,
+    configuration: CompilerConfiguration,
+    allDependencies: KotlinLibraryResolveResult,
+    friendDependencies: List<KotlinLibrary>
+): JsIrAnalysisResult {
     val depsDescriptors = ModulesStructure(project, files, configuration, allDependencies, friendDependencies)
+    return JsIrAnalysisResult(depsDescriptors, depsDescriptors.runAnalysis())
+}
 
-    val psi2IrContext = runAnalysisAndPreparePsi2Ir(depsDescriptors)
+fun loadIr(project: Project, files: List<KtFile>, analysis: JsIrAnalysisResult): IrModuleInfo {
+    val depsDescriptors = analysis.depsDescriptors
+    val allDependencies = depsDescriptors.allDependencies
+
+    val psi2IrContext = preparePsi2Ir(depsDescriptors, analysis.analysisResult)
 
     val irBuiltIns = psi2IrContext.irBuiltIns
     val symbolTable = psi2IrContext.symbolTable
     val moduleDescriptor = psi2IrContext.moduleDescriptor
 
-    val deserializer = JsIrLinker(moduleDescriptor, JsMangler, emptyLoggingContext, irBuiltIns, symbolTable)
+    val postponeFunctionBodies = depsDescriptors.compilerConfiguration.getBoolean(JSConfigurationKeys.LAZY_IR_FUNCTION_BODIES)
+    val deserializer = JsIrLinker(moduleDescriptor, JsMangler, emptyLoggingContext, irBuiltIns, symbolTable, postponeFunctionBodies)
 
     val deserializedModuleFragments = sortDependencies(allDependencies.getFullList(), depsDescriptors.descriptors).map {
         deserializer.deserializeIrModuleHeader(depsDescriptors.getModuleDescriptor(it))!!
@@ -200,9 +229,10 @@ fun loadIr(
     return IrModuleInfo(moduleFragment, deserializedModuleFragments, irBuiltIns, symbolTable, deserializer)
 }
 
-private fun runAnalysisAndPreparePsi2Ir(depsDescriptors: ModulesStructure): GeneratorContext {
-    val analysisResult = depsDescriptors.runAnalysis()
+private fun runAnalysisAndPreparePsi2Ir(depsDescriptors: ModulesStructure): GeneratorContext =
+    preparePsi2Ir(depsDescriptors, depsDescriptors.runAnalysis())
 
+private fun preparePsi2Ir(depsDescriptors: ModulesStructure, analysisResult: JsAnalysisResult): GeneratorContext {
     return GeneratorContext(
         Psi2IrConfiguration(),
         analysisResult.moduleDescriptor,
@@ -277,7 +307,7 @@ fun getModuleDescriptorByLibrary(current: KotlinLibrary, mapping: Map<String, Mo
 
 object JsIrCompilationError : Throwable()
 
-private class ModulesStructure(
+internal class ModulesStructure(
     private val project: Project,
     private val files: List<KtFile>,
     val compilerConfiguration: CompilerConfiguration,
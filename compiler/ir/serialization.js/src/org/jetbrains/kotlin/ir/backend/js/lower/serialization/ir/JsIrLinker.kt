@@ -23,8 +23,9 @@ class JsIrLinker(
     mangler: KotlinMangler,
     logger: LoggingContext,
     builtIns: IrBuiltIns,
-    symbolTable: SymbolTable
-) : KotlinIrLinker(logger, builtIns, symbolTable, emptyList(), null, mangler),
+    symbolTable: SymbolTable,
+    postponeFunctionBodies: Boolean = false
+) : KotlinIrLinker(logger, builtIns, symbolTable, emptyList(), null, mangler, postponeFunctionBodies),
     DescriptorUniqIdAware by DeserializedDescriptorUniqIdAware {
 
     override val descriptorReferenceDeserializer =
@@ -23,6 +23,7 @@ import org.jetbrains.kotlin.resolve.calls.inference.model.ConstraintKind.UPPER
 import org.jetbrains.kotlin.resolve.calls.model.KotlinCallDiagnostic
 import org.jetbrains.kotlin.types.*
 import org.jetbrains.kotlin.types.checker.KotlinTypeRefiner
+import org.jetbrains.kotlin.types.checker.NewKotlinTypeChecker
 import org.jetbrains.kotlin.types.model.*
 import org.jetbrains.kotlin.types.refinement.TypeRefinement
 import java.util.*
@@ -31,7 +32,8 @@ import kotlin.math.max
 class ConstraintInjector(
     val constraintIncorporator: ConstraintIncorporator,
     val typeApproximator: AbstractTypeApproximator,
-    val kotlinTypeRefiner: KotlinTypeRefiner
+    val kotlinTypeRefiner: KotlinTypeRefiner,
+    private val kotlinTypeChecker: NewKotlinTypeChecker
 ) {
     private val ALLOWED_DEPTH_DELTA_FOR_INCORPORATION = 1
 
@@ -136,6 +138,9 @@ class ConstraintInjector(
             return baseContext.areEqualTypeConstructors(a, b)
         }
 
+        override val subtypingCache: TypeConstructorSubtypingCache?
+            get() = kotlinTypeChecker.subtypingCache ?: baseContext.subtypingCache
+
         override fun prepareType(type: KotlinTypeMarker): KotlinTypeMarker {
             return baseContext.prepareType(type)
         }
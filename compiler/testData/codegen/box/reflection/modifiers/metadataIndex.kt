@@ -0,0 +1,85 @@
+// IGNORE_BACKEND_FIR: JVM_IR
+// TARGET_BACKEND: JVM
+
+// WITH_REFLECT
+
+// Modifiers and constructor parameters of Kotlin classes are read from their metadata without descriptors.
+// This test checks that the answers are the same as the ones of class descriptors.
+
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+data class Data(val x: Int, val y: String = "")
+sealed class Sealed
+abstract class Abstract(vararg val xs: Int)
+open class Open protected constructor(x: Int) {
+    constructor() : this(0)
+    internal constructor(s: String, vararg t: String) : this(s.length + t.size)
+
+    inner class Inner(val y: Int = 0)
+}
+private class Private private constructor(val x: Int = 42)
+internal class Internal @JvmOverloads constructor(val x: Int, val y: Int = 1, val z: Int = 2)
+interface Interface
+object Object
+enum class Enum(val x: Int = 0) { A, B(1) }
+annotation class Annotation(val x: Int, val y: String = "")
+
+class WithCompanion {
+    companion object Named
+
+    protected class Protected(vararg val xs: Any?)
+}
+
+private fun Any.call(name: String): Any? =
+    javaClass.getMethod(name).apply { isAccessible = true }.invoke(this)
+
+// The descriptor of a KClassImpl is reached via Java reflection, since its type is relocated in kotlin-reflect
+private val KClass<*>.descriptor: Any
+    get() = call("getDescriptor")!!
+
+private val KClass<*>.modalityName: String
+    get() = when {
+        isSealed -> "SEALED"
+        isAbstract -> "ABSTRACT"
+        isOpen -> "OPEN"
+        else -> "FINAL"
+    }
+
+private fun checkClass(klass: KClass<*>) {
+    val descriptor = klass.descriptor
+
+    assertEquals(descriptor.call("getVisibility").toString(), klass.visibility?.name?.toLowerCase() ?: "local", "$klass")
+    assertEquals(descriptor.call("getModality").toString(), klass.modalityName, "$klass")
+    assertEquals(descriptor.call("isData"), klass.isData, "$klass")
+    assertEquals(descriptor.call("isInner"), klass.isInner, "$klass")
+    assertEquals(descriptor.call("isCompanionObject"), klass.isCompanion, "$klass")
+
+    val expected = (descriptor.call("getConstructors") as Collection<*>).map { constructor ->
+        (constructor!!.call("getValueParameters") as List<*>).map { parameter ->
+            listOf(
+                parameter!!.call("getName").toString(),
+                parameter.call("declaresDefaultValue"),
+                parameter.call("getVarargElementType") != null
+            )
+        }
+    }
+    val actual = klass.constructors.map { constructor ->
+        constructor.parameters.map { parameter ->
+            listOf(parameter.name, parameter.isOptional, parameter.isVararg)
+        }
+    }
+    assertEquals(expected, actual, "$klass")
+}
+
+fun box(): String {
+    for (klass in listOf(
+        Data::class, Sealed::class, Abstract::class, Open::class, Open.Inner::class, Private::class, Internal::class,
+        Interface::class, Object::class, Enum::class, Annotation::class, WithCompanion::class, WithCompanion.Named::class,
+        WithCompanion.Protected::class
+    )) {
+        checkClass(klass)
+    }
+
+    return "OK"
+}
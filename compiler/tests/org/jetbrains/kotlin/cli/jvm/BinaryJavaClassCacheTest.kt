@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.cli.jvm.compiler.BinaryJavaClassCache
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+
+class BinaryJavaClassCacheTest : TestCase() {
+    private fun classId(name: String) = ClassId.topLevel(FqName(name))
+
+    fun testMissingClassesAreCached() {
+        val cache = BinaryJavaClassCache()
+        var computations = 0
+
+        repeat(3) {
+            assertNull(cache.getOrPut(classId("foo.Bar")) { computations++; null })
+        }
+
+        assertEquals(1, computations)
+        assertEquals(1, cache.missCount)
+        assertEquals(2, cache.hitCount)
+    }
+
+    fun testLeastRecentlyUsedClassIsEvicted() {
+        val cache = BinaryJavaClassCache(maxSize = 2)
+        val computed = mutableListOf<String>()
+        fun lookup(name: String) = cache.getOrPut(classId(name)) { computed.add(name); null }
+
+        lookup("A")
+        lookup("B")
+        lookup("A")
+        lookup("C")
+        lookup("A")
+        lookup("B")
+
+        assertEquals(listOf("A", "B", "C", "B"), computed)
+    }
+}
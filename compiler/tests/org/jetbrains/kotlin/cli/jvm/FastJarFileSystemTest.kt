@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import org.jetbrains.kotlin.cli.jvm.compiler.StreamingJarWriter
+import org.jetbrains.kotlin.cli.jvm.compiler.jarfs.FastJarFileSystem
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.MockLibraryUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.io.IOException
+import java.util.jar.Manifest
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class FastJarFileSystemTest : TestCaseWithTmpdir() {
+    private val entries = linkedMapOf(
+        "a/b/C.class" to ByteArray(1000) { (it % 7).toByte() },
+        "a/b/D.class" to "Short".toByteArray(),
+        "a/E.class" to ByteArray(0),
+        "F.class" to "Root".toByteArray()
+    )
+
+    fun testDeflatedEntries() {
+        val jar = writeJar("deflated.jar", stored = false)
+        checkJar(jar)
+    }
+
+    fun testStoredEntries() {
+        val jar = writeJar("stored.jar", stored = true)
+        checkJar(jar)
+    }
+
+    fun testJarFromStreamingJarWriter() {
+        for (compress in listOf(true, false)) {
+            val jar = File(tmpdir, "streaming-$compress.jar")
+            StreamingJarWriter(jar, Manifest(), compress, threads = 2).use { writer ->
+                for ((name, bytes) in entries) {
+                    writer.write(name, bytes)
+                }
+                writer.finish()
+            }
+            checkJar(jar)
+        }
+    }
+
+    fun testInvalidJar() {
+        val file = File(tmpdir, "invalid.jar").apply { writeText("Not a jar") }
+        withFileSystem { fileSystem ->
+            assertNull(fileSystem.findFileByPath("$file!/"))
+        }
+    }
+
+    fun testRewrittenJar() {
+        val jar = writeJar("rewritten.jar", stored = false)
+        withFileSystem { fileSystem ->
+            assertNotNull(fileSystem.findFileByPath("$jar!/F.class"))
+        }
+
+        // Nothing of the old jar is kept open or mapped, so it can be replaced between compilations
+        ZipOutputStream(jar.outputStream()).use { zos ->
+            zos.putNextEntry(ZipEntry("G.class"))
+            zos.write("Replaced".toByteArray())
+        }
+        jar.setLastModified(jar.lastModified() + 2000)
+
+        withFileSystem { fileSystem ->
+            assertNull(fileSystem.findFileByPath("$jar!/F.class"))
+            assertEquals("Replaced", String(fileSystem.findFileByPath("$jar!/G.class")!!.contentsToByteArray()))
+        }
+    }
+
+    fun testDisposedFileSystem() {
+        val jar = writeJar("disposed.jar", stored = true)
+        val fileSystem = FastJarFileSystem()
+        val file = fileSystem.findFileByPath("$jar!/F.class")!!
+        assertEquals("Root", String(file.contentsToByteArray()))
+
+        fileSystem.dispose()
+        try {
+            file.contentsToByteArray()
+            fail("Contents must not be read after the file system is disposed")
+        } catch (e: IOException) {
+        }
+
+        // The cached index is shared, but every file system opens the jar by itself
+        withFileSystem { newFileSystem ->
+            assertEquals("Root", String(newFileSystem.findFileByPath("$jar!/F.class")!!.contentsToByteArray()))
+        }
+    }
+
+    fun testConsecutiveCompilations() {
+        val sources = File(tmpdir, "lib")
+        File(sources, "lib/A.java").apply { parentFile.mkdirs() }.writeText(
+            """
+            package lib;
+
+            public class A {
+                public static class Nested {}
+
+                public String foo(Nested n) { return ""; }
+            }
+            """.trimIndent()
+        )
+        val libJar = MockLibraryUtil.compileJavaFilesLibraryToJar(sources.path, "lib")
+        val usage = File(tmpdir, "usage.kt").apply { writeText("fun use(a: lib.A): String = a.foo(lib.A.Nested())") }
+
+        // Classes read by the first compilation must not be reused through jars of its file system, which is disposed by then
+        repeat(2) { i ->
+            CompilerTestUtil.executeCompilerAssertSuccessful(
+                K2JVMCompiler(),
+                listOf(
+                    "-Xuse-fast-jar-file-system", "-no-stdlib", "-no-reflect",
+                    "-cp", libJar.path, "-d", File(tmpdir, "out$i").path, usage.path
+                )
+            )
+        }
+    }
+
+    private inline fun withFileSystem(block: (FastJarFileSystem) -> Unit) {
+        val fileSystem = FastJarFileSystem()
+        try {
+            block(fileSystem)
+        } finally {
+            fileSystem.dispose()
+        }
+    }
+
+    private fun checkJar(jar: File) = withFileSystem { fileSystem ->
+        val root = fileSystem.findFileByPath("$jar!/")!!
+        assertTrue(root.isDirectory)
+        assertEquals(listOf("F.class", "a"), root.children.map { it.name }.sorted())
+
+        for ((name, bytes) in entries) {
+            val file = fileSystem.findFileByPath("$jar!/$name")!!
+            assertFalse(file.isDirectory)
+            assertEquals(root.path + name, file.path)
+            assertEquals(bytes.size.toLong(), file.length)
+            assertTrue(bytes.contentEquals(file.contentsToByteArray()))
+        }
+
+        val directory = fileSystem.findFileByPath("$jar!/a/b")!!
+        assertTrue(directory.isDirectory)
+        assertSame(directory, directory.findChild("C.class")!!.parent)
+        assertNull(directory.findChild("G.class"))
+    }
+
+    private fun writeJar(name: String, stored: Boolean): File {
+        val file = File(tmpdir, name)
+        ZipOutputStream(file.outputStream()).use { zos ->
+            zos.putNextEntry(ZipEntry("a/"))
+            for ((entryName, bytes) in entries) {
+                val entry = ZipEntry(entryName)
+                if (stored) {
+                    entry.method = ZipEntry.STORED
+                    entry.size = bytes.size.toLong()
+                    entry.crc = CRC32().apply { update(bytes) }.value
+                }
+                zos.putNextEntry(entry)
+                zos.write(bytes)
+            }
+        }
+        return file
+    }
+}
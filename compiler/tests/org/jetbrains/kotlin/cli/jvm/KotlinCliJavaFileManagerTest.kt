@@ -19,9 +19,11 @@ package org.jetbrains.kotlin.cli.jvm
 import com.intellij.core.CoreJavaFileManager
 import com.intellij.openapi.components.ServiceManager
 import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.psi.PsiManager
 import com.intellij.psi.search.GlobalSearchScope
 import junit.framework.TestCase
 import org.intellij.lang.annotations.Language
+import org.jetbrains.kotlin.cli.jvm.compiler.BinaryJavaClassCache
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCliJavaFileManagerImpl
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
@@ -181,6 +183,28 @@ class KotlinCliJavaFileManagerTest : KotlinTestWithEnvironment() {
         TestCase.assertNull("Should not find class in empty scope", manager.findClass("foo.Test", GlobalSearchScope.EMPTY_SCOPE))
     }
 
+    fun testSharedBinaryCacheHasOneOwner() {
+        val cache = BinaryJavaClassCache()
+        val first = KotlinCliJavaFileManagerImpl(PsiManager.getInstance(project))
+        val second = KotlinCliJavaFileManagerImpl(PsiManager.getInstance(project))
+        val index = JvmDependenciesIndexImpl(emptyList())
+
+        first.initialize(index, emptyList(), SingleJavaFileRootsIndex(emptyList()), usePsiClassFilesReading = false, binaryCache = cache)
+        // The second compilation with the same classpath must not resolve classes through the first one
+        second.initialize(index, emptyList(), SingleJavaFileRootsIndex(emptyList()), usePsiClassFilesReading = false, binaryCache = cache)
+        TestCase.assertFalse(cache.tryAcquire(second))
+
+        first.releaseBinaryCache()
+        TestCase.assertTrue(cache.tryAcquire(second))
+        TestCase.assertFalse(cache.tryAcquire(first))
+
+        // Classes read by a compilation with an extended classpath may refer to the new roots, so the cache is not shared anymore
+        second.initialize(index, emptyList(), SingleJavaFileRootsIndex(emptyList()), usePsiClassFilesReading = false, binaryCache = cache)
+        second.onClasspathUpdated()
+        second.releaseBinaryCache()
+        TestCase.assertFalse(cache.tryAcquire(first))
+    }
+
     override fun createEnvironment(): KotlinCoreEnvironment {
         javaFilesDir = KotlinTestUtils.tmpDir("java-file-manager-test")
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import org.jetbrains.kotlin.cli.jvm.compiler.CompileEnvironmentUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.StreamingJarWriter
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.jar.JarFile
+import java.util.jar.JarInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipException
+
+class StreamingJarWriterTest : TestCaseWithTmpdir() {
+    private val entries = linkedMapOf(
+        "a/b/C.class" to ByteArray(100000) { (it % 13).toByte() },
+        "a/b/D.class" to "Short".toByteArray(),
+        "a/E.class" to ByteArray(0),
+        "F.class" to "Root".toByteArray()
+    )
+
+    fun testRoundTrip() {
+        for (compress in listOf(true, false)) {
+            for (threads in listOf(1, 4)) {
+                val jar = File(tmpdir, "test-$compress-$threads.jar")
+                // A tiny limit of pending bytes makes the writer wait for compression of almost every entry
+                writeJar(jar, compress, threads, maxPendingBytes = 16)
+                checkJar(jar, if (compress) ZipEntry.DEFLATED else ZipEntry.STORED)
+            }
+        }
+    }
+
+    fun testSameContentsSameJar() {
+        val first = File(tmpdir, "first.jar")
+        val second = File(tmpdir, "second.jar")
+        writeJar(first, compress = true, threads = 4)
+        writeJar(second, compress = true, threads = 1)
+        assertTrue(first.readBytes().contentEquals(second.readBytes()))
+    }
+
+    fun testDuplicateEntry() {
+        val jar = File(tmpdir, "duplicate.jar")
+        createWriter(jar, compress = true, threads = 2).use { writer ->
+            writer.write("a/B.class", byteArrayOf(1))
+            try {
+                writer.write("a/B.class", byteArrayOf(2))
+                fail("Duplicate entry must not be written")
+            } catch (e: ZipException) {
+                assertEquals("duplicate entry: a/B.class", e.message)
+            }
+            try {
+                writer.write(JarFile.MANIFEST_NAME, byteArrayOf(3))
+                fail("Duplicate manifest must not be written")
+            } catch (e: ZipException) {
+            }
+        }
+    }
+
+    fun testUnfinishedJarDoesNotReplaceExistingOne() {
+        val jar = File(tmpdir, "existing.jar")
+        writeJar(jar, compress = true, threads = 1)
+        val contents = jar.readBytes()
+
+        createWriter(jar, compress = true, threads = 2).use { writer ->
+            writer.write("G.class", byteArrayOf(1, 2, 3))
+        }
+
+        assertTrue(contents.contentEquals(jar.readBytes()))
+        assertEquals(listOf(jar.name), tmpdir.list()!!.toList())
+    }
+
+    private fun createWriter(
+        jar: File,
+        compress: Boolean,
+        threads: Int,
+        maxPendingBytes: Long = StreamingJarWriter.DEFAULT_MAX_PENDING_BYTES
+    ) = StreamingJarWriter(jar, CompileEnvironmentUtil.createManifest(FqName("a.b.C")), compress, threads, maxPendingBytes)
+
+    private fun writeJar(
+        jar: File,
+        compress: Boolean,
+        threads: Int,
+        maxPendingBytes: Long = StreamingJarWriter.DEFAULT_MAX_PENDING_BYTES
+    ) {
+        createWriter(jar, compress, threads, maxPendingBytes).use { writer ->
+            for ((name, bytes) in entries) {
+                writer.write(name, bytes)
+            }
+            writer.finish()
+        }
+    }
+
+    private fun checkJar(jar: File, method: Int) {
+        JarFile(jar).use { jarFile ->
+            assertEquals("a.b.C", jarFile.manifest.mainAttributes.getValue("Main-Class"))
+            assertEquals(listOf(JarFile.MANIFEST_NAME) + entries.keys, jarFile.entries().toList().map { it.name })
+
+            for ((name, bytes) in entries) {
+                val entry = jarFile.getJarEntry(name)
+                assertEquals(method, entry.method)
+                assertEquals(bytes.size.toLong(), entry.size)
+                assertTrue(bytes.contentEquals(jarFile.getInputStream(entry).readBytes()))
+            }
+        }
+
+        // JarInputStream reads local headers instead of the central directory
+        JarInputStream(jar.inputStream()).use { stream ->
+            assertEquals("a.b.C", stream.manifest.mainAttributes.getValue("Main-Class"))
+            val names = generateSequence { stream.nextJarEntry }.map { entry ->
+                assertTrue(entries.getValue(entry.name).contentEquals(stream.readBytes()))
+                entry.name
+            }.toList()
+            assertEquals(entries.keys.toList(), names)
+        }
+    }
+}
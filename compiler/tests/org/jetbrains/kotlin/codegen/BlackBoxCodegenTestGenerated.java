@@ -24539,6 +24539,11 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/javaVisibility.kt");
             }
 
+            @TestMetadata("metadataIndex.kt")
+            public void testMetadataIndex() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/modifiers/metadataIndex.kt");
+            }
+
             @TestMetadata("properties.kt")
             public void testProperties() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/properties.kt");
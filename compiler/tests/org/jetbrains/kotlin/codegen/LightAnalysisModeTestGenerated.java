@@ -23356,6 +23356,11 @@ public class LightAnalysisModeTestGenerated extends AbstractLightAnalysisModeTes
                 runTest("compiler/testData/codegen/box/reflection/modifiers/javaVisibility.kt");
             }
 
+            @TestMetadata("metadataIndex.kt")
+            public void testMetadataIndex() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/modifiers/metadataIndex.kt");
+            }
+
             @TestMetadata("properties.kt")
             public void testProperties() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/properties.kt");
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+
+open class ParallelBackendTest : CodegenTestCase() {
+    fun testSameBytecodeAsInSerialMode() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY)
+        myFiles = CodegenTestFiles.create(
+            "file.kt",
+            """
+                inline class Meters(val value: Int)
+
+                inline class Name(val value: String)
+
+                fun sum(values: List<Meters>): Meters {
+                    var result = Meters(0)
+                    for (value in values) {
+                        result = Meters(result.value + value.value)
+                    }
+                    return result
+                }
+
+                fun names(values: List<String?>): List<Name> =
+                    values.mapNotNull { it?.let(::Name) }.filter { it.value.isNotEmpty() }
+
+                fun boxing(x: Int?, y: Long): Any {
+                    val boxed: Any = y
+                    if (x != null && x > 0) {
+                        return (boxed as Long) + x
+                    }
+                    return boxed
+                }
+
+                inline fun <T> withLock(lock: Any, block: () -> T): T = synchronized(lock) { block() }
+
+                class Counter {
+                    private var count = 0
+
+                    fun next(): Int = withLock(this) { ++count }
+
+                    fun describe(x: Any?): String = when (x) {
+                        null -> "null"
+                        is Int -> "int " + (x + count)
+                        is Meters -> "meters " + x.value
+                        else -> try {
+                            x.toString()
+                        } catch (e: RuntimeException) {
+                            "error"
+                        } finally {
+                            count++
+                        }
+                    }
+                }
+
+                object Registry {
+                    val counters = (1..10).map { Counter() }.associateBy { it.next() }
+                }
+            """.trimIndent(),
+            myEnvironment.project
+        )
+
+        assertSameBytecodeInParallelMode()
+    }
+
+    fun testSameBytecodeForManyFilesAsInSerialMode() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.NO_KOTLIN_REFLECT)
+        // Local classes, lambdas and type aliases in different files are lowered at the same time
+        myFiles = CodegenTestFiles.create((1..8).map { i ->
+            KotlinTestUtils.createFile(
+                "file$i.kt",
+                """
+                    package p$i
+
+                    @Target(AnnotationTarget.TYPEALIAS)
+                    annotation class Marker$i
+
+                    @Marker$i
+                    typealias Callback$i = (Int) -> String
+
+                    fun callbacks$i(): List<Callback$i> {
+                        class Local(val x: Int) {
+                            fun f(): String = "local $i " + x
+                        }
+                        val anonymous = object {
+                            override fun toString() = "anonymous $i"
+                        }
+                        return listOf(
+                            { x -> Local(x).f() },
+                            fun(x: Int): String = anonymous.toString() + x,
+                            { x -> listOf(x).map { y -> { "$i " + y }() }.single() }
+                        )
+                    }
+
+                    class Holder$i {
+                        val callback: Callback$i = { x -> callbacks$i()[x % 3](x) }
+                    }
+                """.trimIndent(),
+                myEnvironment.project
+            )
+        })
+
+        assertSameBytecodeInParallelMode()
+    }
+
+    private fun assertSameBytecodeInParallelMode() {
+        val serial = generateBytes(1)
+        val parallel = generateBytes(4)
+
+        assertEquals(serial.keys, parallel.keys)
+        for ((path, bytes) in serial) {
+            assertTrue("Bytecode differs for $path", bytes.contentEquals(parallel.getValue(path)))
+        }
+    }
+
+    private fun generateBytes(backendThreads: Int): Map<String, ByteArray> {
+        val configuration = myEnvironment.configuration.copy()
+        configuration.put(JVMConfigurationKeys.BACKEND_THREADS, backendThreads)
+
+        val state = GenerationUtils.compileFiles(
+            myFiles.psiFiles, configuration, ClassBuilderFactories.TEST, myEnvironment::createPackagePartProvider
+        )
+        try {
+            return state.factory.asList().associate { it.relativePath to it.asByteArray() }
+        } finally {
+            state.destroy()
+        }
+    }
+}
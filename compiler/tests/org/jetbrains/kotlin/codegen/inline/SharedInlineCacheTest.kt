@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import junit.framework.TestCase
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.InsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class SharedInlineCacheTest : TestCase() {
+    private var computed = 0
+
+    fun testHitsAndMisses() {
+        val cache = SharedInlineCache(1024 * 1024)
+        val key = SharedInlineCache.keyOf(byteArrayOf(1, 2, 3))
+
+        val first = cache.getMethodNode(key, "foo", "()V") { methodNode(1) }
+        val second = cache.getMethodNode(key, "foo", "()V") { fail("Must be cached"); null }
+        cache.getMethodNode(key, "bar", "()V") { methodNode(1) }
+
+        assertSame(first, second)
+        assertEquals(2, computed)
+    }
+
+    fun testChangedContentsAreNotReused() {
+        val cache = SharedInlineCache(1024 * 1024)
+
+        val old = cache.getMethodNode(SharedInlineCache.keyOf(byteArrayOf(1, 2, 3)), "foo", "()V") { methodNode(1) }
+        // Same size, as if the class file was rewritten in place within the timestamp granularity
+        val new = cache.getMethodNode(SharedInlineCache.keyOf(byteArrayOf(1, 2, 4)), "foo", "()V") { methodNode(2) }
+        val newAgain = cache.getMethodNode(SharedInlineCache.keyOf(byteArrayOf(1, 2, 4)), "foo", "()V") { fail("Must be cached"); null }
+
+        assertNotSame(old, new)
+        assertSame(new, newAgain)
+        assertEquals(2, computed)
+    }
+
+    fun testLeastRecentlyUsedAreEvicted() {
+        // Each node below is estimated at 128 bytes
+        val cache = SharedInlineCache(256)
+        val key = SharedInlineCache.keyOf(byteArrayOf(1))
+
+        cache.getMethodNode(key, "a", "()V") { methodNode(1) }
+        cache.getMethodNode(key, "b", "()V") { methodNode(1) }
+        cache.getMethodNode(key, "a", "()V") { fail("Must be cached"); null }
+        cache.getMethodNode(key, "c", "()V") { methodNode(1) }
+
+        cache.getMethodNode(key, "a", "()V") { fail("Must be cached"); null }
+        assertNotNull(cache.getMethodNode(key, "b", "()V") { methodNode(1) })
+        assertEquals(4, computed)
+    }
+
+    fun testClear() {
+        val cache = SharedInlineCache(1024 * 1024)
+        val key = SharedInlineCache.keyOf(byteArrayOf(1))
+        cache.getMethodNode(key, "foo", "()V") { methodNode(1) }
+
+        cache.clear()
+
+        cache.getMethodNode(key, "foo", "()V") { methodNode(1) }
+        assertEquals(2, computed)
+    }
+
+    fun testClassFileKeyIsComputedOnce() {
+        val contents = ClassFileContents(byteArrayOf(1, 2, 3))
+
+        assertSame(contents.key, contents.key)
+        assertEquals(SharedInlineCache.keyOf(byteArrayOf(1, 2, 3)), contents.key)
+    }
+
+    private fun methodNode(instructions: Int): SMAPAndMethodNode {
+        computed++
+        val node = MethodNode(Opcodes.API_VERSION, Opcodes.ACC_STATIC, "foo", "()V", null, null)
+        repeat(instructions) {
+            node.instructions.add(InsnNode(Opcodes.NOP))
+        }
+        return SMAPAndMethodNode(node, SMAP(listOf(FileMapping.SKIP)))
+    }
+}
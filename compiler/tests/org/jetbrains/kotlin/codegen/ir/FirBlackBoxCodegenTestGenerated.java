@@ -23023,6 +23023,11 @@ public class FirBlackBoxCodegenTestGenerated extends AbstractFirBlackBoxCodegenT
                 runTest("compiler/testData/codegen/box/reflection/modifiers/javaVisibility.kt");
             }
 
+            @TestMetadata("metadataIndex.kt")
+            public void testMetadataIndex() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/modifiers/metadataIndex.kt");
+            }
+
             @TestMetadata("properties.kt")
             public void testProperties() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/properties.kt");
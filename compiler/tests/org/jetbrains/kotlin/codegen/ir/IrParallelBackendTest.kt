@@ -0,0 +1,14 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.ir
+
+import org.jetbrains.kotlin.codegen.ParallelBackendTest
+import org.jetbrains.kotlin.test.TargetBackend
+
+// Also runs the per-file lowerings of JvmLower concurrently, see performByIrFileConcurrently
+class IrParallelBackendTest : ParallelBackendTest() {
+    override fun getBackend() = TargetBackend.JVM_IR
+}
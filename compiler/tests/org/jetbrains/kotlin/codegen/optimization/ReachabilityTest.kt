@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.common.findReachableInstructions
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.*
+
+class ReachabilityTest : TestCase() {
+    fun testTryCatch() {
+        val tryStart = LabelNode()
+        val tryEnd = LabelNode()
+        val handler = LabelNode()
+        val deadTail = listOf(LabelNode(), InsnNode(ICONST_3), InsnNode(IRETURN))
+
+        doTest(
+            "()I",
+            tryStart,
+            MethodInsnNode(INVOKESTATIC, "Foo", "bar", "()V", false),
+            tryEnd,
+            InsnNode(ICONST_1),
+            InsnNode(IRETURN),
+            handler,
+            VarInsnNode(ASTORE, 0),
+            InsnNode(ICONST_2),
+            InsnNode(IRETURN),
+            *deadTail.toTypedArray(),
+            tryCatchBlocks = listOf(TryCatchBlockNode(tryStart, tryEnd, handler, "java/lang/Exception")),
+            expectedDead = deadTail
+        )
+    }
+
+    fun testHandlerOfUnreachableTryBlock() {
+        val tryStart = LabelNode()
+        val tryEnd = LabelNode()
+        val handler = LabelNode()
+        val dead = listOf(tryStart, MethodInsnNode(INVOKESTATIC, "Foo", "bar", "()V", false), tryEnd, InsnNode(RETURN))
+        val deadHandler = listOf(handler, VarInsnNode(ASTORE, 0), InsnNode(RETURN))
+
+        doTest(
+            "()V",
+            InsnNode(RETURN),
+            *dead.toTypedArray(),
+            *deadHandler.toTypedArray(),
+            tryCatchBlocks = listOf(TryCatchBlockNode(tryStart, tryEnd, handler, null)),
+            expectedDead = dead + deadHandler
+        )
+    }
+
+    fun testTableSwitch() {
+        val case0 = LabelNode()
+        val case1 = LabelNode()
+        val default = LabelNode()
+        val deadCode = listOf(InsnNode(ICONST_5), InsnNode(IRETURN))
+
+        doTest(
+            "(I)I",
+            VarInsnNode(ILOAD, 0),
+            TableSwitchInsnNode(0, 1, default, case0, case1),
+            case0,
+            InsnNode(ICONST_0),
+            InsnNode(IRETURN),
+            case1,
+            InsnNode(ICONST_1),
+            InsnNode(IRETURN),
+            *deadCode.toTypedArray(),
+            default,
+            InsnNode(ICONST_M1),
+            InsnNode(IRETURN),
+            expectedDead = deadCode
+        )
+    }
+
+    fun testLookupSwitch() {
+        val case10 = LabelNode()
+        val default = LabelNode()
+        val deadCase = listOf(LabelNode(), InsnNode(ICONST_2), InsnNode(IRETURN))
+
+        doTest(
+            "(I)I",
+            VarInsnNode(ILOAD, 0),
+            LookupSwitchInsnNode(default, intArrayOf(10), arrayOf(case10)),
+            case10,
+            InsnNode(ICONST_1),
+            InsnNode(IRETURN),
+            *deadCase.toTypedArray(),
+            default,
+            InsnNode(ICONST_0),
+            InsnNode(IRETURN),
+            expectedDead = deadCase
+        )
+    }
+
+    fun testUnreachableTails() {
+        val target = LabelNode()
+        val afterGoto = listOf(InsnNode(NOP), InsnNode(ICONST_0), InsnNode(POP))
+        val afterThrow = listOf(InsnNode(NOP), InsnNode(RETURN))
+
+        doTest(
+            "(Ljava/lang/Throwable;)V",
+            JumpInsnNode(GOTO, target),
+            *afterGoto.toTypedArray(),
+            target,
+            VarInsnNode(ALOAD, 0),
+            InsnNode(ATHROW),
+            *afterThrow.toTypedArray(),
+            expectedDead = afterGoto + afterThrow
+        )
+    }
+
+    fun testConditionalJumpFallsThrough() {
+        val target = LabelNode()
+
+        doTest(
+            "(I)V",
+            VarInsnNode(ILOAD, 0),
+            JumpInsnNode(IFEQ, target),
+            InsnNode(NOP),
+            target,
+            InsnNode(RETURN),
+            expectedDead = emptyList()
+        )
+    }
+
+    private fun doTest(
+        desc: String,
+        vararg insns: AbstractInsnNode,
+        tryCatchBlocks: List<TryCatchBlockNode> = emptyList(),
+        expectedDead: List<AbstractInsnNode>
+    ) {
+        val node = MethodNode(API_VERSION, ACC_STATIC, "test", desc, null, null)
+        for (insn in insns) {
+            node.instructions.add(insn)
+        }
+        node.tryCatchBlocks.addAll(tryCatchBlocks)
+        node.maxLocals = 1
+        node.maxStack = 2
+
+        val reachable = node.findReachableInstructions()
+
+        val actualDead = node.instructions.toArray().filterIndexed { index, _ -> !reachable[index] }
+        assertEquals(expectedDead.map { node.instructions.indexOf(it) }, actualDead.map { node.instructions.indexOf(it) })
+
+        // The result must be the same as the frames computed by a full analysis
+        val frames = MethodAnalyzer("Test", node, OptimizationBasicInterpreter()).analyze()
+        assertEquals(frames.map { it != null }, reachable.toList())
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+@file:Suppress("DEPRECATION")
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.daemon.common.LookupInfoBatch
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.lang.reflect.Proxy
+import java.rmi.UnmarshalException
+
+class RemoteLookupTrackerClientTest : TestCase() {
+    fun testBatchSerialization() {
+        val batch = LookupInfoBatch(
+            arrayOf("a.kt", "foo", "bar"),
+            intArrayOf(0, 1, 2, ScopeKind.PACKAGE.ordinal, 3, 4, 0, 2, 1, ScopeKind.CLASSIFIER.ordinal, -1, -1)
+        )
+
+        val bytes = ByteArrayOutputStream()
+        ObjectOutputStream(bytes).use { it.writeObject(batch) }
+        val deserialized = ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() } as Collection<*>
+
+        assertEquals(
+            listOf(
+                LookupInfo("a.kt", Position(3, 4), "foo", ScopeKind.PACKAGE, "bar"),
+                LookupInfo("a.kt", Position.NO_POSITION, "bar", ScopeKind.CLASSIFIER, "foo")
+            ),
+            deserialized.toList()
+        )
+    }
+
+    fun testLookupsWithPositionsAreDeduplicated() {
+        val facade = TestFacade(requiresPosition = true)
+        val eventManager = EventManagerImpl()
+        val client = RemoteLookupTrackerClient(facade.proxy, eventManager)
+
+        repeat(3) {
+            client.record("a.kt", Position(1, 2), "foo", ScopeKind.PACKAGE, "bar")
+        }
+        client.record("a.kt", Position(1, 3), "foo", ScopeKind.PACKAGE, "bar")
+        client.record("b.kt", Position(1, 2), "foo", ScopeKind.PACKAGE, "bar")
+        client.record("a.kt", Position(1, 2), "foo", ScopeKind.CLASSIFIER, "bar")
+        eventManager.fireCompilationFinished()
+
+        assertEquals(1, facade.recorded.size)
+        assertTrue(facade.recorded.single() is LookupInfoBatch)
+        assertEquals(
+            setOf(
+                LookupInfo("a.kt", Position(1, 2), "foo", ScopeKind.PACKAGE, "bar"),
+                LookupInfo("a.kt", Position(1, 3), "foo", ScopeKind.PACKAGE, "bar"),
+                LookupInfo("b.kt", Position(1, 2), "foo", ScopeKind.PACKAGE, "bar"),
+                LookupInfo("a.kt", Position(1, 2), "foo", ScopeKind.CLASSIFIER, "bar")
+            ),
+            facade.recorded.single().toSet()
+        )
+        assertEquals(4, facade.recorded.single().size)
+    }
+
+    fun testManyDistinctLookupsWithPositions() {
+        val facade = TestFacade(requiresPosition = true)
+        val eventManager = EventManagerImpl()
+        val client = RemoteLookupTrackerClient(facade.proxy, eventManager)
+
+        for (line in 0 until 5000) {
+            client.record("a.kt", Position(line, 0), "foo", ScopeKind.PACKAGE, "bar")
+            client.record("a.kt", Position(line, 0), "foo", ScopeKind.PACKAGE, "bar")
+        }
+        eventManager.fireCompilationFinished()
+
+        assertEquals((0 until 5000).toList(), facade.recorded.single().map { it.position.line })
+    }
+
+    fun testFallbackForClientsWithoutBatches() {
+        val facade = TestFacade(requiresPosition = false, supportsBatches = false)
+        val eventManager = EventManagerImpl()
+        val client = RemoteLookupTrackerClient(facade.proxy, eventManager)
+
+        client.record("a.kt", Position(1, 2), "foo", ScopeKind.PACKAGE, "bar")
+        client.record("a.kt", Position(3, 4), "foo", ScopeKind.CLASSIFIER, "bar")
+        eventManager.fireCompilationFinished()
+
+        val recorded = facade.recorded.single()
+        assertFalse(recorded is LookupInfoBatch)
+        assertEquals(listOf(LookupInfo("a.kt", Position.NO_POSITION, "foo", ScopeKind.CLASSIFIER, "bar")), recorded.toList())
+    }
+
+    private class TestFacade(private val requiresPosition: Boolean, private val supportsBatches: Boolean = true) {
+        val recorded = ArrayList<Collection<LookupInfo>>()
+
+        @Suppress("UNCHECKED_CAST")
+        val proxy = Proxy.newProxyInstance(
+            javaClass.classLoader, arrayOf(CompilerCallbackServicesFacade::class.java)
+        ) { _, method, args ->
+            when (method.name) {
+                "lookupTracker_isDoNothing" -> false
+                "lookupTracker_requiresPosition" -> requiresPosition
+                // An old client doesn't have this method
+                "lookupTracker_supportsBatches" ->
+                    if (supportsBatches) true else throw UnmarshalException("unrecognized method hash: method not supported by remote object")
+                "lookupTracker_record" -> {
+                    recorded.add(args[0] as Collection<LookupInfo>)
+                    null
+                }
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as CompilerCallbackServicesFacade
+    }
+}
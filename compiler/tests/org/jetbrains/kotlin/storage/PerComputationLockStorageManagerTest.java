@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all tests of {@link StorageManagerTest} with per-computation locks, and checks how computations in different threads interact.
+ */
+public class PerComputationLockStorageManagerTest extends StorageManagerTest {
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private ExecutorService executor;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    @Override
+    protected StorageManager createStorageManager() {
+        return LockBasedStorageManager.createWithPerComputationLocks("PerComputationLockStorageManagerTest");
+    }
+
+    public void testUnrelatedValuesAreComputedConcurrently() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch secondComputed = new CountDownLatch(1);
+
+        NotNullLazyValue<String> second = m.createLazyValue(() -> "second");
+        NotNullLazyValue<String> first = m.createLazyValue(() -> {
+            // With one lock for all values, the second value couldn't be computed until this one is
+            await(secondComputed);
+            return "first";
+        });
+
+        Future<String> firstResult = executor.submit(first::invoke);
+        Future<String> secondResult = executor.submit(() -> {
+            String result = second.invoke();
+            secondComputed.countDown();
+            return result;
+        });
+
+        assertEquals("second", secondResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("first", firstResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public void testFunctionComputesOnceInManyThreads() throws Exception {
+        StorageManager m = createStorageManager();
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunction(input -> {
+            count.incrementAndGet();
+            started.countDown();
+            sleep();
+            return input + "!";
+        });
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                await(started);
+                return f.invoke("a");
+            }));
+        }
+        // The first computation is started from the test thread, the others wait for it
+        assertEquals("a!", f.invoke("a"));
+
+        for (Future<String> result : results) {
+            assertEquals("a!", result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, count.get());
+    }
+
+    public void testCycleBetweenThreadsIsRecursion() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        class C {
+            final NotNullLazyValue<String> x = m.createRecursionTolerantLazyValue(() -> {
+                bothStarted.countDown();
+                await(bothStarted);
+                return "x" + this.y.invoke();
+            }, "-");
+
+            final NotNullLazyValue<String> y = m.createRecursionTolerantLazyValue(() -> {
+                bothStarted.countDown();
+                await(bothStarted);
+                return "y" + this.x.invoke();
+            }, "-");
+        }
+        C c = new C();
+
+        Future<String> x = executor.submit(c.x::invoke);
+        Future<String> y = executor.submit(c.y::invoke);
+
+        // A thread closing the cycle sees the other thread's value as a recursive call, as if both values were computed in one thread.
+        // Usually it's only one of them, but both threads may close the cycle at the same time
+        String xValue = x.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        String yValue = y.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(xValue + ", " + yValue, xValue.equals("x" + yValue) && yValue.equals("y-") ||
+                                           yValue.equals("y" + xValue) && xValue.equals("x-") ||
+                                           xValue.equals("x-") && yValue.equals("y-"));
+    }
+
+    public void testCycleBetweenThreadsInMemoizedFunctions() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        class C {
+            final MemoizedFunctionToNotNull<Integer, String> f = m.createMemoizedFunction(input -> {
+                bothStarted.countDown();
+                await(bothStarted);
+                return "f" + this.g.invoke(input);
+            });
+
+            final MemoizedFunctionToNotNull<Integer, String> g = m.createMemoizedFunction(input -> {
+                bothStarted.countDown();
+                await(bothStarted);
+                return "g" + this.f.invoke(input);
+            });
+        }
+        C c = new C();
+
+        Future<String> f = executor.submit(() -> c.f.invoke(1));
+        Future<String> g = executor.submit(() -> c.g.invoke(1));
+
+        // The recursion error is stored in the function which closes the cycle, and rethrown to the other one
+        int failed = 0;
+        for (Future<String> result : Arrays.asList(f, g)) {
+            try {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause().toString(), e.getCause() instanceof AssertionError);
+                failed++;
+            }
+        }
+        assertEquals(2, failed);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
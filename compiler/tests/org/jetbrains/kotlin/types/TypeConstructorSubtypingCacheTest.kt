@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import org.jetbrains.kotlin.types.checker.KotlinTypeRefiner
+import org.jetbrains.kotlin.types.checker.NewKotlinTypeChecker
+import org.jetbrains.kotlin.types.checker.NewKotlinTypeCheckerImpl
+
+class TypeConstructorSubtypingCacheTest : TestCase() {
+    private val builtIns = DefaultBuiltIns.Instance
+
+    fun testLookupAndRecord() {
+        val cache = TypeConstructorSubtypingCache()
+        val list = builtIns.list.typeConstructor
+        val collection = builtIns.collection.typeConstructor
+
+        assertNull(cache.lookup(list, collection))
+        cache.record(list, collection, true)
+        cache.record(collection, list, false)
+
+        assertEquals(true, cache.lookup(list, collection))
+        assertEquals(false, cache.lookup(collection, list))
+        assertEquals(2L, cache.hitCount)
+        assertEquals(1L, cache.missCount)
+    }
+
+    fun testClearedWhenFull() {
+        val cache = TypeConstructorSubtypingCache(maxSize = 2)
+        val any = builtIns.any.typeConstructor
+        cache.record(builtIns.list.typeConstructor, any, true)
+        cache.record(builtIns.set.typeConstructor, any, true)
+        cache.record(builtIns.map.typeConstructor, any, true)
+
+        assertEquals(1, cache.size)
+        assertEquals(true, cache.lookup(builtIns.map.typeConstructor, any))
+        assertNull(cache.lookup(builtIns.list.typeConstructor, any))
+    }
+
+    fun testTypeCheckerUsesCacheForOtherArguments() {
+        val checker = NewKotlinTypeCheckerImpl(KotlinTypeRefiner.Default)
+        val cache = checker.subtypingCache!!
+
+        assertTrue(checker.isSubtypeOf(type(builtIns.mutableList, builtIns.stringType), type(builtIns.collection, builtIns.anyType)))
+        assertFalse(checker.isSubtypeOf(type(builtIns.mutableList, builtIns.stringType), type(builtIns.comparable, builtIns.anyType)))
+        val misses = cache.missCount
+        assertTrue(misses > 0)
+
+        // Constructors are the same, so the answers are known whatever are the arguments
+        assertTrue(checker.isSubtypeOf(type(builtIns.mutableList, builtIns.intType), type(builtIns.collection, builtIns.numberType)))
+        assertFalse(checker.isSubtypeOf(type(builtIns.mutableList, builtIns.intType), type(builtIns.comparable, builtIns.intType)))
+        assertEquals(misses, cache.missCount)
+        assertTrue(cache.hitCount >= 2)
+
+        // Arguments are still checked
+        assertFalse(checker.isSubtypeOf(type(builtIns.mutableList, builtIns.stringType), type(builtIns.collection, builtIns.intType)))
+    }
+
+    fun testSharedCheckerHasNoCache() {
+        assertNull(NewKotlinTypeChecker.Default.subtypingCache)
+        assertNotNull(NewKotlinTypeCheckerImpl(KotlinTypeRefiner.Default).subtypingCache)
+    }
+
+    private fun type(classDescriptor: ClassDescriptor, argument: KotlinType): SimpleType =
+        KotlinTypeFactory.simpleNotNullType(Annotations.EMPTY, classDescriptor, listOf(TypeProjectionImpl(argument)))
+}
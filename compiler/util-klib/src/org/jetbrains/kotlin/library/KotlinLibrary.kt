@@ -3,6 +3,7 @@ package org.jetbrains.kotlin.library
 import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.propertyList
+import java.nio.ByteBuffer
 
 const val KLIB_PROPERTY_ABI_VERSION = "abi_version"
 const val KLIB_PROPERTY_COMPILER_VERSION = "compiler_version"
@@ -35,14 +36,15 @@ interface MetadataLibrary {
     fun packageMetadata(fqName: String, partName: String): ByteArray
 }
 
+// IR items are returned as read-only buffers, usually slices of a memory-mapped file. They shouldn't be retained after being parsed.
 interface IrLibrary {
     val dataFlowGraph: ByteArray?
-    fun irDeclaration(index: Long, fileIndex: Int): ByteArray
-    fun symbol(index: Int, fileIndex: Int): ByteArray
-    fun type(index: Int, fileIndex: Int): ByteArray
-    fun string(index: Int, fileIndex: Int): ByteArray
-    fun body(index: Int, fileIndex: Int): ByteArray
-    fun file(index: Int): ByteArray
+    fun irDeclaration(index: Long, fileIndex: Int): ByteBuffer
+    fun symbol(index: Int, fileIndex: Int): ByteBuffer
+    fun type(index: Int, fileIndex: Int): ByteBuffer
+    fun string(index: Int, fileIndex: Int): ByteBuffer
+    fun body(index: Int, fileIndex: Int): ByteBuffer
+    fun file(index: Int): ByteBuffer
     fun fileCount(): Int
 }
 
@@ -9,167 +9,137 @@ import org.jetbrains.kotlin.konan.file.File
 import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
 
+// All readers below return read-only slices of the mapped file instead of copying items into byte arrays.
+// The index of each table is read with absolute reads, so the position of the mapped buffer is never changed.
+
+private fun ByteBuffer.readOnlySlice(offset: Int, size: Int): ByteBuffer {
+    val result = duplicate()
+    result.limit(offset + size)
+    result.position(offset)
+    return result.slice().asReadOnlyBuffer()
+}
+
+private fun ByteBuffer.readOffsets(position: Int): IntArray {
+    val count = getInt(position)
+    val result = IntArray(count + 1)
+    result[0] = 4 * (count + 1)
+    for (i in 0 until count) {
+        val size = getInt(position + 4 * (i + 1))
+        result[i + 1] = result[i] + size
+    }
+
+    return result
+}
+
 class IrArrayReader(file: File) {
     private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
+    private val indexToOffset = buffer.readOffsets(0)
 
     fun entryCount() = indexToOffset.size - 1
 
-    init {
-        val count = buffer.int
-        indexToOffset = IntArray(count + 1)
-        indexToOffset[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            indexToOffset[i + 1] = indexToOffset[i] + size
-        }
-    }
-
-    fun tableItemBytes(id: Int): ByteArray {
+    fun tableItem(id: Int): ByteBuffer {
         val offset = indexToOffset[id]
         val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.readOnlySlice(offset, size)
     }
 }
 
 class IrMultiArrayReader(file: File) {
     private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexIndexToOffset = mutableMapOf<Int, IntArray>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
-
-        return result
-    }
+    private val indexToOffset = buffer.readOffsets(0)
+    private val indexIndexToOffset = arrayOfNulls<IntArray>(indexToOffset.size - 1)
 
-    init {
-        indexToOffset = readOffsets(0)
-    }
-
-    fun tableItemBytes(id: Int): ByteArray {
+    fun tableItem(id: Int): ByteBuffer {
         val offset = indexToOffset[id]
         val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.readOnlySlice(offset, size)
     }
 
-    fun tableItemBytes(row: Int, column: Int): ByteArray {
+    fun tableItem(row: Int, column: Int): ByteBuffer {
         val rowOffset = indexToOffset[row]
 
-        val collumnOffsets = indexIndexToOffset.getOrPut(row) {
-            readOffsets(rowOffset)
-        }
-
-        val dataOffset = collumnOffsets[column]
-        val dataSize = collumnOffsets[column + 1] - dataOffset
-        val result = ByteArray(dataSize)
+        val columnOffsets = indexIndexToOffset[row] ?: buffer.readOffsets(rowOffset).also { indexIndexToOffset[row] = it }
 
-        buffer.position(rowOffset + dataOffset)
-        buffer.get(result, 0, dataSize)
-
-        return result
+        val dataOffset = columnOffsets[column]
+        val dataSize = columnOffsets[column + 1] - dataOffset
+        return buffer.readOnlySlice(rowOffset + dataOffset, dataSize)
     }
 }
 
-abstract class IrMultiTableReader<K>(file: File, private val keyReader: ByteBuffer.() -> K) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexToIndexMap = mutableMapOf<Int, Map<K, Pair<Int, Int>>>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
-
-        return result
-    }
+/**
+ * Index of a table written by [IrTableWriter] or [IrDeclarationWriter]: `count` records of (long key, int offset, int size).
+ * Keys are kept in a sorted primitive array and looked up by binary search.
+ */
+private class IrTableIndex(buffer: ByteBuffer, position: Int) {
+    private val keys: LongArray
+    private val offsets: IntArray
+    private val sizes: IntArray
 
     init {
-        indexToOffset = readOffsets(0)
+        val count = buffer.getInt(position)
+        val unsortedKeys = LongArray(count) { buffer.getLong(recordPosition(position, it)) }
+        keys = unsortedKeys.copyOf()
+        keys.sort()
+        offsets = IntArray(count)
+        sizes = IntArray(count) { -1 }
+
+        // Tables are written in declaration order, so every record is moved to the position of its key in the sorted array
+        for (i in 0 until count) {
+            val index = keys.binarySearch(unsortedKeys[i])
+            check(sizes[index] == -1) { "Duplicate key in IR table: ${unsortedKeys[i]}" }
+            val record = recordPosition(position, i)
+            offsets[index] = buffer.getInt(record + Long.SIZE_BYTES)
+            sizes[index] = buffer.getInt(record + Long.SIZE_BYTES + Int.SIZE_BYTES)
+        }
     }
 
-    private fun readIndexMap(position: Int): Map<K, Pair<Int, Int>> {
-        buffer.position(position)
-        val result = mutableMapOf<K, Pair<Int, Int>>()
+    private fun recordPosition(position: Int, i: Int) = position + INDEX_HEADER_SIZE + i * SINGLE_INDEX_RECORD_SIZE
 
-        val count = buffer.int
+    fun find(key: Long): Int = keys.binarySearch(key).also { if (it < 0) error("No coordinates found for $key") }
 
-        for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
+    fun offset(index: Int) = offsets[index]
 
-            result[key] = offset to size
-        }
+    fun size(index: Int) = sizes[index]
 
-        return result
+    companion object {
+        private const val INDEX_HEADER_SIZE = Int.SIZE_BYTES
+        private const val SINGLE_INDEX_RECORD_SIZE = Long.SIZE_BYTES + 2 * Int.SIZE_BYTES
     }
+}
 
-    fun tableItemBytes(row: Int, id: K): ByteArray {
+open class IrMultiTableReader(file: File) {
+    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
+    private val indexToOffset = buffer.readOffsets(0)
+    private val indexToIndex = arrayOfNulls<IrTableIndex>(indexToOffset.size - 1)
 
+    fun tableItem(row: Int, id: Long): ByteBuffer {
         val rowOffset = indexToOffset[row]
 
-        val indexToMap = indexToIndexMap.getOrPut(row) {
-            readIndexMap(rowOffset)
-        }
+        val index = indexToIndex[row] ?: IrTableIndex(buffer, rowOffset).also { indexToIndex[row] = it }
 
-        val coordinates = indexToMap[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(rowOffset + offset)
-        buffer.get(result, 0, size)
-        return result
+        val i = index.find(id)
+        return buffer.readOnlySlice(rowOffset + index.offset(i), index.size(i))
     }
 }
 
-abstract class IrTableReader<K>(file: File, keyReader: ByteBuffer.() -> K) {
+open class IrTableReader(file: File) {
     private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset = mutableMapOf<K, Pair<Int, Int>>()
-
-    init {
-        val count = buffer.int
-        for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
-
-            indexToOffset[key] = offset to size
-        }
-    }
+    private val index = IrTableIndex(buffer, 0)
 
-    fun tableItemBytes(id: K): ByteArray {
-        val coordinates = indexToOffset[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+    fun tableItem(id: Long): ByteBuffer {
+        val i = index.find(id)
+        return buffer.readOnlySlice(index.offset(i), index.size(i))
     }
 }
 
-class IndexIrTableReader(file: File) : IrTableReader<Long>(file, { long })
+class IndexIrTableReader(file: File) : IrTableReader(file)
 
 data class DeclarationId(val id: Long)
 
-class DeclarationIrTableReader(file: File) : IrTableReader<DeclarationId>(file, { DeclarationId(long) })
-class DeclarationIrMultiTableReader(file: File) : IrMultiTableReader<DeclarationId>(file, { DeclarationId(long) })
\ No newline at end of file
+class DeclarationIrTableReader(file: File) : IrTableReader(file) {
+    fun tableItem(id: DeclarationId): ByteBuffer = tableItem(id.id)
+}
+
+class DeclarationIrMultiTableReader(file: File) : IrMultiTableReader(file) {
+    fun tableItem(row: Int, id: DeclarationId): ByteBuffer = tableItem(row, id.id)
+}
@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.library.*
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.loadProperties
+import java.nio.ByteBuffer
 
 open class BaseKotlinLibraryImpl(
     val access: BaseLibraryAccess<KotlinLibraryLayout>,
@@ -86,18 +87,18 @@ class IrMonoliticLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) :
 
     override fun irDeclaration(index: Long, fileIndex: Int) = loadIrDeclaration(index, fileIndex)
 
-    override fun symbol(index: Int, fileIndex: Int) = symbols.tableItemBytes(fileIndex, index)
+    override fun symbol(index: Int, fileIndex: Int) = symbols.tableItem(fileIndex, index)
 
-    override fun type(index: Int, fileIndex: Int) = types.tableItemBytes(fileIndex, index)
+    override fun type(index: Int, fileIndex: Int) = types.tableItem(fileIndex, index)
 
-    override fun string(index: Int, fileIndex: Int) = strings.tableItemBytes(fileIndex, index)
+    override fun string(index: Int, fileIndex: Int) = strings.tableItem(fileIndex, index)
 
-    override fun body(index: Int, fileIndex: Int) = bodies.tableItemBytes(fileIndex, index)
+    override fun body(index: Int, fileIndex: Int) = bodies.tableItem(fileIndex, index)
 
-    override fun file(index: Int) = files.tableItemBytes(index)
+    override fun file(index: Int) = files.tableItem(index)
 
     private fun loadIrDeclaration(index: Long, fileIndex: Int) =
-        combinedDeclarations.tableItemBytes(fileIndex, DeclarationId(index))
+        combinedDeclarations.tableItem(fileIndex, DeclarationId(index))
 
     private val combinedDeclarations: DeclarationIrMultiTableReader by lazy {
         DeclarationIrMultiTableReader(access.realFiles {
@@ -145,63 +146,63 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
     }
 
     private val fileToDeclarationMap = mutableMapOf<Int, DeclarationIrTableReader>()
-    override fun irDeclaration(index: Long, fileIndex: Int): ByteArray {
+    override fun irDeclaration(index: Long, fileIndex: Int): ByteBuffer {
         val dataReader = fileToDeclarationMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             DeclarationIrTableReader(access.realFiles {
                 it.irDeclarations(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(DeclarationId(index))
+        return dataReader.tableItem(DeclarationId(index))
     }
 
     private val fileToSymbolMap = mutableMapOf<Int, IrArrayReader>()
-    override fun symbol(index: Int, fileIndex: Int): ByteArray {
+    override fun symbol(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToSymbolMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayReader(access.realFiles {
                 it.irSymbols(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItem(index)
     }
 
     private val fileToTypeMap = mutableMapOf<Int, IrArrayReader>()
-    override fun type(index: Int, fileIndex: Int): ByteArray {
+    override fun type(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToTypeMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayReader(access.realFiles {
                 it.irTypes(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItem(index)
     }
 
     private val fileToStringMap = mutableMapOf<Int, IrArrayReader>()
-    override fun string(index: Int, fileIndex: Int): ByteArray {
+    override fun string(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToStringMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayReader(access.realFiles {
                 it.irStrings(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItem(index)
     }
 
     private val fileToBodyMap = mutableMapOf<Int, IrArrayReader>()
-    override fun body(index: Int, fileIndex: Int): ByteArray {
+    override fun body(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToBodyMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
             IrArrayReader(access.realFiles {
                 it.irBodies(fileDirectory)
             })
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItem(index)
     }
 
-    override fun file(index: Int): ByteArray {
+    override fun file(index: Int): ByteBuffer {
         return access.realFiles {
-            it.irFile(directories[index]).readBytes()
+            ByteBuffer.wrap(it.irFile(directories[index]).readBytes())
         }
     }
 
@@ -63,23 +63,36 @@ interface NewKotlinTypeChecker : KotlinTypeChecker {
     val kotlinTypeRefiner: KotlinTypeRefiner
     val overridingUtil: OverridingUtil
 
+    /**
+     * Cache of constructor-level subtyping of the module this checker belongs to, or `null` if the checker is shared between modules
+     */
+    val subtypingCache: TypeConstructorSubtypingCache?
+        get() = null
+
     fun transformToNewType(type: UnwrappedType): UnwrappedType
 
     companion object {
-        val Default = NewKotlinTypeCheckerImpl(KotlinTypeRefiner.Default)
+        val Default = NewKotlinTypeCheckerImpl.createWithoutCache(KotlinTypeRefiner.Default)
     }
 }
 
 
-class NewKotlinTypeCheckerImpl(override val kotlinTypeRefiner: KotlinTypeRefiner) : NewKotlinTypeChecker {
+class NewKotlinTypeCheckerImpl private constructor(
+    override val kotlinTypeRefiner: KotlinTypeRefiner,
+    override val subtypingCache: TypeConstructorSubtypingCache?
+) : NewKotlinTypeChecker {
+    // Used by containers, which create a checker per module
+    constructor(kotlinTypeRefiner: KotlinTypeRefiner) : this(kotlinTypeRefiner, TypeConstructorSubtypingCache())
+
     override val overridingUtil: OverridingUtil = OverridingUtil.createWithTypeRefiner(kotlinTypeRefiner)
 
     override fun isSubtypeOf(subtype: KotlinType, supertype: KotlinType): Boolean =
-        ClassicTypeCheckerContext(true, kotlinTypeRefiner = kotlinTypeRefiner)
+        ClassicTypeCheckerContext(true, kotlinTypeRefiner = kotlinTypeRefiner, subtypingCache = subtypingCache)
             .isSubtypeOf(subtype.unwrap(), supertype.unwrap()) // todo fix flag errorTypeEqualsToAnything
 
     override fun equalTypes(a: KotlinType, b: KotlinType): Boolean =
-        ClassicTypeCheckerContext(false, kotlinTypeRefiner = kotlinTypeRefiner).equalTypes(a.unwrap(), b.unwrap())
+        ClassicTypeCheckerContext(false, kotlinTypeRefiner = kotlinTypeRefiner, subtypingCache = subtypingCache)
+            .equalTypes(a.unwrap(), b.unwrap())
 
     fun ClassicTypeCheckerContext.equalTypes(a: UnwrappedType, b: UnwrappedType): Boolean {
         return AbstractTypeChecker.equalTypes(this as AbstractTypeCheckerContext, a, b)
@@ -142,6 +155,11 @@ class NewKotlinTypeCheckerImpl(override val kotlinTypeRefiner: KotlinTypeRefiner
                 }
             }
         }.inheritEnhancement(type)
+
+    companion object {
+        fun createWithoutCache(kotlinTypeRefiner: KotlinTypeRefiner): NewKotlinTypeCheckerImpl =
+            NewKotlinTypeCheckerImpl(kotlinTypeRefiner, subtypingCache = null)
+    }
 }
 
 object NullabilityChecker {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package kotlin.reflect.jvm.internal
+
+import org.jetbrains.kotlin.descriptors.Modality
+import org.jetbrains.kotlin.descriptors.runtime.components.ReflectKotlinClass
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.deserialization.Flags
+import org.jetbrains.kotlin.metadata.deserialization.NameResolver
+import org.jetbrains.kotlin.metadata.deserialization.TypeTable
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.serialization.deserialization.ProtoEnumFlags
+import org.jetbrains.kotlin.serialization.deserialization.getClassId
+import kotlin.reflect.KVisibility
+
+/**
+ * Modifiers and constructors of a Kotlin class, read directly from its `@Metadata` annotation.
+ *
+ * Unlike the class descriptor, the index doesn't need the module data of the class loader and doesn't resolve any types,
+ * so [KClassImpl] uses it to answer simple queries, such as whether the class is a data class or what the names of its
+ * constructor parameters are, and falls back to descriptors for everything else.
+ */
+internal class ClassMetadataIndex private constructor(
+    private val flags: Int,
+    /**
+     * Constructors in the same order as in the class descriptor,
+     * or `null` if they can't be reliably loaded without descriptors, e.g. for inner and inline classes.
+     */
+    val constructors: List<Constructor>?
+) {
+    class Constructor(val signature: String, val parameters: List<Parameter>)
+
+    class Parameter(val name: String, val declaresDefaultValue: Boolean, val isVararg: Boolean)
+
+    val visibility: KVisibility? get() = ProtoEnumFlags.visibility(Flags.VISIBILITY.get(flags)).toKVisibility()
+
+    val modality: Modality get() = ProtoEnumFlags.modality(Flags.MODALITY.get(flags))
+
+    val isData: Boolean get() = Flags.IS_DATA.get(flags)
+
+    val isInner: Boolean get() = Flags.IS_INNER.get(flags)
+
+    val isCompanion: Boolean get() = Flags.CLASS_KIND.get(flags) == ProtoBuf.Class.Kind.COMPANION_OBJECT
+
+    companion object {
+        /**
+         * Returns the index of [jClass], or `null` if the class has no compatible Kotlin class metadata
+         * or the metadata describes a class other than [classId] (as for classes mapped to built-ins).
+         */
+        fun create(jClass: Class<*>, classId: ClassId): ClassMetadataIndex? {
+            val header = ReflectKotlinClass.create(jClass)?.classHeader ?: return null
+            if (header.kind != KotlinClassHeader.Kind.CLASS || !header.metadataVersion.isCompatible()) return null
+            val data = header.data ?: return null
+            val strings = header.strings ?: return null
+
+            val (nameResolver, proto) = JvmProtoBufUtil.readClassDataFrom(data, strings)
+            if (nameResolver.getClassId(proto.fqName) != classId) return null
+
+            val constructors = when (Flags.CLASS_KIND.get(proto.flags)) {
+                ProtoBuf.Class.Kind.INTERFACE, ProtoBuf.Class.Kind.OBJECT, ProtoBuf.Class.Kind.COMPANION_OBJECT -> emptyList()
+                ProtoBuf.Class.Kind.ENUM_ENTRY -> null
+                else ->
+                    if (Flags.IS_INNER.get(proto.flags) || Flags.IS_INLINE_CLASS.get(proto.flags)) null
+                    else loadConstructors(proto, nameResolver, TypeTable(proto.typeTable))
+            }
+
+            return ClassMetadataIndex(proto.flags, constructors)
+        }
+
+        private fun loadConstructors(
+            proto: ProtoBuf.Class, nameResolver: NameResolver, typeTable: TypeTable
+        ): List<Constructor>? {
+            // See DeserializedClassDescriptor.computeConstructors
+            val (secondary, primary) = proto.constructorList.partition { Flags.IS_SECONDARY.get(it.flags) }
+            val result = ArrayList<Constructor>(proto.constructorCount)
+            for (constructor in secondary + primary.take(1)) {
+                val signature = JvmProtoBufUtil.getJvmConstructorSignature(constructor, nameResolver, typeTable) ?: return null
+                val parameters = constructor.valueParameterList.map { parameter ->
+                    Parameter(
+                        nameResolver.getString(parameter.name),
+                        Flags.DECLARES_DEFAULT_VALUE.get(parameter.flags),
+                        parameter.hasVarargElementType() || parameter.hasVarargElementTypeId()
+                    )
+                }
+                result.add(Constructor(signature.asString(), parameters))
+            }
+            return result
+        }
+    }
+}
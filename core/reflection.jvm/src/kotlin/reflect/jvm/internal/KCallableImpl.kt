@@ -35,7 +35,16 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
 
     override val annotations: List<Annotation> get() = _annotations()
 
+    // Value parameters of a constructor loaded from ClassMetadataIndex, which allow to avoid loading descriptors for simple queries
+    internal open val indexedParameters: List<ClassMetadataIndex.Parameter>? get() = null
+
     private val _parameters = ReflectProperties.lazySoft {
+        indexedParameters?.let { indexedParameters ->
+            return@lazySoft indexedParameters.mapIndexed { i, parameter ->
+                KParameterImpl(this, i, KParameter.Kind.VALUE, parameter) { descriptor.valueParameters[i] }
+            }
+        }
+
         val descriptor = descriptor
         val result = ArrayList<KParameter>()
         var index = 0
@@ -110,28 +119,48 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
         return if (isAnnotationConstructor) callAnnotationConstructor(args) else callDefaultMethod(args, null)
     }
 
+    // Parameters data which is needed for each call by name, precomputed once because computing it involves descriptors.
+    // Values of optional parameters of primitive types must be zeros, the actual default values are computed in the $default method
+    private class CallByData(val isOptional: BooleanArray, val absentValues: Array<Any?>, val maskCount: Int)
+
+    private val _callByData = ReflectProperties.lazySoft {
+        val parameters = parameters
+        val isOptional = BooleanArray(parameters.size)
+        val absentValues = arrayOfNulls<Any>(parameters.size)
+        var valueParameterCount = 0
+        for ((i, parameter) in parameters.withIndex()) {
+            if (parameter.isOptional) {
+                isOptional[i] = true
+                absentValues[i] = defaultPrimitiveValue(parameter.type.javaType)
+            }
+            if (parameter.kind == KParameter.Kind.VALUE) {
+                valueParameterCount++
+            }
+        }
+        CallByData(isOptional, absentValues, maxOf(1, (valueParameterCount + Integer.SIZE - 1) / Integer.SIZE))
+    }
+
     // See ArgumentGenerator#generate
     internal fun callDefaultMethod(args: Map<KParameter, Any?>, continuationArgument: Continuation<*>?): R {
         val parameters = parameters
-        val arguments = ArrayList<Any?>(parameters.size)
-        var mask = 0
-        val masks = ArrayList<Int>(1)
+        val callByData = _callByData()
+        val size = parameters.size + (if (continuationArgument != null) 1 else 0)
+
+        // Arguments of the $default method: the arguments themselves, then the masks and the DefaultConstructorMarker/MethodHandle
+        val arguments = arrayOfNulls<Any>(size + callByData.maskCount + 1)
         var index = 0
         var anyOptional = false
 
-        for (parameter in parameters) {
-            if (index != 0 && index % Integer.SIZE == 0) {
-                masks.add(mask)
-                mask = 0
-            }
-
+        for ((i, parameter) in parameters.withIndex()) {
+            val argument = args[parameter]
             when {
-                args.containsKey(parameter) -> {
-                    arguments.add(args[parameter])
+                argument != null || args.containsKey(parameter) -> {
+                    arguments[i] = argument
                 }
-                parameter.isOptional -> {
-                    arguments.add(defaultPrimitiveValue(parameter.type.javaType))
-                    mask = mask or (1 shl (index % Integer.SIZE))
+                callByData.isOptional[i] -> {
+                    arguments[i] = callByData.absentValues[i]
+                    val maskIndex = size + index / Integer.SIZE
+                    arguments[maskIndex] = ((arguments[maskIndex] as Int?) ?: 0) or (1 shl (index % Integer.SIZE))
                     anyOptional = true
                 }
                 else -> {
@@ -145,25 +174,25 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
         }
 
         if (continuationArgument != null) {
-            arguments.add(continuationArgument)
+            arguments[parameters.size] = continuationArgument
         }
 
         if (!anyOptional) {
-            return call(*arguments.toTypedArray())
+            @Suppress("UNCHECKED_CAST")
+            return reflectionCall {
+                caller.call(arguments.copyOf(size)) as R
+            }
         }
 
-        masks.add(mask)
+        for (maskIndex in size until size + callByData.maskCount) {
+            if (arguments[maskIndex] == null) arguments[maskIndex] = 0
+        }
 
         val caller = defaultCaller ?: throw KotlinReflectionInternalError("This callable does not support a default call: $descriptor")
 
-        arguments.addAll(masks)
-
-        // DefaultConstructorMarker or MethodHandle
-        arguments.add(null)
-
         @Suppress("UNCHECKED_CAST")
         return reflectionCall {
-            caller.call(arguments.toTypedArray()) as R
+            caller.call(arguments) as R
         }
     }
 
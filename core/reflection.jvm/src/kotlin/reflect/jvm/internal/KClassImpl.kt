@@ -53,6 +53,8 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
             descriptor ?: reportUnresolvedClass()
         }
 
+        val metadataIndex: ClassMetadataIndex? by ReflectProperties.lazySoft { ClassMetadataIndex.create(jClass, classId) }
+
         val annotations: List<Annotation> by ReflectProperties.lazySoft { descriptor.computeAnnotations() }
 
         val simpleName: String? by ReflectProperties.lazySoft {
@@ -88,6 +90,11 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
 
         @Suppress("UNCHECKED_CAST")
         val constructors: Collection<KFunction<T>> by ReflectProperties.lazySoft {
+            metadataIndex?.constructors?.let { constructors ->
+                return@lazySoft constructors.map { constructor ->
+                    KFunctionImpl(this@KClassImpl, constructor) as KFunction<T>
+                }
+            }
             constructorDescriptors.map { descriptor ->
                 KFunctionImpl(this@KClassImpl, descriptor) as KFunction<T>
             }
@@ -256,28 +263,34 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
     override val sealedSubclasses: List<KClass<out T>> get() = data().sealedSubclasses
 
     override val visibility: KVisibility?
-        get() = descriptor.visibility.toKVisibility()
+        get() {
+            data().metadataIndex?.let { return it.visibility }
+            return descriptor.visibility.toKVisibility()
+        }
 
     override val isFinal: Boolean
-        get() = descriptor.modality == Modality.FINAL
+        get() = modality == Modality.FINAL
 
     override val isOpen: Boolean
-        get() = descriptor.modality == Modality.OPEN
+        get() = modality == Modality.OPEN
 
     override val isAbstract: Boolean
-        get() = descriptor.modality == Modality.ABSTRACT
+        get() = modality == Modality.ABSTRACT
 
     override val isSealed: Boolean
-        get() = descriptor.modality == Modality.SEALED
+        get() = modality == Modality.SEALED
 
     override val isData: Boolean
-        get() = descriptor.isData
+        get() = data().metadataIndex?.isData ?: descriptor.isData
 
     override val isInner: Boolean
-        get() = descriptor.isInner
+        get() = data().metadataIndex?.isInner ?: descriptor.isInner
 
     override val isCompanion: Boolean
-        get() = descriptor.isCompanionObject
+        get() = data().metadataIndex?.isCompanion ?: descriptor.isCompanionObject
+
+    private val modality: Modality
+        get() = data().metadataIndex?.modality ?: descriptor.modality
 
     override fun equals(other: Any?): Boolean =
         other is KClassImpl<*> && javaObjectType == other.javaObjectType
@@ -38,11 +38,20 @@ internal class KFunctionImpl private constructor(
     name: String,
     private val signature: String,
     descriptorInitialValue: FunctionDescriptor?,
-    private val rawBoundReceiver: Any? = CallableReference.NO_RECEIVER
+    private val rawBoundReceiver: Any? = CallableReference.NO_RECEIVER,
+    override val indexedParameters: List<ClassMetadataIndex.Parameter>? = null
 ) : KCallableImpl<Any?>(), KFunction<Any?>, FunctionBase<Any?>, FunctionWithAllInvokes {
     constructor(container: KDeclarationContainerImpl, name: String, signature: String, boundReceiver: Any?)
             : this(container, name, signature, null, boundReceiver)
 
+    constructor(container: KClassImpl<*>, constructor: ClassMetadataIndex.Constructor) : this(
+        container,
+        "<init>",
+        constructor.signature,
+        null,
+        indexedParameters = constructor.parameters
+    )
+
     constructor(container: KDeclarationContainerImpl, descriptor: FunctionDescriptor) : this(
         container,
         descriptor.name.asString(),
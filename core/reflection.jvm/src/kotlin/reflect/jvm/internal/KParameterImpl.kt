@@ -25,6 +25,7 @@ internal class KParameterImpl(
     val callable: KCallableImpl<*>,
     override val index: Int,
     override val kind: KParameter.Kind,
+    private val indexedParameter: ClassMetadataIndex.Parameter? = null,
     computeDescriptor: () -> ParameterDescriptor
 ) : KParameter {
     private val descriptor: ParameterDescriptor by ReflectProperties.lazySoft(computeDescriptor)
@@ -33,6 +34,7 @@ internal class KParameterImpl(
 
     override val name: String?
         get() {
+            indexedParameter?.let { return it.name }
             val valueParameter = descriptor as? ValueParameterDescriptor ?: return null
             if (valueParameter.containingDeclaration.hasSynthesizedParameterNames()) return null
             val name = valueParameter.name
@@ -58,16 +60,16 @@ internal class KParameterImpl(
         }
 
     override val isOptional: Boolean
-        get() = (descriptor as? ValueParameterDescriptor)?.declaresOrInheritsDefaultValue() ?: false
+        get() = indexedParameter?.declaresDefaultValue ?: (descriptor as? ValueParameterDescriptor)?.declaresOrInheritsDefaultValue() ?: false
 
     override val isVararg: Boolean
-        get() = descriptor.let { it is ValueParameterDescriptor && it.varargElementType != null }
+        get() = indexedParameter?.isVararg ?: descriptor.let { it is ValueParameterDescriptor && it.varargElementType != null }
 
     override fun equals(other: Any?) =
-        other is KParameterImpl && callable == other.callable && descriptor == other.descriptor
+        other is KParameterImpl && callable == other.callable && index == other.index
 
     override fun hashCode() =
-        (callable.hashCode() * 31) + descriptor.hashCode()
+        (callable.hashCode() * 31) + index.hashCode()
 
     override fun toString() =
         ReflectionObjectRenderer.renderParameter(this)
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package kotlin.reflect.jvm.internal
+
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A concurrent cache with weakly referenced keys, which are compared by identity, and weakly referenced values.
+ *
+ * An entry is removed once its key or its value is collected: collected references are drained from a reference queue
+ * on each insertion, so the cache doesn't retain entries for classes and class loaders which are not used anymore
+ * (e.g. after a redeployment of an application). Reads don't take any locks.
+ *
+ * Values must not be reachable only through the cache, otherwise they'll be collected and computed again.
+ */
+internal class WeakIdentityCache<K : Any, V : Any> {
+    private val map = ConcurrentHashMap<Any, ValueReference<V>>()
+    private val queue = ReferenceQueue<Any>()
+
+    // Identity hash code is saved because otherwise once the weak reference is GC'd we cannot compute it anymore
+    private class KeyReference(key: Any, queue: ReferenceQueue<Any>) : WeakReference<Any>(key, queue) {
+        private val identityHashCode = System.identityHashCode(key)
+
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            val key = get() ?: return false
+            return when (other) {
+                is KeyReference -> key === other.get()
+                is LookupKey -> key === other.key
+                else -> false
+            }
+        }
+
+        override fun hashCode(): Int = identityHashCode
+    }
+
+    // A key which doesn't create a weak reference, for lookups
+    private class LookupKey(val key: Any) {
+        override fun equals(other: Any?): Boolean = when (other) {
+            is KeyReference -> key === other.get()
+            is LookupKey -> key === other.key
+            else -> false
+        }
+
+        override fun hashCode(): Int = System.identityHashCode(key)
+    }
+
+    private class ValueReference<V : Any>(value: V, val key: KeyReference, queue: ReferenceQueue<Any>) : WeakReference<V>(value, queue)
+
+    operator fun get(key: K): V? = map[LookupKey(key)]?.get()
+
+    fun getOrPut(key: K, create: (K) -> V): V {
+        get(key)?.let { return it }
+
+        val value = create(key)
+        purgeCollectedEntries()
+
+        val keyReference = KeyReference(key, queue)
+        while (true) {
+            val existing = map.putIfAbsent(keyReference, ValueReference(value, keyReference, queue)) ?: return value
+
+            // Another thread has just computed the value, or an entry which is being purged is still in the map
+            existing.get()?.let { return it }
+            map.remove(keyReference, existing)
+        }
+    }
+
+    fun clear() {
+        map.clear()
+    }
+
+    private fun purgeCollectedEntries() {
+        while (true) {
+            val reference = queue.poll() ?: return
+            when (reference) {
+                is KeyReference -> map.remove(reference)
+                is ValueReference<*> -> map.remove(reference.key, reference)
+            }
+        }
+    }
+}
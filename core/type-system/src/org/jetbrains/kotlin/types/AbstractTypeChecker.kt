@@ -32,6 +32,12 @@ abstract class AbstractTypeCheckerContext : TypeSystemContext {
 
     abstract val isStubTypeEqualsToAnything: Boolean
 
+    /**
+     * Cache of constructor-level subtyping shared by all contexts of a session, or `null` if there is no such session
+     */
+    open val subtypingCache: TypeConstructorSubtypingCache?
+        get() = null
+
     protected var argumentsDepth = 0
 
 
@@ -391,6 +397,10 @@ object AbstractTypeChecker {
                 emptyList()
         }
 
+        val cache = subtypingCache?.takeIf { canUseSubtypingCache(it, subType, superConstructor) }
+        val cachedAnswer = cache?.lookup(subType.typeConstructor(), superConstructor)
+        if (cachedAnswer == false) return emptyList()
+
         val result: MutableList<SimpleTypeMarker> = SmartList()
 
         anySupertype(subType, { false }) {
@@ -411,9 +421,28 @@ object AbstractTypeChecker {
             }
         }
 
+        // Substitution doesn't change constructors of supertypes, so the result of this traversal is the answer for any arguments
+        if (cache != null && cachedAnswer == null) {
+            cache.record(subType.typeConstructor(), superConstructor, result.isNotEmpty())
+        }
+
         return result
     }
 
+    /**
+     * Supertypes of captured types and type variables depend on the particular type,
+     * so only class types are looked up in [AbstractTypeCheckerContext.subtypingCache].
+     */
+    private fun AbstractTypeCheckerContext.canUseSubtypingCache(
+        cache: TypeConstructorSubtypingCache,
+        subType: SimpleTypeMarker,
+        superConstructor: TypeConstructorMarker
+    ): Boolean {
+        if (subType.isClassType() && superConstructor.isClassTypeConstructor() && subType.asCapturedType() == null) return true
+        cache.bypass()
+        return false
+    }
+
     private fun AbstractTypeCheckerContext.collectAndFilter(classType: SimpleTypeMarker, constructor: TypeConstructorMarker) =
         selectOnlyPureKotlinSupertypes(collectAllSupertypesWithGivenTypeConstructor(classType, constructor))
 
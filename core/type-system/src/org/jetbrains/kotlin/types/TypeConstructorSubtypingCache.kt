@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types
+
+import org.jetbrains.kotlin.types.model.TypeConstructorMarker
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Remembers whether a class type constructor has another class type constructor among its (transitive) supertypes.
+ *
+ * This does not depend on type arguments, so [AbstractTypeChecker] uses it to skip the supertype traversal of a subtype
+ * which can't have a supertype with the required constructor at all, which is the most common outcome of subtyping
+ * checks during overload resolution. Captured, flexible and other non-class types are never looked up (see [bypass]).
+ *
+ * A cache belongs to one session (or module), so it keeps constructors strongly and compares them by identity.
+ * Lookups and updates don't take locks; when [maxSize] answers are recorded, the cache is cleared.
+ */
+class TypeConstructorSubtypingCache(private val maxSize: Int = DEFAULT_MAX_SIZE) {
+    private class Key(private val subConstructor: TypeConstructorMarker, private val superConstructor: TypeConstructorMarker) {
+        private val hashCode = 31 * System.identityHashCode(subConstructor) + System.identityHashCode(superConstructor)
+
+        override fun equals(other: Any?): Boolean =
+            other is Key && subConstructor === other.subConstructor && superConstructor === other.superConstructor
+
+        override fun hashCode(): Int = hashCode
+    }
+
+    private val cache = ConcurrentHashMap<Key, Boolean>()
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val bypasses = AtomicLong()
+
+    val hitCount: Long get() = hits.get()
+    val missCount: Long get() = misses.get()
+    val bypassCount: Long get() = bypasses.get()
+
+    val size: Int get() = cache.size
+
+    val hitRate: Double
+        get() {
+            val lookups = hitCount + missCount
+            return if (lookups == 0L) 0.0 else hitCount.toDouble() / lookups
+        }
+
+    /**
+     * Returns whether [subConstructor] has [superConstructor] among its supertypes, or `null` if this is not known yet.
+     * In the latter case the caller is expected to [record] the answer once it is computed.
+     */
+    fun lookup(subConstructor: TypeConstructorMarker, superConstructor: TypeConstructorMarker): Boolean? {
+        val result = cache[Key(subConstructor, superConstructor)]
+        (if (result != null) hits else misses).incrementAndGet()
+        return result
+    }
+
+    fun record(subConstructor: TypeConstructorMarker, superConstructor: TypeConstructorMarker, hasSupertype: Boolean) {
+        if (cache.size >= maxSize) {
+            cache.clear()
+        }
+        cache[Key(subConstructor, superConstructor)] = hasSupertype
+    }
+
+    fun bypass() {
+        bypasses.incrementAndGet()
+    }
+
+    fun clear() {
+        cache.clear()
+    }
+
+    override fun toString(): String =
+        "TypeConstructorSubtypingCache(size=$size, hits=$hitCount, misses=$missCount, bypasses=$bypassCount)"
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 8192
+    }
+}
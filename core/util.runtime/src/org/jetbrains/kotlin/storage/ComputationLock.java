@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A reentrant lock which knows its owner thread.
+ *
+ * A storage manager with per-computation locks stores a new lock, held by the computing thread, in place of a value being computed.
+ * Other threads wait until the lock is released, and the computing thread itself sees the lock as a recursive call.
+ *
+ * Threads waiting for locks are tracked, so a thread which is about to wait for a computation which in turn (transitively) waits
+ * for this thread can detect the cycle and report it as a recursive call instead of deadlocking.
+ */
+/*package*/ final class ComputationLock implements Lock {
+    private static final ConcurrentMap<Thread, ComputationLock> WAITING = new ConcurrentHashMap<Thread, ComputationLock>();
+
+    // Waiting threads re-check for a cycle this often, in case it was closed by a thread which couldn't detect it
+    private static final long RECHECK_INTERVAL_MS = 10;
+
+    private static final int MAX_CHAIN_LENGTH = 1000;
+
+    private volatile Thread owner;
+    private int holdCount;
+
+    // Used by lazy values to tell whether recursionDetected() was already called during this computation
+    volatile boolean recursionDetected;
+
+    private ComputationLock(Thread owner) {
+        this.owner = owner;
+        this.holdCount = owner != null ? 1 : 0;
+    }
+
+    @NotNull
+    public static ComputationLock createReleased() {
+        return new ComputationLock(null);
+    }
+
+    @NotNull
+    public static ComputationLock createHeldByCurrentThread() {
+        return new ComputationLock(Thread.currentThread());
+    }
+
+    @Override
+    public void lock() {
+        Thread current = Thread.currentThread();
+        synchronized (this) {
+            if (owner == current) {
+                holdCount++;
+                return;
+            }
+        }
+
+        boolean interrupted = false;
+        WAITING.put(current, this);
+        try {
+            synchronized (this) {
+                while (owner != null) {
+                    try {
+                        wait(RECHECK_INTERVAL_MS);
+                    }
+                    catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                owner = current;
+                holdCount = 1;
+            }
+        }
+        finally {
+            WAITING.remove(current);
+            if (interrupted) current.interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void unlock() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("Lock is held by " + owner);
+        }
+        if (--holdCount == 0) {
+            owner = null;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the lock is released.
+     *
+     * @return {@code false} without waiting if the lock is held by the current thread, or if its owner waits for the current thread
+     */
+    public boolean awaitRelease() {
+        Thread current = Thread.currentThread();
+        if (owner == current) return false;
+
+        boolean interrupted = false;
+        // Registering before looking for a cycle guarantees that of two threads closing it at the same time, at least one sees it
+        WAITING.put(current, this);
+        try {
+            while (true) {
+                Thread lockOwner = owner;
+                if (lockOwner == null) return true;
+                if (isWaitingFor(lockOwner, current)) return false;
+
+                synchronized (this) {
+                    if (owner == lockOwner) {
+                        try {
+                            wait(RECHECK_INTERVAL_MS);
+                        }
+                        catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            WAITING.remove(current);
+            if (interrupted) current.interrupt();
+        }
+    }
+
+    private static boolean isWaitingFor(@NotNull Thread thread, @NotNull Thread target) {
+        for (int i = 0; i < MAX_CHAIN_LENGTH; i++) {
+            ComputationLock lock = WAITING.get(thread);
+            if (lock == null) return false;
+            thread = lock.owner;
+            if (thread == null) return false;
+            if (thread == target) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @Override
+    public boolean tryLock() {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @Override
+    public boolean tryLock(long time, @NotNull TimeUnit unit) throws InterruptedException {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @NotNull
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @Override
+    public String toString() {
+        Thread lockOwner = owner;
+        return lockOwner == null ? "COMPUTED" : "COMPUTING in " + lockOwner.getName();
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -68,7 +69,22 @@ public class LockBasedStorageManager implements StorageManager {
         return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, new ReentrantLock());
     }
 
+    /**
+     * Creates a storage manager in which each lazy value and each input of a memoized function is computed under its own lock,
+     * so that threads computing unrelated values don't wait for each other.
+     *
+     * A thread which needs a value being computed in another thread waits for it. If the other thread in turn waits for
+     * a computation of this thread, the cycle is reported to the thread which closes it as a recursive call,
+     * as it would be if both computations were made in one thread.
+     */
+    @NotNull
+    public static LockBasedStorageManager createWithPerComputationLocks(@NotNull String debugText) {
+        return new LockBasedStorageManager(debugText, ExceptionHandlingStrategy.THROW, ComputationLock.createReleased());
+    }
+
+    // Guards compute(), and also lazy values and memoized functions unless locks are per computation
     protected final Lock lock;
+    private final boolean perComputationLocks;
     private final ExceptionHandlingStrategy exceptionHandlingStrategy;
     private final String debugText;
 
@@ -78,6 +94,7 @@ public class LockBasedStorageManager implements StorageManager {
             @NotNull Lock lock
     ) {
         this.lock = lock;
+        this.perComputationLocks = lock instanceof ComputationLock;
         this.exceptionHandlingStrategy = exceptionHandlingStrategy;
         this.debugText = debugText;
     }
@@ -100,7 +117,7 @@ public class LockBasedStorageManager implements StorageManager {
     @NotNull
     @Override
     public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<? super K, ? extends V> compute) {
-        return createMemoizedFunction(compute, LockBasedStorageManager.<K>createConcurrentHashMap());
+        return createMemoizedFunction(compute, this.<K>createConcurrentHashMap());
     }
 
     @NotNull
@@ -115,7 +132,7 @@ public class LockBasedStorageManager implements StorageManager {
     @NotNull
     @Override
     public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<? super K, ? extends V> compute) {
-        return createMemoizedFunctionWithNullableValues(compute, LockBasedStorageManager.<K>createConcurrentHashMap());
+        return createMemoizedFunctionWithNullableValues(compute, this.<K>createConcurrentHashMap());
     }
 
     @Override
@@ -252,7 +269,11 @@ public class LockBasedStorageManager implements StorageManager {
     }
 
     @NotNull
-    private static <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
+    private <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
+        if (perComputationLocks) {
+            // Memoized functions are accessed without a common lock, so segments are sized for the number of threads
+            return new ConcurrentHashMap<K, Object>(16, 0.75f, Runtime.getRuntime().availableProcessors());
+        }
         // memory optimization: fewer segments and entries stored
         return new ConcurrentHashMap<K, Object>(3, 1, 2);
     }
@@ -304,6 +325,10 @@ public class LockBasedStorageManager implements StorageManager {
     }
 
     private static class LockBasedLazyValue<T> implements NullableLazyValue<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<LockBasedLazyValue, Object> VALUE_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(LockBasedLazyValue.class, Object.class, "value");
+
         private final LockBasedStorageManager storageManager;
         private final Function0<? extends T> computable;
 
@@ -317,18 +342,24 @@ public class LockBasedStorageManager implements StorageManager {
 
         @Override
         public boolean isComputed() {
-            return value != NotValue.NOT_COMPUTED && value != NotValue.COMPUTING;
+            Object _value = value;
+            return _value != NotValue.NOT_COMPUTED && _value != NotValue.COMPUTING && !(_value instanceof ComputationLock);
         }
 
         @Override
         public boolean isComputing() {
-            return value == NotValue.COMPUTING;
+            Object _value = value;
+            return _value == NotValue.COMPUTING || _value instanceof ComputationLock;
         }
 
         @Override
         public T invoke() {
             Object _value = value;
-            if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+            if (!(_value instanceof NotValue) && !(_value instanceof ComputationLock)) return WrappedValues.unescapeThrowable(_value);
+
+            if (storageManager.perComputationLocks) {
+                return invokeWithComputationLock();
+            }
 
             storageManager.lock.lock();
             try {
@@ -380,6 +411,68 @@ public class LockBasedStorageManager implements StorageManager {
             }
         }
 
+        private T invokeWithComputationLock() {
+            while (true) {
+                Object _value = value;
+                if (_value == NotValue.NOT_COMPUTED) {
+                    ComputationLock computation = ComputationLock.createHeldByCurrentThread();
+                    if (VALUE_UPDATER.compareAndSet(this, NotValue.NOT_COMPUTED, computation)) {
+                        return compute(computation);
+                    }
+                    continue;
+                }
+
+                if (_value instanceof ComputationLock) {
+                    ComputationLock computation = (ComputationLock) _value;
+                    if (computation.awaitRelease()) continue;
+
+                    // A recursive call, either in this thread or through computations of other threads waiting for this one
+                    boolean firstTime = !computation.recursionDetected;
+                    computation.recursionDetected = true;
+                    return notFallThrough(recursionDetected(firstTime));
+                }
+
+                if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                    return notFallThrough(recursionDetected(/*firstTime = */ false));
+                }
+
+                return WrappedValues.unescapeThrowable(_value);
+            }
+        }
+
+        private T compute(@NotNull ComputationLock computation) {
+            try {
+                T typedValue = computable.invoke();
+
+                // Don't publish computed value till post compute is finished as it may cause a race condition
+                // if post compute modifies value internals.
+                postCompute(typedValue);
+
+                value = typedValue;
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    value = NotValue.NOT_COMPUTED;
+                    //noinspection ConstantConditions
+                    throw (RuntimeException)throwable;
+                }
+
+                // Store only if it's a genuine result, not something thrown through recursionDetected()
+                value = computation.recursionDetected ? NotValue.RECURSION_WAS_DETECTED : WrappedValues.escapeThrowable(throwable);
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                computation.unlock();
+            }
+        }
+
+        private T notFallThrough(@NotNull RecursionDetectedResult<T> result) {
+            // Only NO_LOCKS falls through, and it doesn't use per-computation locks
+            assert !result.isFallThrough() : "Recursion can't fall through with per-computation locks in " + storageManager;
+            return result.getValue();
+        }
+
         /**
          * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
          * @return a value to be returned on a recursive call or subsequent calls
@@ -431,7 +524,7 @@ public class LockBasedStorageManager implements StorageManager {
         // Doing something in post-compute helps prevent infinite recursion
         @Override
         protected final void postCompute(T value) {
-            // Protected from rewrites in other threads because it is executed under lock in invoke().
+            // Protected from rewrites in other threads because it is executed under lock (or per-computation lock) in invoke().
             // May be overwritten when NO_LOCK is used.
             valuePostCompute = new SingleThreadValue<T>(value);
             try {
@@ -496,7 +589,13 @@ public class LockBasedStorageManager implements StorageManager {
         @Nullable
         public V invoke(K input) {
             Object value = cache.get(input);
-            if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
+            if (value != null && value != NotValue.COMPUTING && !(value instanceof ComputationLock)) {
+                return WrappedValues.unescapeExceptionOrNull(value);
+            }
+
+            if (storageManager.perComputationLocks) {
+                return invokeWithComputationLock(input);
+            }
 
             storageManager.lock.lock();
             try {
@@ -546,6 +645,60 @@ public class LockBasedStorageManager implements StorageManager {
             }
         }
 
+        @Nullable
+        private V invokeWithComputationLock(K input) {
+            while (true) {
+                Object value = cache.get(input);
+                if (value == null) {
+                    ComputationLock computation = ComputationLock.createHeldByCurrentThread();
+                    if (cache.putIfAbsent(input, computation) == null) {
+                        return compute(input, computation);
+                    }
+                    continue;
+                }
+
+                if (value instanceof ComputationLock) {
+                    if (((ComputationLock) value).awaitRelease()) continue;
+                    throw recursionDetected(input);
+                }
+
+                return WrappedValues.unescapeExceptionOrNull(value);
+            }
+        }
+
+        @Nullable
+        private V compute(K input, @NotNull ComputationLock computation) {
+            AssertionError error = null;
+            try {
+                V typedValue = compute.invoke(input);
+                if (!cache.replace(input, computation, WrappedValues.escapeNull(typedValue))) {
+                    error = raceCondition(input, cache.get(input));
+                    throw error;
+                }
+
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    cache.remove(input, computation);
+                    //noinspection ConstantConditions
+                    throw (RuntimeException)throwable;
+                }
+                if (throwable == error) {
+                    throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+                }
+
+                if (!cache.replace(input, computation, WrappedValues.escapeThrowable(throwable))) {
+                    throw raceCondition(input, cache.get(input));
+                }
+
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                computation.unlock();
+            }
+        }
+
         @NotNull
         private AssertionError recursionDetected(K input) {
             return sanitizeStackTrace(
@@ -564,7 +717,7 @@ public class LockBasedStorageManager implements StorageManager {
         @Override
         public boolean isComputed(K key) {
             Object value = cache.get(key);
-            return value != null && value != NotValue.COMPUTING;
+            return value != null && value != NotValue.COMPUTING && !(value instanceof ComputationLock);
         }
 
         protected LockBasedStorageManager getStorageManager() {
@@ -614,7 +767,7 @@ public class LockBasedStorageManager implements StorageManager {
     @Override
     public <K, V> CacheWithNullableValues<K, V> createCacheWithNullableValues() {
         return new CacheWithNullableValuesBasedOnMemoizedFunction<K, V>(
-                this, LockBasedStorageManager.<KeyWithComputation<K,V>>createConcurrentHashMap());
+                this, this.<KeyWithComputation<K,V>>createConcurrentHashMap());
     }
 
     private static class CacheWithNullableValuesBasedOnMemoizedFunction<K, V> extends MapBasedMemoizedFunction<KeyWithComputation<K, V>, V> implements CacheWithNullableValues<K, V> {
@@ -641,7 +794,7 @@ public class LockBasedStorageManager implements StorageManager {
     @NotNull
     @Override
     public <K, V> CacheWithNotNullValues<K, V> createCacheWithNotNullValues() {
-        return new CacheWithNotNullValuesBasedOnMemoizedFunction<K, V>(this, LockBasedStorageManager.<KeyWithComputation<K,V>>createConcurrentHashMap());
+        return new CacheWithNotNullValuesBasedOnMemoizedFunction<K, V>(this, this.<KeyWithComputation<K,V>>createConcurrentHashMap());
     }
 
     private static class CacheWithNotNullValuesBasedOnMemoizedFunction<K, V> extends CacheWithNullableValuesBasedOnMemoizedFunction<K, V> implements CacheWithNotNullValues<K, V> {
@@ -70,6 +70,7 @@ class FirIdeProvider(
                 fileWithStamp.file
             } else {
                 val file = RawFirBuilder(session, cacheProvider.kotlinScopeProvider, stubMode = false).buildFirFile(ktFile)
+                fileWithStamp?.let { cacheProvider.removeFile(it.file) }
                 cacheProvider.recordFile(file)
                 fileWithStamp = FirFileWithStamp(file, modificationStamp)
                 files[ktFile] = fileWithStamp
@@ -74,6 +74,12 @@ public class JSConfigurationKeys {
     public static final CompilerConfigurationKey<Boolean> METADATA_ONLY =
             CompilerConfigurationKey.create("generate .meta.js and .kjsm files only");
 
+    public static final CompilerConfigurationKey<String> IR_CACHE_DIRECTORY =
+            CompilerConfigurationKey.create("directory of the persistent cache of code generated by IR backend");
+
+    public static final CompilerConfigurationKey<Boolean> LAZY_IR_FUNCTION_BODIES =
+            CompilerConfigurationKey.create("deserialize bodies of non-inline functions of dependencies only if they are used");
+
     public static final CompilerConfigurationKey<Boolean> DEVELOPER_MODE =
             CompilerConfigurationKey.create("enables additional checkers");
 
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.js.messageCollectorLogger
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.ir.backend.js.CompilerResult
+import org.jetbrains.kotlin.ir.backend.js.JsIrCompilationCache
+import org.jetbrains.kotlin.ir.backend.js.compile
+import org.jetbrains.kotlin.ir.backend.js.jsPhases
+import org.jetbrains.kotlin.ir.backend.js.jsResolveLibraries
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.serialization.js.ModuleKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import java.io.File
+import java.util.concurrent.Executors
+
+class JsIrCompilationCacheTest : KotlinTestWithEnvironment() {
+    private lateinit var cacheDir: File
+
+    override fun createEnvironment() =
+        KotlinCoreEnvironment.createForTests(testRootDisposable, CompilerConfiguration(), EnvironmentConfigFiles.JS_CONFIG_FILES)
+
+    override fun setUp() {
+        super.setUp()
+        cacheDir = KotlinTestUtils.tmpDirForTest(this)
+    }
+
+    fun testCacheHitStillReportsWarnings() {
+        val first = compileModule("main")
+        assertTrue(first.warnings.any { "'unused'" in it })
+
+        markCachedCode("main")
+
+        val second = compileModule("main")
+        assertEquals(CACHED_CODE_MARKER, second.result.jsCode)
+        assertEquals(first.warnings, second.warnings)
+    }
+
+    fun testModulesAreCachedSeparately() {
+        compileModule("first")
+        compileModule("second")
+        markCachedCode("first")
+        markCachedCode("second")
+
+        assertEquals(CACHED_CODE_MARKER, compileModule("first").result.jsCode)
+        assertEquals(CACHED_CODE_MARKER, compileModule("second").result.jsCode)
+    }
+
+    fun testFriendPathsAffectKey() {
+        compileModule("main")
+        markCachedCode("main")
+
+        val result = compileModule("main") { put(JSConfigurationKeys.FRIEND_PATHS_DISABLED, true) }.result
+        assertFalse(CACHED_CODE_MARKER == result.jsCode)
+        assertTrue(result.jsCode!!.contains("foo"))
+    }
+
+    fun testConcurrentSavesAreNotMixed() {
+        val configuration = environment.configuration.copy().apply { put(CommonConfigurationKeys.MODULE_NAME, "main") }
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val results = (0 until 4).map { thread ->
+                executor.submit {
+                    val cache = JsIrCompilationCache(cacheDir, configuration)
+                    repeat(50) { i ->
+                        val key = "$thread-$i"
+                        val jsCode = "/* $key */\n".repeat(1000)
+                        cache.save(key, CompilerResult(jsCode, null))
+                        // The result may be replaced by another thread, but the code must never be taken from a different result
+                        cache.load(key)?.let { assertEquals(jsCode, it.jsCode) }
+                    }
+                }
+            }
+            results.forEach { it.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private class Compilation(val result: CompilerResult, val warnings: List<String>)
+
+    private fun compileModule(moduleName: String, configure: CompilerConfiguration.() -> Unit = {}): Compilation {
+        val warnings = mutableListOf<String>()
+        val messageCollector = object : MessageCollector {
+            override fun clear() {}
+
+            override fun report(severity: CompilerMessageSeverity, message: String, location: CompilerMessageLocation?) {
+                if (severity == CompilerMessageSeverity.WARNING) {
+                    warnings.add(message)
+                }
+            }
+
+            override fun hasErrors() = false
+        }
+
+        val configuration = environment.configuration.copy().apply {
+            put(CommonConfigurationKeys.MODULE_NAME, moduleName)
+            put(JSConfigurationKeys.MODULE_KIND, ModuleKind.PLAIN)
+            put(JSConfigurationKeys.IR_CACHE_DIRECTORY, cacheDir.path)
+            put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector)
+            configure()
+        }
+
+        val file = KtPsiFactory(project).createFile("main.kt", "fun foo() {\n    val unused = 1\n}\n")
+        val libraries = jsResolveLibraries(listOf(File(RUNTIME_KLIB).absolutePath), messageCollectorLogger(MessageCollector.NONE))
+
+        val result = compile(
+            project, listOf(file), configuration, PhaseConfig(jsPhases), libraries,
+            friendDependencies = emptyList(), mainArguments = null
+        )
+        return Compilation(result, warnings)
+    }
+
+    // Replaces the cached code, so that a cache hit can be told apart from a new compilation
+    private fun markCachedCode(moduleName: String) {
+        File(File(cacheDir, moduleName), "output.js").writeText(CACHED_CODE_MARKER)
+    }
+
+    companion object {
+        private const val RUNTIME_KLIB = "libraries/stdlib/js-ir/build/reducedRuntime/klib"
+        private const val CACHED_CODE_MARKER = "/* cached */"
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.js.messageCollectorLogger
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.ir.backend.js.*
+import org.jetbrains.kotlin.ir.declarations.IrSimpleFunction
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys
+import org.jetbrains.kotlin.library.resolver.KotlinLibraryResolveResult
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.serialization.js.ModuleKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import java.io.File
+
+class JsIrLazyFunctionBodiesTest : KotlinTestWithEnvironment() {
+    private lateinit var libraries: KotlinLibraryResolveResult
+
+    override fun createEnvironment() =
+        KotlinCoreEnvironment.createForTests(testRootDisposable, CompilerConfiguration(), EnvironmentConfigFiles.JS_CONFIG_FILES)
+
+    override fun setUp() {
+        super.setUp()
+
+        val libKlib = File(KotlinTestUtils.tmpDirForTest(this), "lib")
+        val runtime = jsResolveLibraries(listOf(File(RUNTIME_KLIB).absolutePath), messageCollectorLogger(MessageCollector.NONE))
+        generateKLib(
+            project, listOf(KtPsiFactory(project).createFile("lib.kt", LIB_SOURCE)), configuration("lib"), runtime,
+            friendDependencies = emptyList(), outputKlibPath = libKlib.path, nopack = true
+        )
+
+        libraries = jsResolveLibraries(
+            listOf(File(RUNTIME_KLIB).absolutePath, libKlib.absolutePath), messageCollectorLogger(MessageCollector.NONE)
+        )
+    }
+
+    fun testBodiesAreDeserializedOnDemand() {
+        val configuration = configuration("main") { put(JSConfigurationKeys.LAZY_IR_FUNCTION_BODIES, true) }
+        val irModuleInfo = loadIr(project, listOf(mainFile()), configuration, libraries, friendDependencies = emptyList())
+
+        fun libFunction(name: String): IrSimpleFunction? =
+            irModuleInfo.allDependencies.flatMap { it.files }.flatMap { it.declarations }
+                .filterIsInstance<IrSimpleFunction>().singleOrNull { it.name.asString() == name }
+
+        // Bodies of the functions referenced by the module are deserialized right away, the rest of them when they are reached
+        assertNotNull(libFunction("used")!!.body)
+        assertNull(libFunction("calledFromUsed")!!.body)
+        assertNull(libFunction("calledFromCalledFromUsed"))
+        assertNull(libFunction("unused"))
+
+        irModuleInfo.deserializer.deserializeReachableFunctionBodies(listOf(irModuleInfo.module))
+
+        assertNotNull(libFunction("calledFromUsed")!!.body)
+        assertNotNull(libFunction("calledFromCalledFromUsed")!!.body)
+        assertNull(libFunction("unused"))
+    }
+
+    fun testSameCodeAsWithEagerDeserialization() {
+        val eager = compileMain(lazyFunctionBodies = false)
+        val lazy = compileMain(lazyFunctionBodies = true)
+
+        assertTrue(eager.contains("calledFromCalledFromUsed"))
+        assertEquals(eager, lazy)
+    }
+
+    private fun compileMain(lazyFunctionBodies: Boolean): String {
+        val configuration = configuration("main") { put(JSConfigurationKeys.LAZY_IR_FUNCTION_BODIES, lazyFunctionBodies) }
+        return compile(
+            project, listOf(mainFile()), configuration, PhaseConfig(jsPhases), libraries,
+            friendDependencies = emptyList(), mainArguments = null
+        ).jsCode!!
+    }
+
+    private fun mainFile() = KtPsiFactory(project).createFile("main.kt", MAIN_SOURCE)
+
+    private fun configuration(moduleName: String, configure: CompilerConfiguration.() -> Unit = {}) =
+        environment.configuration.copy().apply {
+            put(CommonConfigurationKeys.MODULE_NAME, moduleName)
+            put(JSConfigurationKeys.MODULE_KIND, ModuleKind.PLAIN)
+            configure()
+        }
+
+    companion object {
+        private const val RUNTIME_KLIB = "libraries/stdlib/js-ir/build/reducedRuntime/klib"
+
+        private val LIB_SOURCE = """
+            package lib
+
+            fun used(x: Int) = calledFromUsed(x) + inlined(x)
+
+            fun calledFromUsed(x: Int) = calledFromCalledFromUsed(x) * 2
+
+            fun calledFromCalledFromUsed(x: Int) = x + 1
+
+            inline fun inlined(x: Int) = x * 3
+
+            fun unused() = "unused"
+        """.trimIndent()
+
+        private val MAIN_SOURCE = """
+            import lib.*
+
+            fun box(): String = if (used(1) == 7) "OK" else "fail"
+        """.trimIndent()
+    }
+}
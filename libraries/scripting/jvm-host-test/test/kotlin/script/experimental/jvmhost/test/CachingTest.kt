@@ -95,6 +95,59 @@ class CachingTest : TestCase() {
         }
     }
 
+    @Test
+    fun testLruCacheOverJarCache() {
+        withTempDir("scriptingTestJarCache") { cacheDir ->
+            val cache = TestLruScriptsCache(CompiledScriptJarsCache(cacheDir))
+
+            checkWithCache(cache, simpleScript, simpleScriptExpectedOutput)
+            Assert.assertEquals(2L, cache.lruCache.memoryHitCount)
+            Assert.assertEquals(1, cacheDir.listFiles()!!.count { it.extension == "jar" })
+
+            val freshCache = CompiledJvmScriptsLruCache(nextTier = CompiledScriptJarsCache(cacheDir))
+            val scriptCompilationConfiguration = ScriptCompilationConfiguration().with {
+                updateClasspath(KotlinJars.kotlinScriptStandardJarsWithReflect)
+            }
+            val compiledScript = cache.lastStoredScript!!
+            Assert.assertNotNull(freshCache.get(simpleScript.toScriptSource(), compiledScript.compilationConfiguration))
+            Assert.assertNotNull(freshCache.get(simpleScript.toScriptSource(), compiledScript.compilationConfiguration))
+            Assert.assertNull(freshCache.get("val y = 2".toScriptSource(), scriptCompilationConfiguration))
+            Assert.assertEquals(1L, freshCache.nextTierHitCount)
+            Assert.assertEquals(1L, freshCache.memoryHitCount)
+            Assert.assertEquals(1L, freshCache.missCount)
+        }
+    }
+
+    @Test
+    fun testSimpleImportWithLruCache() {
+        val cache = TestLruScriptsCache(CompiledJvmScriptsCache.NoCache)
+        checkWithCache(cache, scriptWithImport, scriptWithImportExpectedOutput) { makeSimpleConfigurationWithTestImport() }
+    }
+
+    @Test
+    fun testCacheKeyWithImports() {
+        withTempDir("scriptingTestCacheKey") { dir ->
+            val importedScript = File(dir, "imported.kts").apply { writeText("val x = 1") }
+            fun configuration() = ScriptCompilationConfiguration {
+                importScripts(importedScript.toScriptSource())
+                updateClasspath(KotlinJars.kotlinScriptStandardJarsWithReflect)
+            }
+            val script = simpleScript.toScriptSource()
+
+            val key = compiledScriptCacheKey(script, configuration())
+            Assert.assertNotNull(key)
+            Assert.assertEquals(key, compiledScriptCacheKey(script, configuration()))
+
+            importedScript.writeText("val x = 2")
+            Assert.assertNotEquals(key, compiledScriptCacheKey(script, configuration()))
+
+            val configurationWithClassLoader = ScriptCompilationConfiguration(configuration()) {
+                dependencies.append(JvmDependencyFromClassLoader { CachingTest::class.java.classLoader })
+            }
+            Assert.assertNull(compiledScriptCacheKey(script, configurationWithClassLoader))
+        }
+    }
+
     private fun checkWithCache(
         cache: ScriptingCacheWithCounters, script: String, expectedOutput: List<String>,
         configurationBuilder: ScriptCompilationConfiguration.Builder.() -> Unit = {}
@@ -215,6 +268,33 @@ private class FileBasedScriptCache(val baseDir: File) : ScriptingCacheWithCounte
         private set
 }
 
+private class TestLruScriptsCache(nextTier: CompiledJvmScriptsCache) : ScriptingCacheWithCounters {
+
+    val lruCache = CompiledJvmScriptsLruCache(nextTier = nextTier)
+
+    var lastStoredScript: CompiledScript<*>? = null
+        private set
+
+    override fun get(script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration): CompiledScript<*>? =
+        lruCache.get(script, scriptCompilationConfiguration)?.also { retrievedScripts++ }
+
+    override fun store(
+        compiledScript: CompiledScript<*>,
+        script: SourceCode,
+        scriptCompilationConfiguration: ScriptCompilationConfiguration
+    ) {
+        lruCache.store(compiledScript, script, scriptCompilationConfiguration)
+        lastStoredScript = compiledScript
+        storedScripts++
+    }
+
+    override var storedScripts: Int = 0
+        private set
+
+    override var retrievedScripts: Int = 0
+        private set
+}
+
 class TestCompiledScriptJarsCache(val baseDir: File) : CompiledScriptJarsCache(
     { script, scriptCompilationConfiguration ->
         File(baseDir, uniqueScriptHash(script, scriptCompilationConfiguration) + ".jar")
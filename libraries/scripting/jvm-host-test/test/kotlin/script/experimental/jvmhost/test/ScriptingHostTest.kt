@@ -101,6 +101,27 @@ class ScriptingHostTest : TestCase() {
         Assert.assertEquals(42, resField.get(resVal.scriptInstance!!))
     }
 
+    @Test
+    fun testCompilerPool() {
+        ScriptJvmCompilerPool(defaultJvmScriptingHostConfiguration).use { pool ->
+            val host = BasicJvmScriptingHost(compiler = JvmScriptCompiler(defaultJvmScriptingHostConfiguration, pool))
+            val compilationConfiguration = createJvmCompilationConfigurationFromTemplate<SimpleScriptTemplate>()
+
+            for (i in 1..3) {
+                val resVal = host.eval("$i * 2".toScriptSource(), compilationConfiguration, null)
+                    .throwOnFailure().valueOrNull()!!.returnValue as ResultValue.Value
+                Assert.assertEquals(i * 2, resVal.value)
+            }
+
+            val errorResult = host.eval("nonExisting()".toScriptSource(), compilationConfiguration, null)
+            Assert.assertTrue(errorResult is ResultWithDiagnostics.Failure)
+
+            val resVal = host.eval("42".toScriptSource(), compilationConfiguration, null)
+                .throwOnFailure().valueOrNull()!!.returnValue as ResultValue.Value
+            Assert.assertEquals(42, resVal.value)
+        }
+    }
+
     @Test
     fun testSaveToClasses() {
         val greeting = "Hello from script classes!"
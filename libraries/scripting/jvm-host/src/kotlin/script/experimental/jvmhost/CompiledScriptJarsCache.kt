@@ -6,6 +6,7 @@
 package kotlin.script.experimental.jvmhost
 
 import java.io.File
+import java.io.IOException
 import java.net.URLClassLoader
 import java.util.jar.JarInputStream
 import kotlin.script.experimental.api.CompiledScript
@@ -14,7 +15,9 @@ import kotlin.script.experimental.api.SourceCode
 import kotlin.script.experimental.api.hostConfiguration
 import kotlin.script.experimental.host.ScriptingHostConfiguration
 import kotlin.script.experimental.jvm.CompiledJvmScriptsCache
+import kotlin.script.experimental.jvm.CompiledJvmScriptsLruCache
 import kotlin.script.experimental.jvm.baseClassLoader
+import kotlin.script.experimental.jvm.compiledScriptCacheKey
 import kotlin.script.experimental.jvm.impl.KJvmCompiledScript
 import kotlin.script.experimental.jvm.impl.createScriptFromClassLoader
 import kotlin.script.experimental.jvm.jvm
@@ -22,9 +25,23 @@ import kotlin.script.experimental.jvm.jvm
 open class CompiledScriptJarsCache(val scriptToFile: (SourceCode, ScriptCompilationConfiguration) -> File?) :
     CompiledJvmScriptsCache {
 
+    // Scripts without a cache key are not cached rather than rejected, see the constructor below
+    private var skipUnmappedScripts = false
+
+    /**
+     * Stores scripts in [baseDir] in jars named by [compiledScriptCacheKey]. Wrap the cache into [CompiledJvmScriptsLruCache]
+     * to avoid reading the same jars over and over again.
+     */
+    constructor(baseDir: File) : this({ script, scriptCompilationConfiguration ->
+        compiledScriptCacheKey(script, scriptCompilationConfiguration)?.let { File(baseDir, "$it.jar") }
+    }) {
+        skipUnmappedScripts = true
+    }
+
     override fun get(script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration): CompiledScript<*>? {
         val file = scriptToFile(script, scriptCompilationConfiguration)
-            ?: throw IllegalArgumentException("Unable to find a mapping to a file for the script $script")
+            ?: if (skipUnmappedScripts) return null
+            else throw IllegalArgumentException("Unable to find a mapping to a file for the script $script")
 
         if (!file.exists()) return null
 
@@ -47,11 +64,22 @@ open class CompiledScriptJarsCache(val scriptToFile: (SourceCode, ScriptCompilat
         scriptCompilationConfiguration: ScriptCompilationConfiguration
     ) {
         val file = scriptToFile(script, scriptCompilationConfiguration)
-            ?: throw IllegalArgumentException("Unable to find a mapping to a file for the script $script")
+            ?: if (skipUnmappedScripts) return
+            else throw IllegalArgumentException("Unable to find a mapping to a file for the script $script")
 
         val jvmScript = (compiledScript as? KJvmCompiledScript<*>)
             ?: throw IllegalArgumentException("Unsupported script type ${compiledScript::class.java.name}")
 
-        jvmScript.saveToJar(file)
+        // The jar is written to a temporary file first, so that the cache never returns a partially written jar
+        val tempFile = File.createTempFile(file.name, ".tmp", file.absoluteFile.parentFile)
+        try {
+            jvmScript.saveToJar(tempFile)
+            if (!tempFile.renameTo(file)) {
+                file.delete()
+                if (!tempFile.renameTo(file)) throw IOException("Unable to store the compiled script to $file")
+            }
+        } finally {
+            tempFile.delete()
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package kotlin.script.experimental.jvmhost
+
+import org.jetbrains.kotlin.scripting.compiler.plugin.ScriptCompilerProxy
+import org.jetbrains.kotlin.scripting.compiler.plugin.impl.ScriptJvmCompilerSession
+import java.io.Closeable
+import kotlin.script.experimental.api.CompiledScript
+import kotlin.script.experimental.api.ResultWithDiagnostics
+import kotlin.script.experimental.api.ScriptCompilationConfiguration
+import kotlin.script.experimental.api.SourceCode
+import kotlin.script.experimental.host.ScriptingHostConfiguration
+import kotlin.script.experimental.host.withDefaultsFrom
+import kotlin.script.experimental.jvm.defaultJvmScriptingHostConfiguration
+
+/**
+ * A compiler proxy which keeps warm compiler sessions (see [ScriptJvmCompilerSession]) between compilations, so that scripts
+ * compiled with the same configuration (including the classpath) don't create and index a new compiler environment each time.
+ *
+ * Scripts are compiled concurrently, each in its own session: at most [maxIdleSessions] idle sessions are kept for each of the
+ * [maxConfigurations] most recently used configurations. Use it with [JvmScriptCompiler], e.g.
+ * `BasicJvmScriptingHost(compiler = JvmScriptCompiler(hostConfiguration, ScriptJvmCompilerPool(hostConfiguration)))`.
+ */
+class ScriptJvmCompilerPool(
+    baseHostConfiguration: ScriptingHostConfiguration = defaultJvmScriptingHostConfiguration,
+    val maxIdleSessions: Int = Runtime.getRuntime().availableProcessors(),
+    val maxConfigurations: Int = DEFAULT_MAX_CONFIGURATIONS
+) : ScriptCompilerProxy, Closeable {
+
+    val hostConfiguration = baseHostConfiguration.withDefaultsFrom(defaultJvmScriptingHostConfiguration)
+
+    // Idle sessions by the non-transient part of the compilation configuration
+    private val idleSessions = object : LinkedHashMap<Map<*, *>, ArrayList<ScriptJvmCompilerSession>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Map<*, *>, ArrayList<ScriptJvmCompilerSession>>): Boolean {
+            if (size <= maxConfigurations) return false
+            eldest.value.forEach(ScriptJvmCompilerSession::close)
+            return true
+        }
+    }
+
+    private var isClosed = false
+
+    override fun compile(
+        script: SourceCode,
+        scriptCompilationConfiguration: ScriptCompilationConfiguration
+    ): ResultWithDiagnostics<CompiledScript<*>> {
+        val key = scriptCompilationConfiguration.notTransientData
+        val session = synchronized(idleSessions) {
+            check(!isClosed) { "The compiler pool is closed" }
+            idleSessions[key]?.let { sessions -> if (sessions.isEmpty()) null else sessions.removeAt(sessions.size - 1) }
+        } ?: ScriptJvmCompilerSession(hostConfiguration)
+
+        var released = false
+        try {
+            return session.compile(script, scriptCompilationConfiguration)
+        } finally {
+            if (session.isReusable) {
+                released = synchronized(idleSessions) {
+                    val sessions = if (isClosed) null else idleSessions.getOrPut(key) { ArrayList() }
+                    sessions != null && sessions.size < maxIdleSessions && sessions.add(session)
+                }
+            }
+            if (!released) {
+                session.close()
+            }
+        }
+    }
+
+    override fun close() {
+        synchronized(idleSessions) {
+            isClosed = true
+            idleSessions.values.forEach { sessions -> sessions.forEach(ScriptJvmCompilerSession::close) }
+            idleSessions.clear()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_CONFIGURATIONS = 16
+    }
+}
@@ -5,7 +5,11 @@
 
 package kotlin.script.experimental.jvm
 
+import java.io.File
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.script.experimental.api.CompiledScript
+import kotlin.script.experimental.api.KotlinType
 import kotlin.script.experimental.api.ScriptCompilationConfiguration
 import kotlin.script.experimental.api.SourceCode
 import kotlin.script.experimental.util.PropertiesCollection
@@ -28,3 +32,130 @@ interface CompiledJvmScriptsCache {
 
 val JvmScriptingHostConfigurationKeys.compilationCache by PropertiesCollection.key<CompiledJvmScriptsCache>(isTransient = true)
 
+/**
+ * A two-tier cache: the most recently used compiled scripts are kept in memory, other scripts are looked up in [nextTier]
+ * (e.g. a cache on disk) and stored there as well.
+ *
+ * Scripts are looked up by [compiledScriptCacheKey]. At most [maxScripts] scripts are kept in memory, the least recently used one is
+ * dropped first, so that its class loader may be collected as soon as the script is not used anymore. Scripts without a key are
+ * only looked up in [nextTier]. The cache is thread-safe.
+ */
+class CompiledJvmScriptsLruCache(
+    val maxScripts: Int = DEFAULT_MAX_SCRIPTS,
+    private val nextTier: CompiledJvmScriptsCache = CompiledJvmScriptsCache.NoCache
+) : CompiledJvmScriptsCache {
+
+    private val scripts = object : LinkedHashMap<String, CompiledScript<*>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, CompiledScript<*>>): Boolean = size > maxScripts
+    }
+
+    private val memoryHits = AtomicLong()
+    private val nextTierHits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val memoryHitCount: Long get() = memoryHits.get()
+    val nextTierHitCount: Long get() = nextTierHits.get()
+    val missCount: Long get() = misses.get()
+
+    val size: Int get() = synchronized(scripts) { scripts.size }
+
+    override fun get(script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration): CompiledScript<*>? {
+        val key = compiledScriptCacheKey(script, scriptCompilationConfiguration)
+            ?: return nextTier.get(script, scriptCompilationConfiguration)
+        synchronized(scripts) { scripts[key] }?.let {
+            memoryHits.incrementAndGet()
+            return it
+        }
+
+        // Loaded outside of the lock, the next tier is usually slow
+        val loaded = nextTier.get(script, scriptCompilationConfiguration)
+        if (loaded == null) {
+            misses.incrementAndGet()
+            return null
+        }
+
+        nextTierHits.incrementAndGet()
+        return synchronized(scripts) { scripts.getOrPut(key) { loaded } }
+    }
+
+    override fun store(
+        compiledScript: CompiledScript<*>, script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration
+    ) {
+        val key = compiledScriptCacheKey(script, scriptCompilationConfiguration)
+        if (key != null) {
+            synchronized(scripts) { scripts[key] = compiledScript }
+        }
+        nextTier.store(compiledScript, script, scriptCompilationConfiguration)
+    }
+
+    fun clear() {
+        synchronized(scripts) { scripts.clear() }
+    }
+
+    override fun toString(): String =
+        "CompiledJvmScriptsLruCache(size=$size, memoryHits=$memoryHitCount, nextTierHits=$nextTierHitCount, misses=$missCount)"
+
+    companion object {
+        const val DEFAULT_MAX_SCRIPTS = 1024
+    }
+}
+
+/**
+ * Returns a hash of the [script] and of all non-transient properties of the [scriptCompilationConfiguration], so that
+ * scripts with the same key compile to the same classes, or `null` if the configuration can't be hashed and the script
+ * shouldn't be cached.
+ *
+ * Values are hashed by their contents: texts of sources (e.g. of imported scripts), paths, sizes and modification times
+ * of the classpath dependency files, so that a script is compiled again after one of them changes. Values of other types are
+ * hashed by their `toString`, unless it's the identity-based one of [Any], e.g. for [JvmDependencyFromClassLoader].
+ */
+fun compiledScriptCacheKey(script: SourceCode, scriptCompilationConfiguration: ScriptCompilationConfiguration): String? {
+    val digest = MessageDigest.getInstance("SHA-256")
+    fun update(value: String) {
+        digest.update(value.toByteArray())
+        digest.update(0)
+    }
+
+    fun updateWithValue(value: Any?): Boolean {
+        when (value) {
+            null -> update("null")
+            is String, is Number, is Boolean, is Char, is Enum<*> -> update(value.toString())
+            is SourceCode -> {
+                update(value.name ?: "")
+                update(value.text)
+            }
+            is KotlinType -> update(value.typeName)
+            is JvmDependency -> value.classpath.forEach { file ->
+                update(file.path)
+                update(file.length().toString())
+                update(file.lastModified().toString())
+            }
+            is File -> update(value.path)
+            is Collection<*> -> {
+                update(value.size.toString())
+                if (!value.all(::updateWithValue)) return false
+            }
+            is Array<*> -> {
+                update(value.size.toString())
+                if (!value.all(::updateWithValue)) return false
+            }
+            is Map<*, *> -> {
+                update(value.size.toString())
+                if (!value.all { (k, v) -> updateWithValue(k) && updateWithValue(v) }) return false
+            }
+            else -> {
+                if (value.javaClass.getMethod("toString").declaringClass == Any::class.java) return false
+                update(value.toString())
+            }
+        }
+        return true
+    }
+
+    update(script.text)
+    for ((key, value) in scriptCompilationConfiguration.notTransientData.entries.sortedBy { it.key.name }) {
+        update(key.name)
+        if (!updateWithValue(value)) return null
+    }
+
+    return digest.digest().joinToString("") { "%02x".format(it) }
+}
@@ -29,6 +29,12 @@ class CliScriptDependenciesProvider(project: Project) : ScriptDependenciesProvid
         calculateRefinedConfiguration(file)
     }
 
+    fun clearCache() {
+        cacheLock.write {
+            cache.clear()
+        }
+    }
+
     private fun calculateRefinedConfiguration(file: KtFile): ScriptCompilationConfigurationResult? {
         val path = file.virtualFilePath
         val cached = cache[path]
@@ -4,8 +4,10 @@
  */
 package org.jetbrains.kotlin.scripting.compiler.plugin.impl
 
+import com.intellij.openapi.util.Disposer
 import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.environment.setIdeaIoUseFallback
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.jvm.compiler.NoScopeRecordCliBindingTrace
@@ -19,8 +21,11 @@ import org.jetbrains.kotlin.config.languageVersionSettings
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.jvm.extensions.PackageFragmentProviderExtension
 import org.jetbrains.kotlin.scripting.compiler.plugin.ScriptCompilerProxy
+import org.jetbrains.kotlin.scripting.compiler.plugin.definitions.CliScriptDependenciesProvider
 import org.jetbrains.kotlin.scripting.compiler.plugin.dependencies.ScriptsCompilationDependencies
 import org.jetbrains.kotlin.scripting.definitions.ScriptDependenciesProvider
+import java.io.Closeable
+import java.io.File
 import kotlin.script.experimental.api.*
 import kotlin.script.experimental.host.ScriptingHostConfiguration
 import kotlin.script.experimental.jvm.JvmDependency
@@ -77,6 +82,80 @@ class ScriptJvmCompilerFromEnvironment(val environment: KotlinCoreEnvironment) :
     }
 }
 
+/**
+ * Compiles scripts one at a time in a single environment, which is created for the first script and reused for the next ones,
+ * so that the classpath is indexed and the standard library is loaded once per session rather than once per script.
+ *
+ * All scripts should have the same compilation configuration. A script is compiled in a separate environment if its configuration
+ * refined before parsing differs from the one of the first script. After a compilation that might have changed the environment
+ * (e.g. added dependencies from the script annotations, or failed), the session is not [isReusable] anymore and should be closed.
+ */
+class ScriptJvmCompilerSession(val hostConfiguration: ScriptingHostConfiguration) : ScriptCompilerProxy, Closeable {
+    private val disposable = Disposer.newDisposable()
+
+    private var context: SharedScriptCompilationContext? = null
+    private var sessionConfiguration: ScriptCompilationConfiguration? = null
+    private var sessionClasspath: List<File> = emptyList()
+
+    var isReusable: Boolean = true
+        private set
+
+    override fun compile(
+        script: SourceCode,
+        scriptCompilationConfiguration: ScriptCompilationConfiguration
+    ): ResultWithDiagnostics<CompiledScript<*>> {
+        check(isReusable) { "The session cannot compile scripts anymore" }
+
+        return withMessageCollector(script = script) { messageCollector ->
+            val initialConfiguration = scriptCompilationConfiguration.refineBeforeParsing(script).valueOr {
+                return it
+            }
+
+            val existingContext = context
+            if (existingContext != null && initialConfiguration.notTransientData != sessionConfiguration?.notTransientData) {
+                return ScriptJvmCompilerIsolated(hostConfiguration).compile(script, scriptCompilationConfiguration)
+            }
+
+            val context = existingContext ?: run {
+                setIdeaIoUseFallback()
+                createIsolatedCompilationContext(initialConfiguration, hostConfiguration, messageCollector, disposable).also {
+                    this@ScriptJvmCompilerSession.context = it
+                    sessionConfiguration = initialConfiguration
+                    sessionClasspath = it.environment.configuration.jvmClasspathRoots
+                }
+            }
+
+            val environment = context.environment
+            try {
+                environment.configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector)
+
+                compileImpl(script, context, messageCollector).also { result ->
+                    isReusable = isReusable && result is ResultWithDiagnostics.Success &&
+                            result.value.compilationConfiguration[ScriptCompilationConfiguration.compilerOptions] ==
+                            context.baseScriptCompilationConfiguration[ScriptCompilationConfiguration.compilerOptions]
+                }
+            } catch (e: Throwable) {
+                isReusable = false
+                throw e
+            } finally {
+                // Refined configurations are cached by the script file path, which is usually the same for different scripts
+                (ScriptDependenciesProvider.getInstance(environment.project) as? CliScriptDependenciesProvider)?.clearCache()
+                if (environment.configuration.jvmClasspathRoots != sessionClasspath ||
+                    context.baseScriptCompilationConfiguration[ScriptCompilationConfiguration.dependencies]
+                        ?.any { it is JvmDependencyFromClassLoader } == true
+                ) {
+                    // Package fragment providers for class loader dependencies are registered on each compilation
+                    isReusable = false
+                }
+            }
+        }
+    }
+
+    override fun close() {
+        Disposer.dispose(disposable)
+    }
+}
+
 private fun compileImpl(
     script: SourceCode,
     context: SharedScriptCompilationContext,